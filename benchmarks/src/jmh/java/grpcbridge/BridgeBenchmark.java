@@ -0,0 +1,56 @@
+package grpcbridge;
+
+import grpcbridge.http.HttpMethod;
+import grpcbridge.http.HttpRequest;
+import grpcbridge.http.HttpResponse;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the whole hot path of {@link Bridge#handleAsync}: matching the
+ * route, binding the path and query, the in-process call and serializing
+ * the JSON response. The request hits the route in the middle of the
+ * {@link EchoRoutes}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BridgeBenchmark {
+    @Param({"10", "100", "5000"})
+    public int routes;
+
+    private Bridge bridge;
+    private HttpRequest request;
+
+    @Setup
+    public void setUp() {
+        EchoRoutes echo = new EchoRoutes(routes);
+        bridge = Bridge.builder()
+                .addFile(echo.getFile())
+                .addService(echo.getService())
+                .build();
+        request = HttpRequest
+                .builder(HttpMethod.GET, EchoRoutes.path(routes / 2) + "/hello?page=2&page_size=50&filter=a&filter=b")
+                .build();
+    }
+
+    @Benchmark
+    public HttpResponse handleAsync() throws ExecutionException, InterruptedException {
+        return bridge.handleAsync(request).get();
+    }
+}
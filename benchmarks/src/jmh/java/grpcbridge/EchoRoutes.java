@@ -0,0 +1,92 @@
+package grpcbridge;
+
+import com.google.api.AnnotationsProto;
+import com.google.api.HttpRule;
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+import com.google.protobuf.DescriptorProtos.MethodDescriptorProto;
+import com.google.protobuf.DescriptorProtos.ServiceDescriptorProto;
+import com.google.protobuf.Descriptors.DescriptorValidationException;
+import com.google.protobuf.Descriptors.FileDescriptor;
+import grpcbridge.benchmark.BenchService;
+import grpcbridge.benchmark.BenchService.EchoRequest;
+import grpcbridge.benchmark.BenchService.EchoResponse;
+import io.grpc.MethodDescriptor;
+import io.grpc.MethodDescriptor.MethodType;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.protobuf.ProtoUtils;
+import io.grpc.stub.ServerCalls;
+
+/**
+ * Builds a service with the given number of routes, each a copy of the
+ * Echo method of bench-service.proto bound to its own path, e.g.
+ * <c>/v1/r7/echo/{name}</c>, and an in-process implementation echoing the
+ * name and the page of the request.
+ */
+public final class EchoRoutes {
+    public static final String SERVICE = "grpcbridge.benchmark.RoutesService";
+
+    private final FileDescriptor file;
+    private final ServerServiceDefinition service;
+
+    /**
+     * @param routes number of routes
+     */
+    public EchoRoutes(int routes) {
+        FileDescriptor template = BenchService.getDescriptor();
+        MethodDescriptorProto echo = template.findServiceByName("EchoService").getMethods().get(0).toProto();
+        ServiceDescriptorProto.Builder proto = ServiceDescriptorProto.newBuilder().setName("RoutesService");
+        ServerServiceDefinition.Builder service = ServerServiceDefinition.builder(SERVICE);
+        for (int i = 0; i < routes; i++) {
+            proto.addMethod(echo.toBuilder()
+                    .setName("Echo" + i)
+                    .setOptions(echo.getOptions().toBuilder().setExtension(
+                            AnnotationsProto.http,
+                            HttpRule.newBuilder().setGet(path(i) + "/{name}").build())));
+            service.addMethod(
+                    MethodDescriptor.<EchoRequest, EchoResponse>newBuilder()
+                            .setType(MethodType.UNARY)
+                            .setFullMethodName(MethodDescriptor.generateFullMethodName(SERVICE, "Echo" + i))
+                            .setRequestMarshaller(ProtoUtils.marshaller(EchoRequest.getDefaultInstance()))
+                            .setResponseMarshaller(ProtoUtils.marshaller(EchoResponse.getDefaultInstance()))
+                            .build(),
+                    ServerCalls.asyncUnaryCall((request, observer) -> {
+                        observer.onNext(EchoResponse.newBuilder()
+                                .setName(request.getName())
+                                .setPage(request.getPage())
+                                .build());
+                        observer.onCompleted();
+                    }));
+        }
+
+        try {
+            this.file = FileDescriptor.buildFrom(
+                    FileDescriptorProto.newBuilder()
+                            .setName("grpcbridge/benchmark/routes.proto")
+                            .setPackage("grpcbridge.benchmark")
+                            .setSyntax("proto3")
+                            .addDependency(template.getName())
+                            .addService(proto)
+                            .build(),
+                    new FileDescriptor[] {template});
+        } catch (DescriptorValidationException e) {
+            throw new IllegalStateException(e);
+        }
+        this.service = service.build();
+    }
+
+    /**
+     * @param index index of the route
+     * @return path of the route, without the name variable
+     */
+    public static String path(int index) {
+        return "/v1/r" + index + "/echo";
+    }
+
+    public FileDescriptor getFile() {
+        return file;
+    }
+
+    public ServerServiceDefinition getService() {
+        return service;
+    }
+}
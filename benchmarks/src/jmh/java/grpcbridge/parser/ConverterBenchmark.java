@@ -0,0 +1,94 @@
+package grpcbridge.parser;
+
+import com.google.protobuf.util.JsonFormat;
+import grpcbridge.benchmark.BenchService.Nested;
+import grpcbridge.benchmark.BenchService.Payload;
+import grpcbridge.rpc.RpcMessage;
+import grpcbridge.xml.ProtoXMLConverter;
+import io.grpc.Metadata;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures every {@link ProtoConverter} writing and reading a message with
+ * scalar, nested, map and repeated fields. The small message has no tags,
+ * the medium one about 4 KB of them and the large one about 1 MB.
+ * Serializing the response writes the body bytes the way the bridge does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ConverterBenchmark {
+    @Param({"json", "form", "xml"})
+    public String format;
+
+    @Param({"small", "medium", "large"})
+    public String size;
+
+    private final JsonFormat.Printer printer = JsonFormat.printer().preservingProtoFieldNames();
+    private final ProtoJsonWriter writer = ProtoJsonWriter.create().preservingProtoFieldNames();
+    private ProtoConverter converter;
+    private Payload payload;
+    private String serialized;
+
+    @Setup
+    public void setUp() {
+        switch (format) {
+            case "json":
+                converter = ProtoJsonConverter.INSTANCE;
+                break;
+            case "form":
+                converter = ProtoFormDataConverter.INSTANCE;
+                break;
+            default:
+                converter = ProtoXMLConverter.INSTANCE;
+        }
+        payload = payload(size.equals("small") ? 0 : size.equals("medium") ? 100 : 27000);
+        serialized = converter.serialize(printer, writer, payload);
+    }
+
+    @Benchmark
+    public String serialize() {
+        return converter.serialize(printer, writer, payload);
+    }
+
+    @Benchmark
+    public byte[] serializeResponse() {
+        return converter.serialize(printer, writer, new RpcMessage(payload, new Metadata())).getBodyBytes();
+    }
+
+    @Benchmark
+    public Payload parse() {
+        return converter.parse(serialized, StandardCharsets.UTF_8, Payload.newBuilder());
+    }
+
+    private static Payload payload(int tags) {
+        Payload.Builder builder = Payload.newBuilder()
+                .setName("benchmark payload")
+                .setId(1234567890123L)
+                .setScore(98.25)
+                .setActive(true)
+                .setNested(Nested.newBuilder().setCity("Prague").setZip(11000))
+                .putLabels("env", "prod")
+                .putLabels("region", "eu-central");
+        for (int i = 0; i < tags; i++) {
+            builder.addTags(String.format("tag-%05d-abcdefghijklmnopqrstuvwxyz", i));
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,55 @@
+package grpcbridge.route;
+
+import com.google.protobuf.Descriptors.MethodDescriptor;
+import com.google.protobuf.Message;
+import com.google.protobuf.util.JsonFormat;
+import grpcbridge.EchoRoutes;
+import io.grpc.ServerMethodDefinition;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link Route#getPrinter()}, once the printer is created and for
+ * a new route, which includes compiling the route.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RouteBenchmark {
+    private MethodDescriptor descriptor;
+    private ServerMethodDefinition<Message, Message> impl;
+    private Route route;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        EchoRoutes echo = new EchoRoutes(1);
+        descriptor = echo.getFile().getServices().get(0).getMethods().get(0);
+        impl = (ServerMethodDefinition<Message, Message>) echo.getService().getMethods().iterator().next();
+        route = new Route(descriptor, impl);
+        route.getPrinter();
+    }
+
+    @Benchmark
+    public JsonFormat.Printer getPrinter() {
+        return route.getPrinter();
+    }
+
+    @Benchmark
+    public JsonFormat.Printer newRouteGetPrinter() {
+        return new Route(descriptor, impl).getPrinter();
+    }
+}
@@ -0,0 +1,48 @@
+package grpcbridge.route;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares {@link RequestUrl} with the {@link UrlPathAndQuery} parser it
+ * replaced. Both benchmarks produce the path and the query variables.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class UrlParsingBenchmark {
+    @Param({
+            "/get/hello",
+            "/get-multi/hello/123/321/1.0/3.0/false/bytes/INVALID/nested",
+            "/get?string_field=hello&int_field=987&string_value_field=world",
+            "/get?string_field=h%3Del%2Fl%26o&repeated_field=one&repeated_field=two&nested.nested_field=abc"
+    })
+    public String url;
+
+    @Benchmark
+    public void urlPathAndQuery(Blackhole blackhole) {
+        UrlPathAndQuery parsed = UrlPathAndQuery.parse(url);
+        blackhole.consume(parsed.path());
+        blackhole.consume(parsed.variables());
+    }
+
+    @Benchmark
+    public void requestUrl(Blackhole blackhole) {
+        RequestUrl parsed = RequestUrl.parse(url);
+        blackhole.consume(parsed.getPath());
+        blackhole.consume(parsed.queryVariables());
+    }
+}
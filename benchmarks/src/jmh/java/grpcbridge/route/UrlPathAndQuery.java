@@ -18,6 +18,10 @@ import java.util.Map;
 
 /**
  * Parses URL path and query parameters. Normalizes parameters to be camelCase.
+ *
+ * <p>
+ * This is the URL parser the bridge used before {@link RequestUrl}, kept as
+ * the baseline for {@link UrlParsingBenchmark}.
  */
 final class UrlPathAndQuery {
     public static UrlPathAndQuery parse(String pattern) {
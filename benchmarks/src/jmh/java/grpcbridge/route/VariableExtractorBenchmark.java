@@ -0,0 +1,77 @@
+package grpcbridge.route;
+
+import grpcbridge.benchmark.BenchService.EchoRequest;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures matching a request path against a route pattern and extracting
+ * its path variables, from the raw path and from the parsed
+ * {@link RequestUrl}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class VariableExtractorBenchmark {
+    @Param({"literal", "oneVar", "threeVars"})
+    public String shape;
+
+    private VariableExtractor extractor;
+    private String path;
+    private RequestUrl url;
+
+    @Setup
+    public void setUp() {
+        String pattern;
+        switch (shape) {
+            case "literal":
+                pattern = "/v1/echo/all";
+                path = "/v1/echo/all";
+                break;
+            case "oneVar":
+                pattern = "/v1/echo/{name}";
+                path = "/v1/echo/hello";
+                break;
+            default:
+                pattern = "/v1/echo/{name}/{page}/cities/{nested.city}";
+                path = "/v1/echo/hello/2/cities/Prague";
+        }
+        extractor = new VariableExtractor(pattern, EchoRequest.getDescriptor());
+        url = RequestUrl.parse(path + "?page_size=50");
+    }
+
+    @Benchmark
+    public boolean matchesPath() {
+        return extractor.matches(path);
+    }
+
+    @Benchmark
+    public boolean matchesUrl() {
+        return extractor.matches(url);
+    }
+
+    @Benchmark
+    public List<Variable> extractPath() {
+        return extractor.extract(path);
+    }
+
+    @Benchmark
+    public List<Variable> extractUrl() {
+        return extractor.extract(url);
+    }
+}
@@ -0,0 +1,67 @@
+package grpcbridge.rpc;
+
+import grpcbridge.benchmark.BenchService.EchoRequest;
+import grpcbridge.route.Variable;
+import io.grpc.Metadata;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures applying the query parameters of a request to the request
+ * message, one {@link RpcMessage#setVar} call per parameter and all of them
+ * at once with {@link RpcMessage#setVars}. Besides the scalar and nested
+ * fields every parameter past the fifth is a repeated filter value.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RpcMessageBenchmark {
+    @Param({"5", "50"})
+    public int params;
+
+    private final List<Variable> vars = new ArrayList<>();
+
+    @Setup
+    public void setUp() {
+        vars.add(new Variable("name", "hello"));
+        vars.add(new Variable("page", "2"));
+        vars.add(new Variable("page_size", "50"));
+        vars.add(new Variable("nested.city", "Prague"));
+        vars.add(new Variable("nested.zip", "11000"));
+        for (int i = vars.size(); i < params; i++) {
+            vars.add(new Variable("filter", "value" + i));
+        }
+    }
+
+    @Benchmark
+    public RpcMessage setVar() {
+        RpcMessage message = new RpcMessage(EchoRequest.getDefaultInstance(), new Metadata());
+        for (Variable var : vars) {
+            message.setVar(var);
+        }
+        return message;
+    }
+
+    @Benchmark
+    public RpcMessage setVars() {
+        RpcMessage message = new RpcMessage(EchoRequest.getDefaultInstance(), new Metadata());
+        message.setVars(vars);
+        return message;
+    }
+}
@@ -0,0 +1,82 @@
+package grpcbridge.xml;
+
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.reflect.TypeToken;
+import com.google.protobuf.Message;
+import com.google.protobuf.util.JsonFormat;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.text.NumberFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts messages to XML and back through JSON, Gson maps and Jackson's
+ * {@link XmlMapper}, the way {@link ProtoXMLConverter} did before it was
+ * rewritten on StAX. Kept as the benchmark baseline.
+ */
+final class JacksonXmlConverter {
+    private static final XmlMapper MAPPER = new XmlMapper();
+    private static final Type MAP_TYPE = new TypeToken<Map<String, Object>>() {
+    }.getType();
+    private static final Type LIST_TYPE = new TypeToken<List<Object>>() {
+    }.getType();
+
+    private final Gson gson = new GsonBuilder()
+            .registerTypeAdapter(Map.class, (JsonDeserializer<Map<String, Object>>) (json, type, context) -> {
+                Map<String, Object> m = new LinkedHashMap<>();
+                JsonObject jo = json.getAsJsonObject();
+                for (Map.Entry<String, JsonElement> mx : jo.entrySet()) {
+                    String key = mx.getKey();
+                    JsonElement v = mx.getValue();
+                    if (v.isJsonArray()) {
+                        m.put(key, this.gson.fromJson(v, LIST_TYPE));
+                    } else if (v.isJsonPrimitive()) {
+                        Object value = null;
+                        JsonPrimitive primitive = v.getAsJsonPrimitive();
+                        if (primitive.isNumber()) {
+                            try {
+                                value = NumberFormat.getInstance().parse(v.getAsString());
+                            } catch (Exception ignored) {
+                            }
+                        }
+                        if (value == null) {
+                            value = this.gson.fromJson(v, Object.class);
+                        }
+                        m.put(key, value);
+                    } else if (v.isJsonObject()) {
+                        m.put(key, this.gson.fromJson(v, MAP_TYPE));
+                    }
+                }
+                return m;
+            })
+            .create();
+
+    String serialize(JsonFormat.Printer printer, Message message) throws IOException {
+        String json = printer.print(message);
+        Map<String, Object> raw = gson.fromJson(json, MAP_TYPE);
+        return MAPPER
+                .writer()
+                .withRootName(message.getDescriptorForType().getName())
+                .writeValueAsString(raw);
+    }
+
+    @SuppressWarnings("rawtypes")
+    <T extends Message> T parse(String body, Message.Builder builder) throws IOException {
+        XmlMapper mapper = new XmlMapper();
+        Map msg = mapper.readValue(body, Map.class);
+        Gson gson = new Gson();
+        JsonFormat.parser().merge(gson.toJson(msg), builder);
+        @SuppressWarnings("unchecked")
+        T result = (T) builder.build();
+        return result;
+    }
+}
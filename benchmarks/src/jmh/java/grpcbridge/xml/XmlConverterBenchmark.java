@@ -0,0 +1,86 @@
+package grpcbridge.xml;
+
+import com.google.api.CustomHttpPattern;
+import com.google.api.Http;
+import com.google.api.HttpRule;
+import com.google.protobuf.util.JsonFormat;
+import grpcbridge.parser.ProtoJsonWriter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares {@link ProtoXMLConverter} with the {@link JacksonXmlConverter} it
+ * replaced. Writing uses an {@link Http} message with the given number of
+ * rules. Reading uses a single rule, the baseline keeps only the last of
+ * the repeated elements and cannot read the rules back.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class XmlConverterBenchmark {
+    @Param({"1", "100", "1000"})
+    public int rules;
+
+    private final JsonFormat.Printer printer = JsonFormat.printer().preservingProtoFieldNames();
+    private final ProtoJsonWriter writer = ProtoJsonWriter.create().preservingProtoFieldNames();
+    private final JacksonXmlConverter baseline = new JacksonXmlConverter();
+    private Http http;
+    private String ruleXml;
+
+    @Setup
+    public void setUp() throws IOException {
+        Http.Builder builder = Http.newBuilder();
+        for (int i = 0; i < rules; i++) {
+            builder.addRules(rule(i));
+        }
+        http = builder.build();
+        ruleXml = baseline.serialize(printer, rule(rules));
+    }
+
+    @Benchmark
+    public String serializeJackson() throws IOException {
+        return baseline.serialize(printer, http);
+    }
+
+    @Benchmark
+    public String serializeStax() {
+        return ProtoXMLConverter.INSTANCE.serialize(printer, writer, http);
+    }
+
+    @Benchmark
+    public HttpRule parseJackson() throws IOException {
+        return baseline.parse(ruleXml, HttpRule.newBuilder());
+    }
+
+    @Benchmark
+    public HttpRule parseStax() {
+        return ProtoXMLConverter.INSTANCE.parse(ruleXml, StandardCharsets.UTF_8, HttpRule.newBuilder());
+    }
+
+    private static HttpRule rule(int index) {
+        return HttpRule.newBuilder()
+                .setSelector("grpcbridge.test.Service.Method" + index)
+                .setCustom(CustomHttpPattern.newBuilder()
+                        .setKind("HEAD")
+                        .setPath("/v1/items/{item_id}/parts/" + index))
+                .setBody("*")
+                .setResponseBody("result")
+                .build();
+    }
+}
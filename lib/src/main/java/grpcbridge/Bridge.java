@@ -4,29 +4,44 @@ import static com.google.common.util.concurrent.Futures.transform;
 import static com.google.common.util.concurrent.Uninterruptibles.getUninterruptibly;
 import static java.lang.String.format;
 
-import com.google.common.base.Splitter;
-import com.google.common.base.Strings;
-import com.google.common.net.MediaType;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
+import grpcbridge.http.HttpMethod;
 import grpcbridge.http.HttpRequest;
 import grpcbridge.http.HttpResponse;
+import grpcbridge.http.ResponseSink;
+import grpcbridge.http.StreamFormat;
+import grpcbridge.monitoring.LatencyHistogram;
+import grpcbridge.monitoring.Phase;
+import grpcbridge.monitoring.PhaseTimer;
 import grpcbridge.monitoring.Tracer;
 import grpcbridge.monitoring.TracingSpan;
 import grpcbridge.parser.Deserializer;
 import grpcbridge.parser.ProtoJsonConverter;
 import grpcbridge.parser.Serializer;
+import grpcbridge.route.RequestUrl;
 import grpcbridge.route.SwaggerManifestGenerator;
 import grpcbridge.route.Route;
+import grpcbridge.route.RouteTrie;
+import grpcbridge.rpc.CallControl;
 import grpcbridge.rpc.RpcCall;
+import grpcbridge.rpc.RpcListener;
 import grpcbridge.rpc.RpcMessage;
-import io.grpc.Metadata;
+import io.grpc.Deadline;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import javax.annotation.Nullable;
 
 /**
  * HTTP to gPRC bridge implementation. The bridge is not HTTP library dependent.
@@ -67,12 +82,35 @@ import java.util.concurrent.ExecutionException;
  * }
  * </pre>
  *
+ * <p>
+ * The method implementations run on the thread calling the bridge unless
+ * an executor is set with {@link BridgeBuilder#executor}.
+ *
  * See {@link BridgeBuilder} for more details.
  */
 public final class Bridge {
+    private static final CallControl REJECTED = new CallControl() {
+        @Override
+        public void cancel() {
+        }
+
+        @Override
+        public void ready() {
+        }
+    };
+
     private final List<Route> routes;
-    private final List<Serializer> serializers;
-    private final List<Deserializer> deserializers;
+    private final RouteTrie routeTrie;
+    private final ContentNegotiation negotiation;
+    private final Deadlines deadlines;
+    private final CallExecutors executors;
+    private final ConcurrencyLimits limits;
+    private final SingleFlight singleFlight;
+    private final ResponseCache cache;
+    private final boolean etags;
+    private final ResponseCompression compression;
+    private final long maxInflatedBodySize;
+    private final PhaseMetrics metrics;
 
     /**
      * Creates a new bridge, use {@link BridgeBuilder} to create bridge
@@ -81,7 +119,20 @@ public final class Bridge {
      * @param routes list of available routes
      */
     Bridge(List<Route> routes) {
-        this(routes, Collections.emptyList(), Collections.emptyList());
+        this(
+                routes,
+                new RouteTrie(routes),
+                Collections.emptyList(),
+                Collections.emptyList(),
+                new Deadlines(Collections.singletonList(Deadlines.GRPC_TIMEOUT), 0),
+                CallExecutors.direct(),
+                new ConcurrencyLimits(routes, null),
+                new SingleFlight(routes, Collections.emptySet(), Collections.emptyList()),
+                new ResponseCache(routes, Collections.emptyMap(), Collections.emptyList(), 0),
+                false,
+                ResponseCompression.disabled(),
+                HttpRequest.DEFAULT_MAX_INFLATED_SIZE,
+                PhaseMetrics.disabled());
     }
 
     /**
@@ -89,13 +140,45 @@ public final class Bridge {
      * instances.
      *
      * @param routes list of available routes
+     * @param routeTrie trie built from the available routes
      * @param serializers used for converting gRPC messages to http content type
      * @param deserializers used for converting from http content type to gRPC
+     * @param deadlines resolves the deadlines of the calls
+     * @param executors resolves the executors of the calls
+     * @param limits concurrency limits of the routes
+     * @param singleFlight coalesces identical requests
+     * @param cache caches the responses
+     * @param etags whether GET responses are tagged with an ETag
+     * @param compression compresses the responses
+     * @param maxInflatedBodySize largest accepted inflated request body
+     * @param metrics records the phase latencies
      */
-    Bridge(List<Route> routes, List<Serializer> serializers, List<Deserializer> deserializers) {
+    Bridge(
+            List<Route> routes,
+            RouteTrie routeTrie,
+            List<Serializer> serializers,
+            List<Deserializer> deserializers,
+            Deadlines deadlines,
+            CallExecutors executors,
+            ConcurrencyLimits limits,
+            SingleFlight singleFlight,
+            ResponseCache cache,
+            boolean etags,
+            ResponseCompression compression,
+            long maxInflatedBodySize,
+            PhaseMetrics metrics) {
         this.routes = routes;
-        this.serializers = serializers;
-        this.deserializers = deserializers;
+        this.routeTrie = routeTrie;
+        this.negotiation = new ContentNegotiation(serializers, deserializers);
+        this.deadlines = deadlines;
+        this.executors = executors;
+        this.limits = limits;
+        this.singleFlight = singleFlight;
+        this.cache = cache;
+        this.etags = etags;
+        this.compression = compression;
+        this.maxInflatedBodySize = maxInflatedBodySize;
+        this.metrics = metrics;
     }
 
     /**
@@ -134,23 +217,123 @@ public final class Bridge {
      * is transformed according to the gRPC service method annotations and
      * forwarded to the appropriate handler.
      *
-     * @param httpRequest HTTP request
+     * @param request HTTP request
      * @return HTTP response future
      */
-    public ListenableFuture<HttpResponse> handleAsync(HttpRequest httpRequest) {
-        final Deserializer deserializer = getDeserializer(httpRequest);
+    public ListenableFuture<HttpResponse> handleAsync(HttpRequest request) {
+        final PhaseTimer timer = metrics.start();
+        final HttpRequest httpRequest = request.withMaxInflatedSize(maxInflatedBodySize);
+        final Deserializer deserializer = negotiation.getDeserializer(httpRequest);
+        final RequestUrl url = RequestUrl.parse(httpRequest.getPath());
+
+        for (Route route : routeTrie.find(httpRequest.getMethod(), url)) {
+            Optional<RpcCall> optionalCall = route.match(deserializer, httpRequest, url, timer);
+            if (optionalCall.isPresent()) {
+                metrics.matched(route, timer);
+                Serializer serializer = negotiation
+                        .getResponseType(route, httpRequest)
+                        .getSerializer();
+                return respond(route, optionalCall.get(), httpRequest, serializer);
+            }
+        }
+
+        throw new Exceptions.RouteNotFoundException(
+                format("Mapper not found: %s %s", httpRequest.getMethod(), httpRequest.getPath())
+        );
+    }
+
+    /**
+     * Handles incoming HTTP request streaming the response to the given sink.
+     * Server-streaming methods write every message as soon as it is sent by
+     * the method implementation: as newline-delimited JSON or Server-Sent
+     * Events if accepted by the request, otherwise as a JSON array when the
+     * response is JSON. Other responses are serialized as in
+     * {@link #handleAsync(HttpRequest)} and written as a single chunk.
+     *
+     * <p>
+     * The returned control is used to cancel the call when the HTTP client
+     * goes away and to resume a streaming method after the sink reported it
+     * was not ready.
+     *
+     * @param request HTTP request
+     * @param sink sink receiving the response
+     * @return control of the started call
+     */
+    public CallControl handleStream(HttpRequest request, ResponseSink sink) {
+        final PhaseTimer timer = metrics.start();
+        final HttpRequest httpRequest = request.withMaxInflatedSize(maxInflatedBodySize);
+        final Deserializer deserializer = negotiation.getDeserializer(httpRequest);
+        final RequestUrl url = RequestUrl.parse(httpRequest.getPath());
 
-        for (Route route : routes) {
-            Optional<RpcCall> optionalCall = route.match(deserializer, httpRequest);
+        for (Route route : routeTrie.find(httpRequest.getMethod(), url)) {
+            Optional<RpcCall> optionalCall = route.match(deserializer, httpRequest, url, timer);
             if (optionalCall.isPresent()) {
+                metrics.matched(route, timer);
                 RpcCall call = optionalCall.get();
-                TracingSpan tracingSpan = Tracer.newSpan(route, httpRequest);
-                ListenableFuture<RpcMessage> response = call.execute(tracingSpan);
-                Serializer serializer = getSerializer(route, httpRequest);
-                return transform(
-                        response,
-                        serializer.serializeAsync(route.getPrinter())::apply,
-                        MoreExecutors.directExecutor());
+                ContentNegotiation.ResponseType responseType =
+                        negotiation.getResponseType(route, httpRequest);
+                Serializer serializer = responseType.getSerializer();
+                Optional<StreamFormat> format = responseType.getStreamFormat();
+                if (!format.isPresent() && serializer == ProtoJsonConverter.INSTANCE) {
+                    format = Optional.of(StreamFormat.JSON_ARRAY);
+                }
+
+                if (route.descriptor.isServerStreaming() && format.isPresent()) {
+                    ConcurrencyLimits.Slot slot;
+                    try {
+                        slot = limits.acquire(route);
+                    } catch (StatusRuntimeException e) {
+                        sink.onError(e);
+                        return REJECTED;
+                    }
+                    TracingSpan tracingSpan = Tracer.newSpan(route, httpRequest);
+                    Deadline deadline = deadlines.deadlineFor(route, httpRequest);
+                    Executor executor = executors.executorFor(route);
+                    RpcListener listener = new StreamingResponse(
+                            sink, format.get(), route.getPrinter(), route.getJsonWriter());
+                    if (slot == null) {
+                        return call.stream(tracingSpan, listener, deadline, executor);
+                    }
+                    try {
+                        return call.stream(tracingSpan, slot.releaseOnClose(listener), deadline, executor);
+                    } catch (RuntimeException e) {
+                        slot.release(Status.Code.UNKNOWN);
+                        throw e;
+                    }
+                } else {
+                    ListenableFuture<HttpResponse> response =
+                            respond(route, call, httpRequest, serializer);
+                    Futures.addCallback(
+                            response,
+                            new FutureCallback<HttpResponse>() {
+                                @Override
+                                public void onSuccess(HttpResponse response) {
+                                    if (response.isNotModified()) {
+                                        sink.onNotModified(response.getTrailers());
+                                        return;
+                                    }
+                                    sink.onStart(response.getTrailers());
+                                    sink.onData(response.getBodyBytes());
+                                    sink.onComplete(response.getTrailers());
+                                }
+
+                                @Override
+                                public void onFailure(Throwable t) {
+                                    sink.onError(t);
+                                }
+                            },
+                            MoreExecutors.directExecutor());
+                    return new CallControl() {
+                        @Override
+                        public void cancel() {
+                            response.cancel(false);
+                        }
+
+                        @Override
+                        public void ready() {
+                        }
+                    };
+                }
             }
         }
 
@@ -159,44 +342,165 @@ public final class Bridge {
         );
     }
 
-    public String generateManifest(SwaggerManifestGenerator manifestGenerator) {
-        return manifestGenerator.generate(routes);
+    /**
+     * Reports the current limit, running and rejected calls of every route
+     * when a concurrency limit is set with
+     * {@link BridgeBuilder#concurrencyLimit}.
+     *
+     * @return concurrency limiters by full method name, e.g.
+     *      <c>grpcbridge.test.TestService.Get</c>, empty without limits
+     */
+    public Map<String, ConcurrencyLimiter> getConcurrencyLimiters() {
+        return limits.byMethod();
     }
 
-    private Deserializer getDeserializer(HttpRequest httpRequest) {
+    /**
+     * Reports the hits, misses and evictions of the response cache, see
+     * {@link BridgeBuilder#cacheResponses}. The load counts are always 0.
+     *
+     * @return response cache statistics
+     */
+    public CacheStats getResponseCacheStats() {
+        return cache.stats();
+    }
+
+    /**
+     * Reports the latency of every phase of the requests by route, see
+     * {@link BridgeBuilder#phaseMetrics()}. Only the routes that were
+     * requested are included.
+     *
+     * @return latency snapshots by full method name, e.g.
+     *      <c>grpcbridge.test.TestService.Get</c>, and phase, empty unless
+     *      enabled
+     */
+    public Map<String, Map<Phase, LatencyHistogram.Snapshot>> getPhaseLatencies() {
+        return metrics.snapshot();
+    }
 
-        final String contentType = httpRequest.getHeaders().get(Metadata.Key.of(
-                "content-type",
-                Metadata.ASCII_STRING_MARSHALLER));
-        if (contentType == null) return ProtoJsonConverter.INSTANCE;
-        MediaType mediaType = MediaType.parse(contentType);
-        return deserializers.stream()
-                .filter(it -> it.supported(mediaType))
-                .findFirst()
-                .orElse(ProtoJsonConverter.INSTANCE);
+    /**
+     * Responds to the request, with an empty not modified response if ETags
+     * are enabled and the response matches the If-None-Match header. The
+     * response is compressed if accepted by the request, before it is
+     * tagged and cached.
+     */
+    private ListenableFuture<HttpResponse> respond(
+            Route route,
+            RpcCall call,
+            HttpRequest httpRequest,
+            Serializer serializer) {
+        ListenableFuture<HttpResponse> response = cached(
+                route,
+                call,
+                httpRequest,
+                compression.serializerFor(serializer, httpRequest));
+        String ifNoneMatch = isTagged(httpRequest)
+                ? httpRequest.getHeaders().get(EntityTags.IF_NONE_MATCH)
+                : null;
+        if (ifNoneMatch == null) {
+            return response;
+        }
+        return transform(
+                response,
+                tagged -> EntityTags.check(ifNoneMatch, tagged),
+                MoreExecutors.directExecutor());
     }
 
-    private Serializer getSerializer(Route route, HttpRequest httpRequest) {
-        List<MediaType> supportedTypes = new ArrayList<>();
-        String preferredType = route.descriptor
-                .getService()
-                .getOptions()
-                .getExtension(GrpcbridgeOptions.preferredResponseType);
-        if (!Strings.isNullOrEmpty(preferredType)) {
-            supportedTypes.add(MediaType.parse(preferredType));
+    /**
+     * Serves the response from the cache if the route caches responses,
+     * otherwise executes the call and serializes the response.
+     */
+    private ListenableFuture<HttpResponse> cached(
+            Route route,
+            RpcCall call,
+            HttpRequest httpRequest,
+            Serializer serializer) {
+        if (!cache.isCached(route, httpRequest)) {
+            return coalesce(route, call, httpRequest, serializer);
+        }
+        RequestKey key = cache.keyFor(route, call.getRequest().getBody(), httpRequest, serializer);
+        HttpResponse cached = cache.get(key);
+        if (cached != null) {
+            return Futures.immediateFuture(cached);
         }
+        ListenableFuture<HttpResponse> response = coalesce(route, call, httpRequest, serializer);
+        cache.putOnSuccess(route, key, response);
+        return response;
+    }
 
-        Iterable<String> acceptedTypes = httpRequest.getHeaders().getAll(Metadata.Key.of(
-                "accept",
-                Metadata.ASCII_STRING_MARSHALLER));
-        if (acceptedTypes != null) {
-            acceptedTypes.forEach(it -> Splitter.on(',').trimResults()
-                    .split(it)
-                    .forEach(type -> supportedTypes.add(MediaType.parse(type))));
+    /**
+     * Executes the call, or joins the identical call in flight if the route
+     * coalesces requests, and serializes the response.
+     */
+    private ListenableFuture<HttpResponse> coalesce(
+            Route route,
+            RpcCall call,
+            HttpRequest httpRequest,
+            Serializer serializer) {
+        if (singleFlight.isCoalesced(route, httpRequest)) {
+            return singleFlight.join(
+                    route,
+                    call.getRequest().getBody(),
+                    httpRequest,
+                    serializer,
+                    () -> execute(route, call, httpRequest, serializer));
         }
-        return serializers.stream()
-                .filter(it -> it.supportsAny(supportedTypes))
-                .findFirst()
-                .orElse(ProtoJsonConverter.INSTANCE);
+        return execute(route, call, httpRequest, serializer);
+    }
+
+    private ListenableFuture<HttpResponse> execute(
+            Route route,
+            RpcCall call,
+            HttpRequest httpRequest,
+            Serializer serializer) {
+        ConcurrencyLimits.Slot slot;
+        try {
+            slot = limits.acquire(route);
+        } catch (StatusRuntimeException e) {
+            return Futures.immediateFailedFuture(e);
+        }
+        long started = System.nanoTime();
+        ListenableFuture<RpcMessage> response = execute(
+                call,
+                slot,
+                Tracer.newSpan(route, httpRequest),
+                deadlines.deadlineFor(route, httpRequest),
+                executors.executorFor(route));
+        metrics.timeCall(route, started, response);
+        Function<RpcMessage, HttpResponse> serialize = serializer.serializeAsync(route.getPrinter(), route.getJsonWriter());
+        if (isTagged(httpRequest)) {
+            serialize = serialize.andThen(EntityTags::tag);
+        }
+        return transform(
+                response,
+                metrics.timeSerialize(route, serialize)::apply,
+                executors.serializerFor(route));
+    }
+
+    private boolean isTagged(HttpRequest httpRequest) {
+        return etags && httpRequest.getMethod() == HttpMethod.GET;
+    }
+
+    private static ListenableFuture<RpcMessage> execute(
+            RpcCall call,
+            @Nullable ConcurrencyLimits.Slot slot,
+            TracingSpan tracingSpan,
+            @Nullable Deadline deadline,
+            Executor executor) {
+        if (slot == null) {
+            return call.execute(tracingSpan, deadline, executor);
+        }
+        ListenableFuture<RpcMessage> response;
+        try {
+            response = call.execute(tracingSpan, deadline, executor);
+        } catch (RuntimeException e) {
+            slot.release(Status.Code.UNKNOWN);
+            throw e;
+        }
+        slot.releaseOnCompletion(response);
+        return response;
+    }
+
+    public String generateManifest(SwaggerManifestGenerator manifestGenerator) {
+        return manifestGenerator.generate(routes);
     }
 }
@@ -1,10 +1,17 @@
 package grpcbridge;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.protobuf.Descriptors.FileDescriptor;
 import com.google.protobuf.Message;
+import grpcbridge.http.HttpRequest;
+import grpcbridge.monitoring.MetricsSink;
+import grpcbridge.monitoring.PhaseHistograms;
 import grpcbridge.parser.Deserializer;
 import grpcbridge.parser.Serializer;
 import grpcbridge.route.Route;
+import grpcbridge.route.RouteTrie;
 import grpcbridge.util.FileDescriptors;
 import io.grpc.ServerInterceptor;
 import io.grpc.ServerInterceptors;
@@ -12,7 +19,16 @@ import io.grpc.ServerMethodDefinition;
 import io.grpc.ServerServiceDefinition;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
 
 /**
  * Used to build {@link Bridge} instances. When a protobuf file is compiled
@@ -30,6 +46,23 @@ public final class BridgeBuilder {
     private final List<ServerInterceptor> interceptors = new ArrayList<>();
     private final List<Serializer> serializers = new ArrayList<>();
     private final List<Deserializer> deserializers = new ArrayList<>();
+    private final List<String> timeoutHeaders = new ArrayList<>(
+            Collections.singletonList(Deadlines.GRPC_TIMEOUT));
+    private long defaultTimeoutNanos;
+    private boolean precomputePrinters;
+    private Executor executor = MoreExecutors.directExecutor();
+    private final Map<String, Executor> executors = new HashMap<>();
+    private ConcurrencyLimiter.Builder concurrencyLimit;
+    private final Set<String> coalesced = new HashSet<>();
+    private final List<String> coalescingHeaders = new ArrayList<>();
+    private final Map<String, Long> cacheTtls = new HashMap<>();
+    private final List<String> cacheKeyHeaders = new ArrayList<>();
+    private long responseCacheBytes = 16 * 1024 * 1024;
+    private boolean etags;
+    private ResponseCompression compression = ResponseCompression.disabled();
+    private long maxInflatedBodySize = HttpRequest.DEFAULT_MAX_INFLATED_SIZE;
+    private boolean phaseMetrics;
+    private final List<MetricsSink> metricsSinks = new ArrayList<>();
 
     /**
      * Adds protobuf file descriptor. Call this method for each of the protobuf
@@ -87,6 +120,261 @@ public final class BridgeBuilder {
         return this;
     }
 
+    /**
+     * Adds an HTTP header that carries the call timeout, e.g.
+     * X-Request-Timeout. The value uses the grpc-timeout format, a plain
+     * number is read as milliseconds. The grpc-timeout header is always
+     * checked first. The header can only shorten the timeout_ms option of
+     * the method, or the {@link #defaultTimeout default timeout}.
+     *
+     * @param header timeout header name
+     * @return this builder instance
+     */
+    public BridgeBuilder timeoutHeader(String header) {
+        timeoutHeaders.add(header.toLowerCase(Locale.ROOT));
+        return this;
+    }
+
+    /**
+     * Sets the maximum deadline of the calls whose method does not set the
+     * timeout_ms option. A shorter timeout header takes precedence.
+     *
+     * @param timeout default timeout, 0 for none
+     * @param unit timeout unit
+     * @return this builder instance
+     */
+    public BridgeBuilder defaultTimeout(long timeout, TimeUnit unit) {
+        this.defaultTimeoutNanos = unit.toNanos(timeout);
+        return this;
+    }
+
+    /**
+     * Creates the JSON printers of all the routes when the bridge is built,
+     * instead of on the first request to each route. The printer setup walks
+     * the whole response descriptor, so this moves that cost to startup.
+     *
+     * @return this builder instance
+     */
+    public BridgeBuilder precomputePrinters() {
+        this.precomputePrinters = true;
+        return this;
+    }
+
+    /**
+     * Sets the executor that runs the method implementations and serializes
+     * the responses. By default they run on the thread calling the bridge,
+     * often an HTTP event loop thread that a blocking method would stall.
+     *
+     * @param executor call executor
+     * @return this builder instance
+     */
+    public BridgeBuilder executor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Sets the executor of the methods of a service, or of a single method,
+     * e.g. to keep CPU heavy methods apart from blocking ones. The executor
+     * of a method takes precedence over the one of its service.
+     *
+     * @param name full protobuf name of the service, e.g.
+     *             <c>grpcbridge.test.TestService</c>, or of the method, e.g.
+     *             <c>grpcbridge.test.TestService.Get</c>
+     * @param executor call executor
+     * @return this builder instance
+     */
+    public BridgeBuilder executor(String name, Executor executor) {
+        executors.put(name, executor);
+        return this;
+    }
+
+    /**
+     * Runs every call on a new virtual thread, unless an executor is set for
+     * its service or method.
+     *
+     * @return this builder instance
+     * @throws IllegalStateException if virtual threads are not available,
+     *      i.e. before Java 21
+     */
+    public BridgeBuilder virtualThreads() {
+        return executor(CallExecutors.newVirtualThreadExecutor());
+    }
+
+    /**
+     * Limits the calls every route runs at the same time. Each route gets its
+     * own adaptive {@link ConcurrencyLimiter}, calls over its limit fail
+     * right away with RESOURCE_EXHAUSTED. The limiters are reported by
+     * {@link Bridge#getConcurrencyLimiters()}.
+     *
+     * @param limiter builder of the route limiters
+     * @return this builder instance
+     */
+    public BridgeBuilder concurrencyLimit(ConcurrencyLimiter.Builder limiter) {
+        this.concurrencyLimit = limiter;
+        return this;
+    }
+
+    /**
+     * Coalesces concurrent identical GET requests to the methods of a
+     * service, or to a single method, same as the coalesce_requests method
+     * option. Requests with equal request messages, after binding the path
+     * and query, share a single call and receive the same serialized
+     * response. The shared call runs with the headers and the deadline of
+     * the request that started it.
+     *
+     * @param name full protobuf name of the service, e.g.
+     *             <c>grpcbridge.test.TestService</c>, or of the method, e.g.
+     *             <c>grpcbridge.test.TestService.Get</c>
+     * @return this builder instance
+     */
+    public BridgeBuilder coalesceRequests(String name) {
+        coalesced.add(name);
+        return this;
+    }
+
+    /**
+     * Adds a header that has to be equal for the coalesced requests to share
+     * a call, e.g. Authorization when the response depends on the caller.
+     *
+     * @param header header name
+     * @return this builder instance
+     */
+    public BridgeBuilder coalescingHeader(String header) {
+        coalescingHeaders.add(header.toLowerCase(Locale.ROOT));
+        return this;
+    }
+
+    /**
+     * Caches the serialized responses of GET requests to the methods of a
+     * service, or to a single method, same as the cache_ttl_ms method
+     * option. Requests with equal request messages, after binding the path
+     * and query, are served from the cache until the TTL passes, per
+     * response content type.
+     *
+     * @param name full protobuf name of the service, e.g.
+     *             <c>grpcbridge.test.TestService</c>, or of the method, e.g.
+     *             <c>grpcbridge.test.TestService.Get</c>
+     * @param ttl time the responses are cached for
+     * @param unit TTL unit
+     * @return this builder instance
+     */
+    public BridgeBuilder cacheResponses(String name, long ttl, TimeUnit unit) {
+        cacheTtls.put(name, unit.toNanos(ttl));
+        return this;
+    }
+
+    /**
+     * Sets the total size of the cached responses, the least recently used
+     * ones are evicted above it. 16 MiB by default.
+     *
+     * @param maxBytes cache size in bytes
+     * @return this builder instance
+     */
+    public BridgeBuilder responseCacheSize(long maxBytes) {
+        this.responseCacheBytes = maxBytes;
+        return this;
+    }
+
+    /**
+     * Adds a header whose value is part of the response cache key, e.g.
+     * Authorization when the response depends on the caller.
+     *
+     * @param header header name
+     * @return this builder instance
+     */
+    public BridgeBuilder cacheKeyHeader(String header) {
+        cacheKeyHeaders.add(header.toLowerCase(Locale.ROOT));
+        return this;
+    }
+
+    /**
+     * Tags the responses of GET requests with a strong ETag computed from
+     * the serialized body. A request whose If-None-Match header matches the
+     * tag gets an empty response marked {@link
+     * grpcbridge.http.HttpResponse#isNotModified() not modified}. With a
+     * cached route neither the call nor the serialization runs then.
+     *
+     * @return this builder instance
+     */
+    public BridgeBuilder etags() {
+        this.etags = true;
+        return this;
+    }
+
+    /**
+     * Compresses the responses of at least 1 KiB with the default level,
+     * see {@link #compressResponses(int, int)}.
+     *
+     * @return this builder instance
+     */
+    public BridgeBuilder compressResponses() {
+        return compressResponses(1024, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Compresses the responses with gzip or deflate, as negotiated from the
+     * Accept-Encoding header of the request, setting the Content-Encoding
+     * trailer. The body is compressed while being serialized, cached
+     * responses are stored compressed. Streamed responses are never
+     * compressed.
+     *
+     * @param minSize size in bytes from which the responses are compressed,
+     *                smaller ones are not worth it
+     * @param level compression level, 0 to 9 or -1 for the default
+     * @return this builder instance
+     */
+    public BridgeBuilder compressResponses(int minSize, int level) {
+        checkArgument(minSize >= 0, "minSize must not be negative");
+        checkArgument(
+                level == Deflater.DEFAULT_COMPRESSION
+                        || (level >= Deflater.NO_COMPRESSION && level <= Deflater.BEST_COMPRESSION),
+                "level must be between 0 and 9, or -1");
+        this.compression = new ResponseCompression(true, minSize, level);
+        return this;
+    }
+
+    /**
+     * Sets the largest accepted size of a request body sent with a gzip or
+     * deflate content-encoding once inflated, larger bodies fail with a
+     * {@link Exceptions.ParsingException}. 16 MiB by default. A request
+     * built with a lower {@link HttpRequest.Builder#maxInflatedSize} keeps
+     * its own limit.
+     *
+     * @param maxBytes inflated body size in bytes
+     * @return this builder instance
+     */
+    public BridgeBuilder maxInflatedBodySize(long maxBytes) {
+        checkArgument(maxBytes >= 0, "maxBytes must not be negative");
+        this.maxInflatedBodySize = maxBytes;
+        return this;
+    }
+
+    /**
+     * Records the latency of every phase of the requests, route matching,
+     * body deserialization, variable binding, the call and serialization,
+     * in per route histograms reported by {@link Bridge#getPhaseLatencies()}.
+     *
+     * @return this builder instance
+     */
+    public BridgeBuilder phaseMetrics() {
+        this.phaseMetrics = true;
+        return this;
+    }
+
+    /**
+     * Adds a sink receiving the latency of every phase of the requests, e.g.
+     * {@link grpcbridge.monitoring.OpenCensusMetrics}. Independent of
+     * {@link #phaseMetrics()}.
+     *
+     * @param sink metrics sink
+     * @return this builder instance
+     */
+    public BridgeBuilder metricsSink(MetricsSink sink) {
+        metricsSinks.add(sink);
+        return this;
+    }
+
     /**
      * Creates new instance of the {@link Bridge}.
      *
@@ -107,6 +395,23 @@ public final class BridgeBuilder {
             }
         }
 
-        return new Bridge(routes, serializers, deserializers);
+        if (precomputePrinters) {
+            routes.forEach(Route::getPrinter);
+        }
+
+        return new Bridge(
+                routes,
+                new RouteTrie(routes),
+                serializers,
+                deserializers,
+                new Deadlines(timeoutHeaders, defaultTimeoutNanos),
+                new CallExecutors(executor, executors),
+                new ConcurrencyLimits(routes, concurrencyLimit),
+                new SingleFlight(routes, coalesced, coalescingHeaders),
+                new ResponseCache(routes, cacheTtls, cacheKeyHeaders, responseCacheBytes),
+                etags,
+                compression,
+                maxInflatedBodySize,
+                new PhaseMetrics(phaseMetrics ? new PhaseHistograms() : null, metricsSinks));
     }
 }
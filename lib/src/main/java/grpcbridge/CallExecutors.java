@@ -0,0 +1,107 @@
+package grpcbridge;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import grpcbridge.route.Route;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Resolves the executor that runs the method implementation of a call and
+ * serializes its response. The executor set for the method wins, then the
+ * one set for its service, then the bridge-wide default. Without any of
+ * them the call runs on the thread that handles the HTTP request.
+ *
+ * <p>
+ * The responses are serialized on the same executor, or on the thread that
+ * completed the call if the executor rejects the serialization.
+ */
+final class CallExecutors {
+    private final Executor defaultExecutor;
+    private final Executor defaultSerializer;
+    private final Map<String, Executor> overrides;
+    private final Map<String, Executor> serializers = new HashMap<>();
+
+    /**
+     * @param defaultExecutor bridge-wide executor
+     * @param overrides executors by full service or method name
+     */
+    CallExecutors(Executor defaultExecutor, Map<String, Executor> overrides) {
+        this.defaultExecutor = defaultExecutor;
+        this.defaultSerializer = serializer(defaultExecutor);
+        this.overrides = new HashMap<>(overrides);
+        overrides.forEach((name, executor) -> serializers.put(name, serializer(executor)));
+    }
+
+    /**
+     * @return executors running every call on the calling thread
+     */
+    static CallExecutors direct() {
+        return new CallExecutors(MoreExecutors.directExecutor(), new HashMap<>());
+    }
+
+    /**
+     * @param route matched route
+     * @return executor of the route calls
+     */
+    Executor executorFor(Route route) {
+        return resolve(overrides, defaultExecutor, route);
+    }
+
+    /**
+     * @param route matched route
+     * @return executor serializing the route responses
+     */
+    Executor serializerFor(Route route) {
+        return resolve(serializers, defaultSerializer, route);
+    }
+
+    private static Executor resolve(Map<String, Executor> executors, Executor defaultExecutor, Route route) {
+        if (executors.isEmpty()) {
+            return defaultExecutor;
+        }
+        Executor executor = executors.get(route.descriptor.getFullName());
+        if (executor == null) {
+            executor = executors.get(route.getService());
+        }
+        return executor == null ? defaultExecutor : executor;
+    }
+
+    private static Executor serializer(Executor executor) {
+        if (executor == MoreExecutors.directExecutor()) {
+            return executor;
+        }
+        return command -> {
+            try {
+                executor.execute(command);
+            } catch (RejectedExecutionException e) {
+                command.run();
+            }
+        };
+    }
+
+    /**
+     * Creates an executor starting a new virtual thread per task. Looked up
+     * reflectively so the library still runs on Java 8.
+     *
+     * @return virtual thread per task executor
+     * @throws IllegalStateException if virtual threads are not available,
+     *      i.e. before Java 21
+     */
+    static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalStateException("Virtual threads require Java 21 or newer", e);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("Failed to create a virtual thread executor", e.getCause());
+        }
+    }
+}
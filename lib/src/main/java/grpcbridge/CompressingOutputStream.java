@@ -0,0 +1,172 @@
+package grpcbridge;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses the bytes written to it with gzip or deflate, once there are
+ * more than the threshold of them. Smaller outputs are kept as they are.
+ * The {@link Deflater}s are pooled, a deflater holds native memory that is
+ * expensive to allocate and only freed by the finalizer otherwise.
+ *
+ * <p>
+ * Call {@link #finish()} once all the bytes are written. The stream is not
+ * thread safe.
+ */
+final class CompressingOutputStream extends OutputStream {
+    private static final int POOL_SIZE = 2 * Runtime.getRuntime().availableProcessors();
+    private static final Pool GZIP_POOL = new Pool(true);
+    private static final Pool DEFLATE_POOL = new Pool(false);
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final boolean gzip;
+    private final int level;
+    private final byte[] head;
+    private final byte[] buffer = new byte[8192];
+    private int headLength;
+    private Deflater deflater;
+    private CRC32 crc;
+
+    /**
+     * @param gzip true for gzip, false for deflate (zlib)
+     * @param threshold size above which the output is compressed
+     * @param level compression level
+     */
+    CompressingOutputStream(boolean gzip, int threshold, int level) {
+        this.gzip = gzip;
+        this.level = level;
+        this.head = new byte[threshold];
+    }
+
+    @Override
+    public void write(int b) {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        if (deflater == null) {
+            if (headLength + len <= head.length) {
+                System.arraycopy(b, off, head, headLength, len);
+                headLength += len;
+                return;
+            }
+            start();
+        }
+        deflate(b, off, len);
+    }
+
+    /**
+     * Completes the output and gives the deflater back to the pool.
+     *
+     * @return true if the output is compressed, false if it is below the
+     *      threshold and kept as is
+     */
+    boolean finish() {
+        if (deflater == null) {
+            out.write(head, 0, headLength);
+            return false;
+        }
+        try {
+            deflater.finish();
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            if (gzip) {
+                writeInt((int) crc.getValue());
+                writeInt((int) deflater.getBytesRead());
+            }
+        } finally {
+            (gzip ? GZIP_POOL : DEFLATE_POOL).release(deflater);
+            deflater = null;
+        }
+        return true;
+    }
+
+    /**
+     * Gives the deflater back to the pool if the output is abandoned before
+     * {@link #finish()}.
+     */
+    @Override
+    public void close() {
+        if (deflater != null) {
+            (gzip ? GZIP_POOL : DEFLATE_POOL).release(deflater);
+            deflater = null;
+        }
+    }
+
+    /**
+     * @return output bytes, complete after {@link #finish()}
+     */
+    byte[] toByteArray() {
+        return out.toByteArray();
+    }
+
+    private void start() {
+        deflater = (gzip ? GZIP_POOL : DEFLATE_POOL).acquire();
+        deflater.setLevel(level);
+        if (gzip) {
+            crc = new CRC32();
+            out.write(GZIP_HEADER, 0, GZIP_HEADER.length);
+        }
+        deflate(head, 0, headLength);
+    }
+
+    private void deflate(byte[] b, int off, int len) {
+        if (len == 0) {
+            return;
+        }
+        if (crc != null) {
+            crc.update(b, off, len);
+        }
+        deflater.setInput(b, off, len);
+        while (!deflater.needsInput()) {
+            out.write(buffer, 0, deflater.deflate(buffer));
+        }
+    }
+
+    private void writeInt(int value) {
+        out.write(value & 0xff);
+        out.write((value >> 8) & 0xff);
+        out.write((value >> 16) & 0xff);
+        out.write((value >> 24) & 0xff);
+    }
+
+    /**
+     * Keeps up to {@link #POOL_SIZE} idle deflaters, the extra ones are
+     * ended right away.
+     */
+    private static final class Pool {
+        private final boolean nowrap;
+        private final ConcurrentLinkedQueue<Deflater> idle = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+
+        Pool(boolean nowrap) {
+            this.nowrap = nowrap;
+        }
+
+        Deflater acquire() {
+            Deflater deflater = idle.poll();
+            if (deflater == null) {
+                return new Deflater(Deflater.DEFAULT_COMPRESSION, nowrap);
+            }
+            size.decrementAndGet();
+            return deflater;
+        }
+
+        void release(Deflater deflater) {
+            deflater.reset();
+            if (size.incrementAndGet() <= POOL_SIZE) {
+                idle.offer(deflater);
+            } else {
+                size.decrementAndGet();
+                deflater.end();
+            }
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package grpcbridge;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import io.grpc.Status;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adaptive limit of the calls a route runs at the same time. The limit
+ * follows AIMD: it grows by one for every limit's worth of calls that
+ * complete in time while the limit is in use, and is cut by the backoff
+ * ratio whenever a call is slower than the latency threshold or fails with
+ * DEADLINE_EXCEEDED, RESOURCE_EXHAUSTED or UNAVAILABLE. Calls over the limit
+ * are rejected right away, see {@link BridgeBuilder#concurrencyLimit}. The
+ * latency of a server-streaming call is the time to its first message.
+ *
+ * <p>
+ * The limiter is thread safe.
+ */
+public final class ConcurrencyLimiter {
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long latencyThresholdNanos;
+
+    private double limit;
+    private int inFlight;
+    private long rejected;
+
+    private ConcurrencyLimiter(Builder builder) {
+        this.minLimit = builder.minLimit;
+        this.maxLimit = builder.maxLimit;
+        this.backoffRatio = builder.backoffRatio;
+        this.latencyThresholdNanos = builder.latencyThresholdNanos;
+        this.limit = builder.initialLimit;
+    }
+
+    /**
+     * Creates new {@link Builder} that is used to set the limiter up.
+     *
+     * @return builder instance
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Takes a slot for a new call.
+     *
+     * @return true if the call can go ahead, false if the limit is reached
+     *      and the call has to be rejected
+     */
+    public synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            rejected++;
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * Gives back the slot of a completed call and adapts the limit.
+     *
+     * @param latencyNanos call latency
+     * @param code call status code
+     */
+    public synchronized void release(long latencyNanos, Status.Code code) {
+        boolean saturated = inFlight >= limit / 2;
+        inFlight--;
+        if (latencyNanos > latencyThresholdNanos || isOverload(code)) {
+            limit = Math.max(minLimit, limit * backoffRatio);
+        } else if (saturated) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+    /**
+     * @return current limit
+     */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * @return calls currently running
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * @return calls rejected so far
+     */
+    public synchronized long getRejected() {
+        return rejected;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("ConcurrencyLimiter(limit=%d, inFlight=%d, rejected=%d)",
+                (int) limit, inFlight, rejected);
+    }
+
+    private static boolean isOverload(Status.Code code) {
+        return code == Status.Code.DEADLINE_EXCEEDED
+                || code == Status.Code.RESOURCE_EXHAUSTED
+                || code == Status.Code.UNAVAILABLE;
+    }
+
+    /**
+     * Used to build {@link ConcurrencyLimiter} instances. Every route gets
+     * its own limiter built from the same builder.
+     */
+    public static final class Builder {
+        private int initialLimit = 20;
+        private int minLimit = 1;
+        private int maxLimit = 1000;
+        private double backoffRatio = 0.9;
+        private long latencyThresholdNanos = TimeUnit.SECONDS.toNanos(1);
+
+        private Builder() {
+        }
+
+        /**
+         * @param initialLimit limit before any call completed, 20 by default
+         * @return this builder instance
+         */
+        public Builder initialLimit(int initialLimit) {
+            this.initialLimit = initialLimit;
+            return this;
+        }
+
+        /**
+         * @param minLimit lowest limit, 1 by default
+         * @return this builder instance
+         */
+        public Builder minLimit(int minLimit) {
+            this.minLimit = minLimit;
+            return this;
+        }
+
+        /**
+         * @param maxLimit highest limit, 1000 by default
+         * @return this builder instance
+         */
+        public Builder maxLimit(int maxLimit) {
+            this.maxLimit = maxLimit;
+            return this;
+        }
+
+        /**
+         * @param backoffRatio factor the limit is multiplied by on overload,
+         *                     between 0 and 1, 0.9 by default
+         * @return this builder instance
+         */
+        public Builder backoffRatio(double backoffRatio) {
+            this.backoffRatio = backoffRatio;
+            return this;
+        }
+
+        /**
+         * @param threshold latency above which a call counts as overload,
+         *                  1 second by default
+         * @param unit threshold unit
+         * @return this builder instance
+         */
+        public Builder latencyThreshold(long threshold, TimeUnit unit) {
+            this.latencyThresholdNanos = unit.toNanos(threshold);
+            return this;
+        }
+
+        /**
+         * Creates new instance of the {@link ConcurrencyLimiter}.
+         *
+         * @return built limiter instance
+         */
+        public ConcurrencyLimiter build() {
+            checkArgument(minLimit >= 1, "minLimit must be at least 1: %s", minLimit);
+            checkArgument(minLimit <= initialLimit && initialLimit <= maxLimit,
+                    "initialLimit must be between minLimit and maxLimit: %s", initialLimit);
+            checkArgument(backoffRatio > 0 && backoffRatio < 1,
+                    "backoffRatio must be between 0 and 1: %s", backoffRatio);
+            return new ConcurrencyLimiter(this);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package grpcbridge;
+
+import static java.lang.String.format;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.protobuf.Message;
+import grpcbridge.route.Route;
+import grpcbridge.rpc.CallControl;
+import grpcbridge.rpc.RpcListener;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import javax.annotation.Nullable;
+
+/**
+ * Holds the {@link ConcurrencyLimiter} of every route and ties the limiter
+ * slots to the calls: a slot is taken before the call starts and given back
+ * with the call latency and status once it completes.
+ */
+final class ConcurrencyLimits {
+    private final Map<Route, ConcurrencyLimiter> limiters = new IdentityHashMap<>();
+    private final Map<String, ConcurrencyLimiter> byMethod = new LinkedHashMap<>();
+
+    /**
+     * @param routes routes of the bridge
+     * @param limiter builder of the route limiters, null for no limits
+     */
+    ConcurrencyLimits(List<Route> routes, @Nullable ConcurrencyLimiter.Builder limiter) {
+        if (limiter != null) {
+            for (Route route : routes) {
+                ConcurrencyLimiter routeLimiter = byMethod.computeIfAbsent(
+                        route.descriptor.getFullName(),
+                        name -> limiter.build());
+                limiters.put(route, routeLimiter);
+            }
+        }
+    }
+
+    /**
+     * @return limiters by full method name, empty if there are no limits
+     */
+    Map<String, ConcurrencyLimiter> byMethod() {
+        return Collections.unmodifiableMap(byMethod);
+    }
+
+    /**
+     * Takes a slot for a call to the given route.
+     *
+     * @param route matched route
+     * @return slot of the call, null if there is no limit for the route
+     * @throws StatusRuntimeException with RESOURCE_EXHAUSTED if the limit
+     *      of the route is reached
+     */
+    @Nullable Slot acquire(Route route) {
+        ConcurrencyLimiter limiter = limiters.get(route);
+        if (limiter == null) {
+            return null;
+        } else if (!limiter.tryAcquire()) {
+            throw Status.RESOURCE_EXHAUSTED
+                    .withDescription(format("Concurrency limit reached: %s", route))
+                    .asRuntimeException();
+        }
+        return new Slot(limiter);
+    }
+
+    /**
+     * Slot taken by a running call.
+     */
+    static final class Slot {
+        private final ConcurrencyLimiter limiter;
+        private final long startNanos = System.nanoTime();
+
+        private Slot(ConcurrencyLimiter limiter) {
+            this.limiter = limiter;
+        }
+
+        /**
+         * Gives the slot back.
+         *
+         * @param code call status code
+         */
+        void release(Status.Code code) {
+            limiter.release(System.nanoTime() - startNanos, code);
+        }
+
+        /**
+         * Gives the slot back once the call future completes.
+         *
+         * @param response call future
+         */
+        void releaseOnCompletion(ListenableFuture<?> response) {
+            response.addListener(
+                    () -> release(codeOf(response)),
+                    MoreExecutors.directExecutor());
+        }
+
+        /**
+         * Wraps the listener of a streamed call to give the slot back once
+         * the call closes. A stream may stay open for as long as the client
+         * listens, so the latency reported for it is the time to the first
+         * message, 0 if it closes without any, leaving only the status code
+         * to signal overload.
+         *
+         * @param listener call listener
+         * @return listener giving the slot back
+         */
+        RpcListener releaseOnClose(RpcListener listener) {
+            return new RpcListener() {
+                private volatile long firstMessageNanos = -1;
+
+                @Override
+                public void onStart(CallControl control) {
+                    listener.onStart(control);
+                }
+
+                @Override
+                public void onHeaders(Metadata headers) {
+                    listener.onHeaders(headers);
+                }
+
+                @Override
+                public void onMessage(Message message) {
+                    if (firstMessageNanos < 0) {
+                        firstMessageNanos = System.nanoTime() - startNanos;
+                    }
+                    listener.onMessage(message);
+                }
+
+                @Override
+                public void onClose(Status status, Metadata trailers) {
+                    limiter.release(Math.max(firstMessageNanos, 0), status.getCode());
+                    listener.onClose(status, trailers);
+                }
+
+                @Override
+                public boolean isReady() {
+                    return listener.isReady();
+                }
+            };
+        }
+
+        private static Status.Code codeOf(ListenableFuture<?> response) {
+            try {
+                Futures.getDone(response);
+                return Status.Code.OK;
+            } catch (ExecutionException e) {
+                return Status.fromThrowable(e.getCause()).getCode();
+            } catch (CancellationException e) {
+                return Status.Code.CANCELLED;
+            }
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package grpcbridge;
+
+import com.google.common.base.Splitter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.net.MediaType;
+import grpcbridge.http.HttpRequest;
+import grpcbridge.http.StreamFormat;
+import grpcbridge.parser.Deserializer;
+import grpcbridge.parser.ProtoJsonConverter;
+import grpcbridge.parser.Serializer;
+import grpcbridge.route.Route;
+import io.grpc.Metadata;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import javax.annotation.Nullable;
+
+/**
+ * Picks the {@link Deserializer} for the request content-type and the
+ * {@link Serializer} for the accepted response types. Both are resolved
+ * once per distinct header value and kept in bounded caches, so the headers
+ * are not parsed on every request.
+ *
+ * <p>
+ * The response types are tried in order: the type preferred by the service
+ * first, then the accepted types by descending q-value, keeping the header
+ * order for equal q-values. Types with q=0 are skipped.
+ */
+final class ContentNegotiation {
+    private static final Metadata.Key<String> CONTENT_TYPE =
+            Metadata.Key.of("content-type", Metadata.ASCII_STRING_MARSHALLER);
+    private static final Metadata.Key<String> ACCEPT =
+            Metadata.Key.of("accept", Metadata.ASCII_STRING_MARSHALLER);
+    private static final Splitter ACCEPT_SPLITTER = Splitter.on(',').trimResults().omitEmptyStrings();
+    private static final int MAX_CACHED = 1024;
+
+    private final List<Serializer> serializers;
+    private final List<Deserializer> deserializers;
+    private final Cache<String, Deserializer> deserializerCache =
+            CacheBuilder.newBuilder().maximumSize(MAX_CACHED).build();
+    private final Cache<ResponseKey, ResponseType> serializerCache =
+            CacheBuilder.newBuilder().maximumSize(MAX_CACHED).build();
+
+    /**
+     * @param serializers available serializers, in the order of preference
+     * @param deserializers available deserializers, in the order of preference
+     */
+    ContentNegotiation(List<Serializer> serializers, List<Deserializer> deserializers) {
+        this.serializers = serializers;
+        this.deserializers = deserializers;
+    }
+
+    /**
+     * @param httpRequest HTTP request
+     * @return deserializer for the request content-type
+     */
+    Deserializer getDeserializer(HttpRequest httpRequest) {
+        String contentType = httpRequest.getHeaders().get(CONTENT_TYPE);
+        if (contentType == null) {
+            return ProtoJsonConverter.INSTANCE;
+        }
+
+        Deserializer deserializer = deserializerCache.getIfPresent(contentType);
+        if (deserializer == null) {
+            MediaType mediaType = MediaType.parse(contentType);
+            deserializer = deserializers.stream()
+                    .filter(it -> it.supported(mediaType))
+                    .findFirst()
+                    .orElse(ProtoJsonConverter.INSTANCE);
+            deserializerCache.put(contentType, deserializer);
+        }
+        return deserializer;
+    }
+
+    /**
+     * @param route matched route
+     * @param httpRequest HTTP request
+     * @return serializer and streaming format for the accepted types
+     */
+    ResponseType getResponseType(Route route, HttpRequest httpRequest) {
+        Iterable<String> values = httpRequest.getHeaders().getAll(ACCEPT);
+        String accept = values == null ? "" : String.join(",", values);
+        ResponseKey key = new ResponseKey(route.getPreferredResponseType(), accept);
+
+        ResponseType responseType = serializerCache.getIfPresent(key);
+        if (responseType == null) {
+            responseType = resolve(key.preferred, accept);
+            serializerCache.put(key, responseType);
+        }
+        return responseType;
+    }
+
+    private ResponseType resolve(@Nullable MediaType preferred, String accept) {
+        StreamFormat streamFormat = null;
+        for (MediaType type : acceptedTypes(preferred, accept)) {
+            if (streamFormat == null) {
+                streamFormat = StreamFormat.forType(type).orElse(null);
+            }
+            List<MediaType> single = Collections.singletonList(type);
+            for (Serializer serializer : serializers) {
+                if (serializer.supportsAny(single)) {
+                    return new ResponseType(serializer, streamFormat);
+                }
+            }
+            if (ProtoJsonConverter.INSTANCE.supportsAny(single)) {
+                return new ResponseType(ProtoJsonConverter.INSTANCE, streamFormat);
+            }
+        }
+        return new ResponseType(ProtoJsonConverter.INSTANCE, streamFormat);
+    }
+
+    /**
+     * @param preferred type preferred by the service
+     * @param accept accept header values joined with ','
+     * @return accepted types in the order of preference, without the q
+     *      parameter
+     */
+    static List<MediaType> acceptedTypes(@Nullable MediaType preferred, String accept) {
+        List<WeightedType> weighted = new ArrayList<>();
+        for (String value : ACCEPT_SPLITTER.split(accept)) {
+            MediaType type;
+            try {
+                type = MediaType.parse(value);
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+
+            double quality = quality(type);
+            if (quality > 0) {
+                weighted.add(new WeightedType(
+                        type.withParameters("q", Collections.emptyList()),
+                        quality));
+            }
+        }
+        // The sort is stable, equally weighted types keep the header order.
+        weighted.sort(Comparator.comparingDouble((WeightedType it) -> it.quality).reversed());
+
+        ImmutableList.Builder<MediaType> result = ImmutableList.builder();
+        if (preferred != null) {
+            result.add(preferred);
+        }
+        weighted.forEach(it -> result.add(it.type));
+        return result.build();
+    }
+
+    private static double quality(MediaType type) {
+        List<String> values = type.parameters().get("q");
+        if (values.isEmpty()) {
+            return 1;
+        }
+        try {
+            return Double.parseDouble(values.get(0));
+        } catch (NumberFormatException e) {
+            return 1;
+        }
+    }
+
+    /**
+     * Resolved response serializer together with the streaming format, if
+     * one was explicitly accepted before the serializer type.
+     */
+    static final class ResponseType {
+        private final Serializer serializer;
+        private final @Nullable StreamFormat streamFormat;
+
+        ResponseType(Serializer serializer, @Nullable StreamFormat streamFormat) {
+            this.serializer = serializer;
+            this.streamFormat = streamFormat;
+        }
+
+        Serializer getSerializer() {
+            return serializer;
+        }
+
+        Optional<StreamFormat> getStreamFormat() {
+            return Optional.ofNullable(streamFormat);
+        }
+    }
+
+    private static final class WeightedType {
+        private final MediaType type;
+        private final double quality;
+
+        WeightedType(MediaType type, double quality) {
+            this.type = type;
+            this.quality = quality;
+        }
+    }
+
+    private static final class ResponseKey {
+        private final @Nullable MediaType preferred;
+        private final String accept;
+
+        ResponseKey(@Nullable MediaType preferred, String accept) {
+            this.preferred = preferred;
+            this.accept = accept;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ResponseKey)) {
+                return false;
+            }
+            ResponseKey other = (ResponseKey) obj;
+            return Objects.equals(preferred, other.preferred) && accept.equals(other.accept);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Objects.hashCode(preferred) + accept.hashCode();
+        }
+    }
+}
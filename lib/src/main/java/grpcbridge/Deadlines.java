@@ -0,0 +1,115 @@
+package grpcbridge;
+
+import static io.grpc.Metadata.ASCII_STRING_MARSHALLER;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import grpcbridge.http.HttpRequest;
+import grpcbridge.route.Route;
+import io.grpc.Deadline;
+import io.grpc.Metadata;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Resolves the deadline of a call. The first valid timeout header sets the
+ * client timeout, the route timeout, or else the bridge-wide default, sets
+ * the server limit. The earlier of the two wins, so a client can shorten
+ * the server limit, but never extend it.
+ *
+ * <p>
+ * The timeout headers use the grpc-timeout format: up to 8 digits followed
+ * by a unit, H, M, S, m, u or n. A plain number is read as milliseconds.
+ */
+final class Deadlines {
+    static final String GRPC_TIMEOUT = "grpc-timeout";
+
+    private final List<Metadata.Key<String>> headers;
+    private final long defaultTimeoutNanos;
+
+    /**
+     * @param headers timeout headers in the order of precedence
+     * @param defaultTimeoutNanos bridge-wide default timeout, 0 for none
+     */
+    Deadlines(List<String> headers, long defaultTimeoutNanos) {
+        this.headers = new ArrayList<>(headers.size());
+        for (String header : headers) {
+            this.headers.add(Metadata.Key.of(header, ASCII_STRING_MARSHALLER));
+        }
+        this.defaultTimeoutNanos = defaultTimeoutNanos;
+    }
+
+    /**
+     * @param route matched route
+     * @param request HTTP request
+     * @return deadline of the call, null if there is none
+     */
+    @Nullable Deadline deadlineFor(Route route, HttpRequest request) {
+        long limit = route.getTimeoutMillis() > 0
+                ? MILLISECONDS.toNanos(route.getTimeoutMillis())
+                : defaultTimeoutNanos;
+        long timeout = headerTimeout(request);
+        if (timeout >= 0 && (limit <= 0 || timeout < limit)) {
+            return Deadline.after(timeout, NANOSECONDS);
+        } else if (limit > 0) {
+            return Deadline.after(limit, NANOSECONDS);
+        }
+        return null;
+    }
+
+    /**
+     * @return timeout of the first valid timeout header in nanoseconds, -1
+     *      if there is none
+     */
+    private long headerTimeout(HttpRequest request) {
+        for (Metadata.Key<String> header : headers) {
+            String value = request.getHeaders().get(header);
+            if (value != null) {
+                long timeout = parseTimeout(value);
+                if (timeout >= 0) {
+                    return timeout;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param value timeout header value
+     * @return timeout in nanoseconds, -1 if the value is not valid
+     */
+    static long parseTimeout(String value) {
+        value = value.trim();
+        int length = value.length();
+        if (length == 0 || length > 9) {
+            return -1;
+        }
+
+        char unit = value.charAt(length - 1);
+        int digits = Character.isDigit(unit) ? length : length - 1;
+        if (digits == 0) {
+            return -1;
+        }
+        long amount = 0;
+        for (int i = 0; i < digits; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            amount = amount * 10 + (c - '0');
+        }
+
+        switch (digits == length ? 'm' : unit) {
+            case 'H': return TimeUnit.HOURS.toNanos(amount);
+            case 'M': return TimeUnit.MINUTES.toNanos(amount);
+            case 'S': return TimeUnit.SECONDS.toNanos(amount);
+            case 'm': return TimeUnit.MILLISECONDS.toNanos(amount);
+            case 'u': return TimeUnit.MICROSECONDS.toNanos(amount);
+            case 'n': return amount;
+            default: return -1;
+        }
+    }
+}
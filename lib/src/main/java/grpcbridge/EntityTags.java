@@ -0,0 +1,96 @@
+package grpcbridge;
+
+import static io.grpc.Metadata.ASCII_STRING_MARSHALLER;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import grpcbridge.http.HttpResponse;
+import io.grpc.Metadata;
+
+import javax.annotation.Nullable;
+
+/**
+ * Strong ETags of the serialized responses and the If-None-Match check of
+ * conditional GET requests. The tag is a 64-bit FarmHash fingerprint of the
+ * response body: fast and stable across restarts, but not meant to resist
+ * deliberate collisions.
+ */
+final class EntityTags {
+    static final Metadata.Key<String> ETAG = Metadata.Key.of("etag", ASCII_STRING_MARSHALLER);
+    static final Metadata.Key<String> IF_NONE_MATCH =
+            Metadata.Key.of("if-none-match", ASCII_STRING_MARSHALLER);
+
+    private static final HashFunction HASH = Hashing.farmHashFingerprint64();
+
+    private EntityTags() {
+    }
+
+    /**
+     * Adds the ETag of the response body to its trailers.
+     *
+     * @param response serialized response
+     * @return the same response
+     */
+    static HttpResponse tag(HttpResponse response) {
+        String tag = '"' + HASH.hashBytes(response.getBodyBytes()).toString() + '"';
+        response.getTrailers().put(ETAG, tag);
+        return response;
+    }
+
+    /**
+     * @param ifNoneMatch If-None-Match header of the request
+     * @param response tagged response
+     * @return a not modified response if the ETag of the response matches
+     *      the header, the response otherwise
+     */
+    static HttpResponse check(String ifNoneMatch, HttpResponse response) {
+        String tag = response.getTrailers().get(ETAG);
+        if (tag == null || !matches(ifNoneMatch, tag)) {
+            return response;
+        }
+        Metadata trailers = new Metadata();
+        trailers.merge(response.getTrailers());
+        return HttpResponse.notModified(trailers);
+    }
+
+    /**
+     * Compares the tags of an If-None-Match header with the given one. The
+     * comparison is weak, as required for If-None-Match: W/ prefixes are
+     * ignored.
+     *
+     * @param ifNoneMatch header value, a comma separated list of tags or *
+     * @param tag response ETag
+     * @return whether the header matches the tag
+     */
+    static boolean matches(@Nullable String ifNoneMatch, String tag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        int start = 0;
+        int length = ifNoneMatch.length();
+        while (start < length) {
+            int end = ifNoneMatch.indexOf(',', start);
+            if (end < 0) {
+                end = length;
+            }
+            int from = start;
+            int to = end;
+            while (from < to && ifNoneMatch.charAt(from) == ' ') {
+                from++;
+            }
+            while (to > from && ifNoneMatch.charAt(to - 1) == ' ') {
+                to--;
+            }
+            if (ifNoneMatch.startsWith("W/", from)) {
+                from += 2;
+            }
+            if (to - from == 1 && ifNoneMatch.charAt(from) == '*') {
+                return true;
+            } else if (to - from == tag.length() && ifNoneMatch.regionMatches(from, tag, 0, tag.length())) {
+                return true;
+            }
+            start = end + 1;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,117 @@
+package grpcbridge;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import grpcbridge.http.HttpResponse;
+import grpcbridge.monitoring.LatencyHistogram;
+import grpcbridge.monitoring.MetricsSink;
+import grpcbridge.monitoring.Phase;
+import grpcbridge.monitoring.PhaseHistograms;
+import grpcbridge.monitoring.PhaseTimer;
+import grpcbridge.route.Route;
+import grpcbridge.rpc.RpcMessage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+
+/**
+ * Records the phase latencies of the requests to the {@link MetricsSink}s
+ * of the bridge. Nothing is measured without any sink.
+ */
+final class PhaseMetrics {
+    private final @Nullable PhaseHistograms histograms;
+    private final MetricsSink[] sinks;
+
+    /**
+     * @param histograms built-in histograms, null if disabled
+     * @param sinks additional sinks
+     */
+    PhaseMetrics(@Nullable PhaseHistograms histograms, List<MetricsSink> sinks) {
+        List<MetricsSink> all = new ArrayList<>();
+        if (histograms != null) {
+            all.add(histograms);
+        }
+        all.addAll(sinks);
+        this.histograms = histograms;
+        this.sinks = all.toArray(new MetricsSink[0]);
+    }
+
+    static PhaseMetrics disabled() {
+        return new PhaseMetrics(null, Collections.emptyList());
+    }
+
+    /**
+     * @return timer of a new request, null if the phases are not measured
+     */
+    @Nullable PhaseTimer start() {
+        return sinks.length == 0 ? null : PhaseTimer.start();
+    }
+
+    /**
+     * Records the phases of matching the route.
+     *
+     * @param route matched route
+     * @param timer timer of the request, null if not measured
+     */
+    void matched(Route route, @Nullable PhaseTimer timer) {
+        if (timer != null) {
+            record(route, Phase.MATCH, timer.elapsed(Phase.MATCH));
+            record(route, Phase.DESERIALIZE, timer.elapsed(Phase.DESERIALIZE));
+            record(route, Phase.BIND, timer.elapsed(Phase.BIND));
+        }
+    }
+
+    /**
+     * Records the call phase once the response completes.
+     *
+     * @param route called route
+     * @param started {@link System#nanoTime()} before starting the call
+     * @param response response of the call
+     */
+    void timeCall(Route route, long started, ListenableFuture<RpcMessage> response) {
+        if (sinks.length == 0) {
+            return;
+        }
+        response.addListener(
+                () -> record(route, Phase.CALL, System.nanoTime() - started),
+                MoreExecutors.directExecutor());
+    }
+
+    /**
+     * @param route called route
+     * @param serialize serializes the responses
+     * @return serialize recording the serialization phase
+     */
+    Function<RpcMessage, HttpResponse> timeSerialize(
+            Route route,
+            Function<RpcMessage, HttpResponse> serialize) {
+        if (sinks.length == 0) {
+            return serialize;
+        }
+        return message -> {
+            long started = System.nanoTime();
+            try {
+                return serialize.apply(message);
+            } finally {
+                record(route, Phase.SERIALIZE, System.nanoTime() - started);
+            }
+        };
+    }
+
+    /**
+     * @return snapshots of the built-in histograms, empty if disabled
+     */
+    Map<String, Map<Phase, LatencyHistogram.Snapshot>> snapshot() {
+        return histograms == null ? Collections.emptyMap() : histograms.snapshot();
+    }
+
+    private void record(Route route, Phase phase, long nanos) {
+        for (MetricsSink sink : sinks) {
+            sink.record(route, phase, nanos);
+        }
+    }
+}
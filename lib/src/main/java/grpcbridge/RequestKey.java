@@ -0,0 +1,90 @@
+package grpcbridge;
+
+import static io.grpc.Metadata.ASCII_STRING_MARSHALLER;
+
+import com.google.protobuf.Message;
+import grpcbridge.http.HttpRequest;
+import grpcbridge.parser.Serializer;
+import grpcbridge.route.Route;
+import io.grpc.Metadata;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Identifies requests that produce the same response: requests to the same
+ * route with equal bound request messages, equal values of the selected
+ * headers and the same serializer.
+ */
+final class RequestKey {
+    private final Route route;
+    private final List<Message> messages;
+    private final List<String> headers;
+    private final Serializer serializer;
+    private final int hash;
+
+    /**
+     * @param route matched route
+     * @param messages bound request messages
+     * @param headers values of the selected headers, see {@link #headerValues}
+     * @param serializer response serializer
+     */
+    RequestKey(Route route, List<Message> messages, List<String> headers, Serializer serializer) {
+        this.route = route;
+        this.messages = messages;
+        this.headers = headers;
+        this.serializer = serializer;
+        this.hash = 31 * (31 * (31 * System.identityHashCode(route) + messages.hashCode())
+                + headers.hashCode()) + System.identityHashCode(serializer);
+    }
+
+    /**
+     * @param names header names
+     * @return metadata keys of the headers
+     */
+    static List<Metadata.Key<String>> headerKeys(List<String> names) {
+        List<Metadata.Key<String>> keys = new ArrayList<>(names.size());
+        for (String name : names) {
+            keys.add(Metadata.Key.of(name, ASCII_STRING_MARSHALLER));
+        }
+        return keys;
+    }
+
+    /**
+     * @param keys selected headers
+     * @param request HTTP request
+     * @return values of the selected headers, null for the missing ones
+     */
+    static List<String> headerValues(List<Metadata.Key<String>> keys, HttpRequest request) {
+        if (keys.isEmpty()) {
+            return Collections.emptyList();
+        }
+        String[] values = new String[keys.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = request.getHeaders().get(keys.get(i));
+        }
+        return Arrays.asList(values);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        } else if (!(o instanceof RequestKey)) {
+            return false;
+        }
+        RequestKey other = (RequestKey) o;
+        return route == other.route
+                && serializer == other.serializer
+                && hash == other.hash
+                && messages.equals(other.messages)
+                && headers.equals(other.headers);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
@@ -0,0 +1,163 @@
+package grpcbridge;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.protobuf.Message;
+import grpcbridge.http.HttpMethod;
+import grpcbridge.http.HttpRequest;
+import grpcbridge.http.HttpResponse;
+import grpcbridge.parser.Serializer;
+import grpcbridge.route.Route;
+import io.grpc.Metadata;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.Nullable;
+
+/**
+ * Caches the serialized responses of GET requests to the routes with a
+ * cache TTL. The responses are cached per {@link RequestKey}, so per content
+ * type too, and evicted least recently used first once their total size
+ * exceeds the cache size. Only successful responses are cached.
+ */
+final class ResponseCache {
+    /**
+     * Rough size of a cached entry on top of the body.
+     */
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private final Map<Route, Long> ttlNanos = new IdentityHashMap<>();
+    private final List<Metadata.Key<String>> headers;
+    private final @Nullable Cache<RequestKey, Entry> cache;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param routes routes of the bridge
+     * @param ttlNanos cache TTL by full service or method name, in addition
+     *                 to the methods with the cache_ttl_ms option
+     * @param headers headers whose values are part of the cache key
+     * @param maxBytes cache size in bytes
+     */
+    ResponseCache(List<Route> routes, Map<String, Long> ttlNanos, List<String> headers, long maxBytes) {
+        long maxTtl = 0;
+        for (Route route : routes) {
+            Long ttl = ttlNanos.get(route.descriptor.getFullName());
+            if (ttl == null) {
+                ttl = ttlNanos.get(route.getService());
+            }
+            if (ttl == null && route.getCacheTtlMillis() > 0) {
+                ttl = TimeUnit.MILLISECONDS.toNanos(route.getCacheTtlMillis());
+            }
+            if (ttl != null && ttl > 0) {
+                this.ttlNanos.put(route, ttl);
+                maxTtl = Math.max(maxTtl, ttl);
+            }
+        }
+        this.headers = RequestKey.headerKeys(headers);
+        this.cache = this.ttlNanos.isEmpty() ? null : CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .<RequestKey, Entry>weigher((key, entry) -> entry.bytes.length + ENTRY_OVERHEAD)
+                .expireAfterWrite(maxTtl, TimeUnit.NANOSECONDS)
+                .removalListener(notification -> {
+                    if (notification.wasEvicted()) {
+                        evictions.increment();
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * @param route matched route
+     * @param request HTTP request
+     * @return whether the response of the request is cached
+     */
+    boolean isCached(Route route, HttpRequest request) {
+        return cache != null
+                && request.getMethod() == HttpMethod.GET
+                && ttlNanos.containsKey(route);
+    }
+
+    /**
+     * @param route matched route
+     * @param messages bound request messages
+     * @param request HTTP request
+     * @param serializer response serializer
+     * @return cache key of the request
+     */
+    RequestKey keyFor(Route route, List<Message> messages, HttpRequest request, Serializer serializer) {
+        return new RequestKey(route, messages, RequestKey.headerValues(headers, request), serializer);
+    }
+
+    /**
+     * @param key cache key
+     * @return cached response, null if there is none or it expired
+     */
+    @Nullable HttpResponse get(RequestKey key) {
+        Entry entry = cache.getIfPresent(key);
+        if (entry != null && entry.expiresAtNanos - System.nanoTime() <= 0) {
+            cache.asMap().remove(key, entry);
+            evictions.increment();
+            entry = null;
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        Metadata trailers = new Metadata();
+        trailers.merge(entry.trailers);
+        return new HttpResponse(entry.bytes, trailers);
+    }
+
+    /**
+     * Caches the response once it completes successfully.
+     *
+     * @param route matched route
+     * @param key cache key
+     * @param response response future
+     */
+    void putOnSuccess(Route route, RequestKey key, ListenableFuture<HttpResponse> response) {
+        long ttl = ttlNanos.get(route);
+        Futures.addCallback(response, new FutureCallback<HttpResponse>() {
+            @Override
+            public void onSuccess(HttpResponse result) {
+                Metadata trailers = new Metadata();
+                trailers.merge(result.getTrailers());
+                cache.put(key, new Entry(result.getBodyBytes(), trailers, System.nanoTime() + ttl));
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    /**
+     * @return hit, miss and eviction counts, the load counts are always 0
+     */
+    CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), 0, 0, 0, evictions.sum());
+    }
+
+    private static final class Entry {
+        private final byte[] bytes;
+        private final Metadata trailers;
+        private final long expiresAtNanos;
+
+        Entry(byte[] bytes, Metadata trailers, long expiresAtNanos) {
+            this.bytes = bytes;
+            this.trailers = trailers;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+}
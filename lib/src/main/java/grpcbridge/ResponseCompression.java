@@ -0,0 +1,207 @@
+package grpcbridge;
+
+import com.google.common.base.Splitter;
+import com.google.common.net.MediaType;
+import com.google.protobuf.util.JsonFormat;
+import grpcbridge.http.HttpRequest;
+import grpcbridge.http.HttpResponse;
+import grpcbridge.parser.ProtoJsonWriter;
+import grpcbridge.parser.Serializer;
+import grpcbridge.rpc.RpcMessage;
+import io.grpc.Metadata;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import static io.grpc.Metadata.ASCII_STRING_MARSHALLER;
+
+/**
+ * Compresses the serialized responses with gzip or deflate, whichever the
+ * Accept-Encoding header of the request prefers, gzip on a tie. The
+ * serializer output is compressed while being written, responses smaller
+ * than the minimum size are sent as they are.
+ *
+ * <p>
+ * The compressing serializers are created once per serializer and encoding,
+ * so the cached and coalesced responses, keyed by the serializer, are kept
+ * apart per encoding and stored compressed.
+ */
+final class ResponseCompression {
+    static final Metadata.Key<String> ACCEPT_ENCODING =
+            Metadata.Key.of("accept-encoding", ASCII_STRING_MARSHALLER);
+    static final Metadata.Key<String> CONTENT_ENCODING =
+            Metadata.Key.of("content-encoding", ASCII_STRING_MARSHALLER);
+    static final Metadata.Key<String> VARY = Metadata.Key.of("vary", ASCII_STRING_MARSHALLER);
+
+    private static final String GZIP = "gzip";
+    private static final String DEFLATE = "deflate";
+    private static final Splitter COMMA = Splitter.on(',').trimResults().omitEmptyStrings();
+    private static final Splitter SEMICOLON = Splitter.on(';').trimResults();
+
+    private final boolean enabled;
+    private final int minSize;
+    private final int level;
+    private final ConcurrentMap<Serializer, Serializer> identity = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Serializer, Serializer> gzip = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Serializer, Serializer> deflate = new ConcurrentHashMap<>();
+
+    /**
+     * @param enabled whether the responses are compressed
+     * @param minSize size in bytes from which the responses are compressed
+     * @param level deflate compression level
+     */
+    ResponseCompression(boolean enabled, int minSize, int level) {
+        this.enabled = enabled;
+        this.minSize = minSize;
+        this.level = level;
+    }
+
+    static ResponseCompression disabled() {
+        return new ResponseCompression(false, 0, 0);
+    }
+
+    /**
+     * @param serializer negotiated serializer
+     * @param request HTTP request
+     * @return serializer compressing the responses with the encoding
+     *      accepted by the request, the given one if compression is
+     *      disabled. The responses vary by accept-encoding whenever it
+     *      is enabled, even if no encoding is accepted.
+     */
+    Serializer serializerFor(Serializer serializer, HttpRequest request) {
+        if (!enabled) {
+            return serializer;
+        }
+        String encoding = negotiate(request.getHeaders().get(ACCEPT_ENCODING));
+        if (encoding == null) {
+            return identity.computeIfAbsent(serializer, it -> new CompressingSerializer(it, null));
+        } else if (encoding.equals(GZIP)) {
+            return gzip.computeIfAbsent(serializer, it -> new CompressingSerializer(it, GZIP));
+        }
+        return deflate.computeIfAbsent(serializer, it -> new CompressingSerializer(it, DEFLATE));
+    }
+
+    /**
+     * @param acceptEncoding Accept-Encoding header value
+     * @return gzip or deflate, null if neither is accepted
+     */
+    static @Nullable String negotiate(@Nullable String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+        double gzip = 0;
+        double deflate = 0;
+        double any = 0;
+        boolean gzipListed = false;
+        boolean deflateListed = false;
+        for (String element : COMMA.split(acceptEncoding)) {
+            double quality = 1;
+            String coding = null;
+            for (String part : SEMICOLON.split(element)) {
+                if (coding == null) {
+                    coding = part;
+                } else if (part.startsWith("q=") || part.startsWith("Q=")) {
+                    quality = quality(part.substring(2));
+                }
+            }
+            if (GZIP.equalsIgnoreCase(coding) || "x-gzip".equalsIgnoreCase(coding)) {
+                gzip = Math.max(gzip, quality);
+                gzipListed = true;
+            } else if (DEFLATE.equalsIgnoreCase(coding)) {
+                deflate = quality;
+                deflateListed = true;
+            } else if ("*".equals(coding)) {
+                any = quality;
+            }
+        }
+        if (!gzipListed) {
+            gzip = any;
+        }
+        if (!deflateListed) {
+            deflate = any;
+        }
+        if (gzip > 0 && gzip >= deflate) {
+            return GZIP;
+        }
+        return deflate > 0 ? DEFLATE : null;
+    }
+
+    private static double quality(String value) {
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Streams the output of the given serializer through a pooled deflater,
+     * or only marks the response as varying by accept-encoding if there is
+     * no encoding.
+     */
+    private final class CompressingSerializer implements Serializer {
+        private final Serializer serializer;
+        private final @Nullable String encoding;
+
+        CompressingSerializer(Serializer serializer, @Nullable String encoding) {
+            this.serializer = serializer;
+            this.encoding = encoding;
+        }
+
+        @Override
+        public HttpResponse serialize(@Nonnull JsonFormat.Printer printer, @Nonnull RpcMessage message) {
+            return serialize(printer, null, message);
+        }
+
+        @Override
+        public HttpResponse serialize(
+                @Nonnull JsonFormat.Printer printer,
+                @Nullable ProtoJsonWriter writer,
+                @Nonnull RpcMessage message) {
+            if (encoding == null) {
+                HttpResponse response = serializer.serialize(printer, writer, message);
+                response.getTrailers().put(VARY, "accept-encoding");
+                return response;
+            }
+            boolean compressed;
+            byte[] bytes;
+            boolean gzip = encoding.equals(GZIP);
+            try (CompressingOutputStream out = new CompressingOutputStream(gzip, minSize, level)) {
+                serializer.serialize(printer, writer, message, out);
+                compressed = out.finish();
+                bytes = out.toByteArray();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            Metadata trailers = message.getMetadata();
+            trailers.put(VARY, "accept-encoding");
+            if (compressed) {
+                trailers.put(CONTENT_ENCODING, encoding);
+            }
+            return new HttpResponse(bytes, trailers);
+        }
+
+        @Override
+        public Function<RpcMessage, HttpResponse> serializeAsync(JsonFormat.Printer printer) {
+            return message -> serialize(printer, message);
+        }
+
+        @Override
+        public Function<RpcMessage, HttpResponse> serializeAsync(
+                JsonFormat.Printer printer,
+                @Nullable ProtoJsonWriter writer) {
+            return message -> serialize(printer, writer, message);
+        }
+
+        @Override
+        public boolean supportsAny(Collection<MediaType> accepted) {
+            return serializer.supportsAny(accepted);
+        }
+    }
+}
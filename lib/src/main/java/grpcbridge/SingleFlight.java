@@ -0,0 +1,127 @@
+package grpcbridge;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.protobuf.Message;
+import grpcbridge.http.HttpMethod;
+import grpcbridge.http.HttpRequest;
+import grpcbridge.http.HttpResponse;
+import grpcbridge.parser.Serializer;
+import grpcbridge.route.Route;
+import io.grpc.Metadata;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent identical GET requests of the routes that opted in.
+ * Requests with the same {@link RequestKey} share the call started by the
+ * first one and the serialized response body. Each of them gets its own
+ * copy of the trailers, as the later layers modify them.
+ *
+ * <p>
+ * The shared call runs with the metadata and the deadline of the request
+ * that started it. Cancelling one of the returned futures does not cancel
+ * the shared call.
+ */
+final class SingleFlight {
+    private final Set<Route> routes = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final List<Metadata.Key<String>> headers;
+    private final ConcurrentMap<RequestKey, ListenableFuture<HttpResponse>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * @param routes routes of the bridge
+     * @param names full names of the coalesced services and methods, in
+     *              addition to the methods with the coalesce_requests option
+     * @param headers headers whose values must be equal too
+     */
+    SingleFlight(List<Route> routes, Set<String> names, List<String> headers) {
+        for (Route route : routes) {
+            if (route.isCoalesced()
+                    || names.contains(route.descriptor.getFullName())
+                    || names.contains(route.getService())) {
+                this.routes.add(route);
+            }
+        }
+        this.headers = RequestKey.headerKeys(headers);
+    }
+
+    /**
+     * @param route matched route
+     * @param request HTTP request
+     * @return whether the request is coalesced with the identical ones
+     */
+    boolean isCoalesced(Route route, HttpRequest request) {
+        return request.getMethod() == HttpMethod.GET
+                && !routes.isEmpty()
+                && !route.descriptor.isClientStreaming()
+                && routes.contains(route);
+    }
+
+    /**
+     * Joins the in-flight call of an identical request, or starts a new one.
+     *
+     * @param route matched route
+     * @param messages bound request messages
+     * @param request HTTP request
+     * @param serializer response serializer
+     * @param start starts the call and serializes its response
+     * @return response future with a copy of the shared response
+     */
+    ListenableFuture<HttpResponse> join(
+            Route route,
+            List<Message> messages,
+            HttpRequest request,
+            Serializer serializer,
+            Supplier<ListenableFuture<HttpResponse>> start) {
+        RequestKey key = new RequestKey(
+                route,
+                messages,
+                RequestKey.headerValues(headers, request),
+                serializer);
+        ListenableFuture<HttpResponse> shared = inFlight.get(key);
+        if (shared == null) {
+            SettableFuture<HttpResponse> created = SettableFuture.create();
+            shared = inFlight.putIfAbsent(key, created);
+            if (shared == null) {
+                shared = created;
+                created.addListener(() -> inFlight.remove(key, created), MoreExecutors.directExecutor());
+                try {
+                    created.setFuture(Futures.transform(
+                            start.get(),
+                            SingleFlight::encoded,
+                            MoreExecutors.directExecutor()));
+                } catch (RuntimeException e) {
+                    created.setException(e);
+                    throw e;
+                }
+            }
+        }
+        return Futures.transform(
+                Futures.nonCancellationPropagating(shared),
+                SingleFlight::copy,
+                MoreExecutors.directExecutor());
+    }
+
+    /**
+     * Encodes the body of the shared response before it is published, the
+     * callers copy it concurrently and the body bytes are set lazily.
+     */
+    private static HttpResponse encoded(HttpResponse response) {
+        response.getBodyBytes();
+        return response;
+    }
+
+    private static HttpResponse copy(HttpResponse response) {
+        Metadata trailers = new Metadata();
+        trailers.merge(response.getTrailers());
+        return new HttpResponse(response.getBodyBytes(), trailers);
+    }
+}
@@ -0,0 +1,176 @@
+package grpcbridge;
+
+import static io.grpc.Metadata.ASCII_STRING_MARSHALLER;
+import static java.lang.String.format;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.util.JsonFormat;
+import grpcbridge.Exceptions.ParsingException;
+import grpcbridge.http.ResponseSink;
+import grpcbridge.http.StreamFormat;
+import grpcbridge.parser.ProtoJsonWriter;
+import grpcbridge.rpc.CallControl;
+import grpcbridge.rpc.RpcListener;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import javax.annotation.Nullable;
+
+/**
+ * Writes the messages of a server-streaming call to a {@link ResponseSink}
+ * as soon as the method implementation sends them, only one message is held
+ * in memory at a time.
+ *
+ * <p>
+ * A message that fails to be serialized or written ends the response: the
+ * failure is reported once with {@link ResponseSink#onError}, the call is
+ * cancelled and the messages sent after that are ignored.
+ */
+final class StreamingResponse implements RpcListener {
+    private final ResponseSink sink;
+    private final StreamFormat format;
+    private final JsonFormat.Printer printer;
+    private final @Nullable ProtoJsonWriter jsonWriter;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private final Writer writer;
+    private Metadata headers;
+    private boolean started;
+    private boolean failed;
+    private CallControl control;
+
+    /**
+     * @param sink sink to write the response to
+     * @param format stream framing
+     * @param printer JSON printer of the route
+     * @param jsonWriter JSON writer of the route, null to use the printer only
+     */
+    StreamingResponse(
+            ResponseSink sink,
+            StreamFormat format,
+            JsonFormat.Printer printer,
+            @Nullable ProtoJsonWriter jsonWriter) {
+        this.sink = sink;
+        this.format = format;
+        this.printer = format.isCompact() ? printer.omittingInsignificantWhitespace() : printer;
+        this.jsonWriter = jsonWriter != null && format.isCompact()
+                ? jsonWriter.omittingInsignificantWhitespace()
+                : jsonWriter;
+        this.writer = new OutputStreamWriter(buffer, format.getContentType().charset().get());
+    }
+
+    @Override
+    public void onStart(CallControl control) {
+        this.control = control;
+    }
+
+    @Override
+    public void onHeaders(Metadata headers) {
+        this.headers = headers;
+    }
+
+    @Override
+    public void onMessage(Message message) {
+        if (failed) {
+            return;
+        }
+        try {
+            if (start()) {
+                writer.append(format.getSeparator());
+            }
+            writer.append(format.getItemPrefix());
+            if (jsonWriter != null && jsonWriter.supports(message.getDescriptorForType())) {
+                writer.flush();
+                jsonWriter.write(message, buffer);
+            } else {
+                printer.appendTo(message, writer);
+            }
+            writer.append(format.getItemSuffix());
+            flush();
+        } catch (InvalidProtocolBufferException e) {
+            fail(new ParsingException(format("Failed to serialize a message: {%s}", message), e));
+        } catch (IOException e) {
+            fail(new UncheckedIOException(e));
+        } catch (RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    @Override
+    public void onClose(Status status, Metadata trailers) {
+        if (failed) {
+            return;
+        } else if (!status.isOk()) {
+            sink.onError(new StatusRuntimeException(status, trailers));
+            return;
+        }
+
+        try {
+            start();
+            writer.append(format.getSuffix());
+            flush();
+        } catch (IOException e) {
+            sink.onError(new UncheckedIOException(e));
+            return;
+        } catch (RuntimeException e) {
+            sink.onError(e);
+            return;
+        }
+        sink.onComplete(trailers);
+    }
+
+    @Override
+    public boolean isReady() {
+        return sink.isReady();
+    }
+
+    /**
+     * Starts the response unless already started.
+     *
+     * @return true if the response was started before
+     * @throws IOException if writing the prefix fails
+     */
+    private boolean start() throws IOException {
+        if (started) {
+            return true;
+        }
+
+        started = true;
+        Metadata responseHeaders = headers == null ? new Metadata() : headers;
+        responseHeaders.put(
+                Metadata.Key.of("content-type", ASCII_STRING_MARSHALLER),
+                format.getContentType().toString());
+        sink.onStart(responseHeaders);
+        writer.append(format.getPrefix());
+        return false;
+    }
+
+    /**
+     * Reports the failure and cancels the call, the close it causes is not
+     * reported again.
+     */
+    private void fail(RuntimeException error) {
+        failed = true;
+        buffer.reset();
+        sink.onError(error);
+        control.cancel();
+    }
+
+    private void flush() {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (buffer.size() > 0) {
+            sink.onData(buffer.toByteArray());
+            buffer.reset();
+        }
+    }
+}
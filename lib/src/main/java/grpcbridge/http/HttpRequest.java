@@ -1,18 +1,50 @@
 package grpcbridge.http;
 
+import com.google.common.base.Charsets;
 import com.google.common.base.Strings;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CharStreams;
+import com.google.common.net.MediaType;
+import grpcbridge.Exceptions.ParsingException;
 import io.grpc.Metadata;
 
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+import javax.annotation.Nullable;
 
+import static io.grpc.Metadata.ASCII_STRING_MARSHALLER;
 import static java.lang.String.format;
 
 /**
  * Describes an HTTP request. The library is HTTP framework independent, so
  * the caller is responsible for setting up an HTTP endpoint and translating
  * HTTP requests into {@link HttpRequest} instances.
+ *
+ * <p>
+ * Raw bodies sent with the gzip or deflate content-encoding are inflated
+ * while being read, the body getters return the inflated content. Reading
+ * more than {@link #DEFAULT_MAX_INFLATED_SIZE} inflated bytes fails, see
+ * {@link Builder#maxInflatedSize}.
  */
 public final class HttpRequest {
+    /**
+     * Largest inflated body accepted by default, 16 MiB.
+     */
+    public static final long DEFAULT_MAX_INFLATED_SIZE = 16 * 1024 * 1024;
+
+    private static final Metadata.Key<String> CONTENT_ENCODING =
+            Metadata.Key.of("content-encoding", ASCII_STRING_MARSHALLER);
+
     /**
      * Used to build an HTTP request.
      */
@@ -21,6 +53,10 @@ public final class HttpRequest {
         private final String path;
         private Metadata headers;
         private Optional<String> body;
+        private @Nullable byte[] bytes;
+        private int offset;
+        private int length;
+        private long maxInflatedSize = DEFAULT_MAX_INFLATED_SIZE;
 
         /**
          * Creates new builder instance for a given HTTP method and path.
@@ -45,6 +81,58 @@ public final class HttpRequest {
          */
         public Builder body(String body) {
             this.body = Optional.ofNullable(Strings.emptyToNull(body));
+            this.bytes = null;
+            return this;
+        }
+
+        /**
+         * Sets HTTP request body as raw bytes, decoded using the charset of
+         * the content-type header when needed. The array is not copied and
+         * must not be modified afterwards.
+         *
+         * @param body HTTP request body
+         * @return this builder instance
+         */
+        public Builder body(byte[] body) {
+            return body(body, 0, body == null ? 0 : body.length);
+        }
+
+        /**
+         * Sets HTTP request body to the remaining bytes of the given buffer.
+         * Heap buffers are not copied and must not be modified afterwards,
+         * the buffer position is not changed.
+         *
+         * @param body HTTP request body
+         * @return this builder instance
+         */
+        public Builder body(ByteBuffer body) {
+            if (body == null) {
+                return body((byte[]) null);
+            } else if (body.hasArray()) {
+                return body(body.array(), body.arrayOffset() + body.position(), body.remaining());
+            }
+            byte[] copy = new byte[body.remaining()];
+            body.duplicate().get(copy);
+            return body(copy);
+        }
+
+        /**
+         * Sets HTTP request body to the content of the given stream. The
+         * stream is read fully, but not closed.
+         *
+         * @param body HTTP request body
+         * @return this builder instance
+         * @throws IOException if the stream can not be read
+         */
+        public Builder body(InputStream body) throws IOException {
+            return body(body == null ? null : ByteStreams.toByteArray(body));
+        }
+
+        private Builder body(@Nullable byte[] bytes, int offset, int length) {
+            this.body = Optional.empty();
+            this.bytes = length == 0 ? null : bytes;
+            this.offset = offset;
+            this.length = length;
             return this;
         }
 
@@ -59,20 +147,38 @@ public final class HttpRequest {
             return this;
         }
 
+        /**
+         * Sets the largest accepted size of a body sent with a gzip or
+         * deflate content-encoding once inflated, protecting against
+         * decompression bombs. The limit of the bridge handling the request
+         * still applies, the lower of the two wins.
+         *
+         * @param maxInflatedSize size in bytes
+         * @return this builder instance
+         */
+        public Builder maxInflatedSize(long maxInflatedSize) {
+            this.maxInflatedSize = maxInflatedSize;
+            return this;
+        }
+
         /**
          * Builds new instance of the HTTP request.
          *
          * @return built HTTP request instance
          */
         public HttpRequest build() {
-            return new HttpRequest(method, path, headers, body);
+            return new HttpRequest(method, path, headers, body, bytes, offset, length, maxInflatedSize);
         }
     }
 
     private final HttpMethod method;
     private final String path;
     private final Metadata headers;
-    private final Optional<String> body;
+    private Optional<String> body;
+    private final @Nullable byte[] bytes;
+    private final int offset;
+    private final int length;
+    private final long maxInflatedSize;
 
     public static Builder builder(HttpMethod method, String path) {
         return new Builder(method, path);
@@ -83,12 +189,28 @@ public final class HttpRequest {
      * @param path HTTP URI path, e.g. /some/path?param=value
      * @param headers  gRPC headers metadata
      * @param body optional request body
+     * @param bytes raw request body, used when the body is not set
+     * @param offset start of the raw body in the bytes array
+     * @param length length of the raw body
+     * @param maxInflatedSize largest accepted size of the inflated body
      */
-    private HttpRequest(HttpMethod method, String path, Metadata headers, Optional<String> body) {
+    private HttpRequest(
+            HttpMethod method,
+            String path,
+            Metadata headers,
+            Optional<String> body,
+            @Nullable byte[] bytes,
+            int offset,
+            int length,
+            long maxInflatedSize) {
         this.method = method;
         this.path = path;
         this.headers = headers;
         this.body = body;
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+        this.maxInflatedSize = maxInflatedSize;
     }
 
     /**
@@ -113,19 +235,209 @@ public final class HttpRequest {
     }
 
     /**
+     * Returns the request body as a string. Raw bodies are decoded on the
+     * first call using the charset of the content-type header.
+     *
      * @return optional request body
      */
     public Optional<String> getBody() {
+        if (bytes != null && !body.isPresent()) {
+            if (isEncoded()) {
+                try (Reader reader = new InputStreamReader(inflate(), getCharset())) {
+                    body = Optional.of(CharStreams.toString(reader));
+                } catch (IOException e) {
+                    throw new ParsingException("Failed to inflate the request body", e);
+                }
+            } else {
+                body = Optional.of(new String(bytes, offset, length, getCharset()));
+            }
+        }
         return body;
     }
 
+    /**
+     * @return true if the request has a non empty body
+     */
+    public boolean hasBody() {
+        return bytes != null || body.isPresent();
+    }
+
+    /**
+     * Returns the request body as bytes. Raw bodies are returned as is,
+     * unless they have to be inflated, string bodies are encoded using the
+     * charset of the content-type header.
+     *
+     * @return optional read-only request body
+     */
+    public Optional<ByteBuffer> getBodyBytes() {
+        if (bytes != null && isEncoded()) {
+            try (InputStream in = inflate()) {
+                return Optional.of(ByteBuffer.wrap(ByteStreams.toByteArray(in)).asReadOnlyBuffer());
+            } catch (IOException e) {
+                throw new ParsingException("Failed to inflate the request body", e);
+            }
+        } else if (bytes != null) {
+            return Optional.of(ByteBuffer.wrap(bytes, offset, length).asReadOnlyBuffer());
+        }
+        return body.map(text -> ByteBuffer.wrap(text.getBytes(getCharset())).asReadOnlyBuffer());
+    }
+
+    /**
+     * @return optional stream over the request body bytes
+     */
+    public Optional<InputStream> getBodyStream() {
+        if (bytes != null) {
+            return Optional.of(isEncoded() ? inflate() : new ByteArrayInputStream(bytes, offset, length));
+        }
+        return body.map(text -> new ByteArrayInputStream(text.getBytes(getCharset())));
+    }
+
+    /**
+     * Returns a reader over the request body. Raw bodies are inflated and
+     * decoded while being read, without creating the body string.
+     *
+     * @return optional reader over the request body characters
+     */
+    public Optional<Reader> getBodyReader() {
+        if (bytes != null && !body.isPresent()) {
+            return Optional.of(new InputStreamReader(
+                    isEncoded() ? inflate() : new ByteArrayInputStream(bytes, offset, length),
+                    getCharset()));
+        }
+        return body.map(StringReader::new);
+    }
+
+    private boolean isEncoded() {
+        String encoding = headers.get(CONTENT_ENCODING);
+        return encoding != null && !encoding.trim().equalsIgnoreCase("identity");
+    }
+
+    /**
+     * Returns a copy of this request accepting at most the given inflated
+     * body size, or this request if its own limit is not larger. A lower
+     * limit set with {@link Builder#maxInflatedSize} is kept.
+     *
+     * @param maxInflatedSize size in bytes
+     * @return request with the lower of the two limits
+     */
+    public HttpRequest withMaxInflatedSize(long maxInflatedSize) {
+        if (maxInflatedSize >= this.maxInflatedSize) {
+            return this;
+        }
+        return new HttpRequest(method, path, headers, body, bytes, offset, length, maxInflatedSize);
+    }
+
+    /**
+     * @return stream inflating the raw body
+     * @throws ParsingException if the content-encoding is not supported or
+     *      the gzip header is malformed, the stream throws it once more than
+     *      the maximum inflated size is read
+     */
+    private InputStream inflate() {
+        String encoding = headers.get(CONTENT_ENCODING).trim();
+        InputStream in = new ByteArrayInputStream(bytes, offset, length);
+        if (encoding.equalsIgnoreCase("gzip") || encoding.equalsIgnoreCase("x-gzip")) {
+            try {
+                return new LimitedInputStream(new GZIPInputStream(in), maxInflatedSize);
+            } catch (IOException e) {
+                throw new ParsingException("Failed to inflate the gzip request body", e);
+            }
+        } else if (encoding.equalsIgnoreCase("deflate")) {
+            return new LimitedInputStream(new InflaterInputStream(in), maxInflatedSize);
+        }
+        throw new ParsingException(
+                format("Unsupported request content-encoding: %s", encoding),
+                new UnsupportedOperationException(encoding));
+    }
+
+    /**
+     * @return charset of the content-type header, UTF-8 if not specified
+     */
+    public Charset getCharset() {
+        String contentType = headers.get(Metadata.Key.of("content-type", ASCII_STRING_MARSHALLER));
+        if (contentType == null) {
+            return Charsets.UTF_8;
+        }
+        return MediaType.parse(contentType).charset().or(Charsets.UTF_8);
+    }
+
+    /**
+     * Prints the body only if it is already decoded, a raw body is described
+     * by its size and content-encoding, so logging a request neither decodes
+     * nor inflates it.
+     */
     @Override public String toString() {
-        return format("HttRequest(%s %s %s)", method, path, body.orElse(null));
+        String description;
+        if (body.isPresent() || bytes == null) {
+            description = body.orElse(null);
+        } else if (isEncoded()) {
+            description = format("<%d bytes, content-encoding %s>", length, headers.get(CONTENT_ENCODING).trim());
+        } else {
+            description = format("<%d bytes>", length);
+        }
+        return format("HttRequest(%s %s %s)", method, path, description);
     }
 
     public HttpRequest.Builder newBuilder() {
-        return new HttpRequest.Builder(method, path)
-            .headers(headers)
-            .body(body.orElse(null));
+        HttpRequest.Builder builder = new HttpRequest.Builder(method, path)
+                .headers(headers)
+                .maxInflatedSize(maxInflatedSize);
+        if (bytes != null && !body.isPresent()) {
+            return builder.body(bytes, offset, length);
+        }
+        return builder.body(body.orElse(null));
+    }
+
+    /**
+     * Fails with a {@link ParsingException} once more than the limit is
+     * read from the inflating stream.
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+        private final long limit;
+        private long count;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count(read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count(skipped);
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void count(long read) {
+            count += read;
+            if (count > limit) {
+                throw new ParsingException(
+                        format("Inflated request body exceeds %d bytes", limit),
+                        new IOException("Inflated size limit exceeded"));
+            }
+        }
     }
 }
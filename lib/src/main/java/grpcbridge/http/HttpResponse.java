@@ -1,21 +1,182 @@
 package grpcbridge.http;
 
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.google.common.net.MediaType;
 import io.grpc.Metadata;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+import javax.annotation.Nullable;
+
+import static io.grpc.Metadata.ASCII_STRING_MARSHALLER;
+
+/**
+ * HTTP response produced by the {@link grpcbridge.Bridge}. The body is kept
+ * in the form the serializer produced it, either a string or the encoded
+ * bytes, and is converted to the other form only when requested.
+ *
+ * <p>
+ * Compressed responses, the ones with a gzip or deflate content-encoding
+ * trailer, keep the compressed bytes, the body string is inflated. The
+ * content-encoding of {@link #getTrailers()} describes the bytes only: a
+ * response written from {@link #getBody()} has to be sent with
+ * {@link #getBodyTrailers()}, which leave the content-encoding out.
+ */
 public final class HttpResponse {
-    private final String body;
+    private static final Metadata.Key<String> CONTENT_ENCODING =
+            Metadata.Key.of("content-encoding", ASCII_STRING_MARSHALLER);
+
+    private @Nullable String body;
+    private @Nullable byte[] bytes;
     private final Metadata trailers;
+    private boolean notModified;
 
     public HttpResponse(String body, Metadata trailers) {
         this.body = body;
         this.trailers = trailers;
     }
 
+    /**
+     * @param bytes response body encoded using the charset of the
+     *              content-type trailer, the array is not copied
+     * @param trailers gRPC trailers metadata
+     */
+    public HttpResponse(byte[] bytes, Metadata trailers) {
+        this.bytes = bytes;
+        this.trailers = trailers;
+    }
+
+    /**
+     * Creates an empty response telling the client its cached copy, the one
+     * matching the If-None-Match header of the request, is still valid.
+     *
+     * @param trailers gRPC trailers metadata, with the ETag
+     * @return not modified response
+     */
+    public static HttpResponse notModified(Metadata trailers) {
+        HttpResponse response = new HttpResponse(new byte[0], trailers);
+        response.notModified = true;
+        return response;
+    }
+
+    /**
+     * @return whether the response is empty and has to be sent with the 304
+     *      Not Modified status
+     */
+    public boolean isNotModified() {
+        return notModified;
+    }
+
+    /**
+     * Returns the response body as text, never compressed. Send it with
+     * {@link #getBodyTrailers()}, not with the trailers of the compressed
+     * bytes.
+     *
+     * @return response body, inflated and decoded on the first call if the
+     *      response was created from bytes
+     */
     public String getBody() {
+        if (body == null) {
+            body = new String(inflate(), getCharset());
+        }
         return body;
     }
 
+    /**
+     * Returns the encoded, and possibly compressed, response body. The
+     * returned array is shared and must not be modified.
+     *
+     * @return response body bytes, encoded on the first call if the response
+     *      was created from a string
+     */
+    public byte[] getBodyBytes() {
+        if (bytes == null) {
+            bytes = body.getBytes(getCharset());
+        }
+        return bytes;
+    }
+
+    /**
+     * Writes the encoded response body to the given stream. The stream is
+     * not flushed or closed.
+     *
+     * @param out stream to write to
+     * @throws IOException if writing fails
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(getBodyBytes());
+    }
+
+    /**
+     * Writes the encoded response body to the given channel, the channel is
+     * not closed.
+     *
+     * @param channel channel to write to
+     * @throws IOException if writing fails
+     */
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(getBodyBytes());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * @return gRPC trailers metadata, the content-encoding applies to
+     *      {@link #getBodyBytes()}
+     */
     public Metadata getTrailers() {
         return trailers;
     }
+
+    /**
+     * @return trailers matching {@link #getBody()}, the same as
+     *      {@link #getTrailers()} without the content-encoding
+     */
+    public Metadata getBodyTrailers() {
+        if (!trailers.containsKey(CONTENT_ENCODING)) {
+            return trailers;
+        }
+        Metadata identity = new Metadata();
+        identity.merge(trailers);
+        identity.removeAll(CONTENT_ENCODING);
+        return identity;
+    }
+
+    private byte[] inflate() {
+        String encoding = trailers.get(CONTENT_ENCODING);
+        if (encoding == null) {
+            return bytes;
+        }
+        InputStream in = new ByteArrayInputStream(bytes);
+        try {
+            if (encoding.equalsIgnoreCase("gzip")) {
+                in = new GZIPInputStream(in);
+            } else if (encoding.equalsIgnoreCase("deflate")) {
+                in = new InflaterInputStream(in);
+            } else {
+                return bytes;
+            }
+            return ByteStreams.toByteArray(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Charset getCharset() {
+        String contentType = trailers.get(Metadata.Key.of("content-type", ASCII_STRING_MARSHALLER));
+        if (contentType == null) {
+            return Charsets.UTF_8;
+        }
+        return MediaType.parse(contentType).charset().or(Charsets.UTF_8);
+    }
 }
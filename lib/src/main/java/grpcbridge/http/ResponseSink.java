@@ -0,0 +1,67 @@
+package grpcbridge.http;
+
+import io.grpc.Metadata;
+
+/**
+ * Receives a streamed HTTP response from
+ * {@link grpcbridge.Bridge#handleStream(HttpRequest, ResponseSink)}. The
+ * callbacks are never invoked concurrently. A successful response is
+ * {@link #onStart}, any number of {@link #onData} and {@link #onComplete}, a
+ * failed one ends with {@link #onError}, which may come before
+ * {@link #onStart} if the call fails before producing any data.
+ */
+public interface ResponseSink {
+    /**
+     * Called once before the first chunk of the body.
+     *
+     * @param headers response headers with the content-type set
+     */
+    void onStart(Metadata headers);
+
+    /**
+     * Called with the next chunk of the encoded response body. The array is
+     * not reused by the bridge.
+     *
+     * @param data encoded body chunk
+     */
+    void onData(byte[] data);
+
+    /**
+     * Called once after the last chunk of the body.
+     *
+     * @param trailers trailers metadata
+     */
+    void onComplete(Metadata trailers);
+
+    /**
+     * Called instead of the other callbacks when the response matches the
+     * If-None-Match header of the request, to be sent with the 304 Not
+     * Modified status. Starts and completes an empty response by default.
+     *
+     * @param headers response headers with the ETag set
+     */
+    default void onNotModified(Metadata headers) {
+        onStart(headers);
+        onComplete(headers);
+    }
+
+    /**
+     * Called once if the call fails or is cancelled, the response is not
+     * completed after that.
+     *
+     * @param error call failure, {@link io.grpc.StatusRuntimeException} for
+     *              gRPC errors
+     */
+    void onError(Throwable error);
+
+    /**
+     * Reports whether the sink can take more data without buffering it.
+     * Once it returns false the method implementation should stop sending
+     * until {@link grpcbridge.rpc.CallControl#ready()} is called.
+     *
+     * @return true if more data can be written
+     */
+    default boolean isReady() {
+        return true;
+    }
+}
@@ -0,0 +1,122 @@
+package grpcbridge.http;
+
+import com.google.common.base.Charsets;
+import com.google.common.net.MediaType;
+
+import java.util.Optional;
+
+/**
+ * Framing used to stream the messages of a server-streaming method as JSON.
+ */
+public enum StreamFormat {
+    /**
+     * A single JSON array, same as the buffered response.
+     */
+    JSON_ARRAY(MediaType.JSON_UTF_8, "[", "", ",", "", "]", false),
+
+    /**
+     * Newline-delimited JSON, one compact JSON object per line.
+     */
+    NDJSON(
+            MediaType.create("application", "x-ndjson").withCharset(Charsets.UTF_8),
+            "", "", "", "\n", "", true),
+
+    /**
+     * Server-Sent Events, one data event per message.
+     */
+    SSE(
+            MediaType.create("text", "event-stream").withCharset(Charsets.UTF_8),
+            "", "data: ", "", "\n\n", "", true);
+
+    private final MediaType contentType;
+    private final String prefix;
+    private final String itemPrefix;
+    private final String separator;
+    private final String itemSuffix;
+    private final String suffix;
+    private final boolean compact;
+
+    StreamFormat(
+            MediaType contentType,
+            String prefix,
+            String itemPrefix,
+            String separator,
+            String itemSuffix,
+            String suffix,
+            boolean compact) {
+        this.contentType = contentType;
+        this.prefix = prefix;
+        this.itemPrefix = itemPrefix;
+        this.separator = separator;
+        this.itemSuffix = itemSuffix;
+        this.suffix = suffix;
+        this.compact = compact;
+    }
+
+    /**
+     * Finds the streaming format of the given accepted media type.
+     * {@link #JSON_ARRAY} is never returned, it is used when the response is
+     * JSON.
+     *
+     * @param type accepted media type
+     * @return NDJSON or SSE format if the type is one of them
+     */
+    public static Optional<StreamFormat> forType(MediaType type) {
+        MediaType withoutParameters = type.withoutParameters();
+        if (withoutParameters.equals(NDJSON.contentType.withoutParameters())) {
+            return Optional.of(NDJSON);
+        } else if (withoutParameters.equals(SSE.contentType.withoutParameters())) {
+            return Optional.of(SSE);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * @return response content-type
+     */
+    public MediaType getContentType() {
+        return contentType;
+    }
+
+    /**
+     * @return written before the first message
+     */
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * @return written before every message
+     */
+    public String getItemPrefix() {
+        return itemPrefix;
+    }
+
+    /**
+     * @return written between two messages
+     */
+    public String getSeparator() {
+        return separator;
+    }
+
+    /**
+     * @return written after every message
+     */
+    public String getItemSuffix() {
+        return itemSuffix;
+    }
+
+    /**
+     * @return written after the last message
+     */
+    public String getSuffix() {
+        return suffix;
+    }
+
+    /**
+     * @return true if every message must be printed on a single line
+     */
+    public boolean isCompact() {
+        return compact;
+    }
+}
@@ -0,0 +1,176 @@
+package grpcbridge.monitoring;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with log-linear buckets, in the manner of
+ * HdrHistogram: values below 16 ns are counted exactly, larger ones in 8
+ * buckets per power of two, so a reported value is within 12.5% of the
+ * recorded one. Values above about 18 minutes are counted as 18 minutes.
+ *
+ * <p>
+ * The counts start in a single stripe. A recording that loses a race
+ * with another thread adds a stripe, up to one per processor, so the
+ * histograms of rarely used routes stay small and the busy ones are not
+ * slowed down by contention. {@link #snapshot()} sums the stripes.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int LINEAR = 2 * SUB_BUCKETS;
+    private static final long MAX_VALUE = (1L << 40) - 1;
+    private static final int BUCKETS = index(MAX_VALUE) + 1;
+    private static final int SUM = BUCKETS;
+    private static final int MAX = BUCKETS + 1;
+    private static final int MAX_STRIPES =
+            Integer.highestOneBit(Math.min(Runtime.getRuntime().availableProcessors(), 16));
+
+    private volatile AtomicLongArray[] stripes = {new AtomicLongArray(BUCKETS + 2)};
+
+    /**
+     * @param nanos recorded latency, negative values are counted as 0
+     */
+    public void record(long nanos) {
+        long value = Math.min(Math.max(nanos, 0), MAX_VALUE);
+        AtomicLongArray[] stripes = this.stripes;
+        AtomicLongArray stripe = stripes[(int) Thread.currentThread().getId() & (stripes.length - 1)];
+        int index = index(value);
+        long count = stripe.get(index);
+        if (!stripe.compareAndSet(index, count, count + 1)) {
+            stripe.incrementAndGet(index);
+            grow(stripes.length);
+        }
+        stripe.addAndGet(SUM, value);
+        long max = stripe.get(MAX);
+        while (value > max && !stripe.compareAndSet(MAX, max, value)) {
+            max = stripe.get(MAX);
+        }
+    }
+
+    /**
+     * @return counts recorded so far, the concurrent recordings may be
+     *      partially included
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long sum = 0;
+        long max = 0;
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] += stripe.get(i);
+            }
+            sum += stripe.get(SUM);
+            max = Math.max(max, stripe.get(MAX));
+        }
+        return new Snapshot(counts, sum, max);
+    }
+
+    private synchronized void grow(int length) {
+        if (stripes.length != length || length >= MAX_STRIPES) {
+            return;
+        }
+        AtomicLongArray[] grown = new AtomicLongArray[length * 2];
+        System.arraycopy(stripes, 0, grown, 0, length);
+        for (int i = length; i < grown.length; i++) {
+            grown[i] = new AtomicLongArray(BUCKETS + 2);
+        }
+        stripes = grown;
+    }
+
+    private static int index(long value) {
+        if (value < LINEAR) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR + (exponent - SUB_BITS - 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @return highest value counted in the given bucket
+     */
+    private static long highestValue(int index) {
+        if (index < LINEAR) {
+            return index;
+        }
+        int exponent = (index - LINEAR) / SUB_BUCKETS + SUB_BITS + 1;
+        int sub = (index - LINEAR) % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + sub + 1) << (exponent - SUB_BITS)) - 1;
+    }
+
+    /**
+     * Immutable counts of a {@link LatencyHistogram}, values in nanoseconds.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private Snapshot(long[] counts, long sum, long max) {
+            long count = 0;
+            for (long bucket : counts) {
+                count += bucket;
+            }
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        /**
+         * @return number of recorded values
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return sum of the recorded values
+         */
+        public long getSum() {
+            return sum;
+        }
+
+        /**
+         * @return mean of the recorded values, 0 if there are none
+         */
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * @return highest recorded value
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * @param quantile quantile between 0 and 1, e.g. 0.99
+         * @return value that the given fraction of the recorded values does
+         *      not exceed, 0 if there are none
+         */
+        public long getValueAtQuantile(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(Math.min(Math.max(quantile, 0), 1) * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestValue(i), max);
+                }
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "count=%d mean=%.0fns p50=%dns p99=%dns max=%dns",
+                    count, getMean(), getValueAtQuantile(0.5), getValueAtQuantile(0.99), max);
+        }
+    }
+}
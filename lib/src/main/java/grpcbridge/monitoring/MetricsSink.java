@@ -0,0 +1,19 @@
+package grpcbridge.monitoring;
+
+import grpcbridge.route.Route;
+
+/**
+ * Receives the latency of every {@link Phase} of the requests handled by the
+ * bridge, see {@link grpcbridge.BridgeBuilder#metricsSink}. Called on the
+ * thread handling the phase, possibly concurrently, so implementations
+ * have to be thread safe and cheap, e.g. {@link PhaseHistograms} or
+ * {@link OpenCensusMetrics}.
+ */
+public interface MetricsSink {
+    /**
+     * @param route matched route
+     * @param phase finished phase
+     * @param nanos time spent in the phase
+     */
+    void record(Route route, Phase phase, long nanos);
+}
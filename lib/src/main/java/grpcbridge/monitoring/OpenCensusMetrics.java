@@ -0,0 +1,98 @@
+package grpcbridge.monitoring;
+
+import grpcbridge.route.Route;
+import io.opencensus.stats.Aggregation;
+import io.opencensus.stats.BucketBoundaries;
+import io.opencensus.stats.Measure.MeasureDouble;
+import io.opencensus.stats.Stats;
+import io.opencensus.stats.StatsRecorder;
+import io.opencensus.stats.View;
+import io.opencensus.tags.TagContext;
+import io.opencensus.tags.TagKey;
+import io.opencensus.tags.TagValue;
+import io.opencensus.tags.Tagger;
+import io.opencensus.tags.Tags;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Records the phase latencies as the OpenCensus {@link #LATENCY} measure,
+ * tagged with the full method name and the phase. Call
+ * {@link #registerViews()} once to aggregate them into the
+ * <c>grpcbridge/phase_latency</c> distribution view, the exporters of the
+ * OpenCensus implementation on the classpath export it from there.
+ */
+public final class OpenCensusMetrics implements MetricsSink {
+    public static final MeasureDouble LATENCY = MeasureDouble.create(
+            "grpcbridge/phase_latency",
+            "Latency of a phase of handling a bridged HTTP request",
+            "ms");
+    public static final TagKey METHOD = TagKey.create("grpcbridge_method");
+    public static final TagKey PHASE = TagKey.create("grpcbridge_phase");
+    public static final View.Name VIEW = View.Name.create("grpcbridge/phase_latency");
+
+    private static final Phase[] PHASES = Phase.values();
+    private static final Aggregation DISTRIBUTION = Aggregation.Distribution.create(
+            BucketBoundaries.create(Arrays.asList(
+                    0.0, 0.01, 0.05, 0.1, 0.25, 0.5, 1.0, 2.5, 5.0, 10.0, 25.0, 50.0,
+                    100.0, 250.0, 500.0, 1000.0, 2500.0, 5000.0, 10000.0)));
+
+    private final Tagger tagger;
+    private final StatsRecorder recorder;
+    private final ConcurrentMap<Route, TagContext[]> tags = new ConcurrentHashMap<>();
+
+    /**
+     * Records to the global OpenCensus {@link Stats} and {@link Tags}.
+     */
+    public OpenCensusMetrics() {
+        this(Tags.getTagger(), Stats.getStatsRecorder());
+    }
+
+    /**
+     * @param tagger creates the tags of the recorded values
+     * @param recorder records the values
+     */
+    public OpenCensusMetrics(Tagger tagger, StatsRecorder recorder) {
+        this.tagger = tagger;
+        this.recorder = recorder;
+    }
+
+    /**
+     * Registers the {@link #VIEW} distribution view of the {@link #LATENCY}
+     * measure by method and phase with the global view manager.
+     */
+    public static void registerViews() {
+        Stats.getViewManager().registerView(View.create(
+                VIEW,
+                "Distribution of the phase latencies of the bridged HTTP requests",
+                LATENCY,
+                DISTRIBUTION,
+                Arrays.asList(METHOD, PHASE)));
+    }
+
+    @Override
+    public void record(Route route, Phase phase, long nanos) {
+        TagContext[] contexts = tags.get(route);
+        if (contexts == null) {
+            contexts = tags.computeIfAbsent(route, this::newTags);
+        }
+        recorder.newMeasureMap()
+                .put(LATENCY, nanos / 1e6)
+                .record(contexts[phase.ordinal()]);
+    }
+
+    private TagContext[] newTags(Route route) {
+        TagValue method = TagValue.create(route.descriptor.getFullName());
+        TagContext[] contexts = new TagContext[PHASES.length];
+        for (Phase phase : PHASES) {
+            contexts[phase.ordinal()] = tagger.emptyBuilder()
+                    .putLocal(METHOD, method)
+                    .putLocal(PHASE, TagValue.create(phase.name().toLowerCase(Locale.ROOT)))
+                    .build();
+        }
+        return contexts;
+    }
+}
@@ -0,0 +1,29 @@
+package grpcbridge.monitoring;
+
+/**
+ * Phases of handling a bridged HTTP request, see {@link MetricsSink}.
+ */
+public enum Phase {
+    /**
+     * Tokenizing the request URL, negotiating the request content type and
+     * finding the route and the binding matching the request path.
+     */
+    MATCH,
+    /**
+     * Parsing the request body. Client-streaming bodies are decoded lazily,
+     * as the method reads them, this covers only setting up the decoding.
+     */
+    DESERIALIZE,
+    /**
+     * Applying the path and query variables to the request message.
+     */
+    BIND,
+    /**
+     * The gRPC call, from starting it until the response is complete.
+     */
+    CALL,
+    /**
+     * Serializing the response, including compressing and tagging it.
+     */
+    SERIALIZE
+}
@@ -0,0 +1,53 @@
+package grpcbridge.monitoring;
+
+import grpcbridge.route.Route;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps a {@link LatencyHistogram} per route and {@link Phase}. The
+ * histograms of a route are created when its first request is recorded.
+ */
+public final class PhaseHistograms implements MetricsSink {
+    private static final Phase[] PHASES = Phase.values();
+
+    private final ConcurrentMap<Route, LatencyHistogram[]> histograms = new ConcurrentHashMap<>();
+
+    @Override
+    public void record(Route route, Phase phase, long nanos) {
+        LatencyHistogram[] phases = histograms.get(route);
+        if (phases == null) {
+            phases = histograms.computeIfAbsent(route, it -> newHistograms());
+        }
+        phases[phase.ordinal()].record(nanos);
+    }
+
+    /**
+     * @return snapshots of the recorded phases by full method name, e.g.
+     *      <c>grpcbridge.test.TestService.Get</c>, sorted by the name
+     */
+    public Map<String, Map<Phase, LatencyHistogram.Snapshot>> snapshot() {
+        Map<String, Map<Phase, LatencyHistogram.Snapshot>> snapshot = new TreeMap<>();
+        histograms.forEach((route, phases) -> {
+            Map<Phase, LatencyHistogram.Snapshot> byPhase = new EnumMap<>(Phase.class);
+            for (Phase phase : PHASES) {
+                byPhase.put(phase, phases[phase.ordinal()].snapshot());
+            }
+            snapshot.put(route.descriptor.getFullName(), Collections.unmodifiableMap(byPhase));
+        });
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    private static LatencyHistogram[] newHistograms() {
+        LatencyHistogram[] histograms = new LatencyHistogram[PHASES.length];
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+        return histograms;
+    }
+}
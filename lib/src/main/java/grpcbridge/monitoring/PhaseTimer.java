@@ -0,0 +1,41 @@
+package grpcbridge.monitoring;
+
+/**
+ * Measures the consecutive phases of a single request: every
+ * {@link #mark(Phase)} adds the time passed since the previous mark to the
+ * given phase. Not thread safe, the matching phases run on a single thread.
+ */
+public final class PhaseTimer {
+    private final long[] nanos = new long[Phase.values().length];
+    private long last;
+
+    private PhaseTimer(long started) {
+        this.last = started;
+    }
+
+    /**
+     * @return timer measuring from now
+     */
+    public static PhaseTimer start() {
+        return new PhaseTimer(System.nanoTime());
+    }
+
+    /**
+     * Ends the given phase.
+     *
+     * @param phase phase the time since the previous mark is added to
+     */
+    public void mark(Phase phase) {
+        long now = System.nanoTime();
+        nanos[phase.ordinal()] += now - last;
+        last = now;
+    }
+
+    /**
+     * @param phase measured phase
+     * @return nanoseconds spent in the phase
+     */
+    public long elapsed(Phase phase) {
+        return nanos[phase.ordinal()];
+    }
+}
@@ -8,5 +8,18 @@ import grpcbridge.rpc.RpcMessage;
 public interface Deserializer {
     RpcMessage deserialize(HttpRequest httpRequest, Message.Builder builder);
 
+    /**
+     * Deserializes the request body of a client streaming method. The
+     * messages are decoded as the method implementation asks for them, see
+     * {@link RpcMessage#streaming}. By default the body is a single message.
+     *
+     * @param httpRequest HTTP request
+     * @param builder builder of the request message type
+     * @return request messages
+     */
+    default RpcMessage deserializeStream(HttpRequest httpRequest, Message.Builder builder) {
+        return deserialize(httpRequest, builder);
+    }
+
     boolean supported(MediaType contentType);
 }
@@ -0,0 +1,87 @@
+package grpcbridge.parser;
+
+import static java.lang.String.format;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.protobuf.Message;
+import grpcbridge.Exceptions.ParsingException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Decodes a stream of JSON messages one at a time: the elements of a JSON
+ * array, or the values following each other, e.g. newline-delimited JSON.
+ * Only the message returned by {@link #next()} is held in memory, checking
+ * for the next one with {@link #hasNext()} only peeks at the next token.
+ */
+final class JsonMessageIterator implements Iterator<Message> {
+    private final JsonReader reader;
+    private final Message prototype;
+    private boolean array;
+    private boolean started;
+    private boolean finished;
+    private int index;
+
+    /**
+     * @param in JSON input
+     * @param prototype message type to decode
+     */
+    JsonMessageIterator(Reader in, Message prototype) {
+        this.reader = new JsonReader(in);
+        this.reader.setLenient(true);
+        this.prototype = prototype;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (finished) {
+            return false;
+        }
+        try {
+            if (!started) {
+                started = true;
+                if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+                    array = true;
+                    reader.beginArray();
+                }
+            }
+
+            boolean next = array ? reader.hasNext() : reader.peek() != JsonToken.END_DOCUMENT;
+            if (!next) {
+                if (array) {
+                    reader.endArray();
+                }
+                finished = true;
+                reader.close();
+            }
+            return next;
+        } catch (IOException | RuntimeException e) {
+            throw failed(e);
+        }
+    }
+
+    @Override
+    public Message next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Message.Builder builder = prototype.newBuilderForType();
+        try {
+            ProtoJsonReader.merge(reader, builder);
+        } catch (IOException e) {
+            throw failed(e);
+        }
+        index++;
+        return builder.build();
+    }
+
+    private ParsingException failed(Exception e) {
+        finished = true;
+        return new ParsingException(
+                format("Failed to deserialize message %d of the stream", index), e);
+    }
+}
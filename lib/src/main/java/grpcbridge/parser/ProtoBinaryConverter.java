@@ -0,0 +1,236 @@
+package grpcbridge.parser;
+
+import static io.grpc.Metadata.ASCII_STRING_MARSHALLER;
+import static java.lang.String.format;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
+import com.google.common.net.MediaType;
+import com.google.protobuf.Message;
+import com.google.protobuf.util.JsonFormat;
+import grpcbridge.Exceptions.ParsingException;
+import grpcbridge.http.HttpRequest;
+import grpcbridge.http.HttpResponse;
+import grpcbridge.rpc.RpcMessage;
+import io.grpc.Metadata;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Converts between binary protobuf HTTP bodies and protobuf messages, no text
+ * conversion is involved. The request body is merged into the builder of the
+ * route request message and the responses are written with
+ * {@link Message#writeTo}.
+ *
+ * <p>
+ * {@link #INSTANCE} handles application/x-protobuf bodies. A single response
+ * message is written as is, the messages of a server-streaming method are
+ * length-delimited as in {@link Message#writeDelimitedTo}.
+ *
+ * <p>
+ * {@link #GRPC_WEB} handles application/grpc-web+proto framing: every message
+ * is prefixed with a flags byte and a 4 byte big-endian length and the
+ * response ends with a trailers frame. A request carries a single frame of at
+ * most {@link #DEFAULT_MAX_MESSAGE_SIZE} bytes, see {@link #withMaxMessageSize}.
+ * Compressed frames are not supported.
+ */
+public final class ProtoBinaryConverter implements Serializer, Deserializer {
+    /**
+     * Largest grpc-web request frame accepted by default, same as the gRPC
+     * default maximum inbound message size.
+     */
+    public static final int DEFAULT_MAX_MESSAGE_SIZE = 4 * 1024 * 1024;
+
+    public static final ProtoBinaryConverter INSTANCE = new ProtoBinaryConverter(
+            false,
+            MediaType.create("application", "x-protobuf"),
+            Arrays.asList(
+                    MediaType.create("application", "x-protobuf"),
+                    MediaType.create("application", "protobuf")));
+
+    public static final ProtoBinaryConverter GRPC_WEB = new ProtoBinaryConverter(
+            true,
+            MediaType.create("application", "grpc-web+proto"),
+            Arrays.asList(
+                    MediaType.create("application", "grpc-web+proto"),
+                    MediaType.create("application", "grpc-web")));
+
+    private static final int TRAILERS_FLAG = 0x80;
+    private static final int COMPRESSED_FLAG = 0x01;
+    private static final byte[] OK_TRAILERS = "grpc-status:0\r\n".getBytes(Charsets.US_ASCII);
+
+    private final boolean grpcWeb;
+    private final MediaType contentType;
+    private final List<MediaType> supportedTypes;
+    private final int maxMessageSize;
+
+    private ProtoBinaryConverter(
+            boolean grpcWeb,
+            MediaType contentType,
+            List<MediaType> supportedTypes) {
+        this(grpcWeb, contentType, supportedTypes, DEFAULT_MAX_MESSAGE_SIZE);
+    }
+
+    private ProtoBinaryConverter(
+            boolean grpcWeb,
+            MediaType contentType,
+            List<MediaType> supportedTypes,
+            int maxMessageSize) {
+        this.grpcWeb = grpcWeb;
+        this.contentType = contentType;
+        this.supportedTypes = Collections.unmodifiableList(supportedTypes);
+        this.maxMessageSize = maxMessageSize;
+    }
+
+    /**
+     * Returns a converter that rejects grpc-web request frames declaring more
+     * than {@code maxMessageSize} bytes, before any of the payload is read.
+     *
+     * @param maxMessageSize largest accepted frame payload in bytes
+     * @return converter with the given limit
+     */
+    public ProtoBinaryConverter withMaxMessageSize(int maxMessageSize) {
+        if (maxMessageSize < 0) {
+            throw new IllegalArgumentException("maxMessageSize must not be negative");
+        }
+        return new ProtoBinaryConverter(grpcWeb, contentType, supportedTypes, maxMessageSize);
+    }
+
+    @Override
+    public boolean supportsAny(Collection<MediaType> accepted) {
+        return accepted.stream().anyMatch(this::supported);
+    }
+
+    @Override
+    public boolean supported(MediaType contentType) {
+        MediaType withoutParameters = contentType.withoutParameters();
+        return supportedTypes.stream().anyMatch(withoutParameters::equals);
+    }
+
+    @Override
+    public RpcMessage deserialize(HttpRequest httpRequest, Message.Builder builder) {
+        Optional<InputStream> body = httpRequest.getBodyStream();
+        if (body.isPresent()) {
+            try {
+                if (grpcWeb) {
+                    mergeFrame(body.get(), builder, maxMessageSize);
+                } else {
+                    builder.mergeFrom(body.get());
+                }
+            } catch (IOException e) {
+                throw new ParsingException(
+                        format("Failed to deserialize a message: {%s}",
+                                builder.getDescriptorForType().getFullName()),
+                        e);
+            }
+        }
+        return new RpcMessage(builder.build(), httpRequest.getHeaders());
+    }
+
+    @Override
+    public HttpResponse serialize(
+            @Nonnull JsonFormat.Printer printer,
+            @Nonnull RpcMessage message) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            serialize(printer, message, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new HttpResponse(out.toByteArray(), message.getMetadata());
+    }
+
+    @Override
+    public void serialize(
+            @Nonnull JsonFormat.Printer printer,
+            @Nonnull RpcMessage message,
+            @Nonnull OutputStream out) throws IOException {
+        message.getMetadata().put(
+                Metadata.Key.of("content-type", ASCII_STRING_MARSHALLER),
+                contentType.toString());
+
+        List<Message> messages = message.getBody();
+        if (grpcWeb) {
+            DataOutputStream data = new DataOutputStream(out);
+            for (Message item : messages) {
+                data.writeByte(0);
+                data.writeInt(item.getSerializedSize());
+                item.writeTo(data);
+            }
+            data.writeByte(TRAILERS_FLAG);
+            data.writeInt(OK_TRAILERS.length);
+            data.write(OK_TRAILERS);
+        } else if (message.getMethodType().serverSendsOneMessage()) {
+            if (!messages.isEmpty()) {
+                messages.get(0).writeTo(out);
+            }
+        } else {
+            for (Message item : messages) {
+                item.writeDelimitedTo(out);
+            }
+        }
+        out.flush();
+    }
+
+    @Override
+    public Function<RpcMessage, HttpResponse> serializeAsync(JsonFormat.Printer printer) {
+        return new Function<RpcMessage, HttpResponse>() {
+            @Nullable
+            @Override
+            public HttpResponse apply(@Nullable RpcMessage response) {
+                return serialize(printer, response);
+            }
+        };
+    }
+
+    private static void mergeFrame(
+            InputStream body,
+            Message.Builder builder,
+            int maxMessageSize) throws IOException {
+        DataInputStream data = new DataInputStream(body);
+        int flags = data.read();
+        if (flags < 0) {
+            return;
+        } else if ((flags & COMPRESSED_FLAG) != 0) {
+            throw new IOException("Compressed grpc-web frames are not supported");
+        }
+
+        try {
+            int length = data.readInt();
+            if (length < 0) {
+                throw new IOException("Invalid grpc-web frame length: " + length);
+            } else if (length > maxMessageSize) {
+                throw new IOException(format(
+                        "grpc-web frame of %d bytes exceeds the limit of %d bytes",
+                        length, maxMessageSize));
+            }
+            CountingInputStream payload = new CountingInputStream(ByteStreams.limit(data, length));
+            builder.mergeFrom(payload);
+            if (payload.getCount() < length) {
+                throw new EOFException();
+            }
+        } catch (EOFException e) {
+            throw new IOException("Truncated grpc-web frame", e);
+        }
+
+        if (data.read() >= 0) {
+            throw new IOException("Unexpected data after the grpc-web frame");
+        }
+    }
+}
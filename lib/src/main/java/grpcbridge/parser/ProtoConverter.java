@@ -11,6 +11,12 @@ import io.grpc.Metadata;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -36,6 +42,83 @@ public abstract class ProtoConverter implements Serializer, Deserializer {
             @Nonnull JsonFormat.Printer printer,
             @Nonnull Message message);
 
+    /**
+     * Serializes a single message with the JSON writer of the route.
+     * Converters that can use the writer override this, the default
+     * ignores it and serializes with the printer only.
+     *
+     * @param index index of the message in a stream, null for a single message
+     * @param printer JSON printer of the route
+     * @param writer JSON writer of the route, null to use the printer only
+     * @param message message to serialize
+     * @return serialized message
+     */
+    protected String serialize(
+            @Nullable Integer index,
+            @Nonnull JsonFormat.Printer printer,
+            @Nullable ProtoJsonWriter writer,
+            @Nonnull Message message) {
+        return serialize(index, printer, message);
+    }
+
+    /**
+     * Parses the body of the given request. Converters that can read the raw
+     * body directly override this to skip decoding it into a string.
+     *
+     * @param request HTTP request to parse the body of
+     * @param charset request body charset
+     * @param builder builder to merge the parsed body into
+     * @return built message
+     */
+    protected <T extends Message> T parse(
+            HttpRequest request,
+            Charset charset,
+            T.Builder builder) {
+        return parse(request.getBody().orElse(null), charset, builder);
+    }
+
+    /**
+     * Appends a single serialized message to the given output. Converters
+     * that can write incrementally override this to skip creating the
+     * intermediate string.
+     *
+     * @param index index of the message in a stream, null for a single message
+     * @param printer JSON printer of the route
+     * @param writer JSON writer of the route, null to use the printer only
+     * @param message message to serialize
+     * @param out output to append to
+     * @throws IOException if appending to the output fails
+     */
+    protected void write(
+            @Nullable Integer index,
+            @Nonnull JsonFormat.Printer printer,
+            @Nullable ProtoJsonWriter writer,
+            @Nonnull Message message,
+            Appendable out) throws IOException {
+        out.append(serialize(index, printer, writer, message));
+    }
+
+    /**
+     * Appends serialized stream of messages to the given output.
+     *
+     * @param printer JSON printer of the route
+     * @param writer JSON writer of the route, null to use the printer only
+     * @param messages messages to serialize
+     * @param out output to append to
+     * @throws IOException if appending to the output fails
+     */
+    protected void writeMultiple(
+            @Nonnull JsonFormat.Printer printer,
+            @Nullable ProtoJsonWriter writer,
+            List<Message> messages,
+            Appendable out) throws IOException {
+        List<String> serialized = new ArrayList<>();
+        for (int i = 0; i < messages.size(); i++) {
+            serialized.add(serialize(i, printer, writer, messages.get(i)));
+        }
+        out.append(packMultiple(serialized));
+    }
+
     @Override
     public boolean supportsAny(Collection<MediaType> accepted) {
         return accepted.stream().anyMatch(it -> supported(it));
@@ -58,16 +141,8 @@ public abstract class ProtoConverter implements Serializer, Deserializer {
     public RpcMessage deserialize(
             HttpRequest httpRequest,
             Message.Builder builder) {
-        String contentType = httpRequest
-                .getHeaders()
-                .get(Metadata.Key.of("content-type", ASCII_STRING_MARSHALLER));
-        Charset charset = Charsets.UTF_8;
-        if (contentType != null) {
-            MediaType type = MediaType.parse(contentType);
-            charset = type.charset().or(Charsets.UTF_8);
-        }
         return new RpcMessage(
-                parse(httpRequest.getBody().orElse(null), charset, builder),
+                parse(httpRequest, httpRequest.getCharset(), builder),
                 httpRequest.getHeaders());
     }
 
@@ -76,27 +151,63 @@ public abstract class ProtoConverter implements Serializer, Deserializer {
             @Nonnull JsonFormat.Printer printer,
             @Nonnull RpcMessage message
     ) {
+        return serialize(printer, null, message);
+    }
+
+    @Override
+    public HttpResponse serialize(
+            @Nonnull JsonFormat.Printer printer,
+            @Nullable ProtoJsonWriter jsonWriter,
+            @Nonnull RpcMessage message) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            serialize(printer, jsonWriter, message, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new HttpResponse(out.toByteArray(), message.getMetadata());
+    }
+
+    @Override
+    public void serialize(
+            @Nonnull JsonFormat.Printer printer,
+            @Nonnull RpcMessage message,
+            @Nonnull OutputStream out) throws IOException {
+        serialize(printer, null, message, out);
+    }
+
+    @Override
+    public void serialize(
+            @Nonnull JsonFormat.Printer printer,
+            @Nullable ProtoJsonWriter jsonWriter,
+            @Nonnull RpcMessage message,
+            @Nonnull OutputStream out) throws IOException {
+        withContentType(message.getMetadata());
+        Writer writer = new OutputStreamWriter(out, contentType().charset().or(Charsets.UTF_8));
         if (message.getMethodType().serverSendsOneMessage()) {
-            String httpBody = !message.getBody().isEmpty() ? serialize(printer,
-                message.getBody().get(0))
-                : "";
-            return new HttpResponse(httpBody, withContentType(message.getMetadata()));
-        } else {
-            List<String> serialized = new ArrayList<>();
-            for (int i = 0; i < message.getBody().size(); i++) {
-                serialized.add(serialize(i, printer, message.getBody().get(i)));
+            if (!message.getBody().isEmpty()) {
+                write(null, printer, jsonWriter, message.getBody().get(0), writer);
             }
-            return new HttpResponse(packMultiple(serialized), withContentType(message.getMetadata()));
+        } else {
+            writeMultiple(printer, jsonWriter, message.getBody(), writer);
         }
+        writer.flush();
     }
 
     @Override
     public Function<RpcMessage, HttpResponse> serializeAsync(JsonFormat.Printer printer) {
+        return serializeAsync(printer, null);
+    }
+
+    @Override
+    public Function<RpcMessage, HttpResponse> serializeAsync(
+            JsonFormat.Printer printer,
+            @Nullable ProtoJsonWriter jsonWriter) {
         return new Function<RpcMessage, HttpResponse>() {
             @Nullable
             @Override
             public HttpResponse apply(@Nullable RpcMessage response) {
-                return serialize(printer, response);
+                return serialize(printer, jsonWriter, response);
             }
         };
     }
@@ -105,6 +216,19 @@ public abstract class ProtoConverter implements Serializer, Deserializer {
         return serialize(null, printer, message);
     }
 
+    /**
+     * @param printer JSON printer of the route
+     * @param writer JSON writer of the route, null to use the printer only
+     * @param message message to serialize
+     * @return serialized message
+     */
+    public String serialize(
+            @Nonnull JsonFormat.Printer printer,
+            @Nullable ProtoJsonWriter writer,
+            @Nonnull Message message) {
+        return serialize(null, printer, writer, message);
+    }
+
     private Metadata withContentType(Metadata headers) {
         headers.put(
                 Metadata.Key.of("content-type", ASCII_STRING_MARSHALLER),
@@ -2,11 +2,13 @@ package grpcbridge.parser;
 
 import com.google.common.base.Charsets;
 import com.google.common.base.Joiner;
-import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
+import com.google.common.escape.Escaper;
 import com.google.common.net.MediaType;
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import com.google.common.net.UrlEscapers;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.protobuf.Descriptors.FieldDescriptor;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Message;
 import com.google.protobuf.util.JsonFormat;
@@ -15,54 +17,61 @@ import grpcbridge.Exceptions;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.UnsupportedEncodingException;
-import java.lang.reflect.Type;
 import java.net.URLDecoder;
-import java.net.URLEncoder;
 import java.nio.charset.Charset;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 import static java.lang.String.format;
 
+/**
+ * Converts application/x-www-form-urlencoded bodies from and to protobuf
+ * messages. Form fields are mapped to the message fields directly, the field
+ * names are the JSON or the proto field names.
+ *
+ * <p>
+ * Nested message fields are addressed by the dot separated path, e.g.
+ * {@code address.city=Prague}, map entries by the map field name followed by
+ * the key, e.g. {@code labels.env=prod}. Repeated fields take one value per
+ * occurrence of the form field. The values are converted the same way as the
+ * JSON string values are.
+ */
 public final class ProtoFormDataConverter extends ProtoConverter {
 
     public static final ProtoFormDataConverter INSTANCE = new ProtoFormDataConverter();
-    private static final Gson gson = new Gson();
-    private static final Type type = new TypeToken<Map<String, String>>() {}.getType();
+    private static final JsonFormat.Printer DELEGATE = JsonFormat.printer();
 
     private static final MediaType contentType =
             MediaType.FORM_DATA.withCharset(Charsets.UTF_8);
+    private static final Escaper FORM_ESCAPER = UrlEscapers.urlFormParameterEscaper();
 
     private ProtoFormDataConverter() {
     }
 
     @Override
     public String serialize(Integer index, JsonFormat.Printer printer, @Nonnull Message message) {
+        return serialize(index, printer, null, message);
+    }
+
+    @Override
+    public String serialize(
+            Integer index,
+            JsonFormat.Printer printer,
+            @Nullable ProtoJsonWriter writer,
+            @Nonnull Message message) {
+        StringBuilder out = new StringBuilder();
         try {
-            String json = printer.print(message);
-            Map<String, String> msg = new Gson().fromJson(json, type);
-            msg = msg.entrySet().parallelStream()
-                    .collect(Collectors.toMap(
-                            it -> index == null ? it.getKey() : format("{%s}[%s]", it.getKey(), index),
-                            it -> {
-                                try {
-                                    return URLEncoder.encode(
-                                            it.getValue(),
-                                            contentType.charset().or(Charsets.UTF_8).name()
-                                    );
-                                } catch (UnsupportedEncodingException e) {
-                                    throw new Exceptions.ParsingException(
-                                            format("Failed to serialize a message: {%s}", message), e
-                                    );
-                                }
-                            }));
-            return Joiner.on('&').withKeyValueSeparator('=').join(msg);
+            if (writer != null && writer.supports(message.getDescriptorForType())) {
+                writeMessage(writer, index, "", message, out);
+            } else {
+                writeJson(index, "", JsonParser.parseString(printer.print(message)), out);
+            }
         } catch (InvalidProtocolBufferException e) {
             throw new Exceptions.ParsingException(
                 format("Failed to serialize a message: {%s}", message), e
             );
         }
+        return out.toString();
     }
 
     @Override
@@ -85,22 +94,172 @@ public final class ProtoFormDataConverter extends ProtoConverter {
         if (Strings.isNullOrEmpty(body)) {
             return (T) builder.build();
         }
-        Map<String, String> pairs =
-                Splitter.on('&').omitEmptyStrings().withKeyValueSeparator('=').split(body).entrySet()
-                        .parallelStream()
-                        .collect(Collectors.toMap(
-                                Map.Entry::getKey,
-                                it -> {
-                                    try {
-                                        return URLDecoder.decode(it.getValue(), charset.name());
-                                    } catch (UnsupportedEncodingException e) {
-                                        throw new Exceptions.ParsingException(
-                                                format("Failed to serialize a body: {%s}", body), e
-                                        );
-                                    }
-                                }
-                        ));
-        String json = gson.toJson(pairs);
-        return ProtoJsonConverter.INSTANCE.parse(json, charset, builder);
+
+        try {
+            int start = 0;
+            while (start <= body.length()) {
+                int end = body.indexOf('&', start);
+                if (end == -1) {
+                    end = body.length();
+                }
+                if (end > start) {
+                    int separator = body.indexOf('=', start);
+                    if (separator == -1 || separator > end) {
+                        separator = end;
+                    }
+                    String name = URLDecoder.decode(body.substring(start, separator), charset.name());
+                    String value = separator == end
+                            ? ""
+                            : URLDecoder.decode(body.substring(separator + 1, end), charset.name());
+                    mergeField(builder, name, value);
+                }
+                start = end + 1;
+            }
+        } catch (InvalidProtocolBufferException
+                | UnsupportedEncodingException
+                | IllegalArgumentException e) {
+            throw new Exceptions.ParsingException(
+                    format("Failed to deserialize a message: {%s}", body), e
+            );
+        }
+        return (T) builder.build();
+    }
+
+    private static void mergeField(
+            Message.Builder builder,
+            String name,
+            String value) throws InvalidProtocolBufferException {
+        Message.Builder current = builder;
+        int start = 0;
+        while (true) {
+            int dot = name.indexOf('.', start);
+            String segment = dot == -1 ? name.substring(start) : name.substring(start, dot);
+            FieldDescriptor field = ProtoJsonReader.fields(current.getDescriptorForType()).get(segment);
+
+            if (field != null && field.isMapField() && dot != -1) {
+                Message.Builder entry = current.newBuilderForField(field);
+                FieldDescriptor keyField = entry.getDescriptorForType().findFieldByName("key");
+                FieldDescriptor valueField = entry.getDescriptorForType().findFieldByName("value");
+                entry.setField(keyField, ProtoJsonReader.parseString(keyField, name.substring(dot + 1), entry));
+                Object entryValue = ProtoJsonReader.parseString(valueField, value, entry);
+                if (entryValue != null) {
+                    entry.setField(valueField, entryValue);
+                }
+                current.addRepeatedField(field, entry.build());
+                return;
+            } else if (field != null && dot == -1) {
+                Object fieldValue = ProtoJsonReader.parseString(field, value, current);
+                if (fieldValue == null) {
+                    return;
+                } else if (field.isRepeated()) {
+                    current.addRepeatedField(field, fieldValue);
+                } else {
+                    current.setField(field, fieldValue);
+                }
+                return;
+            } else if (field == null
+                    || field.isRepeated()
+                    || field.getJavaType() != FieldDescriptor.JavaType.MESSAGE) {
+                throw new InvalidProtocolBufferException(
+                        "Cannot find field: " + name
+                                + " in message " + builder.getDescriptorForType().getFullName());
+            }
+
+            current = current.getFieldBuilder(field);
+            start = dot + 1;
+        }
+    }
+
+    private static void writeMessage(
+            ProtoJsonWriter writer,
+            @Nullable Integer index,
+            String prefix,
+            Message message,
+            StringBuilder out) {
+        writer.forEachField(message, (fieldName, field) ->
+                writeField(writer, index, prefix + fieldName, field, message.getField(field), out));
+    }
+
+    private static void writeField(
+            ProtoJsonWriter writer,
+            @Nullable Integer index,
+            String name,
+            FieldDescriptor field,
+            Object value,
+            StringBuilder out) {
+        if (field.isMapField()) {
+            FieldDescriptor keyField = field.getMessageType().findFieldByName("key");
+            FieldDescriptor valueField = field.getMessageType().findFieldByName("value");
+            for (Object item : (List<?>) value) {
+                Message entry = (Message) item;
+                String key = name + '.' + writer.toText(keyField, entry.getField(keyField));
+                writeValue(writer, index, key, valueField, entry.getField(valueField), out);
+            }
+        } else if (field.isRepeated()) {
+            for (Object item : (List<?>) value) {
+                writeValue(writer, index, name, field, item, out);
+            }
+        } else {
+            writeValue(writer, index, name, field, value, out);
+        }
+    }
+
+    private static void writeValue(
+            ProtoJsonWriter writer,
+            @Nullable Integer index,
+            String name,
+            FieldDescriptor field,
+            Object value,
+            StringBuilder out) {
+        if (field.getJavaType() != FieldDescriptor.JavaType.MESSAGE) {
+            writePair(index, name, writer.toText(field, value), out);
+        } else if (writer.supports(field.getMessageType())
+                && !ProtoJsonReader.isWellKnownType(field.getMessageType())) {
+            writeMessage(writer, index, name + '.', (Message) value, out);
+        } else {
+            try {
+                writeJson(index, name, JsonParser.parseString(DELEGATE.print((Message) value)), out);
+            } catch (InvalidProtocolBufferException e) {
+                throw new Exceptions.ParsingException(
+                        format("Failed to serialize a message: {%s}", value), e);
+            }
+        }
+    }
+
+    /**
+     * Writes the printed JSON value, used for the well-known types and for
+     * the messages the {@link ProtoJsonWriter} does not support.
+     */
+    private static void writeJson(
+            @Nullable Integer index,
+            String name,
+            JsonElement json,
+            StringBuilder out) {
+        if (json.isJsonObject()) {
+            String prefix = name.isEmpty() ? "" : name + '.';
+            for (Map.Entry<String, JsonElement> entry : json.getAsJsonObject().entrySet()) {
+                writeJson(index, prefix + entry.getKey(), entry.getValue(), out);
+            }
+        } else if (json.isJsonArray()) {
+            for (JsonElement item : json.getAsJsonArray()) {
+                writeJson(index, name, item, out);
+            }
+        } else if (json.isJsonPrimitive()) {
+            writePair(index, name, json.getAsString(), out);
+        }
+    }
+
+    private static void writePair(
+            @Nullable Integer index,
+            String name,
+            String value,
+            StringBuilder out) {
+        if (out.length() > 0) {
+            out.append('&');
+        }
+        String key = FORM_ESCAPER.escape(name);
+        out.append(index == null ? key : format("{%s}[%s]", key, index))
+                .append('=')
+                .append(FORM_ESCAPER.escape(value));
     }
 }
@@ -2,19 +2,26 @@ package grpcbridge.parser;
 
 import com.google.common.base.Strings;
 import com.google.common.net.MediaType;
-import com.google.gson.Gson;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Message;
 import com.google.protobuf.util.JsonFormat;
 import grpcbridge.Exceptions;
 import grpcbridge.Exceptions.ParsingException;
+import grpcbridge.http.HttpRequest;
+import grpcbridge.rpc.RpcMessage;
+import io.grpc.Metadata;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.Optional;
 
 import static java.lang.String.format;
 
@@ -25,48 +32,153 @@ public final class ProtoJsonConverter extends ProtoConverter {
 
     public static final ProtoJsonConverter INSTANCE = new ProtoJsonConverter();
     private static final MediaType contentType = MediaType.JSON_UTF_8;
+    private static final Metadata.Key<String> CONTENT_TYPE =
+            Metadata.Key.of("content-type", Metadata.ASCII_STRING_MARSHALLER);
 
     private ProtoJsonConverter() {
     }
 
-    @SuppressWarnings("rawtypes")
+    /**
+     * Parses a JSON array, or newline-delimited JSON, of messages.
+     *
+     * @param body JSON body
+     * @param charset body charset
+     * @param builder builder of the message type
+     * @return parsed messages
+     */
+    @SuppressWarnings("unchecked")
     public <T extends Message> List<T> parseStream(
             @Nullable String body,
             Charset charset,
             T.Builder builder) {
         List<T> messages = new ArrayList<>();
         if (!Strings.isNullOrEmpty(body)) {
-            /** Parses the containing json which is not gRPC parsable
-             * then splits them into individual json strings for each message so JsonFormat
-             * can be used to deserialize them */
-            Gson gson = new Gson();
-            Map[] jsonMsgs = gson.fromJson(body, Map[].class);
-            for (Map message : jsonMsgs) {
-                messages.add(parse(gson.toJson(message), charset, builder));
-                builder.clear();
+            JsonMessageIterator iterator =
+                    new JsonMessageIterator(new StringReader(body), builder.getDefaultInstanceForType());
+            while (iterator.hasNext()) {
+                messages.add((T) iterator.next());
             }
         }
         return messages;
     }
 
+    /**
+     * Decodes the array elements, or newline-delimited values, of the body
+     * one at a time, as the method implementation asks for them.
+     */
+    @Override
+    public RpcMessage deserializeStream(HttpRequest httpRequest, Message.Builder builder) {
+        Optional<Reader> body = httpRequest.getBodyReader();
+        if (!body.isPresent()) {
+            return deserialize(httpRequest, builder);
+        }
+        return RpcMessage.streaming(
+                new JsonMessageIterator(body.get(), builder.getDefaultInstanceForType()),
+                httpRequest.getHeaders());
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     public <T extends Message> T parse(@Nullable String body, Charset charset, T.Builder builder) {
         if (!Strings.isNullOrEmpty(body)) {
             try {
-                JsonFormat.parser().merge(body, builder);
-            } catch (InvalidProtocolBufferException e) {
+                ProtoJsonReader.merge(new StringReader(body), builder);
+            } catch (IOException e) {
                 throw new ParsingException(format("Failed to deserialize a message: {%s}", body), e);
             }
         }
         return (T) builder.build();
     }
 
+    @SuppressWarnings("unchecked")
+    @Override
+    protected <T extends Message> T parse(HttpRequest request, Charset charset, T.Builder builder) {
+        Optional<Reader> body = request.getBodyReader();
+        if (body.isPresent()) {
+            try {
+                ProtoJsonReader.merge(body.get(), builder);
+            } catch (IOException e) {
+                throw new ParsingException(
+                        format("Failed to deserialize a message: {%s}", request.getBody().orElse(null)),
+                        e);
+            }
+        }
+        return (T) builder.build();
+    }
+
+    @Override
+    protected void write(
+            @Nullable Integer index,
+            @Nonnull JsonFormat.Printer printer,
+            @Nullable ProtoJsonWriter writer,
+            @Nonnull Message message,
+            Appendable out) throws IOException {
+        try {
+            printer.appendTo(message, out);
+        } catch (InvalidProtocolBufferException e) {
+            throw new Exceptions.ParsingException(
+                    format("Failed to serialize a message: {%s}", message), e
+            );
+        }
+    }
+
+    @Override
+    public void serialize(
+            @Nonnull JsonFormat.Printer printer,
+            @Nullable ProtoJsonWriter writer,
+            @Nonnull RpcMessage message,
+            @Nonnull OutputStream out) throws IOException {
+        List<Message> body = message.getBody();
+        if (writer == null
+                || (!body.isEmpty() && !writer.supports(body.get(0).getDescriptorForType()))) {
+            super.serialize(printer, null, message, out);
+            return;
+        }
+
+        message.getMetadata().put(CONTENT_TYPE, contentType.toString());
+        if (message.getMethodType().serverSendsOneMessage()) {
+            if (!body.isEmpty()) {
+                writer.write(body.get(0), out);
+            }
+        } else {
+            writer.writeArray(body, out);
+        }
+        out.flush();
+    }
+
+    @Override
+    protected void writeMultiple(
+            @Nonnull JsonFormat.Printer printer,
+            @Nullable ProtoJsonWriter writer,
+            List<Message> messages,
+            Appendable out) throws IOException {
+        out.append('[');
+        for (int i = 0; i < messages.size(); i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            write(i, printer, writer, messages.get(i), out);
+        }
+        out.append(']');
+    }
+
     @Override
     public String serialize(
             @Nullable Integer index,
             @Nonnull JsonFormat.Printer printer,
             @Nonnull Message message) {
+        return serialize(index, printer, null, message);
+    }
+
+    @Override
+    public String serialize(
+            @Nullable Integer index,
+            @Nonnull JsonFormat.Printer printer,
+            @Nullable ProtoJsonWriter writer,
+            @Nonnull Message message) {
+        if (writer != null && writer.supports(message.getDescriptorForType())) {
+            return new String(writer.toByteArray(message), StandardCharsets.UTF_8);
+        }
         try {
             return printer.print(message);
         } catch (InvalidProtocolBufferException e) {
@@ -0,0 +1,537 @@
+package grpcbridge.parser;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.BaseEncoding;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.EnumDescriptor;
+import com.google.protobuf.Descriptors.EnumValueDescriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.NullValue;
+import com.google.protobuf.Value;
+import com.google.protobuf.util.JsonFormat;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+
+/**
+ * Merges JSON into a {@link Message.Builder} while reading the tokens, the
+ * JSON tree of the whole body is never built. Fields are looked up in a table
+ * created once per message type, keyed by both the JSON and the proto field
+ * names.
+ *
+ * <p>
+ * The accepted input, the parsed values and the error messages are the same
+ * as of {@link JsonFormat#parser()}. Well-known types, wrappers included, are
+ * still merged by {@link JsonFormat} from the subtree of their value.
+ */
+public final class ProtoJsonReader {
+    private static final int RECURSION_LIMIT = 100;
+    private static final JsonFormat.Parser DELEGATE = JsonFormat.parser();
+    private static final Set<String> WELL_KNOWN_TYPES = ImmutableSet.of(
+            "google.protobuf.Any",
+            "google.protobuf.BoolValue",
+            "google.protobuf.Int32Value",
+            "google.protobuf.UInt32Value",
+            "google.protobuf.Int64Value",
+            "google.protobuf.UInt64Value",
+            "google.protobuf.FloatValue",
+            "google.protobuf.DoubleValue",
+            "google.protobuf.StringValue",
+            "google.protobuf.BytesValue",
+            "google.protobuf.Timestamp",
+            "google.protobuf.Duration",
+            "google.protobuf.FieldMask",
+            "google.protobuf.Struct",
+            "google.protobuf.ListValue",
+            "google.protobuf.Value");
+
+    private static final BigInteger MAX_UINT32 = new BigInteger("FFFFFFFF", 16);
+    private static final BigInteger MAX_UINT64 = new BigInteger("FFFFFFFFFFFFFFFF", 16);
+    private static final double EPSILON = 1e-6;
+    private static final BigDecimal MORE_THAN_ONE = new BigDecimal(String.valueOf(1.0 + EPSILON));
+    private static final BigDecimal MAX_DOUBLE =
+            new BigDecimal(String.valueOf(Double.MAX_VALUE)).multiply(MORE_THAN_ONE);
+    private static final BigDecimal MIN_DOUBLE =
+            new BigDecimal(String.valueOf(-Double.MAX_VALUE)).multiply(MORE_THAN_ONE);
+
+    private static final Map<Descriptor, Map<String, FieldDescriptor>> FIELDS =
+            new ConcurrentHashMap<>();
+
+    private ProtoJsonReader() {
+    }
+
+    /**
+     * @param type message type
+     * @return true if the type is a well-known type with its own JSON
+     *      representation, e.g. a wrapper or a timestamp, which is read and
+     *      written by {@link JsonFormat}
+     */
+    public static boolean isWellKnownType(Descriptor type) {
+        return WELL_KNOWN_TYPES.contains(type.getFullName());
+    }
+
+    /**
+     * Reads a single JSON value from the reader and merges it into the
+     * builder. Same as in {@link JsonFormat}, anything following the value is
+     * not read.
+     *
+     * @param in JSON input
+     * @param builder builder to merge into
+     * @throws InvalidProtocolBufferException if the input is not valid JSON
+     *      of the builder message type
+     * @throws IOException if reading the input fails
+     */
+    public static void merge(Reader in, Message.Builder builder) throws IOException {
+        JsonReader reader = new JsonReader(in);
+        // Same as JsonFormat, that reads the input with JsonParser.
+        reader.setLenient(true);
+        try {
+            reader.peek();
+        } catch (EOFException e) {
+            mergeElement(JsonNull.INSTANCE, builder);
+            return;
+        } catch (MalformedJsonException e) {
+            throw invalid(e.toString(), e);
+        }
+        merge(reader, builder);
+    }
+
+    /**
+     * Reads the next JSON value from the reader and merges it into the
+     * builder. Used to read the messages of a stream one by one, e.g. the
+     * elements of an array.
+     *
+     * @param reader JSON reader positioned before the value
+     * @param builder builder to merge into
+     * @throws InvalidProtocolBufferException if the value is not valid JSON
+     *      of the builder message type
+     * @throws IOException if reading the input fails
+     */
+    public static void merge(JsonReader reader, Message.Builder builder) throws IOException {
+        try {
+            mergeMessage(reader, builder, 0);
+        } catch (MalformedJsonException | EOFException e) {
+            throw invalid(e.toString(), e);
+        } catch (JsonIOException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw invalid(e.getMessage(), e);
+        } catch (RuntimeException e) {
+            throw invalid(e.getMessage(), e);
+        }
+    }
+
+    private static void mergeMessage(
+            JsonReader reader,
+            Message.Builder builder,
+            int depth) throws IOException {
+        Descriptor type = builder.getDescriptorForType();
+        if (isWellKnownType(type)) {
+            mergeElement(JsonParser.parseReader(reader), builder);
+            return;
+        } else if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            throw invalid("Expect message object but got: " + JsonParser.parseReader(reader));
+        }
+
+        Map<String, FieldDescriptor> fields = fields(type);
+        String[] names = new String[type.getFields().size()];
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            FieldDescriptor field = fields.get(name);
+            if (field == null) {
+                throw invalid("Cannot find field: " + name + " in message " + type.getFullName());
+            } else if (name.equals(names[field.getIndex()])) {
+                // The last of the duplicate keys wins, same as in a JSON tree.
+                builder.clearField(field);
+            }
+            names[field.getIndex()] = name;
+            mergeField(reader, field, builder, depth);
+        }
+        reader.endObject();
+    }
+
+    private static void mergeElement(JsonElement json, Message.Builder builder)
+            throws InvalidProtocolBufferException {
+        if (!isWellKnownType(builder.getDescriptorForType())) {
+            throw invalid("Expect message object but got: " + json);
+        }
+        DELEGATE.merge(json.toString(), builder);
+    }
+
+    private static void mergeField(
+            JsonReader reader,
+            FieldDescriptor field,
+            Message.Builder builder,
+            int depth) throws IOException {
+        if (field.isRepeated()
+                ? builder.getRepeatedFieldCount(field) > 0
+                : builder.hasField(field)) {
+            throw invalid("Field " + field.getFullName() + " has already been set.");
+        }
+
+        if (field.isRepeated() && reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+        } else if (field.isMapField()) {
+            mergeMapField(reader, field, builder, depth);
+        } else if (field.isRepeated()) {
+            mergeRepeatedField(reader, field, builder, depth);
+        } else {
+            Object value = parseFieldValue(reader, field, builder, depth);
+            if (value == null) {
+                return;
+            }
+            if (field.getContainingOneof() != null) {
+                FieldDescriptor other = builder.getOneofFieldDescriptor(field.getContainingOneof());
+                if (other != null) {
+                    throw invalid("Cannot set field " + field.getFullName()
+                            + " because another field " + other.getFullName()
+                            + " belonging to the same oneof has already been set ");
+                }
+            }
+            builder.setField(field, value);
+        }
+    }
+
+    private static void mergeMapField(
+            JsonReader reader,
+            FieldDescriptor field,
+            Message.Builder builder,
+            int depth) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            throw invalid("Expect a map object but found: " + JsonParser.parseReader(reader));
+        }
+        Descriptor type = field.getMessageType();
+        FieldDescriptor keyField = type.findFieldByName("key");
+        FieldDescriptor valueField = type.findFieldByName("value");
+        if (keyField == null || valueField == null) {
+            throw invalid("Invalid map field: " + field.getFullName());
+        }
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            Message.Builder entry = builder.newBuilderForField(field);
+            Object key = parseFieldValue(keyField, new JsonPrimitive(reader.nextName()), entry);
+            Object value = parseFieldValue(reader, valueField, entry, depth);
+            if (value == null) {
+                throw invalid("Map value cannot be null.");
+            }
+            entry.setField(keyField, key);
+            entry.setField(valueField, value);
+            builder.addRepeatedField(field, entry.build());
+        }
+        reader.endObject();
+    }
+
+    private static void mergeRepeatedField(
+            JsonReader reader,
+            FieldDescriptor field,
+            Message.Builder builder,
+            int depth) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+            throw invalid("Expected an array for " + field.getName()
+                    + " but found " + JsonParser.parseReader(reader));
+        }
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            Object value = parseFieldValue(reader, field, builder, depth);
+            if (value == null) {
+                throw invalid("Repeated field elements cannot be null in field: "
+                        + field.getFullName());
+            }
+            builder.addRepeatedField(field, value);
+        }
+        reader.endArray();
+    }
+
+    private static Object parseFieldValue(
+            JsonReader reader,
+            FieldDescriptor field,
+            Message.Builder builder,
+            int depth) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.NULL) {
+            reader.nextNull();
+            return parseFieldValue(field, JsonNull.INSTANCE, builder);
+        } else if (field.getJavaType() == FieldDescriptor.JavaType.MESSAGE) {
+            if (depth >= RECURSION_LIMIT) {
+                throw invalid("Hit recursion limit.");
+            }
+            Message.Builder child = builder.newBuilderForField(field);
+            mergeMessage(reader, child, depth + 1);
+            return child.build();
+        } else if (token == JsonToken.STRING) {
+            return parseFieldValue(field, new JsonPrimitive(reader.nextString()), builder);
+        }
+        return parseFieldValue(field, JsonParser.parseReader(reader), builder);
+    }
+
+    /**
+     * Converts a scalar, enum or null JSON value, same as JsonFormat does.
+     */
+    private static Object parseFieldValue(
+            FieldDescriptor field,
+            JsonElement json,
+            Message.Builder builder) throws InvalidProtocolBufferException {
+        if (json.isJsonNull()) {
+            if (field.getJavaType() == FieldDescriptor.JavaType.MESSAGE
+                    && field.getMessageType().getFullName().equals(Value.getDescriptor().getFullName())) {
+                Value value = Value.newBuilder().setNullValueValue(0).build();
+                return builder.newBuilderForField(field).mergeFrom(value.toByteString()).build();
+            } else if (field.getJavaType() == FieldDescriptor.JavaType.ENUM
+                    && field.getEnumType().getFullName().equals(NullValue.getDescriptor().getFullName())) {
+                return field.getEnumType().findValueByNumber(0);
+            }
+            return null;
+        } else if (json.isJsonObject()) {
+            throw invalid(String.format(
+                    "Invalid value: %s for expected type: %s", json, field.getType()));
+        }
+
+        switch (field.getType()) {
+            case INT32:
+            case SINT32:
+            case SFIXED32:
+                return parseInt32(json);
+            case INT64:
+            case SINT64:
+            case SFIXED64:
+                return parseInt64(json);
+            case BOOL:
+                return parseBool(json);
+            case FLOAT:
+                return parseFloat(json);
+            case DOUBLE:
+                return parseDouble(json);
+            case UINT32:
+            case FIXED32:
+                return parseUint32(json);
+            case UINT64:
+            case FIXED64:
+                return parseUint64(json);
+            case STRING:
+                return json.getAsString();
+            case BYTES:
+                return parseBytes(json);
+            case ENUM:
+                return parseEnum(field.getEnumType(), json);
+            default:
+                throw invalid("Invalid field type: " + field.getType());
+        }
+    }
+
+    private static int parseInt32(JsonElement json) throws InvalidProtocolBufferException {
+        try {
+            return Integer.parseInt(json.getAsString());
+        } catch (RuntimeException e) {
+            // Fall through, the value can be in the exponent or decimal form.
+        }
+        try {
+            return new BigDecimal(json.getAsString()).intValueExact();
+        } catch (RuntimeException e) {
+            throw invalid("Not an int32 value: " + json, e);
+        }
+    }
+
+    private static long parseInt64(JsonElement json) throws InvalidProtocolBufferException {
+        try {
+            return Long.parseLong(json.getAsString());
+        } catch (RuntimeException e) {
+            // Fall through, the value can be in the exponent or decimal form.
+        }
+        try {
+            return new BigDecimal(json.getAsString()).longValueExact();
+        } catch (RuntimeException e) {
+            throw invalid("Not an int64 value: " + json, e);
+        }
+    }
+
+    private static int parseUint32(JsonElement json) throws InvalidProtocolBufferException {
+        try {
+            long result = Long.parseLong(json.getAsString());
+            if (result < 0 || result > 0xFFFFFFFFL) {
+                throw invalid("Out of range uint32 value: " + json);
+            }
+            return (int) result;
+        } catch (RuntimeException e) {
+            // Fall through, the value can be in the exponent or decimal form.
+        }
+        try {
+            BigInteger value = new BigDecimal(json.getAsString()).toBigIntegerExact();
+            if (value.signum() < 0 || value.compareTo(MAX_UINT32) > 0) {
+                throw invalid("Out of range uint32 value: " + json);
+            }
+            return value.intValue();
+        } catch (RuntimeException e) {
+            throw invalid("Not an uint32 value: " + json, e);
+        }
+    }
+
+    private static long parseUint64(JsonElement json) throws InvalidProtocolBufferException {
+        try {
+            BigInteger value = new BigDecimal(json.getAsString()).toBigIntegerExact();
+            if (value.compareTo(BigInteger.ZERO) < 0 || value.compareTo(MAX_UINT64) > 0) {
+                throw invalid("Out of range uint64 value: " + json);
+            }
+            return value.longValue();
+        } catch (RuntimeException e) {
+            throw invalid("Not an uint64 value: " + json, e);
+        }
+    }
+
+    private static boolean parseBool(JsonElement json) throws InvalidProtocolBufferException {
+        if (json.getAsString().equals("true")) {
+            return true;
+        } else if (json.getAsString().equals("false")) {
+            return false;
+        }
+        throw invalid("Invalid bool value: " + json);
+    }
+
+    private static float parseFloat(JsonElement json) throws InvalidProtocolBufferException {
+        String value = json.getAsString();
+        if (value.equals("NaN")) {
+            return Float.NaN;
+        } else if (value.equals("Infinity")) {
+            return Float.POSITIVE_INFINITY;
+        } else if (value.equals("-Infinity")) {
+            return Float.NEGATIVE_INFINITY;
+        }
+        try {
+            double result = Double.parseDouble(value);
+            if (result > Float.MAX_VALUE * (1.0 + EPSILON)
+                    || result < -Float.MAX_VALUE * (1.0 + EPSILON)) {
+                throw invalid("Out of range float value: " + json);
+            }
+            return (float) result;
+        } catch (RuntimeException e) {
+            throw invalid("Not a float value: " + json, e);
+        }
+    }
+
+    private static double parseDouble(JsonElement json) throws InvalidProtocolBufferException {
+        String value = json.getAsString();
+        if (value.equals("NaN")) {
+            return Double.NaN;
+        } else if (value.equals("Infinity")) {
+            return Double.POSITIVE_INFINITY;
+        } else if (value.equals("-Infinity")) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        try {
+            BigDecimal result = new BigDecimal(value);
+            if (result.compareTo(MAX_DOUBLE) > 0 || result.compareTo(MIN_DOUBLE) < 0) {
+                throw invalid("Out of range double value: " + json);
+            }
+            return result.doubleValue();
+        } catch (RuntimeException e) {
+            throw invalid("Not a double value: " + json, e);
+        }
+    }
+
+    private static ByteString parseBytes(JsonElement json) {
+        try {
+            return ByteString.copyFrom(BaseEncoding.base64().decode(json.getAsString()));
+        } catch (IllegalArgumentException e) {
+            return ByteString.copyFrom(BaseEncoding.base64Url().decode(json.getAsString()));
+        }
+    }
+
+    private static EnumValueDescriptor parseEnum(EnumDescriptor type, JsonElement json)
+            throws InvalidProtocolBufferException {
+        String name = json.getAsString();
+        EnumValueDescriptor result = type.findValueByName(name);
+        if (result == null) {
+            try {
+                int number = parseInt32(json);
+                result = type.isClosed()
+                        ? type.findValueByNumber(number)
+                        : type.findValueByNumberCreatingIfUnknown(number);
+            } catch (InvalidProtocolBufferException e) {
+                // Fall through, neither a name nor a number.
+            }
+            if (result == null) {
+                throw invalid("Invalid enum value: " + name + " for enum type: " + type.getFullName());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Converts a string, e.g. a form field value, the same way as a JSON
+     * string value of the field is converted.
+     *
+     * @param field singular field or repeated field element to convert to
+     * @param value string value
+     * @param builder builder of the message containing the field
+     * @return field value, null if the value leaves the field unset
+     * @throws InvalidProtocolBufferException if the value is not valid for
+     *      the field
+     */
+    public static @Nullable Object parseString(
+            FieldDescriptor field,
+            String value,
+            Message.Builder builder) throws InvalidProtocolBufferException {
+        JsonPrimitive json = new JsonPrimitive(value);
+        if (field.getJavaType() != FieldDescriptor.JavaType.MESSAGE) {
+            return parseFieldValue(field, json, builder);
+        }
+        Message.Builder child = builder.newBuilderForField(field);
+        try {
+            mergeElement(json, child);
+        } catch (RuntimeException e) {
+            throw invalid(e.getMessage(), e);
+        }
+        return child.build();
+    }
+
+    /**
+     * @param type message type
+     * @return fields of the type by both the JSON and the proto names
+     */
+    public static Map<String, FieldDescriptor> fields(Descriptor type) {
+        Map<String, FieldDescriptor> fields = FIELDS.get(type);
+        if (fields == null) {
+            Map<String, FieldDescriptor> byName = new HashMap<>();
+            for (FieldDescriptor field : type.getFields()) {
+                byName.put(field.getName(), field);
+                byName.put(field.getJsonName(), field);
+            }
+            fields = Collections.unmodifiableMap(byName);
+            FIELDS.put(type, fields);
+        }
+        return fields;
+    }
+
+    private static InvalidProtocolBufferException invalid(String message) {
+        return new InvalidProtocolBufferException(message);
+    }
+
+    private static InvalidProtocolBufferException invalid(String message, Throwable cause) {
+        InvalidProtocolBufferException result = new InvalidProtocolBufferException(message);
+        result.initCause(cause);
+        return result;
+    }
+}
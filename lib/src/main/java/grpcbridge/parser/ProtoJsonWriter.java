@@ -0,0 +1,691 @@
+package grpcbridge.parser;
+
+import static java.lang.String.format;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.BaseEncoding;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.EnumValueDescriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.util.JsonFormat;
+import grpcbridge.Exceptions.ParsingException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import javax.annotation.Nullable;
+
+/**
+ * Writes protobuf messages as UTF-8 encoded JSON straight into bytes. The
+ * output is byte-identical to the {@link JsonFormat.Printer} configured with
+ * the same options, but the writer does not build the field maps of
+ * {@link Message#getAllFields()} for every message. Instead it compiles a
+ * write plan per message type on the first use: the fields in the printing
+ * order, their encoded names and whether their default values are printed.
+ *
+ * <p>
+ * Messages containing google.protobuf.Any, Struct, Value or ListValue, or
+ * declaring extensions, are not supported, see {@link #supports}. The other
+ * well-known types are printed with {@link JsonFormat}.
+ *
+ * <p>
+ * The writer of a route is created next to its printer, see
+ * {@link grpcbridge.route.Route#getJsonWriter()}, and handed to the
+ * serializers together with it.
+ */
+public final class ProtoJsonWriter {
+    private static final Set<String> UNSUPPORTED_TYPES = ImmutableSet.of(
+            "google.protobuf.Any",
+            "google.protobuf.Struct",
+            "google.protobuf.Value",
+            "google.protobuf.ListValue");
+    private static final Set<String> DELEGATED_TYPES = ImmutableSet.of(
+            "google.protobuf.BoolValue",
+            "google.protobuf.Int32Value",
+            "google.protobuf.UInt32Value",
+            "google.protobuf.Int64Value",
+            "google.protobuf.UInt64Value",
+            "google.protobuf.FloatValue",
+            "google.protobuf.DoubleValue",
+            "google.protobuf.StringValue",
+            "google.protobuf.BytesValue",
+            "google.protobuf.Timestamp",
+            "google.protobuf.Duration",
+            "google.protobuf.FieldMask");
+    private static final JsonFormat.Printer DELEGATE = JsonFormat.printer();
+
+    private static final byte[][] ESCAPES = new byte[128][];
+    private static final byte[] INDENT = "  ".getBytes(StandardCharsets.US_ASCII);
+
+    static {
+        for (int i = 0; i < 0x20; i++) {
+            ESCAPES[i] = ascii(format("\\u%04x", i));
+        }
+        ESCAPES['"'] = ascii("\\\"");
+        ESCAPES['\\'] = ascii("\\\\");
+        ESCAPES['\t'] = ascii("\\t");
+        ESCAPES['\b'] = ascii("\\b");
+        ESCAPES['\n'] = ascii("\\n");
+        ESCAPES['\r'] = ascii("\\r");
+        ESCAPES['\f'] = ascii("\\f");
+        // Gson, used by JsonFormat for strings, escapes HTML characters.
+        ESCAPES['<'] = ascii("\\u003c");
+        ESCAPES['>'] = ascii("\\u003e");
+        ESCAPES['&'] = ascii("\\u0026");
+        ESCAPES['='] = ascii("\\u003d");
+        ESCAPES['\''] = ascii("\\u0027");
+    }
+
+    private final boolean preservingProtoFieldNames;
+    private final boolean alwaysOutputDefaultValueFields;
+    private final Set<FieldDescriptor> includingDefaultValueFields;
+    private final boolean printingEnumsAsInts;
+    private final boolean omittingInsignificantWhitespace;
+    private final Map<Descriptor, Plan> plans = new ConcurrentHashMap<>();
+    private final Map<Descriptor, Boolean> supported = new ConcurrentHashMap<>();
+    private volatile ProtoJsonWriter compact;
+
+    private ProtoJsonWriter(
+            boolean preservingProtoFieldNames,
+            boolean alwaysOutputDefaultValueFields,
+            Set<FieldDescriptor> includingDefaultValueFields,
+            boolean printingEnumsAsInts,
+            boolean omittingInsignificantWhitespace) {
+        this.preservingProtoFieldNames = preservingProtoFieldNames;
+        this.alwaysOutputDefaultValueFields = alwaysOutputDefaultValueFields;
+        this.includingDefaultValueFields = includingDefaultValueFields;
+        this.printingEnumsAsInts = printingEnumsAsInts;
+        this.omittingInsignificantWhitespace = omittingInsignificantWhitespace;
+    }
+
+    /**
+     * @return writer with the default options of {@link JsonFormat#printer()}
+     */
+    public static ProtoJsonWriter create() {
+        return new ProtoJsonWriter(false, false, Collections.emptySet(), false, false);
+    }
+
+    /**
+     * Same as {@link JsonFormat.Printer#preservingProtoFieldNames()}.
+     *
+     * @return new writer
+     */
+    public ProtoJsonWriter preservingProtoFieldNames() {
+        return new ProtoJsonWriter(
+                true,
+                alwaysOutputDefaultValueFields,
+                includingDefaultValueFields,
+                printingEnumsAsInts,
+                omittingInsignificantWhitespace);
+    }
+
+    /**
+     * Same as {@link JsonFormat.Printer#includingDefaultValueFields()}.
+     *
+     * @return new writer
+     */
+    public ProtoJsonWriter includingDefaultValueFields() {
+        return new ProtoJsonWriter(
+                preservingProtoFieldNames,
+                true,
+                Collections.emptySet(),
+                printingEnumsAsInts,
+                omittingInsignificantWhitespace);
+    }
+
+    /**
+     * Same as {@link JsonFormat.Printer#includingDefaultValueFields(Set)}.
+     *
+     * @param fields fields to always print
+     * @return new writer
+     */
+    public ProtoJsonWriter includingDefaultValueFields(Set<FieldDescriptor> fields) {
+        return new ProtoJsonWriter(
+                preservingProtoFieldNames,
+                false,
+                Collections.unmodifiableSet(new HashSet<>(fields)),
+                printingEnumsAsInts,
+                omittingInsignificantWhitespace);
+    }
+
+    /**
+     * Same as {@link JsonFormat.Printer#printingEnumsAsInts()}.
+     *
+     * @return new writer
+     */
+    public ProtoJsonWriter printingEnumsAsInts() {
+        return new ProtoJsonWriter(
+                preservingProtoFieldNames,
+                alwaysOutputDefaultValueFields,
+                includingDefaultValueFields,
+                true,
+                omittingInsignificantWhitespace);
+    }
+
+    /**
+     * Same as {@link JsonFormat.Printer#omittingInsignificantWhitespace()},
+     * the compact writer is created once and reused.
+     *
+     * @return compact writer
+     */
+    public ProtoJsonWriter omittingInsignificantWhitespace() {
+        if (omittingInsignificantWhitespace) {
+            return this;
+        }
+        ProtoJsonWriter result = compact;
+        if (result == null) {
+            result = new ProtoJsonWriter(
+                    preservingProtoFieldNames,
+                    alwaysOutputDefaultValueFields,
+                    includingDefaultValueFields,
+                    printingEnumsAsInts,
+                    true);
+            compact = result;
+        }
+        return result;
+    }
+
+    /**
+     * @param type message type
+     * @return true if messages of the type can be written
+     */
+    public boolean supports(Descriptor type) {
+        Boolean result = supported.get(type);
+        if (result == null) {
+            result = supports(type, new HashSet<>());
+            supported.put(type, result);
+        }
+        return result;
+    }
+
+    /**
+     * Writes a single message. The JSON is written to the stream in chunks
+     * while being produced, it is never buffered as a whole.
+     *
+     * @param message message to write, its type must be supported
+     * @param out stream to write to
+     * @throws IOException if writing to the stream fails
+     */
+    public void write(Message message, OutputStream out) throws IOException {
+        Output output = new Output(out);
+        try {
+            writeMessage(message, 0, output);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        output.writeTo(out);
+    }
+
+    /**
+     * Writes the messages as a JSON array without any whitespace between
+     * the elements, same as {@link ProtoJsonConverter} does.
+     *
+     * @param messages messages to write, their type must be supported
+     * @param out stream to write to
+     * @throws IOException if writing to the stream fails
+     */
+    public void writeArray(List<? extends Message> messages, OutputStream out) throws IOException {
+        Output output = new Output(out);
+        try {
+            output.write('[');
+            for (int i = 0; i < messages.size(); i++) {
+                if (i > 0) {
+                    output.write(',');
+                }
+                writeMessage(messages.get(i), 0, output);
+            }
+            output.write(']');
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        output.writeTo(out);
+    }
+
+    /**
+     * @param message message to write, its type must be supported
+     * @return UTF-8 encoded JSON
+     */
+    public byte[] toByteArray(Message message) {
+        Output output = new Output();
+        writeMessage(message, 0, output);
+        return output.toByteArray();
+    }
+
+    /**
+     * Calls the action for each field of the message this writer prints, in
+     * the printing order, together with the printed field name.
+     *
+     * @param message message to list the fields of
+     * @param action action taking the printed name and the field
+     */
+    public void forEachField(Message message, BiConsumer<String, FieldDescriptor> action) {
+        for (FieldPlan field : plan(message.getDescriptorForType()).fields) {
+            FieldDescriptor descriptor = field.descriptor;
+            boolean present = descriptor.isRepeated()
+                    ? message.getRepeatedFieldCount(descriptor) > 0
+                    : message.hasField(descriptor);
+            if (present || field.printDefault) {
+                action.accept(field.fieldName, descriptor);
+            }
+        }
+    }
+
+    /**
+     * Returns the scalar or enum value as printed, without the quotes. Used
+     * by the converters writing the fields as text, e.g. the form data.
+     *
+     * @param field field of a scalar or enum type
+     * @param value field value, a single element for repeated fields
+     * @return printed value
+     */
+    public String toText(FieldDescriptor field, Object value) {
+        switch (field.getType()) {
+            case INT32:
+            case SINT32:
+            case SFIXED32:
+                return Integer.toString((Integer) value);
+            case INT64:
+            case SINT64:
+            case SFIXED64:
+                return Long.toString((Long) value);
+            case UINT32:
+            case FIXED32:
+                return Integer.toUnsignedString((Integer) value);
+            case UINT64:
+            case FIXED64:
+                return Long.toUnsignedString((Long) value);
+            case BOOL:
+            case FLOAT:
+            case DOUBLE:
+                return value.toString();
+            case STRING:
+                return (String) value;
+            case BYTES:
+                return BaseEncoding.base64().encode(((ByteString) value).toByteArray());
+            case ENUM:
+                EnumValueDescriptor enumValue = (EnumValueDescriptor) value;
+                if (printingEnumsAsInts || enumValue.getIndex() == -1) {
+                    return Integer.toString(enumValue.getNumber());
+                }
+                return enumValue.getName();
+            default:
+                throw new IllegalArgumentException("Unexpected field type: " + field.getType());
+        }
+    }
+
+    private boolean supports(Descriptor type, Set<Descriptor> visiting) {
+        if (UNSUPPORTED_TYPES.contains(type.getFullName())
+                || type.isExtendable()) {
+            return false;
+        } else if (DELEGATED_TYPES.contains(type.getFullName()) || !visiting.add(type)) {
+            return true;
+        }
+
+        for (FieldDescriptor field : type.getFields()) {
+            if (field.getJavaType() == FieldDescriptor.JavaType.MESSAGE
+                    && !supports(field.getMessageType(), visiting)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Plan plan(Descriptor type) {
+        Plan plan = plans.get(type);
+        if (plan == null) {
+            plan = new Plan(type);
+            plans.put(type, plan);
+        }
+        return plan;
+    }
+
+    private void writeMessage(Message message, int depth, Output out) {
+        if (DELEGATED_TYPES.contains(message.getDescriptorForType().getFullName())) {
+            try {
+                out.writeJson(DELEGATE.print(message));
+            } catch (InvalidProtocolBufferException e) {
+                throw new ParsingException(
+                        format("Failed to serialize a message: {%s}", message), e);
+            }
+            return;
+        }
+
+        out.write('{');
+        boolean printed = false;
+        for (FieldPlan field : plan(message.getDescriptorForType()).fields) {
+            FieldDescriptor descriptor = field.descriptor;
+            boolean present = descriptor.isRepeated()
+                    ? message.getRepeatedFieldCount(descriptor) > 0
+                    : message.hasField(descriptor);
+            if (!present && !field.printDefault) {
+                continue;
+            }
+
+            if (printed) {
+                out.write(',');
+            }
+            printed = true;
+            newLine(depth + 1, out);
+            out.write(field.name);
+
+            Object value = message.getField(descriptor);
+            if (descriptor.isMapField()) {
+                writeMap(field, (List<?>) value, depth + 1, out);
+            } else if (descriptor.isRepeated()) {
+                writeRepeated(descriptor, (List<?>) value, depth + 1, out);
+            } else {
+                writeValue(descriptor, value, false, depth + 1, out);
+            }
+        }
+        newLine(depth, out);
+        out.write('}');
+    }
+
+    private void writeRepeated(FieldDescriptor field, List<?> values, int depth, Output out) {
+        out.write('[');
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+                if (!omittingInsignificantWhitespace) {
+                    out.write(' ');
+                }
+            }
+            writeValue(field, values.get(i), false, depth, out);
+        }
+        out.write(']');
+    }
+
+    private void writeMap(FieldPlan field, List<?> entries, int depth, Output out) {
+        out.write('{');
+        for (int i = 0; i < entries.size(); i++) {
+            Message entry = (Message) entries.get(i);
+            if (i > 0) {
+                out.write(',');
+            }
+            newLine(depth + 1, out);
+            writeValue(field.key, entry.getField(field.key), true, depth + 1, out);
+            out.write(':');
+            if (!omittingInsignificantWhitespace) {
+                out.write(' ');
+            }
+            writeValue(field.value, entry.getField(field.value), false, depth + 1, out);
+        }
+        newLine(depth, out);
+        out.write('}');
+    }
+
+    private void writeValue(
+            FieldDescriptor field,
+            Object value,
+            boolean alwaysWithQuotes,
+            int depth,
+            Output out) {
+        switch (field.getType()) {
+            case INT32:
+            case SINT32:
+            case SFIXED32:
+                out.writeQuotedIf(alwaysWithQuotes, Integer.toString((Integer) value));
+                break;
+            case INT64:
+            case SINT64:
+            case SFIXED64:
+                out.writeQuotedIf(true, Long.toString((Long) value));
+                break;
+            case UINT32:
+            case FIXED32:
+                out.writeQuotedIf(alwaysWithQuotes, Integer.toUnsignedString((Integer) value));
+                break;
+            case UINT64:
+            case FIXED64:
+                out.writeQuotedIf(true, Long.toUnsignedString((Long) value));
+                break;
+            case BOOL:
+                out.writeQuotedIf(alwaysWithQuotes, ((Boolean) value) ? "true" : "false");
+                break;
+            case FLOAT:
+                Float floatValue = (Float) value;
+                if (floatValue.isNaN() || floatValue.isInfinite()) {
+                    out.writeQuotedIf(true, floatValue.toString());
+                } else {
+                    out.writeQuotedIf(alwaysWithQuotes, floatValue.toString());
+                }
+                break;
+            case DOUBLE:
+                Double doubleValue = (Double) value;
+                if (doubleValue.isNaN() || doubleValue.isInfinite()) {
+                    out.writeQuotedIf(true, doubleValue.toString());
+                } else {
+                    out.writeQuotedIf(alwaysWithQuotes, doubleValue.toString());
+                }
+                break;
+            case STRING:
+                out.writeString((String) value);
+                break;
+            case BYTES:
+                out.writeQuotedIf(true, BaseEncoding.base64().encode(((ByteString) value).toByteArray()));
+                break;
+            case ENUM:
+                EnumValueDescriptor enumValue = (EnumValueDescriptor) value;
+                if (field.getEnumType().getFullName().equals("google.protobuf.NullValue")) {
+                    out.writeQuotedIf(alwaysWithQuotes, "null");
+                } else if (printingEnumsAsInts || enumValue.getIndex() == -1) {
+                    out.writeAscii(Integer.toString(enumValue.getNumber()));
+                } else {
+                    out.writeQuotedIf(true, enumValue.getName());
+                }
+                break;
+            case MESSAGE:
+            case GROUP:
+                writeMessage((Message) value, depth, out);
+                break;
+            default:
+                throw new IllegalArgumentException("Unexpected field type: " + field.getType());
+        }
+    }
+
+    private void newLine(int depth, Output out) {
+        if (!omittingInsignificantWhitespace) {
+            out.write('\n');
+            for (int i = 0; i < depth; i++) {
+                out.write(INDENT);
+            }
+        }
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Fields of a message type in the printing order.
+     */
+    private final class Plan {
+        private final FieldPlan[] fields;
+
+        Plan(Descriptor type) {
+            List<FieldPlan> fields = new ArrayList<>();
+            for (FieldDescriptor field : type.getFields()) {
+                fields.add(new FieldPlan(field));
+            }
+            fields.sort(Comparator.comparingInt(it -> it.descriptor.getNumber()));
+            this.fields = fields.toArray(new FieldPlan[0]);
+        }
+    }
+
+    private final class FieldPlan {
+        private final FieldDescriptor descriptor;
+        private final String fieldName;
+        private final byte[] name;
+        private final boolean printDefault;
+        private final FieldDescriptor key;
+        private final FieldDescriptor value;
+
+        FieldPlan(FieldDescriptor descriptor) {
+            this.descriptor = descriptor;
+            this.fieldName = preservingProtoFieldNames
+                    ? descriptor.getName()
+                    : descriptor.getJsonName();
+            this.name = ('"' + fieldName + "\":" + (omittingInsignificantWhitespace ? "" : " "))
+                    .getBytes(StandardCharsets.UTF_8);
+
+            // Unset singular message and oneof fields are never printed.
+            boolean skipped = descriptor.isOptional()
+                    && (descriptor.getJavaType() == FieldDescriptor.JavaType.MESSAGE
+                            || descriptor.getContainingOneof() != null);
+            this.printDefault = !skipped
+                    && (alwaysOutputDefaultValueFields
+                            || includingDefaultValueFields.contains(descriptor));
+
+            if (descriptor.isMapField()) {
+                this.key = descriptor.getMessageType().findFieldByName("key");
+                this.value = descriptor.getMessageType().findFieldByName("value");
+            } else {
+                this.key = null;
+                this.value = null;
+            }
+        }
+    }
+
+    /**
+     * Growable byte buffer encoding the strings as UTF-8.
+     */
+    private static final class Output {
+        private static final int CHUNK_SIZE = 8192;
+
+        private final @Nullable OutputStream sink;
+        private byte[] buffer;
+        private int size;
+
+        Output() {
+            this.sink = null;
+            this.buffer = new byte[256];
+        }
+
+        /**
+         * Creates an output passing its content to the given stream whenever
+         * the buffer is full, so that only one chunk is held at a time.
+         */
+        Output(OutputStream sink) {
+            this.sink = sink;
+            this.buffer = new byte[CHUNK_SIZE];
+        }
+
+        void write(int b) {
+            ensure(1);
+            buffer[size++] = (byte) b;
+        }
+
+        void write(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+
+        void writeAscii(String value) {
+            int length = value.length();
+            ensure(length);
+            for (int i = 0; i < length; i++) {
+                buffer[size++] = (byte) value.charAt(i);
+            }
+        }
+
+        void writeQuotedIf(boolean quoted, String value) {
+            if (quoted) {
+                write('"');
+            }
+            writeAscii(value);
+            if (quoted) {
+                write('"');
+            }
+        }
+
+        /**
+         * Writes already encoded JSON.
+         */
+        void writeJson(String json) {
+            write(json.getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Writes a quoted string escaped the same way as Gson does with HTML
+         * escaping enabled, unpaired surrogates are replaced by '?'.
+         */
+        void writeString(String value) {
+            int length = value.length();
+            ensure(length + 2);
+            buffer[size++] = '"';
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    byte[] escape = ESCAPES[c];
+                    if (escape == null) {
+                        write(c);
+                    } else {
+                        write(escape);
+                    }
+                } else if (c == 0x2028 || c == 0x2029) {
+                    writeAscii(c == 0x2028 ? "\\u2028" : "\\u2029");
+                } else if (c < 0x800) {
+                    ensure(2);
+                    buffer[size++] = (byte) (0xc0 | (c >> 6));
+                    buffer[size++] = (byte) (0x80 | (c & 0x3f));
+                } else if (Character.isSurrogate(c)) {
+                    if (Character.isHighSurrogate(c)
+                            && i + 1 < length
+                            && Character.isLowSurrogate(value.charAt(i + 1))) {
+                        int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                        ensure(4);
+                        buffer[size++] = (byte) (0xf0 | (codePoint >> 18));
+                        buffer[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                        buffer[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                        buffer[size++] = (byte) (0x80 | (codePoint & 0x3f));
+                    } else {
+                        write('?');
+                    }
+                } else {
+                    ensure(3);
+                    buffer[size++] = (byte) (0xe0 | (c >> 12));
+                    buffer[size++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                    buffer[size++] = (byte) (0x80 | (c & 0x3f));
+                }
+            }
+            write('"');
+        }
+
+        void writeTo(OutputStream out) throws IOException {
+            out.write(buffer, 0, size);
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+
+        private void ensure(int length) {
+            if (sink != null && size > 0 && size + length > buffer.length) {
+                try {
+                    sink.write(buffer, 0, size);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                size = 0;
+            }
+            if (size + length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + length));
+            }
+        }
+    }
+}
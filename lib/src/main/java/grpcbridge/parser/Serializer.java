@@ -6,6 +6,9 @@ import grpcbridge.http.HttpResponse;
 import grpcbridge.rpc.RpcMessage;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Collection;
 import java.util.function.Function;
 
@@ -13,7 +16,73 @@ public interface Serializer {
 
     HttpResponse serialize(@Nonnull JsonFormat.Printer printer, @Nonnull RpcMessage message);
 
+    /**
+     * Serializes the message, writing JSON with the given writer where the
+     * converter supports it. The writer is configured with the same options
+     * as the printer, see {@link grpcbridge.route.Route#getJsonWriter()}.
+     * Ignores the writer by default.
+     *
+     * @param printer JSON printer of the route
+     * @param writer JSON writer of the route, null to use the printer only
+     * @param message message to serialize
+     * @return serialized response
+     */
+    default HttpResponse serialize(
+            @Nonnull JsonFormat.Printer printer,
+            @Nullable ProtoJsonWriter writer,
+            @Nonnull RpcMessage message) {
+        return serialize(printer, message);
+    }
+
+    /**
+     * Serializes the message straight into the given stream. The content-type
+     * header is set on the message metadata, same as for
+     * {@link #serialize(JsonFormat.Printer, RpcMessage)}. The stream is
+     * flushed, but not closed.
+     *
+     * @param printer JSON printer of the route
+     * @param message message to serialize
+     * @param out stream to write the encoded body to
+     * @throws IOException if writing to the stream fails
+     */
+    default void serialize(
+            @Nonnull JsonFormat.Printer printer,
+            @Nonnull RpcMessage message,
+            @Nonnull OutputStream out) throws IOException {
+        serialize(printer, message).writeTo(out);
+        out.flush();
+    }
+
+    /**
+     * Same as {@link #serialize(JsonFormat.Printer, RpcMessage, OutputStream)},
+     * writing JSON with the given writer where the converter supports it.
+     *
+     * @param printer JSON printer of the route
+     * @param writer JSON writer of the route, null to use the printer only
+     * @param message message to serialize
+     * @param out stream to write the encoded body to
+     * @throws IOException if writing to the stream fails
+     */
+    default void serialize(
+            @Nonnull JsonFormat.Printer printer,
+            @Nullable ProtoJsonWriter writer,
+            @Nonnull RpcMessage message,
+            @Nonnull OutputStream out) throws IOException {
+        serialize(printer, message, out);
+    }
+
     Function<RpcMessage, HttpResponse> serializeAsync(JsonFormat.Printer printer);
 
+    /**
+     * @param printer JSON printer of the route
+     * @param writer JSON writer of the route, null to use the printer only
+     * @return function serializing the responses of the route
+     */
+    default Function<RpcMessage, HttpResponse> serializeAsync(
+            JsonFormat.Printer printer,
+            @Nullable ProtoJsonWriter writer) {
+        return serializeAsync(printer);
+    }
+
     boolean supportsAny(Collection<MediaType> accepted);
 }
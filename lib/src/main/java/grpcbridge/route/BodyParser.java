@@ -21,7 +21,9 @@ import javax.annotation.Nullable;
  * <ul>
  *     <li>
  *         <c>body</c> is '*' - the whole HTTP body is parsed as the
- *         corresponding protobuf request message.
+ *         corresponding protobuf request message. For a client streaming
+ *         method the body is a stream of request messages, decoded as the
+ *         method consumes them.
  *     </li>
  *     <li>
  *         <c>body</c> is missing. The body is not parsed - all request fields
@@ -39,7 +41,9 @@ final class BodyParser {
 
     private final @Nullable VariableExtractor bodyExtractor;
     private final Message blank;
-    private final @Nullable Deserializer deserializer;
+    private final boolean deserializeBody;
+    private final boolean clientStreaming;
+    private final @Nullable String invalidRule;
 
     /**
      * Creates new parser.
@@ -48,46 +52,57 @@ final class BodyParser {
      *                 body should be parsed
      * @param blank an empty protobuf instance that is used to create new
      *              request instances
+     * @param clientStreaming whether the method accepts a stream of request
+     *                        messages
      */
-    public BodyParser(@Nonnull Deserializer deserializer, HttpRule httpRule, Message blank) {
+    public BodyParser(HttpRule httpRule, Message blank, boolean clientStreaming) {
         String bodyPattern = Strings.emptyToNull(httpRule.getBody());
         if (bodyPattern == null) {
-            this.deserializer = null;
+            this.deserializeBody = false;
             this.bodyExtractor = null;
+            this.invalidRule = null;
+        } else if (httpRule.getPatternCase() == PatternCase.GET) {
+            // Reported when the route is used, same as before the parser was
+            // created upfront.
+            this.deserializeBody = false;
+            this.bodyExtractor = null;
+            this.invalidRule = "GET cannot accept a body: " + httpRule;
+        } else if (bodyPattern.equals(BODY_WILDCARD)) {
+            this.deserializeBody = true;
+            this.bodyExtractor = null;
+            this.invalidRule = null;
         } else {
-            if (httpRule.getPatternCase() == PatternCase.GET) {
-                throw new IllegalArgumentException("GET cannot accept a body: " + httpRule);
-            }
-            if (bodyPattern.equals(BODY_WILDCARD)) {
-                this.deserializer = deserializer;
-                this.bodyExtractor = null;
-            } else {
-                this.deserializer = null;
-                this.bodyExtractor = new VariableExtractor(bodyPattern);
-            }
+            this.deserializeBody = false;
+            this.bodyExtractor = new VariableExtractor(bodyPattern, blank.getDescriptorForType());
+            this.invalidRule = null;
         }
         this.blank = blank;
+        this.clientStreaming = clientStreaming;
     }
 
     /**
      * Extracts gPRC message from the given request.
      *
+     * @param deserializer deserializer for the request content type
      * @param request HTTP request to deserialize
      * @return parsed out gRPC message
      */
-    public RpcMessage extract(HttpRequest request) {
-        return request.getBody()
-                .map(requestBody -> {
-                    if (deserializer != null) {
-                        return deserializer.deserialize(request, blank.toBuilder());
-                    } else if (bodyExtractor != null) {
-                        RpcMessage result = new RpcMessage(blank, request.getHeaders());
-                        bodyExtractor.extract(requestBody).forEach(result::setVar);
-                        return result;
-                    } else {
-                        return new RpcMessage(blank, request.getHeaders());
-                    }
-                })
-                .orElse(new RpcMessage(blank, request.getHeaders()));
+    public RpcMessage extract(@Nonnull Deserializer deserializer, HttpRequest request) {
+        if (invalidRule != null) {
+            throw new IllegalArgumentException(invalidRule);
+        }
+        if (!request.hasBody()) {
+            return new RpcMessage(blank, request.getHeaders());
+        } else if (deserializeBody) {
+            return clientStreaming
+                    ? deserializer.deserializeStream(request, blank.toBuilder())
+                    : deserializer.deserialize(request, blank.toBuilder());
+        }
+
+        RpcMessage result = new RpcMessage(blank, request.getHeaders());
+        if (bodyExtractor != null) {
+            result.setVars(bodyExtractor.extract(request.getBody().get()));
+        }
+        return result;
     }
 }
@@ -0,0 +1,79 @@
+package grpcbridge.route;
+
+import com.google.api.AnnotationsProto;
+import com.google.api.HttpRule;
+import com.google.protobuf.Descriptors.MethodDescriptor;
+import com.google.protobuf.Message;
+import grpcbridge.http.HttpMethod;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * Immutable, precompiled form of a {@link Route}. Created once per route when
+ * the bridge is built, it holds the {@link HttpRule} bindings of the method
+ * together with the matching {@link PathMatcher}s and the {@link BodyParser},
+ * so matching a request neither re-reads the method options nor compiles any
+ * patterns.
+ */
+final class CompiledRoute {
+    private final List<HttpRule> httpRules;
+    private final List<PathMatcher> pathMatchers;
+    private final BodyParser bodyParser;
+
+    /**
+     * @param descriptor method descriptor from the protobuf file
+     * @param blank an empty request protobuf instance
+     */
+    CompiledRoute(MethodDescriptor descriptor, Message blank) {
+        HttpRule httpRule = descriptor.getOptions().getExtension(AnnotationsProto.http);
+
+        List<HttpRule> rules = new ArrayList<>(httpRule.getAdditionalBindingsCount() + 1);
+        rules.add(httpRule);
+        rules.addAll(httpRule.getAdditionalBindingsList());
+
+        List<PathMatcher> matchers = new ArrayList<>(rules.size());
+        for (HttpRule rule : rules) {
+            matchers.add(new PathMatcher(rule, blank.getDescriptorForType()));
+        }
+
+        this.httpRules = Collections.unmodifiableList(rules);
+        this.pathMatchers = Collections.unmodifiableList(matchers);
+        // The body of the primary binding applies to the additional ones too.
+        this.bodyParser = new BodyParser(httpRule, blank, descriptor.isClientStreaming());
+    }
+
+    /**
+     * @return HTTP bindings, the primary binding followed by the additional
+     *      ones
+     */
+    List<HttpRule> getHttpRules() {
+        return httpRules;
+    }
+
+    /**
+     * @return request body parser
+     */
+    BodyParser getBodyParser() {
+        return bodyParser;
+    }
+
+    /**
+     * Finds the first binding that matches the given request.
+     *
+     * @param method HTTP request method
+     * @param url tokenized request URL
+     * @return path matcher of the matched binding, null if none matched
+     */
+    @Nullable PathMatcher match(HttpMethod method, RequestUrl url) {
+        for (int i = 0; i < pathMatchers.size(); i++) {
+            PathMatcher pathMatcher = pathMatchers.get(i);
+            if (pathMatcher.matches(method, url)) {
+                return pathMatcher;
+            }
+        }
+        return null;
+    }
+}
@@ -1,10 +1,10 @@
 package grpcbridge.route;
 
 import com.google.api.HttpRule;
+import com.google.protobuf.Descriptors.Descriptor;
 
 import grpcbridge.http.BridgeHttpRule;
 import grpcbridge.http.HttpMethod;
-import grpcbridge.http.HttpRequest;
 
 import java.util.List;
 
@@ -14,18 +14,18 @@ final class PathMatcher {
     private final HttpMethod method;
     private final VariableExtractor path;
 
-    public PathMatcher(HttpRule httpRule) {
+    public PathMatcher(HttpRule httpRule, Descriptor target) {
         BridgeHttpRule rule = BridgeHttpRule.create(httpRule);
         this.method = rule.getMethod();
-        this.path = new VariableExtractor(rule.getPath());
+        this.path = new VariableExtractor(rule.getPath(), target);
     }
 
-    public boolean matches(HttpRequest httpRequest) {
-        return method == httpRequest.getMethod() && path.matches(httpRequest.getPath());
+    public boolean matches(HttpMethod method, RequestUrl url) {
+        return this.method == method && path.matches(url);
     }
 
-    public List<Variable> parse(HttpRequest httpRequest) {
-        return path.extract(httpRequest.getPath());
+    public List<Variable> parse(RequestUrl url) {
+        return path.extract(url);
     }
 
     @Override public String toString() {
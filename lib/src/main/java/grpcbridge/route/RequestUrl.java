@@ -0,0 +1,240 @@
+package grpcbridge.route;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * HTTP request URL split into path segments and query parameters. The URL is
+ * tokenized in a single pass into index ranges over the original string,
+ * nothing is copied or decoded until a value is actually needed.
+ *
+ * <p>
+ * Query parameter names are used as is, values are percent-decoded. The '+'
+ * character is not treated as an encoded space.
+ */
+public final class RequestUrl {
+    private static final int[] EMPTY = new int[0];
+
+    private final String url;
+    private final int pathEnd;
+    private final int[] slashes;
+    private final int slashCount;
+    private final int[] params;
+    private final int paramCount;
+
+    /**
+     * Tokenizes the given URL.
+     *
+     * @param url URL path and query, e.g. /some/path?param=value
+     * @return tokenized URL
+     */
+    public static RequestUrl parse(String url) {
+        return new RequestUrl(url);
+    }
+
+    private RequestUrl(String url) {
+        this.url = url;
+
+        int length = url.length();
+        int[] slashes = EMPTY;
+        int slashCount = 0;
+        int i = 0;
+        for (; i < length; i++) {
+            char c = url.charAt(i);
+            if (c == '/') {
+                if (slashCount == slashes.length) {
+                    slashes = Arrays.copyOf(slashes, Math.max(8, slashCount * 2));
+                }
+                slashes[slashCount++] = i;
+            } else if (c == '?') {
+                break;
+            }
+        }
+        this.pathEnd = i;
+        this.slashes = slashes;
+        this.slashCount = slashCount;
+
+        // Each parameter takes three slots: name start, '=' index (or the
+        // parameter end if there is no value) and parameter end.
+        int[] params = EMPTY;
+        int paramCount = 0;
+        int start = pathEnd + 1;
+        while (start < length) {
+            int end = url.indexOf('&', start);
+            if (end < 0) {
+                end = length;
+            }
+            if (end > start) {
+                int separator = url.indexOf('=', start);
+                if (separator < 0 || separator > end) {
+                    separator = end;
+                }
+                if (paramCount * 3 == params.length) {
+                    params = Arrays.copyOf(params, Math.max(6, params.length * 2));
+                }
+                params[paramCount * 3] = start;
+                params[paramCount * 3 + 1] = separator;
+                params[paramCount * 3 + 2] = end;
+                paramCount++;
+            }
+            start = end + 1;
+        }
+        this.params = params;
+        this.paramCount = paramCount;
+    }
+
+    /**
+     * @return the original URL
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * @return end index of the path part of the URL, exclusive
+     */
+    public int getPathEnd() {
+        return pathEnd;
+    }
+
+    /**
+     * @return path part of the URL, e.g. /some/path
+     */
+    public String getPath() {
+        return url.substring(0, pathEnd);
+    }
+
+    /**
+     * @return number of path segments. The path is split on '/' keeping the
+     *      empty segments, so "/a/b" has three segments: "", "a" and "b"
+     */
+    public int getSegmentCount() {
+        return slashCount + 1;
+    }
+
+    /**
+     * @param index segment index
+     * @return start index of the segment, inclusive
+     */
+    public int getSegmentStart(int index) {
+        return index == 0 ? 0 : slashes[index - 1] + 1;
+    }
+
+    /**
+     * @param index segment index
+     * @return end index of the segment, exclusive
+     */
+    public int getSegmentEnd(int index) {
+        return index == slashCount ? pathEnd : slashes[index];
+    }
+
+    /**
+     * @param index segment index
+     * @return raw, not decoded, segment value
+     */
+    public String getSegment(int index) {
+        return url.substring(getSegmentStart(index), getSegmentEnd(index));
+    }
+
+    /**
+     * @return number of non-empty query parameters
+     */
+    public int getParamCount() {
+        return paramCount;
+    }
+
+    /**
+     * @param index query parameter index
+     * @return query parameter name
+     */
+    public String getParamName(int index) {
+        return url.substring(params[index * 3], params[index * 3 + 1]);
+    }
+
+    /**
+     * @param index query parameter index
+     * @return decoded query parameter value, empty if the parameter has no
+     *      value
+     */
+    public String getParamValue(int index) {
+        int separator = params[index * 3 + 1];
+        int end = params[index * 3 + 2];
+        return separator == end ? "" : decode(url, separator + 1, end);
+    }
+
+    /**
+     * @return query parameters as variables, in the URL order
+     */
+    public List<Variable> queryVariables() {
+        if (paramCount == 0) {
+            return Collections.emptyList();
+        }
+
+        List<Variable> result = new ArrayList<>(paramCount);
+        for (int i = 0; i < paramCount; i++) {
+            result.add(new Variable(getParamName(i), getParamValue(i)));
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return url;
+    }
+
+    /**
+     * Percent-decodes the given range of characters. Consecutive escaped
+     * bytes are decoded as UTF-8, the rest of the characters are copied as
+     * is.
+     *
+     * @param value value to decode
+     * @param start start index, inclusive
+     * @param end end index, exclusive
+     * @return decoded value
+     * @throws IllegalArgumentException if an escape sequence is malformed
+     */
+    static String decode(String value, int start, int end) {
+        int escape = value.indexOf('%', start);
+        if (escape < 0 || escape >= end) {
+            return value.substring(start, end);
+        }
+
+        StringBuilder result = new StringBuilder(end - start);
+        result.append(value, start, escape);
+        byte[] bytes = null;
+        int i = escape;
+        while (i < end) {
+            char c = value.charAt(i);
+            if (c != '%') {
+                result.append(c);
+                i++;
+                continue;
+            }
+
+            if (bytes == null) {
+                bytes = new byte[(end - i) / 3];
+            }
+            int count = 0;
+            while (i < end && value.charAt(i) == '%') {
+                if (i + 2 >= end) {
+                    throw new IllegalArgumentException(
+                            "Incomplete trailing escape (%) pattern: " + value);
+                }
+                int high = Character.digit(value.charAt(i + 1), 16);
+                int low = Character.digit(value.charAt(i + 2), 16);
+                if (high < 0 || low < 0) {
+                    throw new IllegalArgumentException(
+                            "Illegal hex characters in escape (%) pattern: " + value);
+                }
+                bytes[count++] = (byte) ((high << 4) + low);
+                i += 3;
+            }
+            result.append(new String(bytes, 0, count, UTF_8));
+        }
+        return result.toString();
+    }
+}
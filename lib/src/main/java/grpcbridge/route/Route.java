@@ -2,25 +2,30 @@ package grpcbridge.route;
 
 import static grpcbridge.route.ExtensionVisitor.serializeDefaultValueFields;
 
-import com.google.api.AnnotationsProto;
 import com.google.api.HttpRule;
-import com.google.protobuf.DescriptorProtos;
+import com.google.common.base.Strings;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.net.MediaType;
 import com.google.protobuf.Descriptors.FieldDescriptor;
 import com.google.protobuf.Descriptors.MethodDescriptor;
 import com.google.protobuf.Message;
 import com.google.protobuf.util.JsonFormat;
 import grpcbridge.GrpcbridgeOptions;
 import grpcbridge.http.HttpRequest;
+import grpcbridge.monitoring.Phase;
+import grpcbridge.monitoring.PhaseTimer;
 import grpcbridge.parser.Deserializer;
+import grpcbridge.parser.ProtoJsonWriter;
 import grpcbridge.rpc.RpcCall;
 import grpcbridge.rpc.RpcMessage;
 import io.grpc.ServerMethodDefinition;
 
 import java.io.ByteArrayInputStream;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import javax.annotation.Nullable;
 
 /**
  * A route used by the {@link grpcbridge.Bridge} to match HTTP requests to the
@@ -30,6 +35,9 @@ import java.util.Set;
 public final class Route {
     public final MethodDescriptor descriptor;
     private final ServerMethodDefinition<Message, Message> impl;
+    private final CompiledRoute compiled;
+    private final @Nullable MediaType preferredResponseType;
+    private final Supplier<JsonPrinters> printers = Suppliers.memoize(this::createPrinters);
 
     /**
      * @param descriptor methods descriptor from the protobuf file
@@ -42,6 +50,14 @@ public final class Route {
     ) {
         this.descriptor = descriptor;
         this.impl = impl;
+        this.compiled = new CompiledRoute(descriptor, newRpcRequest(impl));
+        this.preferredResponseType = Optional
+                .ofNullable(Strings.emptyToNull(descriptor
+                        .getService()
+                        .getOptions()
+                        .getExtension(GrpcbridgeOptions.preferredResponseType)))
+                .map(MediaType::parse)
+                .orElse(null);
     }
 
     /**
@@ -61,18 +77,78 @@ public final class Route {
     }
 
     /**
-     * Return JSON printer for the route.
+     * @return HTTP bindings of the route, the primary binding followed by
+     *      the additional ones
+     */
+    public List<HttpRule> getHttpRules() {
+        return compiled.getHttpRules();
+    }
+
+    /**
+     * @return response type preferred by the service, parsed once when the
+     *      route is created, null if the service does not set one
+     */
+    public @Nullable MediaType getPreferredResponseType() {
+        return preferredResponseType;
+    }
+
+    /**
+     * @return maximum deadline of the route calls in milliseconds, 0 if the
+     *      method does not set one. A timeout header can shorten but never
+     *      extend it
+     */
+    public long getTimeoutMillis() {
+        return descriptor.getOptions().getExtension(GrpcbridgeOptions.timeoutMs);
+    }
+
+    /**
+     * @return whether concurrent identical GET requests share a single call,
+     *      set by the coalesce_requests method option
+     */
+    public boolean isCoalesced() {
+        return descriptor.getOptions().getExtension(GrpcbridgeOptions.coalesceRequests);
+    }
+
+    /**
+     * @return time the responses of GET requests are cached for in
+     *      milliseconds, 0 if the method does not set the cache_ttl_ms option
+     */
+    public long getCacheTtlMillis() {
+        return descriptor.getOptions().getExtension(GrpcbridgeOptions.cacheTtlMs);
+    }
+
+    /**
+     * Return JSON printer for the route. The printer and the set of fields
+     * that always serialize default values are computed on the first call
+     * and reused afterwards.
      *
      * @return JSON printer
      */
     public JsonFormat.Printer getPrinter() {
+        return printers.get().printer;
+    }
+
+    /**
+     * Returns the JSON writer of the route, configured with the same options
+     * as {@link #getPrinter()} and created together with it. The serializers
+     * get it next to the printer.
+     *
+     * @return JSON writer
+     */
+    public ProtoJsonWriter getJsonWriter() {
+        return printers.get().writer;
+    }
+
+    private JsonPrinters createPrinters() {
         JsonFormat.Printer printer = JsonFormat.printer();
+        ProtoJsonWriter writer = ProtoJsonWriter.create();
         boolean preserveFieldNames = descriptor
                 .getService()
                 .getOptions()
                 .getExtension(GrpcbridgeOptions.preserveFieldNames);
         if (preserveFieldNames) {
             printer = printer.preservingProtoFieldNames();
+            writer = writer.preservingProtoFieldNames();
         }
 
         boolean includeDefaultValues = descriptor
@@ -81,10 +157,12 @@ public final class Route {
                 .getExtension(GrpcbridgeOptions.includeDefaultValues);
         if (includeDefaultValues) {
             printer = printer.includingDefaultValueFields();
+            writer = writer.includingDefaultValueFields();
         } else {
             Set<FieldDescriptor> fields = serializeDefaultValueFields(descriptor.getOutputType());
             if (!fields.isEmpty()) {
                 printer = printer.includingDefaultValueFields(fields);
+                writer = writer.includingDefaultValueFields(fields);
             }
         }
         boolean serializeEnumAsNumber = descriptor
@@ -92,8 +170,9 @@ public final class Route {
                 .getExtension(GrpcbridgeOptions.serializeEnumAsNumber);
         if (serializeEnumAsNumber) {
             printer = printer.printingEnumsAsInts();
+            writer = writer.printingEnumsAsInts();
         }
-        return printer;
+        return new JsonPrinters(printer, writer);
     }
 
     /**
@@ -107,24 +186,61 @@ public final class Route {
      *      has not matched
      */
     public Optional<RpcCall> match(Deserializer deserializer, HttpRequest httpRequest) {
-        DescriptorProtos.MethodOptions options = descriptor.getOptions();
-        HttpRule httpRule = options.getExtension(AnnotationsProto.http);
-
-        List<HttpRule> rules = new ArrayList<>(httpRule.getAdditionalBindingsCount() + 1);
-        rules.add(httpRule);
-        rules.addAll(httpRule.getAdditionalBindingsList());
-
-        for (HttpRule rule : rules) {
-            PathMatcher pathMatcher = new PathMatcher(rule);
-            if (pathMatcher.matches(httpRequest)) {
-                BodyParser bodyParser = new BodyParser(deserializer, httpRule, newRpcRequest());
-                RpcMessage rpcRequest = bodyParser.extract(httpRequest);
-                pathMatcher.parse(httpRequest).forEach(rpcRequest::setVar);
-                return Optional.of(new RpcCall(impl, rpcRequest));
-            }
+        return match(deserializer, httpRequest, RequestUrl.parse(httpRequest.getPath()));
+    }
+
+    /**
+     * Same as {@link #match(Deserializer, HttpRequest)}, but reuses the
+     * already tokenized request URL.
+     *
+     * @param httpRequest HTTP request
+     * @param url tokenized {@link HttpRequest#getPath()}
+     * @return {@link RpcCall} instance that can be used to invoke the
+     *      corresponding gPRC method, {@link Optional#empty()} if the route
+     *      has not matched
+     */
+    public Optional<RpcCall> match(
+            Deserializer deserializer,
+            HttpRequest httpRequest,
+            RequestUrl url) {
+        return match(deserializer, httpRequest, url, null);
+    }
+
+    /**
+     * Same as {@link #match(Deserializer, HttpRequest, RequestUrl)}, but
+     * marks the end of the {@link Phase#MATCH}, {@link Phase#DESERIALIZE}
+     * and {@link Phase#BIND} phases on the given timer once the route
+     * matches.
+     *
+     * @param httpRequest HTTP request
+     * @param url tokenized {@link HttpRequest#getPath()}
+     * @param timer timer of the request, null if not measured
+     * @return {@link RpcCall} instance that can be used to invoke the
+     *      corresponding gPRC method, {@link Optional#empty()} if the route
+     *      has not matched
+     */
+    public Optional<RpcCall> match(
+            Deserializer deserializer,
+            HttpRequest httpRequest,
+            RequestUrl url,
+            @Nullable PhaseTimer timer) {
+        PathMatcher pathMatcher = compiled.match(httpRequest.getMethod(), url);
+        if (pathMatcher == null) {
+            return Optional.empty();
+        }
+        if (timer != null) {
+            timer.mark(Phase.MATCH);
         }
 
-        return Optional.empty();
+        RpcMessage rpcRequest = compiled.getBodyParser().extract(deserializer, httpRequest);
+        if (timer != null) {
+            timer.mark(Phase.DESERIALIZE);
+        }
+        rpcRequest.setVars(pathMatcher.parse(url));
+        if (timer != null) {
+            timer.mark(Phase.BIND);
+        }
+        return Optional.of(new RpcCall(impl, rpcRequest));
     }
 
     @Override
@@ -132,9 +248,22 @@ public final class Route {
         return descriptor.getFullName();
     }
 
-    private Message newRpcRequest() {
+    private static Message newRpcRequest(ServerMethodDefinition<Message, Message> impl) {
         return impl
                 .getMethodDescriptor()
                 .parseRequest(new ByteArrayInputStream(new byte[] {}));
     }
+
+    /**
+     * Printer and writer producing the same JSON for the route.
+     */
+    private static final class JsonPrinters {
+        final JsonFormat.Printer printer;
+        final ProtoJsonWriter writer;
+
+        JsonPrinters(JsonFormat.Printer printer, ProtoJsonWriter writer) {
+            this.printer = printer;
+            this.writer = writer;
+        }
+    }
 }
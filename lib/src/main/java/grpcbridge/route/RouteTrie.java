@@ -0,0 +1,173 @@
+package grpcbridge.route;
+
+import com.google.api.HttpRule;
+import grpcbridge.http.BridgeHttpRule;
+import grpcbridge.http.HttpMethod;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Segment trie used by the {@link grpcbridge.Bridge} to find routes that can
+ * match an HTTP request without testing every available route. The trie is
+ * keyed by {@link HttpMethod} and the literal path segments of every
+ * {@link HttpRule} binding, {var} segments are stored as wildcard children.
+ *
+ * <p>
+ * The trie only narrows down the set of routes. The candidates are returned
+ * in the original route order and are still matched using
+ * {@link Route#match}, so the first matching route is the same one the linear
+ * scan over all the routes would find.
+ */
+public final class RouteTrie {
+    private final List<Route> routes;
+    private final Map<HttpMethod, Node> roots = new EnumMap<>(HttpMethod.class);
+
+    /**
+     * Creates a trie for the given routes.
+     *
+     * @param routes list of available routes, in the match order
+     */
+    public RouteTrie(List<Route> routes) {
+        this.routes = routes;
+        for (int i = 0; i < routes.size(); i++) {
+            for (HttpRule httpRule : routes.get(i).getHttpRules()) {
+                BridgeHttpRule rule = BridgeHttpRule.create(httpRule);
+                roots.computeIfAbsent(rule.getMethod(), method -> new Node())
+                        .add(RequestUrl.parse(rule.getPath()), 0, i);
+            }
+        }
+    }
+
+    /**
+     * Finds routes that can match the given HTTP method and path.
+     *
+     * @param method HTTP request method
+     * @param path HTTP request path, e.g. /some/path?param=value
+     * @return candidate routes, in the route match order
+     */
+    public List<Route> find(HttpMethod method, String path) {
+        return find(method, RequestUrl.parse(path));
+    }
+
+    /**
+     * Finds routes that can match the given HTTP method and tokenized URL.
+     * Literal segments are looked up in place, without creating substrings.
+     *
+     * @param method HTTP request method
+     * @param url tokenized HTTP request path
+     * @return candidate routes, in the route match order
+     */
+    public List<Route> find(HttpMethod method, RequestUrl url) {
+        Node root = roots.get(method);
+        if (root == null) {
+            return Collections.emptyList();
+        }
+
+        BitSet matched = new BitSet(routes.size());
+        root.collect(url, 0, new Segment(), matched);
+
+        List<Route> result = new ArrayList<>(matched.cardinality());
+        for (int i = matched.nextSetBit(0); i >= 0; i = matched.nextSetBit(i + 1)) {
+            result.add(routes.get(i));
+        }
+        return result;
+    }
+
+    private static boolean isWildcard(String segment) {
+        return segment.indexOf('{') >= 0;
+    }
+
+    private static final class Node {
+        private final Map<Segment, Node> literals = new HashMap<>();
+        private Node wildcard;
+        private final BitSet terminal = new BitSet();
+
+        void add(RequestUrl template, int index, int route) {
+            if (index == template.getSegmentCount()) {
+                terminal.set(route);
+                return;
+            }
+
+            String segment = template.getSegment(index);
+            Node child;
+            if (isWildcard(segment)) {
+                if (wildcard == null) {
+                    wildcard = new Node();
+                }
+                child = wildcard;
+            } else {
+                child = literals.computeIfAbsent(
+                        new Segment().set(segment, 0, segment.length()),
+                        s -> new Node());
+            }
+            child.add(template, index + 1, route);
+        }
+
+        void collect(RequestUrl url, int index, Segment probe, BitSet matched) {
+            if (index == url.getSegmentCount()) {
+                matched.or(terminal);
+                return;
+            }
+
+            if (!literals.isEmpty()) {
+                Node literal = literals.get(probe.set(
+                        url.getUrl(),
+                        url.getSegmentStart(index),
+                        url.getSegmentEnd(index)));
+                if (literal != null) {
+                    literal.collect(url, index + 1, probe, matched);
+                }
+            }
+            if (wildcard != null) {
+                wildcard.collect(url, index + 1, probe, matched);
+            }
+        }
+    }
+
+    /**
+     * Range of characters used as a literal segment key. The trie keys are
+     * created once, the lookups reuse a single probe instance that points
+     * into the request URL.
+     */
+    private static final class Segment {
+        private String chars;
+        private int start;
+        private int length;
+        private int hash;
+
+        Segment set(String chars, int start, int end) {
+            this.chars = chars;
+            this.start = start;
+            this.length = end - start;
+            int hash = 0;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + chars.charAt(i);
+            }
+            this.hash = hash;
+            return this;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Segment)) {
+                return false;
+            }
+
+            Segment other = (Segment) obj;
+            return length == other.length
+                    && hash == other.hash
+                    && chars.regionMatches(start, other.chars, other.start, length);
+        }
+    }
+}
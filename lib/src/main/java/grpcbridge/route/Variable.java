@@ -7,12 +7,14 @@ import com.google.common.base.CaseFormat;
 import com.google.common.collect.ImmutableList;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.Descriptors;
+import grpcbridge.rpc.FieldBinding;
 import grpcbridge.util.SimpleFieldMapper;
 
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
+import javax.annotation.Nullable;
 
 /**
  * Describes a variable that can be specified in {@link com.google.api.HttpRule}
@@ -24,14 +26,47 @@ import java.util.Objects;
 public final class Variable {
     private final String name;
     private final String value;
+    private final @Nullable FieldBinding binding;
 
     /**
      * @param name variable name, e.g path.to.protobuf.field
      * @param value variable value
      */
     public Variable(String name, String value) {
+        this(name, value, null);
+    }
+
+    /**
+     * @param name variable name, e.g path.to.protobuf.field
+     * @param value variable value
+     * @param binding field the variable name resolves to, if known upfront
+     */
+    public Variable(String name, String value, @Nullable FieldBinding binding) {
         this.name = name;
         this.value = value;
+        this.binding = binding;
+    }
+
+    /**
+     * @return variable name, e.g path.to.protobuf.field
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return variable value
+     */
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * @return field the variable name resolves to, null if it has to be
+     *      resolved when the variable is applied
+     */
+    public @Nullable FieldBinding getBinding() {
+        return binding;
     }
 
     /**
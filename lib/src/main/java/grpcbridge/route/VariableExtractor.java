@@ -1,11 +1,13 @@
 package grpcbridge.route;
 
-import static grpcbridge.route.UrlPathAndQuery.decode;
+import com.google.protobuf.Descriptors.Descriptor;
+import grpcbridge.rpc.FieldBinding;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import javax.annotation.Nullable;
 
 /**
  * Extracts variables from the path and body definitions as described by
@@ -19,6 +21,7 @@ public final class VariableExtractor {
 
     private final Pattern pattern;
     private final List<String> pathVars;
+    private final FieldBinding[] pathBindings;
 
     /**
      * Creates new var extractor.
@@ -26,23 +29,45 @@ public final class VariableExtractor {
      * @param pattern a pattern to extract the pathVars from
      */
     public VariableExtractor(String pattern) {
-        UrlPathAndQuery pathAndQuery = UrlPathAndQuery.parse(pattern);
+        this(pattern, null);
+    }
+
+    /**
+     * Creates new var extractor that binds the path variables to the fields
+     * of the given message type upfront. Path variables that do not resolve
+     * to a field are left unbound and fail when they are applied.
+     *
+     * @param pattern a pattern to extract the pathVars from
+     * @param target message type the variables are applied to
+     */
+    public VariableExtractor(String pattern, @Nullable Descriptor target) {
+        String path = RequestUrl.parse(pattern).getPath();
 
         this.pathVars = new ArrayList<>();
 
-        StringBuffer pathPatternBuilder = new StringBuffer();
-        Matcher matcher = VAR_PATTERN.matcher(pathAndQuery.path());
+        // Literal parts of the path are quoted, so they only match themselves.
+        // The route trie relies on this to compare literal path segments.
+        StringBuilder pathPatternBuilder = new StringBuilder();
+        Matcher matcher = VAR_PATTERN.matcher(path);
         int lastMatched = 0;
 
         while (matcher.find()) {
             String varName = matcher.group().substring(1, matcher.group().length() - 1);
             pathVars.add(varName);
-            matcher.appendReplacement(pathPatternBuilder, VAR_SEGMENT);
+            appendLiteral(pathPatternBuilder, path.substring(lastMatched, matcher.start()));
+            pathPatternBuilder.append(VAR_SEGMENT);
             lastMatched = matcher.end();
         }
 
-        pathPatternBuilder.append(pathAndQuery.path().substring(lastMatched));
+        appendLiteral(pathPatternBuilder, path.substring(lastMatched));
         this.pattern = Pattern.compile(pathPatternBuilder.toString());
+
+        this.pathBindings = new FieldBinding[pathVars.size()];
+        if (target != null) {
+            for (int i = 0; i < pathVars.size(); i++) {
+                pathBindings[i] = FieldBinding.find(target, pathVars.get(i));
+            }
+        }
     }
 
     /**
@@ -52,13 +77,18 @@ public final class VariableExtractor {
      * @return true if the variable extractor containsAll the input
      */
     public boolean matches(String input) {
-        UrlPathAndQuery pathAndQuery = UrlPathAndQuery.parse(input);
-
-        if (!pattern.matcher(pathAndQuery.path()).matches()) {
-            return false;
-        }
+        return matches(RequestUrl.parse(input));
+    }
 
-        return true;
+    /**
+     * Checks if the path of the tokenized URL matches the variable extractor
+     * pattern. The path is matched in place, no substrings are created.
+     *
+     * @param url tokenized input
+     * @return true if the variable extractor matches the input
+     */
+    public boolean matches(RequestUrl url) {
+        return pattern.matcher(url.getUrl()).region(0, url.getPathEnd()).matches();
     }
 
     /**
@@ -68,18 +98,30 @@ public final class VariableExtractor {
      * @return list of extracted variables
      */
     public List<Variable> extract(String input) {
-        UrlPathAndQuery pathAndQuery = UrlPathAndQuery.parse(input);
+        return extract(RequestUrl.parse(input));
+    }
 
-        List<Variable> result = new ArrayList<>();
+    /**
+     * Extracts the variables from the tokenized URL. Path variables and
+     * query parameter values are decoded here, only after the path matched.
+     *
+     * @param url tokenized input
+     * @return list of extracted variables
+     */
+    public List<Variable> extract(RequestUrl url) {
+        List<Variable> result = new ArrayList<>(pathVars.size() + url.getParamCount());
 
-        Matcher pathMatcher = pattern.matcher(pathAndQuery.path());
+        Matcher pathMatcher = pattern.matcher(url.getUrl()).region(0, url.getPathEnd());
         if (pathMatcher.matches()) {
             for (int i = 0; i < pathVars.size(); i++) {
-                result.add(new Variable(pathVars.get(i), decode(pathMatcher.group(1 + i))));
+                result.add(new Variable(
+                        pathVars.get(i),
+                        RequestUrl.decode(url.getUrl(), pathMatcher.start(1 + i), pathMatcher.end(1 + i)),
+                        pathBindings[i]));
             }
         }
 
-        result.addAll(pathAndQuery.variables());
+        result.addAll(url.queryVariables());
 
         return result;
     }
@@ -88,6 +130,12 @@ public final class VariableExtractor {
         return pathVars;
     }
 
+    private static void appendLiteral(StringBuilder builder, String literal) {
+        if (!literal.isEmpty()) {
+            builder.append(Pattern.quote(literal));
+        }
+    }
+
     @Override public String toString() {
         return pattern.toString();
     }
@@ -1,59 +1,337 @@
 package grpcbridge.rpc;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
-import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.protobuf.Message;
 import io.grpc.*;
 
 /**
  * A helper class that is used to translate gRPC async {@link ServerCall} into
- * {@link SettableFuture} that is much easier to work with.
+ * {@link RpcListener} events that are much easier to work with.
+ *
+ * <p>
+ * The request messages are delivered to the method implementation only as
+ * it asks for them with {@link #request(int)}, followed by the half-close
+ * once all of them are consumed. The messages are pulled from the request
+ * iterator one at a time, so a lazily decoded stream is read only as fast
+ * as the method consumes it, and a message that fails to decode cancels
+ * the call with {@link Status#INVALID_ARGUMENT}. The {@link ServerCall.Listener} callbacks
+ * are never invoked concurrently: a callback requested while another one is
+ * running, on the same or on a different thread, is run by the thread that
+ * is already delivering them. The callbacks are delivered on the executor
+ * of the call.
+ *
+ * <p>
+ * The {@link RpcListener} callbacks are serialized as well: headers and
+ * messages sent by the method implementation and the close, either by the
+ * implementation or by a cancellation, are delivered under one lock, and
+ * nothing is delivered after the close.
+ *
+ * <p>
+ * The callbacks run in the cancellable {@link Context} of the call. The call
+ * is cancelled when the context is, e.g. once its deadline passes, and the
+ * context is cancelled when the call completes. A callback that throws
+ * closes the call, see {@link #closeOnException(RuntimeException)}.
  */
-final class AsyncCall extends ServerCall<Message, Message> {
+final class AsyncCall extends ServerCall<Message, Message> implements CallControl {
     private final MethodDescriptor<Message, Message> method;
-    private final SettableFuture<RpcMessage> delegate;
-    private Metadata headers;
-    private List<Message> messages = new ArrayList<Message>();
+    private final RpcListener listener;
+    private final Iterator<Message> requests;
+    private final Context.CancellableContext context;
+    private final Executor executor;
+    private final Object listenerLock = new Object();
+
+    private ServerCall.Listener<Message> callListener;
+    private int demand;
+    private boolean exhausted;
+    private boolean halfClosed;
+    private boolean readyPending;
+    private boolean cancelPending;
+    private boolean delivering;
+    private volatile boolean cancelled;
+    private boolean closed;
+    private boolean listenerClosed;
 
     public AsyncCall(
             MethodDescriptor<Message, Message> method,
-            SettableFuture<RpcMessage> delegate) {
+            RpcListener listener,
+            Iterator<Message> requests,
+            Context.CancellableContext context,
+            Executor executor) {
         this.method = method;
-        this.delegate = delegate;
+        this.listener = listener;
+        this.requests = requests;
+        this.context = context;
+        this.executor = executor;
+        context.addListener(
+                cancelled -> cancel(Contexts.statusFromCancelled(cancelled)),
+                MoreExecutors.directExecutor());
+    }
+
+
+    /**
+     * Starts delivering the request messages to the listener returned by
+     * the call handler. Called on the executor of the call.
+     *
+     * @param callListener listener of the started call
+     */
+    void start(ServerCall.Listener<Message> callListener) {
+        RuntimeException failure = null;
+        boolean empty;
+        try {
+            empty = !requests.hasNext();
+        } catch (RuntimeException e) {
+            empty = true;
+            failure = e;
+        }
+        synchronized (this) {
+            this.callListener = callListener;
+            this.readyPending = true;
+            this.exhausted = empty;
+        }
+        if (failure != null) {
+            failed(failure);
+        }
+        // Already on the executor of the call, no need for another hop.
+        if (startDelivery()) {
+            drain();
+        }
     }
 
     @Override
     public void request(int numMessages) {
+        synchronized (this) {
+            demand += numMessages;
+        }
+        deliver();
     }
 
     @Override
     public void sendHeaders(Metadata headers) {
-        this.headers = headers;
+        synchronized (listenerLock) {
+            if (!cancelled && !listenerClosed) {
+                listener.onHeaders(headers);
+            }
+        }
     }
 
     @Override
     public void sendMessage(Message message) {
-        this.messages.add(message);
+        synchronized (listenerLock) {
+            if (!cancelled && !listenerClosed) {
+                listener.onMessage(message);
+            }
+        }
     }
 
     @Override
     public void close(Status status, Metadata trailers) {
-        if (!status.isOk()) {
-            delegate.setException(new StatusRuntimeException(status, trailers));
-        } else {
-            delegate.set(new RpcMessage(this.messages, headers, method.getType())); // send all messages on close
+        if (markClosed()) {
+            context.cancel(null);
+            closeListener(status, trailers);
         }
     }
 
+    @Override
+    public boolean isReady() {
+        return !cancelled && listener.isReady();
+    }
+
     @Override
     public boolean isCancelled() {
-        return false;
+        return cancelled;
     }
 
     @Override
     public MethodDescriptor<Message, Message> getMethodDescriptor() {
         return method;
     }
+
+    @Override
+    public void cancel() {
+        context.cancel(null);
+    }
+
+    private void cancel(Status status) {
+        synchronized (this) {
+            if (cancelled || closed) {
+                return;
+            }
+            cancelled = true;
+            cancelPending = true;
+            closed = true;
+        }
+        closeListener(status, new Metadata());
+        deliver();
+    }
+
+    /**
+     * Closes the listener once, waiting for a message being delivered to it
+     * on another thread. Never called with the call lock held.
+     */
+    private void closeListener(Status status, Metadata trailers) {
+        synchronized (listenerLock) {
+            if (listenerClosed) {
+                return;
+            }
+            listenerClosed = true;
+            listener.onClose(status, trailers);
+        }
+    }
+
+    @Override
+    public void ready() {
+        synchronized (this) {
+            readyPending = true;
+        }
+        deliver();
+    }
+
+    private synchronized boolean markClosed() {
+        if (closed) {
+            return false;
+        }
+        closed = true;
+        return true;
+    }
+
+    private void deliver() {
+        if (!startDelivery()) {
+            return;
+        }
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            synchronized (this) {
+                delivering = false;
+            }
+            if (!cancelled) {
+                context.cancel(Status.RESOURCE_EXHAUSTED
+                        .withDescription("Call rejected by the executor")
+                        .withCause(e)
+                        .asRuntimeException());
+            }
+        }
+    }
+
+    /**
+     * @return true if the caller has to deliver the pending callbacks,
+     *      false if there is no listener yet or another delivery is running
+     */
+    private synchronized boolean startDelivery() {
+        if (delivering || callListener == null) {
+            return false;
+        }
+        delivering = true;
+        return true;
+    }
+
+    private void drain() {
+        boolean completed = false;
+        Context previous = context.attach();
+        try {
+            Runnable next;
+            while ((next = next()) != null) {
+                try {
+                    next.run();
+                } catch (RuntimeException e) {
+                    closeOnException(e);
+                    return;
+                }
+            }
+            completed = true;
+        } finally {
+            context.detach(previous);
+            if (!completed) {
+                synchronized (this) {
+                    delivering = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return next listener callback to run, null if there is nothing to
+     *      deliver, in which case the delivery is over and the next event
+     *      starts a new one
+     */
+    private synchronized Runnable next() {
+        if (cancelPending) {
+            cancelPending = false;
+            return callListener::onCancel;
+        } else if (cancelled) {
+            delivering = false;
+            return null;
+        }
+
+        if (readyPending) {
+            readyPending = false;
+            if (!closed && listener.isReady()) {
+                return callListener::onReady;
+            }
+        }
+
+        if (demand > 0 && !exhausted) {
+            demand--;
+            return this::readNext;
+        } else if (exhausted && !halfClosed) {
+            halfClosed = true;
+            return callListener::onHalfClose;
+        }
+        delivering = false;
+        return null;
+    }
+
+    /**
+     * Decodes and delivers the next request message. Runs outside of the
+     * lock, only ever on the delivering thread.
+     */
+    private void readNext() {
+        Message message;
+        boolean more;
+        try {
+            message = requests.next();
+        } catch (RuntimeException e) {
+            failed(e);
+            return;
+        }
+        callListener.onMessage(message);
+        try {
+            more = requests.hasNext();
+        } catch (RuntimeException e) {
+            failed(e);
+            return;
+        }
+        if (!more) {
+            synchronized (this) {
+                exhausted = true;
+            }
+        }
+    }
+
+    /**
+     * Closes the call once the method implementation throws, nothing else
+     * is delivered to it afterwards. A {@link StatusRuntimeException} keeps
+     * its status and trailers, anything else is {@link Status#UNKNOWN}.
+     *
+     * @param e exception thrown by the call handler or a listener callback
+     */
+    void closeOnException(RuntimeException e) {
+        synchronized (this) {
+            cancelled = true;
+            closed = true;
+        }
+        closeListener(Status.fromThrowable(e), Status.trailersFromThrowable(e));
+        context.cancel(null);
+    }
+
+    private void failed(RuntimeException e) {
+        context.cancel(Status.INVALID_ARGUMENT
+                .withDescription(e.getMessage())
+                .withCause(e)
+                .asRuntimeException());
+    }
 }
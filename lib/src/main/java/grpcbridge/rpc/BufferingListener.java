@@ -0,0 +1,46 @@
+package grpcbridge.rpc;
+
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.protobuf.Message;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor.MethodType;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects all the response messages and completes the future with them
+ * once the call is closed.
+ */
+final class BufferingListener implements RpcListener {
+    private final MethodType methodType;
+    private final SettableFuture<RpcMessage> delegate;
+    private Metadata headers;
+    private List<Message> messages = new ArrayList<Message>();
+
+    BufferingListener(MethodType methodType, SettableFuture<RpcMessage> delegate) {
+        this.methodType = methodType;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void onHeaders(Metadata headers) {
+        this.headers = headers;
+    }
+
+    @Override
+    public void onMessage(Message message) {
+        this.messages.add(message);
+    }
+
+    @Override
+    public void onClose(Status status, Metadata trailers) {
+        if (!status.isOk()) {
+            delegate.setException(new StatusRuntimeException(status, trailers));
+        } else {
+            delegate.set(new RpcMessage(this.messages, headers, methodType)); // send all messages on close
+        }
+    }
+}
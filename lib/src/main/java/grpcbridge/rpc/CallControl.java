@@ -0,0 +1,22 @@
+package grpcbridge.rpc;
+
+/**
+ * Lets the HTTP side of a streamed call push back on the method
+ * implementation. Both methods can be called from any thread.
+ */
+public interface CallControl {
+    /**
+     * Cancels the call, e.g. when the HTTP client disconnects. The method
+     * implementation is notified through
+     * {@link io.grpc.ServerCall.Listener#onCancel()} and further responses
+     * are dropped.
+     */
+    void cancel();
+
+    /**
+     * Signals that the HTTP side can accept more data again after it reported
+     * it was not ready. The method implementation is notified through
+     * {@link io.grpc.ServerCall.Listener#onReady()}.
+     */
+    void ready();
+}
@@ -0,0 +1,138 @@
+package grpcbridge.rpc;
+
+import static java.lang.String.format;
+
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Message;
+import grpcbridge.Exceptions.RouteNotFoundException;
+import grpcbridge.route.Variable;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nullable;
+
+/**
+ * A variable name resolved to a chain of {@link FieldDescriptor}s of a
+ * protobuf message. For {path.to.protobuf.field} the chain holds the "path",
+ * "to" and "protobuf" message fields followed by the "field" field.
+ *
+ * <p>
+ * Bindings for the path variables are resolved when the route is built, the
+ * rest are resolved on first use and cached per message type, so applying a
+ * variable does not look up fields by name.
+ */
+public final class FieldBinding {
+    private static final ConcurrentMap<Descriptor, ConcurrentMap<String, FieldBinding>> CACHE =
+            new ConcurrentHashMap<>();
+
+    private final Descriptor root;
+    private final FieldDescriptor[] path;
+    private final FieldDescriptor field;
+
+    private FieldBinding(Descriptor root, FieldDescriptor[] path, FieldDescriptor field) {
+        this.root = root;
+        this.path = path;
+        this.field = field;
+    }
+
+    /**
+     * Returns binding of the variable to the given message type.
+     *
+     * @param root message type to bind to
+     * @param var variable to bind
+     * @return resolved binding
+     * @throws RouteNotFoundException if the variable does not point to a
+     *      field of the message
+     */
+    public static FieldBinding of(Descriptor root, Variable var) {
+        ConcurrentMap<String, FieldBinding> bindings =
+                CACHE.computeIfAbsent(root, d -> new ConcurrentHashMap<>());
+        FieldBinding binding = bindings.get(var.getName());
+        if (binding == null) {
+            binding = resolve(root, var);
+            bindings.putIfAbsent(var.getName(), binding);
+        }
+        return binding;
+    }
+
+    /**
+     * Returns binding of the variable name to the given message type.
+     *
+     * @param root message type to bind to
+     * @param name variable name, e.g. path.to.protobuf.field
+     * @return resolved binding, null if the name does not point to a field
+     *      of the message
+     */
+    public static @Nullable FieldBinding find(Descriptor root, String name) {
+        try {
+            return of(root, new Variable(name, ""));
+        } catch (RouteNotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return message type the binding applies to
+     */
+    public Descriptor getRoot() {
+        return root;
+    }
+
+    /**
+     * @return the bound field
+     */
+    public FieldDescriptor getField() {
+        return field;
+    }
+
+    /**
+     * Sets the variable value on the bound field of the given builder.
+     * Repeated field values are appended.
+     *
+     * @param builder builder of the {@link #getRoot()} message type
+     * @param var variable to apply
+     */
+    public void apply(Message.Builder builder, Variable var) {
+        Message.Builder current = builder;
+        for (FieldDescriptor segment : path) {
+            current = current.getFieldBuilder(segment);
+        }
+
+        if (field.isRepeated()) {
+            current.addRepeatedField(field, var.valueAs(field));
+        } else {
+            current.setField(field, var.valueAs(field));
+        }
+    }
+
+    private static FieldBinding resolve(Descriptor root, Variable var) {
+        String[] segments = var.getFieldPath();
+        FieldDescriptor[] path = new FieldDescriptor[segments.length];
+        Descriptor current = root;
+
+        for (int i = 0; i < segments.length; i++) {
+            FieldDescriptor segment = current.findFieldByName(segments[i]);
+            if (segment == null
+                    || segment.isRepeated()
+                    || segment.getJavaType() != FieldDescriptor.JavaType.MESSAGE) {
+                throw new RouteNotFoundException(format(
+                        "Invalid variable path: %s, looking for: %s",
+                        var,
+                        segments[i]));
+            }
+            path[i] = segment;
+            current = segment.getMessageType();
+        }
+
+        FieldDescriptor field = var.getFieldNames()
+                .stream()
+                .map(current::findFieldByName)
+                .filter(Objects::nonNull)
+                .findFirst()
+                .orElseThrow(() -> new RouteNotFoundException("Invalid variable path: " + var));
+
+        return new FieldBinding(root, path, field);
+    }
+}
@@ -1,13 +1,25 @@
 package grpcbridge.rpc;
 
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.protobuf.Message;
+import io.grpc.Context;
+import io.grpc.Deadline;
+import io.grpc.Metadata;
 import io.grpc.ServerCall;
 import io.grpc.ServerMethodDefinition;
+import io.grpc.Status;
 
 import grpcbridge.monitoring.TracingSpan;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import javax.annotation.Nullable;
+
 /**
  * Abstracts away a gRPC method invocation. The invocation holds a pointer to
  * the underlying gRPC method implementation and the request protobuf for the
@@ -28,6 +40,13 @@ public final class RpcCall {
         this.request = request;
     }
 
+    /**
+     * @return gRPC request
+     */
+    public RpcMessage getRequest() {
+        return request;
+    }
+
     /**
      * Executes the gRPC request and returns response future.
      *
@@ -35,19 +54,187 @@ public final class RpcCall {
      * @return gRPC response future
      */
     public ListenableFuture<RpcMessage> execute(TracingSpan tracingSpan) {
+        return execute(tracingSpan, null);
+    }
+
+    /**
+     * Executes the gRPC request with the given deadline and returns response
+     * future. The future fails with DEADLINE_EXCEEDED as soon as the deadline
+     * passes and the call is cancelled.
+     *
+     * @param tracingSpan tracing span to attach to call
+     * @param deadline call deadline, null for none
+     * @return gRPC response future
+     */
+    public ListenableFuture<RpcMessage> execute(
+            TracingSpan tracingSpan,
+            @Nullable Deadline deadline) {
+        return execute(tracingSpan, deadline, MoreExecutors.directExecutor());
+    }
+
+    /**
+     * Executes the gRPC request on the given executor. The method
+     * implementation is started and receives all of its callbacks on the
+     * executor, the call fails with RESOURCE_EXHAUSTED if the executor
+     * rejects it.
+     *
+     * @param tracingSpan tracing span to attach to call
+     * @param deadline call deadline, null for none
+     * @param executor executor running the method implementation
+     * @return gRPC response future
+     */
+    public ListenableFuture<RpcMessage> execute(
+            TracingSpan tracingSpan,
+            @Nullable Deadline deadline,
+            Executor executor) {
         SettableFuture<RpcMessage> result = SettableFuture.create();
         tracingSpan.attachTo(result);
-        ServerCall.Listener<Message> listener = tracingSpan.callInContext(() -> method
-                .getServerCallHandler()
-                .startCall(
-                        new AsyncCall(method.getMethodDescriptor(), result),
-                        request.getMetadata()));
-
-        for (Message message : request.getBody()) {
-            listener.onMessage(message);
+        CallControl control = start(
+                tracingSpan,
+                new BufferingListener(method.getMethodDescriptor().getType(), result),
+                deadline,
+                executor);
+        result.addListener(() -> {
+            if (result.isCancelled()) {
+                control.cancel();
+            }
+        }, MoreExecutors.directExecutor());
+        return result;
+    }
+
+    /**
+     * Executes the gRPC request and delivers the response messages to the
+     * given listener as soon as the method implementation sends them.
+     *
+     * @param tracingSpan tracing span to attach to call
+     * @param listener listener receiving the response events
+     * @return control used to signal readiness and cancel the call
+     */
+    public CallControl stream(TracingSpan tracingSpan, RpcListener listener) {
+        return stream(tracingSpan, listener, null);
+    }
+
+    /**
+     * Executes the gRPC request with the given deadline and delivers the
+     * response messages to the given listener as soon as the method
+     * implementation sends them.
+     *
+     * @param tracingSpan tracing span to attach to call
+     * @param listener listener receiving the response events
+     * @param deadline call deadline, null for none
+     * @return control used to signal readiness and cancel the call
+     */
+    public CallControl stream(
+            TracingSpan tracingSpan,
+            RpcListener listener,
+            @Nullable Deadline deadline) {
+        return stream(tracingSpan, listener, deadline, MoreExecutors.directExecutor());
+    }
+
+    /**
+     * Executes the gRPC request on the given executor and delivers the
+     * response messages to the given listener as soon as the method
+     * implementation sends them, from the threads the method sends them on.
+     *
+     * @param tracingSpan tracing span to attach to call
+     * @param listener listener receiving the response events
+     * @param deadline call deadline, null for none
+     * @param executor executor running the method implementation
+     * @return control used to signal readiness and cancel the call
+     */
+    public CallControl stream(
+            TracingSpan tracingSpan,
+            RpcListener listener,
+            @Nullable Deadline deadline,
+            Executor executor) {
+        return start(tracingSpan, new RpcListener() {
+            @Override
+            public void onStart(CallControl control) {
+                listener.onStart(control);
+            }
+
+            @Override
+            public void onHeaders(Metadata headers) {
+                listener.onHeaders(headers);
+            }
+
+            @Override
+            public void onMessage(Message message) {
+                listener.onMessage(message);
+            }
+
+            @Override
+            public void onClose(Status status, Metadata trailers) {
+                tracingSpan.close(status);
+                listener.onClose(status, trailers);
+            }
+
+            @Override
+            public boolean isReady() {
+                return listener.isReady();
+            }
+        }, deadline, executor);
+    }
+
+    private CallControl start(
+            TracingSpan tracingSpan,
+            RpcListener listener,
+            @Nullable Deadline deadline,
+            Executor executor) {
+        Context.CancellableContext context = deadline == null
+                ? Context.current().withCancellation()
+                : Context.current().withDeadline(deadline, DeadlineScheduler.INSTANCE);
+        AsyncCall call = new AsyncCall(
+                method.getMethodDescriptor(),
+                listener,
+                request.getMessages(),
+                context,
+                executor);
+        listener.onStart(call);
+
+        if (executor == MoreExecutors.directExecutor()) {
+            startCall(tracingSpan, call, context);
+        } else {
+            try {
+                executor.execute(() -> startCall(tracingSpan, call, context));
+            } catch (RejectedExecutionException e) {
+                call.close(
+                        Status.RESOURCE_EXHAUSTED
+                                .withDescription("Call rejected by the executor")
+                                .withCause(e),
+                        new Metadata());
+            }
         }
-        listener.onHalfClose();
+        return call;
+    }
 
-        return result;
+    private void startCall(
+            TracingSpan tracingSpan,
+            AsyncCall call,
+            Context.CancellableContext context) {
+        ServerCall.Listener<Message> callListener;
+        Context previous = context.attach();
+        try {
+            callListener = tracingSpan.callInContext(() -> method
+                    .getServerCallHandler()
+                    .startCall(call, request.getMetadata()));
+        } catch (RuntimeException e) {
+            call.closeOnException(e);
+            return;
+        } finally {
+            context.detach(previous);
+        }
+        call.start(callListener);
+    }
+
+    /**
+     * Timer shared by the call deadlines, created on first use.
+     */
+    private static final class DeadlineScheduler {
+        static final ScheduledExecutorService INSTANCE = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder()
+                        .setDaemon(true)
+                        .setNameFormat("grpcbridge-deadline-%d")
+                        .build());
     }
 }
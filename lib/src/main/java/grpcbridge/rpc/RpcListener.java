@@ -0,0 +1,55 @@
+package grpcbridge.rpc;
+
+import com.google.protobuf.Message;
+import io.grpc.Metadata;
+import io.grpc.Status;
+
+/**
+ * Receives the events of a gRPC call as the method implementation produces
+ * them. The events are delivered on the thread the implementation calls the
+ * {@link io.grpc.ServerCall} on, and never concurrently.
+ */
+public interface RpcListener {
+    /**
+     * Called before the method implementation is started, with the control
+     * of the call, e.g. to cancel it when the response can not be written.
+     *
+     * @param control control of the call
+     */
+    default void onStart(CallControl control) {
+    }
+
+    /**
+     * Called when the method implementation sends the response headers,
+     * before any message.
+     *
+     * @param headers response headers metadata
+     */
+    void onHeaders(Metadata headers);
+
+    /**
+     * Called for every response message, in order.
+     *
+     * @param message response protobuf message
+     */
+    void onMessage(Message message);
+
+    /**
+     * Called once when the call completes.
+     *
+     * @param status call status
+     * @param trailers trailers metadata
+     */
+    void onClose(Status status, Metadata trailers);
+
+    /**
+     * Reports whether more messages can be accepted without buffering. The
+     * method implementation is expected to hold off sending while this
+     * returns false, until {@link CallControl#ready()} is called.
+     *
+     * @return true if the listener can accept more messages
+     */
+    default boolean isReady() {
+        return true;
+    }
+}
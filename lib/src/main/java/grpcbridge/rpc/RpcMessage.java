@@ -2,18 +2,20 @@ package grpcbridge.rpc;
 
 import static java.lang.String.format;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import javax.annotation.Nullable;
 
-import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
+import com.google.protobuf.Descriptors.Descriptor;
 import com.google.protobuf.Message;
-import grpcbridge.Exceptions.RouteNotFoundException;
 import grpcbridge.route.Variable;
 import io.grpc.Metadata;
 import io.grpc.MethodDescriptor.MethodType;
 
-import java.util.Objects;
-
 /**
  * gRPC message (request or response) abstraction. Each message is the
  * request or response protobuf and the headers or trailers metadata.
@@ -22,6 +24,8 @@ public class RpcMessage {
     private List<Message> body;
     private final Metadata metadata;
     private MethodType methodType;
+    private final @Nullable Iterator<Message> stream;
+    private final List<Variable> streamVars = new ArrayList<>();
 
     /**
      * @param body request or response protobuf message
@@ -35,6 +39,28 @@ public class RpcMessage {
         this.body = body;
         this.metadata = metadata;
         this.methodType = methodType;
+        this.stream = null;
+    }
+
+    private RpcMessage(Iterator<Message> stream, Metadata metadata) {
+        this.body = new ArrayList<>();
+        this.metadata = metadata;
+        this.methodType = MethodType.CLIENT_STREAMING;
+        this.stream = stream;
+    }
+
+    /**
+     * Creates a client streaming request whose messages are decoded only as
+     * they are consumed, see {@link #getMessages()}. The variables set on
+     * the request are applied to every message as it is decoded, the
+     * {@link #getBody()} of the request is empty.
+     *
+     * @param stream lazily decoded request messages
+     * @param metadata headers metadata
+     * @return streaming request
+     */
+    public static RpcMessage streaming(Iterator<Message> stream, Metadata metadata) {
+        return new RpcMessage(stream, metadata);
     }
 
     /**
@@ -55,6 +81,20 @@ public class RpcMessage {
         return methodType;
     }
 
+    /**
+     * @return request or response protobuf messages, decoded on demand for
+     *      a {@link #streaming} request
+     */
+    public Iterator<Message> getMessages() {
+        if (stream == null) {
+            return body.iterator();
+        } else if (streamVars.isEmpty()) {
+            return stream;
+        }
+        List<Variable> vars = ImmutableList.copyOf(streamVars);
+        return Iterators.transform(stream, message -> withVars(message, vars));
+    }
+
     /**
      * Applies the specified variable to the underlying protobuf message.
      * If this is a stream RpcMessage, then this will set the var on every message.
@@ -63,6 +103,10 @@ public class RpcMessage {
      * @param var variable to set
      */
     public void setVar(Variable var) {
+        if (stream != null) {
+            streamVars.add(var);
+            return;
+        }
         for (int i = 0; i < this.body.size(); i++) {
             setVar(i, var);
         }
@@ -82,38 +126,71 @@ public class RpcMessage {
         }
         
         Message message = this.body.get(messageIndex);
+        FieldBinding binding = bindingFor(message.getDescriptorForType(), var);
         Message.Builder start = message.toBuilder();
+        binding.apply(start, var);
+        this.body.set(messageIndex, start.build());
+    }
+
+    /**
+     * Applies the specified variables to the underlying protobuf messages.
+     * Each message is copied into a builder once and rebuilt once, no matter
+     * how many variables are applied.
+     *
+     * @param vars variables to set, in order
+     */
+    public void setVars(List<Variable> vars) {
+        if (stream != null) {
+            streamVars.addAll(vars);
+            return;
+        }
+        for (int i = 0; i < this.body.size(); i++) {
+            setVars(i, vars);
+        }
+    }
+
+    /**
+     * Applies the specified variables to the underlying protobuf message
+     * using a single builder.
+     *
+     * @param messageIndex The index of the message in the stream to set the variables on
+     * @param vars variables to set, in order
+     *
+     * throws {@link IllegalArgumentException} when an invalid index is given
+     */
+    public void setVars(int messageIndex, List<Variable> vars) {
+        if ((messageIndex < 0) || (messageIndex >= body.size())) {
+            throw new IllegalArgumentException("No message found for index " + messageIndex);
+        }
+        if (vars.isEmpty()) {
+            return;
+        }
 
-        Message.Builder current = start;
-
-        for (String segment : var.getFieldPath()) {
-            FieldDescriptor field = current.getDescriptorForType().findFieldByName(segment);
-            if (field == null) {
-                throw new RouteNotFoundException(format(
-                        "Invalid variable path: %s, looking for: %s",
-                        var,
-                        segment));
-            }
-            current = current.getFieldBuilder(field);
+        this.body.set(messageIndex, withVars(this.body.get(messageIndex), vars));
+    }
+
+    private static Message withVars(Message message, List<Variable> vars) {
+        Descriptor descriptor = message.getDescriptorForType();
+        Message.Builder start = message.toBuilder();
+        for (int i = 0; i < vars.size(); i++) {
+            Variable var = vars.get(i);
+            bindingFor(descriptor, var).apply(start, var);
         }
+        return start.build();
+    }
 
-        FieldDescriptor field = var.getFieldNames()
-                .stream()
-                .map(current.getDescriptorForType()::findFieldByName)
-                .filter(Objects::nonNull)
-                .findFirst()
-                .orElseThrow(() -> new RouteNotFoundException("Invalid variable path: " + var));
-
-        if (field.isRepeated()) {
-            current.addRepeatedField(field, var.valueAs(field));
-        } else {
-            current.setField(field, var.valueAs(field));
+    private static FieldBinding bindingFor(Descriptor descriptor, Variable var) {
+        FieldBinding binding = var.getBinding();
+        if (binding != null && binding.getRoot() == descriptor) {
+            return binding;
         }
-        this.body.set(messageIndex, start.build());
+        return FieldBinding.of(descriptor, var);
     }
 
     @Override
     public String toString() {
-        return format("{%s} %s", body, metadata);
+        return stream == null
+                ? format("{%s} %s", body, metadata)
+                : format("{stream} %s", metadata);
     }
 }
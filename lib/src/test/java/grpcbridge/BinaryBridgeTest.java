@@ -0,0 +1,212 @@
+package grpcbridge;
+
+import static grpcbridge.common.TestFactory.newPostRequest;
+import static grpcbridge.common.TestFactory.responseFor;
+import static grpcbridge.http.HttpMethod.GET;
+import static grpcbridge.http.HttpMethod.POST;
+import static io.grpc.Metadata.ASCII_STRING_MARSHALLER;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import grpcbridge.Exceptions.ParsingException;
+import grpcbridge.common.TestService;
+import grpcbridge.http.HttpRequest;
+import grpcbridge.http.HttpResponse;
+import grpcbridge.parser.ProtoBinaryConverter;
+import grpcbridge.test.proto.Test.GetResponse;
+import grpcbridge.test.proto.Test.PostRequest;
+import grpcbridge.test.proto.Test.PostResponse;
+import io.grpc.Metadata;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class BinaryBridgeTest {
+    private static final Metadata.Key<String> CONTENT_TYPE =
+            Metadata.Key.of("content-type", ASCII_STRING_MARSHALLER);
+    private static final Metadata.Key<String> ACCEPT =
+            Metadata.Key.of("accept", ASCII_STRING_MARSHALLER);
+
+    private Bridge bridge = Bridge
+            .builder()
+            .addFile(grpcbridge.test.proto.Test.getDescriptor())
+            .addService(new TestService().bindService())
+            .addSerializer(ProtoBinaryConverter.INSTANCE)
+            .addDeserializer(ProtoBinaryConverter.INSTANCE)
+            .addSerializer(ProtoBinaryConverter.GRPC_WEB)
+            .addDeserializer(ProtoBinaryConverter.GRPC_WEB)
+            .build();
+
+    @Test
+    public void post_protobuf() throws IOException {
+        PostRequest rpcRequest = newPostRequest();
+        HttpRequest request = HttpRequest
+                .builder(POST, "/post/hello")
+                .headers(headers("application/x-protobuf"))
+                .body(rpcRequest.toByteArray())
+                .build();
+
+        HttpResponse response = bridge.handle(request);
+
+        assertThat(response.getTrailers().get(CONTENT_TYPE)).isEqualTo("application/x-protobuf");
+        assertThat(PostResponse.parseFrom(response.getBodyBytes()))
+                .isEqualTo(responseFor(rpcRequest.toBuilder().setStringField("hello").build()));
+    }
+
+    @Test
+    public void post_grpcWeb() throws IOException {
+        PostRequest rpcRequest = newPostRequest();
+        HttpRequest request = HttpRequest
+                .builder(POST, "/post/hello")
+                .headers(headers("application/grpc-web+proto"))
+                .body(frame(0, rpcRequest.toByteArray()))
+                .build();
+
+        HttpResponse response = bridge.handle(request);
+        DataInputStream body = new DataInputStream(new ByteArrayInputStream(response.getBodyBytes()));
+
+        assertThat(response.getTrailers().get(CONTENT_TYPE)).isEqualTo("application/grpc-web+proto");
+        assertThat(PostResponse.parseFrom(readFrame(body, 0)))
+                .isEqualTo(responseFor(rpcRequest.toBuilder().setStringField("hello").build()));
+        assertThat(new String(readFrame(body, 0x80), "US-ASCII")).isEqualTo("grpc-status:0\r\n");
+        assertThat(body.read()).isEqualTo(-1);
+    }
+
+    @Test
+    public void getStream_protobuf() throws IOException {
+        HttpRequest request = HttpRequest
+                .builder(GET, "/get-stream/hello?int_field=2")
+                .headers(headers("application/x-protobuf"))
+                .build();
+
+        HttpResponse response = bridge.handle(request);
+        ByteArrayInputStream body = new ByteArrayInputStream(response.getBodyBytes());
+
+        assertThat(GetResponse.parseDelimitedFrom(body).getIntField()).isEqualTo(0);
+        assertThat(GetResponse.parseDelimitedFrom(body).getIntField()).isEqualTo(1);
+        assertThat(GetResponse.parseDelimitedFrom(body)).isNull();
+    }
+
+    @Test
+    public void post_grpcWeb_truncatedFrame() throws IOException {
+        byte[] frame = frame(0, newPostRequest().toByteArray());
+        HttpRequest request = HttpRequest
+                .builder(POST, "/post/hello")
+                .headers(headers("application/grpc-web+proto"))
+                .body(Arrays.copyOf(frame, frame.length - 1))
+                .build();
+
+        assertThatExceptionOfType(ParsingException.class)
+                .isThrownBy(() -> bridge.handle(request));
+    }
+
+    @Test
+    public void post_grpcWeb_oversizedFrame() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeByte(0);
+        data.writeInt(Integer.MAX_VALUE);
+        data.write(newPostRequest().toByteArray());
+        HttpRequest request = HttpRequest
+                .builder(POST, "/post/hello")
+                .headers(headers("application/grpc-web+proto"))
+                .body(out.toByteArray())
+                .build();
+
+        assertThatExceptionOfType(ParsingException.class)
+                .isThrownBy(() -> bridge.handle(request))
+                .withStackTraceContaining("exceeds the limit");
+    }
+
+    @Test
+    public void post_grpcWeb_configuredMaxMessageSize() throws IOException {
+        ProtoBinaryConverter converter = ProtoBinaryConverter.GRPC_WEB.withMaxMessageSize(1);
+        Bridge limited = Bridge
+                .builder()
+                .addFile(grpcbridge.test.proto.Test.getDescriptor())
+                .addService(new TestService().bindService())
+                .addSerializer(converter)
+                .addDeserializer(converter)
+                .build();
+        HttpRequest request = HttpRequest
+                .builder(POST, "/post/hello")
+                .headers(headers("application/grpc-web+proto"))
+                .body(frame(0, newPostRequest().toByteArray()))
+                .build();
+
+        assertThatExceptionOfType(ParsingException.class)
+                .isThrownBy(() -> limited.handle(request));
+    }
+
+    @Test
+    public void post_grpcWeb_dataAfterFrame() throws IOException {
+        byte[] frame = frame(0, newPostRequest().toByteArray());
+        byte[] body = Arrays.copyOf(frame, frame.length * 2);
+        System.arraycopy(frame, 0, body, frame.length, frame.length);
+        HttpRequest request = HttpRequest
+                .builder(POST, "/post/hello")
+                .headers(headers("application/grpc-web+proto"))
+                .body(body)
+                .build();
+
+        assertThatExceptionOfType(ParsingException.class)
+                .isThrownBy(() -> bridge.handle(request));
+    }
+
+    @Test
+    public void get_acceptQualityValues() throws IOException {
+        Metadata headers = new Metadata();
+        headers.put(ACCEPT, "application/x-protobuf;q=0.5, application/json");
+        HttpRequest jsonRequest = HttpRequest
+                .builder(GET, "/get/hello")
+                .headers(headers)
+                .build();
+
+        HttpResponse jsonResponse = bridge.handle(jsonRequest);
+
+        assertThat(jsonResponse.getTrailers().get(CONTENT_TYPE))
+                .isEqualTo("application/json; charset=utf-8");
+
+        headers = new Metadata();
+        headers.put(ACCEPT, "application/json;q=0.1, text/html, application/x-protobuf;q=0.8");
+        HttpRequest binaryRequest = HttpRequest
+                .builder(GET, "/get/hello")
+                .headers(headers)
+                .build();
+
+        HttpResponse binaryResponse = bridge.handle(binaryRequest);
+
+        assertThat(binaryResponse.getTrailers().get(CONTENT_TYPE)).isEqualTo("application/x-protobuf");
+        assertThat(GetResponse.parseFrom(binaryResponse.getBodyBytes()).getStringField())
+                .isEqualTo("hello");
+    }
+
+    private static Metadata headers(String type) {
+        Metadata headers = new Metadata();
+        headers.put(CONTENT_TYPE, type);
+        headers.put(ACCEPT, type);
+        return headers;
+    }
+
+    private static byte[] frame(int flags, byte[] payload) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeByte(flags);
+        data.writeInt(payload.length);
+        data.write(payload);
+        return out.toByteArray();
+    }
+
+    private static byte[] readFrame(DataInputStream body, int flags) throws IOException {
+        assertThat(body.read()).isEqualTo(flags);
+        byte[] payload = new byte[body.readInt()];
+        body.readFully(payload);
+        return payload;
+    }
+}
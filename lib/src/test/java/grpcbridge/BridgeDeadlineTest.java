@@ -0,0 +1,176 @@
+package grpcbridge;
+
+import static grpcbridge.http.HttpMethod.GET;
+import static io.grpc.Metadata.ASCII_STRING_MARSHALLER;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import grpcbridge.http.HttpRequest;
+import grpcbridge.test.proto.DeadlineTest.DeadlineRequest;
+import grpcbridge.test.proto.DeadlineTest.DeadlineResponse;
+import grpcbridge.test.proto.DeadlineTestServiceGrpc.DeadlineTestServiceImplBase;
+import io.grpc.Context;
+import io.grpc.Deadline;
+import io.grpc.Metadata;
+import io.grpc.Status.Code;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.StreamObserver;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Test;
+
+public class BridgeDeadlineTest implements ProtoParseTest {
+    private final DeadlineService service = new DeadlineService();
+
+    @Test
+    public void noTimeout() {
+        Bridge bridge = newBuilder().build();
+
+        assertThat(remaining(bridge, new Metadata())).isEqualTo(-1);
+    }
+
+    @Test
+    public void grpcTimeoutHeader() {
+        Bridge bridge = newBuilder().build();
+
+        long remaining = remaining(bridge, header("grpc-timeout", "5S"));
+        assertThat(remaining).isGreaterThan(0).isLessThanOrEqualTo(5000);
+    }
+
+    @Test
+    public void customTimeoutHeader() {
+        Bridge bridge = newBuilder()
+                .timeoutHeader("X-Request-Timeout")
+                .build();
+
+        long remaining = remaining(bridge, header("x-request-timeout", "2000"));
+        assertThat(remaining).isGreaterThan(0).isLessThanOrEqualTo(2000);
+    }
+
+    @Test
+    public void invalidTimeoutHeader_usesDefault() {
+        Bridge bridge = newBuilder()
+                .defaultTimeout(3, SECONDS)
+                .build();
+
+        long remaining = remaining(bridge, header("grpc-timeout", "soon"));
+        assertThat(remaining).isGreaterThan(2000).isLessThanOrEqualTo(3000);
+    }
+
+    @Test
+    public void longerTimeoutHeader_limitedByDefault() {
+        Bridge bridge = newBuilder()
+                .defaultTimeout(3, SECONDS)
+                .build();
+
+        long remaining = remaining(bridge, header("grpc-timeout", "60S"));
+        assertThat(remaining).isGreaterThan(2000).isLessThanOrEqualTo(3000);
+    }
+
+    @Test
+    public void deadlineExceeded_routeTimeoutShorterThanHeader() throws Exception {
+        Bridge bridge = newBuilder().build();
+        HttpRequest request = HttpRequest
+                .builder(GET, "/sleep-with-timeout")
+                .headers(header("grpc-timeout", "99999999S"))
+                .build();
+
+        assertDeadlineExceeded(bridge, request);
+    }
+
+    @Test
+    public void deadlineExceeded_header() throws Exception {
+        Bridge bridge = newBuilder().build();
+        HttpRequest request = HttpRequest
+                .builder(GET, "/sleep")
+                .headers(header("grpc-timeout", "200m"))
+                .build();
+
+        assertDeadlineExceeded(bridge, request);
+    }
+
+    @Test
+    public void deadlineExceeded_routeTimeout() throws Exception {
+        Bridge bridge = newBuilder().build();
+        HttpRequest request = HttpRequest
+                .builder(GET, "/sleep-with-timeout")
+                .build();
+
+        assertDeadlineExceeded(bridge, request);
+    }
+
+    private void assertDeadlineExceeded(Bridge bridge, HttpRequest request) throws Exception {
+        Throwable error = catchThrowable(() -> bridge.handleAsync(request).get(5, SECONDS));
+
+        assertThat(error).isInstanceOf(ExecutionException.class);
+        assertThat(error.getCause()).isInstanceOf(StatusRuntimeException.class);
+        assertThat(((StatusRuntimeException) error.getCause()).getStatus().getCode())
+                .isEqualTo(Code.DEADLINE_EXCEEDED);
+        // The method is not invoked at all if the deadline passes first.
+        if (service.started) {
+            assertThat(service.cancelled.await(5, SECONDS)).isTrue();
+        }
+    }
+
+    private BridgeBuilder newBuilder() {
+        return Bridge
+                .builder()
+                .addFile(grpcbridge.test.proto.DeadlineTest.getDescriptor())
+                .addService(service.bindService());
+    }
+
+    private long remaining(Bridge bridge, Metadata headers) {
+        HttpRequest request = HttpRequest
+                .builder(GET, "/remaining")
+                .headers(headers)
+                .build();
+        DeadlineResponse response = parse(
+                bridge.handle(request).getBody(),
+                DeadlineResponse.newBuilder());
+        return response.getRemainingMs();
+    }
+
+    private static Metadata header(String name, String value) {
+        Metadata headers = new Metadata();
+        headers.put(Metadata.Key.of(name, ASCII_STRING_MARSHALLER), value);
+        return headers;
+    }
+
+    private static final class DeadlineService extends DeadlineTestServiceImplBase {
+        private final CountDownLatch cancelled = new CountDownLatch(1);
+        private volatile boolean started;
+
+        @Override
+        public void remaining(
+                DeadlineRequest request,
+                StreamObserver<DeadlineResponse> responseObserver) {
+            Deadline deadline = Context.current().getDeadline();
+            responseObserver.onNext(DeadlineResponse.newBuilder()
+                    .setRemainingMs(deadline == null ? -1 : deadline.timeRemaining(MILLISECONDS))
+                    .build());
+            responseObserver.onCompleted();
+        }
+
+        @Override
+        public void sleep(
+                DeadlineRequest request,
+                StreamObserver<DeadlineResponse> responseObserver) {
+            started = true;
+            Context.current().addListener(
+                    context -> cancelled.countDown(),
+                    MoreExecutors.directExecutor());
+        }
+
+        @Override
+        public void sleepWithTimeout(
+                DeadlineRequest request,
+                StreamObserver<DeadlineResponse> responseObserver) {
+            sleep(request, responseObserver);
+        }
+    }
+}
@@ -53,6 +53,10 @@ import io.grpc.Status;
 import io.grpc.Status.Code;
 import io.grpc.StatusRuntimeException;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.List;
 import javax.annotation.Nullable;
 
@@ -372,6 +376,46 @@ public class BridgeTest implements ProtoParseTest {
                 .build()));
     }
 
+    @Test
+    public void post_bytesBody() throws IOException {
+        PostRequest rpcRequest = newPostRequest();
+        byte[] body = serialize(rpcRequest).getBytes(Charsets.UTF_8);
+        HttpRequest request = HttpRequest
+                .builder(POST, "/post/hello")
+                .body(new ByteArrayInputStream(body))
+                .build();
+
+        HttpResponse response = bridge.handle(request);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.writeTo(out);
+        PostResponse rpcResponse = parse(
+                new String(out.toByteArray(), Charsets.UTF_8),
+                PostResponse.newBuilder());
+
+        assertThat(out.toByteArray()).isEqualTo(response.getBodyBytes());
+        assertThat(rpcResponse).isEqualTo(responseFor(rpcRequest
+                .toBuilder()
+                .setStringField("hello")
+                .build()));
+    }
+
+    @Test
+    public void post_customBody_byteBuffer() {
+        HttpRequest request = HttpRequest
+                .builder(POST, "/post-custom/hello")
+                .body(ByteBuffer.wrap("999".getBytes(Charsets.UTF_8)))
+                .build();
+
+        HttpResponse response = bridge.handle(request);
+        PostResponse rpcResponse = parse(response.getBody(), PostResponse.newBuilder());
+
+        assertThat(rpcResponse).isEqualTo(PostResponse
+                .newBuilder()
+                .setStringField("hello")
+                .setIntField(999)
+                .build());
+    }
+
     @Test
     public void post_noBody() {
         HttpRequest request = HttpRequest
@@ -614,6 +658,33 @@ public class BridgeTest implements ProtoParseTest {
             + "}}");
     }
 
+    @Test
+    public void get_defaultValues_precomputedPrinters() {
+        Bridge bridge = Bridge
+                .builder()
+                .addFile(grpcbridge.test.proto.Test.getDescriptor())
+                .addService(testService.bindService())
+                .precomputePrinters()
+                .build();
+
+        HttpRequest request = HttpRequest
+            .builder(GET, "/get")
+            .build();
+
+        HttpResponse response = bridge.handle(request);
+        String rpcResponse = response.getBody().replace(" ", "").replace("\n", "");
+
+        assertThat(rpcResponse).isEqualTo("{"
+            + "\"nested\":{},"
+            + "\"default\":{"
+                + "\"defaultString\":\"\","
+                + "\"defaultInt\":0,"
+                + "\"defaultBool\":false,"
+                + "\"defaultEnum\":\"INVALID\","
+                + "\"defaultRepeated\":[]"
+            + "}}");
+    }
+
     private <T extends Message> List<T> parseStream(@Nullable String body, T.Builder builder) {
         return ProtoJsonConverter.INSTANCE.parseStream(body, Charsets.UTF_8, builder);
     }
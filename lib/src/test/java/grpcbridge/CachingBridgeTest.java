@@ -0,0 +1,141 @@
+package grpcbridge;
+
+import static grpcbridge.http.HttpMethod.GET;
+import static grpcbridge.http.HttpMethod.POST;
+import static io.grpc.Metadata.ASCII_STRING_MARSHALLER;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.common.base.Strings;
+import com.google.common.cache.CacheStats;
+import grpcbridge.http.HttpMethod;
+import grpcbridge.http.HttpRequest;
+import grpcbridge.test.proto.CacheTest.CacheRequest;
+import grpcbridge.test.proto.CacheTest.CacheResponse;
+import grpcbridge.test.proto.CacheTestServiceGrpc.CacheTestServiceImplBase;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+
+import org.junit.Test;
+
+public class CachingBridgeTest implements ProtoParseTest {
+    private final CountingService service = new CountingService();
+
+    @Test
+    public void methodOption() {
+        Bridge bridge = newBuilder().build();
+
+        assertThat(call(bridge, GET, "/cached/a")).isEqualTo(1);
+        assertThat(call(bridge, GET, "/cached/a")).isEqualTo(1);
+        assertThat(call(bridge, GET, "/cached/a?size=1")).isEqualTo(2);
+        assertThat(call(bridge, GET, "/cached/b")).isEqualTo(3);
+        assertThat(call(bridge, POST, "/cached/a")).isEqualTo(4);
+        assertThat(call(bridge, GET, "/uncached/a")).isEqualTo(5);
+        assertThat(call(bridge, GET, "/uncached/a")).isEqualTo(6);
+
+        CacheStats stats = bridge.getResponseCacheStats();
+        assertThat(stats.hitCount()).isEqualTo(1);
+        assertThat(stats.missCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void builderTtl() throws InterruptedException {
+        Bridge bridge = newBuilder()
+                .cacheResponses("grpcbridge.test.proto.CacheTestService.Uncached", 50, MILLISECONDS)
+                .build();
+
+        assertThat(call(bridge, GET, "/uncached/a")).isEqualTo(1);
+        assertThat(call(bridge, GET, "/uncached/a")).isEqualTo(1);
+        Thread.sleep(100);
+        assertThat(call(bridge, GET, "/uncached/a")).isEqualTo(2);
+        assertThat(bridge.getResponseCacheStats().evictionCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void cacheKeyHeader() {
+        Bridge bridge = newBuilder()
+                .cacheKeyHeader("Authorization")
+                .build();
+
+        assertThat(call(bridge, get("/cached/a", "alice"))).isEqualTo(1);
+        assertThat(call(bridge, get("/cached/a", "bob"))).isEqualTo(2);
+        assertThat(call(bridge, get("/cached/a", "alice"))).isEqualTo(1);
+    }
+
+    @Test
+    public void errorsAreNotCached() {
+        Bridge bridge = newBuilder().build();
+        service.fail = true;
+        try {
+            bridge.handle(HttpRequest.builder(GET, "/cached/a").build());
+        } catch (RuntimeException expected) {
+        }
+        service.fail = false;
+
+        assertThat(call(bridge, GET, "/cached/a")).isEqualTo(2);
+    }
+
+    @Test
+    public void sizeBounded() {
+        Bridge bridge = newBuilder()
+                .responseCacheSize(4000)
+                .build();
+
+        assertThat(call(bridge, GET, "/cached/a?size=5000")).isEqualTo(1);
+        assertThat(call(bridge, GET, "/cached/a?size=5000")).isEqualTo(2);
+        assertThat(call(bridge, GET, "/cached/b")).isEqualTo(3);
+        assertThat(call(bridge, GET, "/cached/b")).isEqualTo(3);
+        assertThat(bridge.getResponseCacheStats().evictionCount()).isGreaterThan(0);
+    }
+
+    private int call(Bridge bridge, HttpMethod method, String path) {
+        return call(bridge, HttpRequest.builder(method, path).build());
+    }
+
+    private int call(Bridge bridge, HttpRequest request) {
+        CacheResponse response = parse(bridge.handle(request).getBody(), CacheResponse.newBuilder());
+        return response.getCall();
+    }
+
+    private static HttpRequest get(String path, String authorization) {
+        Metadata headers = new Metadata();
+        headers.put(Metadata.Key.of("authorization", ASCII_STRING_MARSHALLER), authorization);
+        return HttpRequest.builder(GET, path).headers(headers).build();
+    }
+
+    private BridgeBuilder newBuilder() {
+        return Bridge
+                .builder()
+                .addFile(grpcbridge.test.proto.CacheTest.getDescriptor())
+                .addService(service.bindService());
+    }
+
+    /**
+     * Numbers the calls.
+     */
+    private static final class CountingService extends CacheTestServiceImplBase {
+        private int calls;
+        private boolean fail;
+
+        @Override
+        public void cached(CacheRequest request, StreamObserver<CacheResponse> responseObserver) {
+            calls++;
+            if (fail) {
+                responseObserver.onError(Status.UNAVAILABLE.asRuntimeException());
+                return;
+            }
+            responseObserver.onNext(CacheResponse.newBuilder()
+                    .setKey(request.getKey())
+                    .setCall(calls)
+                    .setPayload(Strings.repeat("x", request.getSize()))
+                    .build());
+            responseObserver.onCompleted();
+        }
+
+        @Override
+        public void uncached(CacheRequest request, StreamObserver<CacheResponse> responseObserver) {
+            cached(request, responseObserver);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package grpcbridge;
+
+import static grpcbridge.http.HttpMethod.GET;
+import static io.grpc.Metadata.ASCII_STRING_MARSHALLER;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import grpcbridge.http.HttpRequest;
+import grpcbridge.http.HttpResponse;
+import grpcbridge.test.proto.CoalesceTest.LookupRequest;
+import grpcbridge.test.proto.CoalesceTest.LookupResponse;
+import grpcbridge.test.proto.CoalesceTestServiceGrpc.CoalesceTestServiceImplBase;
+import io.grpc.Metadata;
+import io.grpc.stub.StreamObserver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class CoalescingBridgeTest implements ProtoParseTest {
+    private final PendingService service = new PendingService();
+
+    @Test
+    public void methodOption() throws Exception {
+        Bridge bridge = newBuilder().build();
+
+        ListenableFuture<HttpResponse> first = bridge.handleAsync(get("/lookup/a"));
+        ListenableFuture<HttpResponse> second = bridge.handleAsync(get("/lookup/a"));
+        ListenableFuture<HttpResponse> other = bridge.handleAsync(get("/lookup/b"));
+        service.complete();
+
+        assertThat(service.calls).isEqualTo(2);
+        assertThat(call(second.get())).isEqualTo(call(first.get()));
+        assertThat(call(other.get())).isNotEqualTo(call(first.get()));
+    }
+
+    @Test
+    public void copiesTrailersPerCaller() throws Exception {
+        Bridge bridge = newBuilder().build();
+        Metadata.Key<String> added = Metadata.Key.of("x-added", ASCII_STRING_MARSHALLER);
+
+        ListenableFuture<HttpResponse> first = bridge.handleAsync(get("/lookup/a"));
+        ListenableFuture<HttpResponse> second = bridge.handleAsync(get("/lookup/a"));
+        service.complete();
+        first.get().getTrailers().put(added, "first");
+
+        assertThat(service.calls).isEqualTo(1);
+        assertThat(second.get()).isNotSameAs(first.get());
+        assertThat(second.get().getTrailers().get(added)).isNull();
+        assertThat(second.get().getTrailers().get(Metadata.Key.of("content-type", ASCII_STRING_MARSHALLER)))
+                .isNotNull();
+        assertThat(second.get().getBody()).isEqualTo(first.get().getBody());
+    }
+
+    @Test
+    public void notCoalescedWithoutOption() throws Exception {
+        Bridge bridge = newBuilder().build();
+
+        ListenableFuture<HttpResponse> first = bridge.handleAsync(get("/lookup-fresh/a"));
+        ListenableFuture<HttpResponse> second = bridge.handleAsync(get("/lookup-fresh/a"));
+        service.complete();
+
+        assertThat(service.calls).isEqualTo(2);
+        assertThat(call(second.get())).isNotEqualTo(call(first.get()));
+    }
+
+    @Test
+    public void builder() throws Exception {
+        Bridge bridge = newBuilder()
+                .coalesceRequests("grpcbridge.test.proto.CoalesceTestService.LookupFresh")
+                .build();
+
+        ListenableFuture<HttpResponse> first = bridge.handleAsync(get("/lookup-fresh/a"));
+        ListenableFuture<HttpResponse> second = bridge.handleAsync(get("/lookup-fresh/a"));
+        service.complete();
+
+        assertThat(service.calls).isEqualTo(1);
+        assertThat(call(second.get())).isEqualTo(call(first.get()));
+    }
+
+    @Test
+    public void coalescingHeader() throws Exception {
+        Bridge bridge = newBuilder()
+                .coalescingHeader("Authorization")
+                .build();
+
+        ListenableFuture<HttpResponse> first = bridge.handleAsync(get("/lookup/a", "alice"));
+        ListenableFuture<HttpResponse> second = bridge.handleAsync(get("/lookup/a", "alice"));
+        ListenableFuture<HttpResponse> third = bridge.handleAsync(get("/lookup/a", "bob"));
+        service.complete();
+
+        assertThat(service.calls).isEqualTo(2);
+        assertThat(call(second.get())).isEqualTo(call(first.get()));
+        assertThat(call(third.get())).isNotEqualTo(call(first.get()));
+    }
+
+    @Test
+    public void completedCallsAreNotShared() throws Exception {
+        Bridge bridge = newBuilder().build();
+
+        ListenableFuture<HttpResponse> first = bridge.handleAsync(get("/lookup/a"));
+        service.complete();
+        ListenableFuture<HttpResponse> second = bridge.handleAsync(get("/lookup/a"));
+        service.complete();
+
+        assertThat(service.calls).isEqualTo(2);
+        assertThat(call(second.get())).isNotEqualTo(call(first.get()));
+    }
+
+    @Test
+    public void cancelledCallerDoesNotCancelSharedCall() throws Exception {
+        Bridge bridge = newBuilder().build();
+
+        ListenableFuture<HttpResponse> first = bridge.handleAsync(get("/lookup/a"));
+        ListenableFuture<HttpResponse> second = bridge.handleAsync(get("/lookup/a"));
+        first.cancel(false);
+        service.complete();
+
+        assertThat(call(second.get())).isEqualTo(1);
+    }
+
+    private int call(HttpResponse response) {
+        LookupResponse lookup = parse(response.getBody(), LookupResponse.newBuilder());
+        return lookup.getCall();
+    }
+
+    private static HttpRequest get(String path) {
+        return HttpRequest.builder(GET, path).build();
+    }
+
+    private static HttpRequest get(String path, String authorization) {
+        Metadata headers = new Metadata();
+        headers.put(Metadata.Key.of("authorization", ASCII_STRING_MARSHALLER), authorization);
+        return HttpRequest.builder(GET, path).headers(headers).build();
+    }
+
+    private BridgeBuilder newBuilder() {
+        return Bridge
+                .builder()
+                .addFile(grpcbridge.test.proto.CoalesceTest.getDescriptor())
+                .addService(service.bindService());
+    }
+
+    /**
+     * Holds the calls until completed by the test, numbering them.
+     */
+    private static final class PendingService extends CoalesceTestServiceImplBase {
+        private final List<Runnable> pending = new ArrayList<>();
+        private int calls;
+
+        @Override
+        public void lookup(LookupRequest request, StreamObserver<LookupResponse> responseObserver) {
+            int call = ++calls;
+            pending.add(() -> {
+                responseObserver.onNext(LookupResponse.newBuilder()
+                        .setKey(request.getKey())
+                        .setCall(call)
+                        .build());
+                responseObserver.onCompleted();
+            });
+        }
+
+        @Override
+        public void lookupFresh(LookupRequest request, StreamObserver<LookupResponse> responseObserver) {
+            lookup(request, responseObserver);
+        }
+
+        void complete() {
+            List<Runnable> completing = new ArrayList<>(pending);
+            pending.clear();
+            completing.forEach(Runnable::run);
+        }
+    }
+}
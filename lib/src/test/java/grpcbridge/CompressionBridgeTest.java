@@ -0,0 +1,321 @@
+package grpcbridge;
+
+import static grpcbridge.http.HttpMethod.GET;
+import static grpcbridge.http.HttpMethod.POST;
+import static io.grpc.Metadata.ASCII_STRING_MARSHALLER;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import com.google.common.base.Strings;
+import com.google.common.io.ByteStreams;
+import grpcbridge.Exceptions.ParsingException;
+import grpcbridge.common.TestService;
+import grpcbridge.http.HttpRequest;
+import grpcbridge.http.HttpResponse;
+import grpcbridge.test.proto.CacheTest.CacheRequest;
+import grpcbridge.test.proto.CacheTest.CacheResponse;
+import grpcbridge.test.proto.CacheTestServiceGrpc.CacheTestServiceImplBase;
+import grpcbridge.test.proto.Test.PostResponse;
+import io.grpc.Metadata;
+import io.grpc.stub.StreamObserver;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.Test;
+
+public class CompressionBridgeTest implements ProtoParseTest {
+    private static final Metadata.Key<String> CONTENT_ENCODING =
+            Metadata.Key.of("content-encoding", ASCII_STRING_MARSHALLER);
+    private static final Metadata.Key<String> CONTENT_TYPE =
+            Metadata.Key.of("content-type", ASCII_STRING_MARSHALLER);
+    private static final Metadata.Key<String> VARY =
+            Metadata.Key.of("vary", ASCII_STRING_MARSHALLER);
+
+    private final CountingService service = new CountingService();
+    private final Bridge bridge = Bridge
+            .builder()
+            .addFile(grpcbridge.test.proto.CacheTest.getDescriptor())
+            .addService(service.bindService())
+            .compressResponses(100, 6)
+            .build();
+
+    @Test
+    public void negotiate() {
+        assertThat(ResponseCompression.negotiate(null)).isNull();
+        assertThat(ResponseCompression.negotiate("")).isNull();
+        assertThat(ResponseCompression.negotiate("br")).isNull();
+        assertThat(ResponseCompression.negotiate("gzip, deflate, br")).isEqualTo("gzip");
+        assertThat(ResponseCompression.negotiate("deflate")).isEqualTo("deflate");
+        assertThat(ResponseCompression.negotiate("gzip;q=0.5, deflate")).isEqualTo("deflate");
+        assertThat(ResponseCompression.negotiate("gzip;q=0, deflate;q=0")).isNull();
+        assertThat(ResponseCompression.negotiate("*")).isEqualTo("gzip");
+        assertThat(ResponseCompression.negotiate("gzip;q=0, *")).isEqualTo("deflate");
+        assertThat(ResponseCompression.negotiate("identity, *;q=0")).isNull();
+    }
+
+    @Test
+    public void gzip() throws IOException {
+        HttpResponse response = bridge.handle(get("/uncached/a?size=1000", "gzip, deflate"));
+
+        assertThat(response.getTrailers().get(CONTENT_ENCODING)).isEqualTo("gzip");
+        assertThat(response.getBodyBytes().length).isLessThan(1000);
+        String inflated = new String(
+                ByteStreams.toByteArray(new GZIPInputStream(new ByteArrayInputStream(response.getBodyBytes()))),
+                StandardCharsets.UTF_8);
+        assertThat(inflated).isEqualTo(response.getBody());
+        CacheResponse body = parse(response.getBody(), CacheResponse.newBuilder());
+        assertThat(body.getPayload()).isEqualTo(Strings.repeat("x", 1000));
+        assertThat(response.getBodyTrailers().get(CONTENT_ENCODING)).isNull();
+        assertThat(response.getBodyTrailers().get(CONTENT_TYPE))
+                .isEqualTo(response.getTrailers().get(CONTENT_TYPE));
+        assertThat(response.getTrailers().get(CONTENT_ENCODING)).isEqualTo("gzip");
+    }
+
+    @Test
+    public void deflate() throws IOException {
+        HttpResponse response = bridge.handle(get("/uncached/a?size=1000", "deflate"));
+
+        assertThat(response.getTrailers().get(CONTENT_ENCODING)).isEqualTo("deflate");
+        String inflated = new String(
+                ByteStreams.toByteArray(new InflaterInputStream(new ByteArrayInputStream(response.getBodyBytes()))),
+                StandardCharsets.UTF_8);
+        CacheResponse body = parse(inflated, CacheResponse.newBuilder());
+        assertThat(body.getPayload()).isEqualTo(Strings.repeat("x", 1000));
+    }
+
+    @Test
+    public void belowMinSize() {
+        HttpResponse response = bridge.handle(get("/uncached/a?size=10", "gzip"));
+
+        assertThat(response.getTrailers().get(CONTENT_ENCODING)).isNull();
+        CacheResponse body = parse(response.getBody(), CacheResponse.newBuilder());
+        assertThat(body.getPayload()).isEqualTo(Strings.repeat("x", 10));
+    }
+
+    @Test
+    public void notAccepted() {
+        assertThat(bridge.handle(get("/uncached/a?size=1000", null)).getTrailers().get(CONTENT_ENCODING))
+                .isNull();
+        assertThat(bridge.handle(get("/uncached/a?size=1000", "br")).getTrailers().get(CONTENT_ENCODING))
+                .isNull();
+        assertThat(Bridge
+                .builder()
+                .addFile(grpcbridge.test.proto.CacheTest.getDescriptor())
+                .addService(service.bindService())
+                .build()
+                .handle(get("/uncached/a?size=1000", "gzip"))
+                .getTrailers()
+                .get(CONTENT_ENCODING))
+                .isNull();
+    }
+
+    @Test
+    public void varyByAcceptEncoding() {
+        assertThat(bridge.handle(get("/uncached/a?size=1000", "gzip")).getTrailers().get(VARY))
+                .isEqualTo("accept-encoding");
+        assertThat(bridge.handle(get("/uncached/a?size=1000", null)).getTrailers().get(VARY))
+                .isEqualTo("accept-encoding");
+        assertThat(Bridge
+                .builder()
+                .addFile(grpcbridge.test.proto.CacheTest.getDescriptor())
+                .addService(service.bindService())
+                .build()
+                .handle(get("/uncached/a?size=1000", "gzip"))
+                .getTrailers()
+                .get(VARY))
+                .isNull();
+    }
+
+    @Test
+    public void cachedPerEncoding() {
+        Bridge bridge = Bridge
+                .builder()
+                .addFile(grpcbridge.test.proto.CacheTest.getDescriptor())
+                .addService(service.bindService())
+                .compressResponses()
+                .cacheResponses("grpcbridge.test.proto.CacheTestService.Uncached", 1, MINUTES)
+                .build();
+
+        HttpResponse gzip = bridge.handle(get("/uncached/a?size=5000", "gzip"));
+        HttpResponse cached = bridge.handle(get("/uncached/a?size=5000", "gzip"));
+        HttpResponse plain = bridge.handle(get("/uncached/a?size=5000", null));
+
+        assertThat(service.calls).isEqualTo(2);
+        assertThat(cached.getTrailers().get(CONTENT_ENCODING)).isEqualTo("gzip");
+        assertThat(cached.getBodyBytes()).isEqualTo(gzip.getBodyBytes());
+        assertThat(plain.getTrailers().get(CONTENT_ENCODING)).isNull();
+        assertThat(plain.getBody()).isEqualTo(cached.getBody());
+    }
+
+    @Test
+    public void gzipRequest() {
+        Bridge bridge = Bridge
+                .builder()
+                .addFile(grpcbridge.test.proto.Test.getDescriptor())
+                .addService(new TestService().bindService())
+                .build();
+        HttpRequest request = HttpRequest
+                .builder(POST, "/post-stream/hello")
+                .headers(contentEncoding("gzip"))
+                .body(compress(true, "{\"intField\": 1}\n{\"intField\": 2}\n"))
+                .build();
+
+        PostResponse response = parse(bridge.handle(request).getBody(), PostResponse.newBuilder());
+
+        assertThat(response.getIntField()).isEqualTo(3);
+    }
+
+    @Test
+    public void inflateRequestBody() {
+        String json = "{\"intField\": 1}";
+        HttpRequest gzip = HttpRequest
+                .builder(POST, "/post")
+                .headers(contentEncoding("gzip"))
+                .body(compress(true, json))
+                .build();
+        HttpRequest deflate = HttpRequest
+                .builder(POST, "/post")
+                .headers(contentEncoding("deflate"))
+                .body(compress(false, json))
+                .build();
+
+        assertThat(gzip.getBody()).contains(json);
+        assertThat(deflate.getBody()).contains(json);
+        assertThat(StandardCharsets.UTF_8.decode(gzip.getBodyBytes().get()).toString()).isEqualTo(json);
+    }
+
+    @Test
+    public void inflateRequestBody_errors() {
+        HttpRequest corrupt = HttpRequest
+                .builder(POST, "/post")
+                .headers(contentEncoding("gzip"))
+                .body("not gzip".getBytes(StandardCharsets.UTF_8))
+                .build();
+        HttpRequest unsupported = HttpRequest
+                .builder(POST, "/post")
+                .headers(contentEncoding("br"))
+                .body("{}".getBytes(StandardCharsets.UTF_8))
+                .build();
+
+        assertThatExceptionOfType(ParsingException.class).isThrownBy(corrupt::getBody);
+        assertThatExceptionOfType(ParsingException.class).isThrownBy(unsupported::getBodyReader);
+    }
+
+    @Test
+    public void requestToStringKeepsBodyRaw() {
+        HttpRequest corrupt = HttpRequest
+                .builder(POST, "/post")
+                .headers(contentEncoding("gzip"))
+                .body("not gzip".getBytes(StandardCharsets.UTF_8))
+                .build();
+        HttpRequest plain = HttpRequest
+                .builder(POST, "/post")
+                .body("{}".getBytes(StandardCharsets.UTF_8))
+                .build();
+
+        assertThat(corrupt.toString()).isEqualTo("HttRequest(POST /post <8 bytes, content-encoding gzip>)");
+        assertThat(plain.toString()).isEqualTo("HttRequest(POST /post <2 bytes>)");
+        plain.getBody();
+        assertThat(plain.toString()).isEqualTo("HttRequest(POST /post {})");
+    }
+
+    @Test
+    public void inflateRequestBody_limit() {
+        Bridge bridge = Bridge
+                .builder()
+                .addFile(grpcbridge.test.proto.Test.getDescriptor())
+                .addService(new TestService().bindService())
+                .maxInflatedBodySize(1024)
+                .build();
+        String padding = Strings.repeat(" ", 1024 * 1024);
+        HttpRequest bomb = HttpRequest
+                .builder(POST, "/post/hello")
+                .headers(contentEncoding("gzip"))
+                .body(compress(true, "{\"intField\": 1" + padding + "}"))
+                .build();
+        HttpRequest small = HttpRequest
+                .builder(POST, "/post/hello")
+                .headers(contentEncoding("deflate"))
+                .body(compress(false, "{\"intField\": 1}"))
+                .build();
+
+        assertThatExceptionOfType(ParsingException.class)
+                .isThrownBy(() -> bridge.handle(bomb))
+                .withMessageContaining("exceeds 1024 bytes");
+        PostResponse response = parse(bridge.handle(small).getBody(), PostResponse.newBuilder());
+
+        assertThat(response.getIntField()).isEqualTo(1);
+    }
+
+    @Test
+    public void inflateRequestBody_requestLimit() {
+        Bridge bridge = Bridge
+                .builder()
+                .addFile(grpcbridge.test.proto.Test.getDescriptor())
+                .addService(new TestService().bindService())
+                .build();
+        HttpRequest request = HttpRequest
+                .builder(POST, "/post/hello")
+                .headers(contentEncoding("gzip"))
+                .body(compress(true, "{\"intField\": 1" + Strings.repeat(" ", 2048) + "}"))
+                .maxInflatedSize(1024)
+                .build();
+
+        assertThatExceptionOfType(ParsingException.class)
+                .isThrownBy(() -> bridge.handle(request))
+                .withMessageContaining("exceeds 1024 bytes");
+    }
+
+    private static HttpRequest get(String path, String acceptEncoding) {
+        Metadata headers = new Metadata();
+        if (acceptEncoding != null) {
+            headers.put(Metadata.Key.of("accept-encoding", ASCII_STRING_MARSHALLER), acceptEncoding);
+        }
+        return HttpRequest.builder(GET, path).headers(headers).build();
+    }
+
+    private static Metadata contentEncoding(String encoding) {
+        Metadata headers = new Metadata();
+        headers.put(CONTENT_ENCODING, encoding);
+        return headers;
+    }
+
+    private static byte[] compress(boolean gzip, String body) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = gzip ? new GZIPOutputStream(bytes) : new DeflaterOutputStream(bytes)) {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static final class CountingService extends CacheTestServiceImplBase {
+        private int calls;
+
+        @Override
+        public void cached(CacheRequest request, StreamObserver<CacheResponse> responseObserver) {
+            calls++;
+            responseObserver.onNext(CacheResponse.newBuilder()
+                    .setKey(request.getKey())
+                    .setPayload(Strings.repeat("x", request.getSize()))
+                    .build());
+            responseObserver.onCompleted();
+        }
+
+        @Override
+        public void uncached(CacheRequest request, StreamObserver<CacheResponse> responseObserver) {
+            cached(request, responseObserver);
+        }
+    }
+}
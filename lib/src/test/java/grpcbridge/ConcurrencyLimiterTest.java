@@ -0,0 +1,199 @@
+package grpcbridge;
+
+import static grpcbridge.http.HttpMethod.GET;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import grpcbridge.http.HttpRequest;
+import grpcbridge.http.HttpResponse;
+import grpcbridge.http.ResponseSink;
+import grpcbridge.test.proto.Test.GetRequest;
+import grpcbridge.test.proto.Test.GetResponse;
+import grpcbridge.test.proto.TestServiceGrpc;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.Status.Code;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.StreamObserver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class ConcurrencyLimiterTest {
+    @Test
+    public void rejectsOverLimit() {
+        ConcurrencyLimiter limiter = ConcurrencyLimiter.builder().initialLimit(2).build();
+
+        assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.tryAcquire()).isFalse();
+        assertThat(limiter.getInFlight()).isEqualTo(2);
+        assertThat(limiter.getRejected()).isEqualTo(1);
+    }
+
+    @Test
+    public void additiveIncrease() {
+        ConcurrencyLimiter limiter = ConcurrencyLimiter.builder().initialLimit(2).maxLimit(3).build();
+
+        for (int i = 0; i < 10; i++) {
+            limiter.tryAcquire();
+            limiter.tryAcquire();
+            limiter.release(0, Code.OK);
+            limiter.release(0, Code.OK);
+        }
+
+        assertThat(limiter.getLimit()).isEqualTo(3);
+        assertThat(limiter.getInFlight()).isZero();
+    }
+
+    @Test
+    public void noIncreaseWhileUnused() {
+        ConcurrencyLimiter limiter = ConcurrencyLimiter.builder().initialLimit(10).build();
+
+        for (int i = 0; i < 100; i++) {
+            limiter.tryAcquire();
+            limiter.release(0, Code.OK);
+        }
+
+        assertThat(limiter.getLimit()).isEqualTo(10);
+    }
+
+    @Test
+    public void multiplicativeDecrease() {
+        ConcurrencyLimiter limiter = ConcurrencyLimiter.builder()
+                .initialLimit(10)
+                .minLimit(2)
+                .backoffRatio(0.5)
+                .latencyThreshold(100, MILLISECONDS)
+                .build();
+
+        limiter.tryAcquire();
+        limiter.release(MILLISECONDS.toNanos(200), Code.OK);
+        assertThat(limiter.getLimit()).isEqualTo(5);
+
+        limiter.tryAcquire();
+        limiter.release(0, Code.UNAVAILABLE);
+        assertThat(limiter.getLimit()).isEqualTo(2);
+
+        limiter.tryAcquire();
+        limiter.release(0, Code.DEADLINE_EXCEEDED);
+        assertThat(limiter.getLimit()).isEqualTo(2);
+    }
+
+    @Test
+    public void invalidSettings() {
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> ConcurrencyLimiter.builder().initialLimit(0).build());
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> ConcurrencyLimiter.builder().backoffRatio(1).build());
+    }
+
+    @Test
+    public void bridgeShedsLoad() throws Exception {
+        PendingService service = new PendingService();
+        Bridge bridge = Bridge
+                .builder()
+                .addFile(grpcbridge.test.proto.Test.getDescriptor())
+                .addService(service.bindService())
+                .concurrencyLimit(ConcurrencyLimiter.builder().initialLimit(1))
+                .build();
+        HttpRequest request = HttpRequest.builder(GET, "/get/x").build();
+
+        ListenableFuture<HttpResponse> first = bridge.handleAsync(request);
+        StatusRuntimeException rejected = catchThrowableOfType(
+                () -> bridge.handle(request),
+                StatusRuntimeException.class);
+
+        assertThat(rejected.getStatus().getCode()).isEqualTo(Code.RESOURCE_EXHAUSTED);
+        Map<String, ConcurrencyLimiter> limiters = bridge.getConcurrencyLimiters();
+        ConcurrencyLimiter limiter = limiters.get("grpcbridge.test.proto.TestService.Get");
+        assertThat(limiter.getInFlight()).isEqualTo(1);
+        assertThat(limiter.getRejected()).isEqualTo(1);
+
+        service.complete();
+        assertThat(first.get().getBody()).isNotEmpty();
+        assertThat(limiter.getInFlight()).isZero();
+
+        service.fail = true;
+        bridge.handleAsync(request);
+        service.complete();
+        assertThat(limiter.getInFlight()).isZero();
+    }
+
+    @Test
+    public void longStreamNotOverload() throws Exception {
+        PendingService service = new PendingService();
+        Bridge bridge = Bridge
+                .builder()
+                .addFile(grpcbridge.test.proto.Test.getDescriptor())
+                .addService(service.bindService())
+                .concurrencyLimit(ConcurrencyLimiter.builder()
+                        .initialLimit(10)
+                        .latencyThreshold(50, MILLISECONDS))
+                .build();
+        ConcurrencyLimiter limiter = bridge.getConcurrencyLimiters()
+                .get("grpcbridge.test.proto.TestService.GetStream");
+
+        bridge.handleStream(HttpRequest.builder(GET, "/get-stream/x").build(), new IgnoringSink());
+        Thread.sleep(200);
+        service.complete();
+
+        assertThat(limiter.getInFlight()).isZero();
+        assertThat(limiter.getLimit()).isEqualTo(10);
+    }
+
+    private static final class IgnoringSink implements ResponseSink {
+        @Override
+        public void onStart(Metadata headers) {
+        }
+
+        @Override
+        public void onData(byte[] data) {
+        }
+
+        @Override
+        public void onComplete(Metadata trailers) {
+        }
+
+        @Override
+        public void onError(Throwable error) {
+        }
+    }
+
+    /**
+     * Holds the calls until completed by the test.
+     */
+    private static final class PendingService extends TestServiceGrpc.TestServiceImplBase {
+        private final List<StreamObserver<GetResponse>> pending = new ArrayList<>();
+        private boolean fail;
+
+        @Override
+        public void get(GetRequest request, StreamObserver<GetResponse> responseObserver) {
+            pending.add(responseObserver);
+        }
+
+        @Override
+        public void getStream(GetRequest request, StreamObserver<GetResponse> responseObserver) {
+            responseObserver.onNext(GetResponse.getDefaultInstance());
+            pending.add(responseObserver);
+        }
+
+        void complete() {
+            for (StreamObserver<GetResponse> observer : pending) {
+                if (fail) {
+                    observer.onError(Status.UNAVAILABLE.asRuntimeException());
+                } else {
+                    observer.onNext(GetResponse.getDefaultInstance());
+                    observer.onCompleted();
+                }
+            }
+            pending.clear();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package grpcbridge;
+
+import static grpcbridge.http.HttpMethod.GET;
+import static grpcbridge.http.HttpMethod.POST;
+import static io.grpc.Metadata.ASCII_STRING_MARSHALLER;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import grpcbridge.http.HttpRequest;
+import grpcbridge.http.HttpResponse;
+import grpcbridge.http.ResponseSink;
+import grpcbridge.test.proto.CacheTest.CacheRequest;
+import grpcbridge.test.proto.CacheTest.CacheResponse;
+import grpcbridge.test.proto.CacheTestServiceGrpc.CacheTestServiceImplBase;
+import io.grpc.Metadata;
+import io.grpc.stub.StreamObserver;
+
+import org.junit.Test;
+
+public class EntityTagsTest {
+    private static final Metadata.Key<String> ETAG = Metadata.Key.of("etag", ASCII_STRING_MARSHALLER);
+
+    private final CountingService service = new CountingService();
+    private final Bridge bridge = Bridge
+            .builder()
+            .addFile(grpcbridge.test.proto.CacheTest.getDescriptor())
+            .addService(service.bindService())
+            .etags()
+            .build();
+
+    @Test
+    public void matches() {
+        assertThat(EntityTags.matches("\"abc\"", "\"abc\"")).isTrue();
+        assertThat(EntityTags.matches("W/\"abc\"", "\"abc\"")).isTrue();
+        assertThat(EntityTags.matches("\"x\", \"abc\"", "\"abc\"")).isTrue();
+        assertThat(EntityTags.matches(" * ", "\"abc\"")).isTrue();
+        assertThat(EntityTags.matches("\"abcd\"", "\"abc\"")).isFalse();
+        assertThat(EntityTags.matches("abc", "\"abc\"")).isFalse();
+        assertThat(EntityTags.matches("", "\"abc\"")).isFalse();
+        assertThat(EntityTags.matches(null, "\"abc\"")).isFalse();
+    }
+
+    @Test
+    public void tagsGetResponses() {
+        String first = bridge.handle(get("/uncached/a", null)).getTrailers().get(ETAG);
+        String second = bridge.handle(get("/uncached/a", null)).getTrailers().get(ETAG);
+        String other = bridge.handle(get("/uncached/b", null)).getTrailers().get(ETAG);
+
+        assertThat(first).matches("\"[0-9a-f]{16}\"");
+        assertThat(second).isEqualTo(first);
+        assertThat(other).isNotEqualTo(first);
+        assertThat(bridge.handle(HttpRequest.builder(POST, "/cached/a").build()).getTrailers().get(ETAG))
+                .isNull();
+    }
+
+    @Test
+    public void notModified() {
+        String tag = bridge.handle(get("/uncached/a", null)).getTrailers().get(ETAG);
+
+        HttpResponse response = bridge.handle(get("/uncached/a", tag));
+
+        assertThat(response.isNotModified()).isTrue();
+        assertThat(response.getBodyBytes()).isEmpty();
+        assertThat(response.getTrailers().get(ETAG)).isEqualTo(tag);
+        assertThat(bridge.handle(get("/uncached/b", tag)).isNotModified()).isFalse();
+        assertThat(bridge.handle(get("/uncached/a", null)).isNotModified()).isFalse();
+    }
+
+    @Test
+    public void notModified_cachedRoute() {
+        String tag = bridge.handle(get("/cached/a", null)).getTrailers().get(ETAG);
+
+        assertThat(bridge.handle(get("/cached/a", tag)).isNotModified()).isTrue();
+        assertThat(service.calls).isEqualTo(1);
+    }
+
+    @Test
+    public void notModified_stream() {
+        String tag = bridge.handle(get("/uncached/a", null)).getTrailers().get(ETAG);
+        RecordingSink sink = new RecordingSink();
+
+        bridge.handleStream(get("/uncached/a", tag), sink);
+
+        assertThat(sink.notModified.get(ETAG)).isEqualTo(tag);
+        assertThat(sink.started).isFalse();
+    }
+
+    private static HttpRequest get(String path, String ifNoneMatch) {
+        Metadata headers = new Metadata();
+        if (ifNoneMatch != null) {
+            headers.put(Metadata.Key.of("if-none-match", ASCII_STRING_MARSHALLER), ifNoneMatch);
+        }
+        return HttpRequest.builder(GET, path).headers(headers).build();
+    }
+
+    private static final class CountingService extends CacheTestServiceImplBase {
+        private int calls;
+
+        @Override
+        public void cached(CacheRequest request, StreamObserver<CacheResponse> responseObserver) {
+            calls++;
+            responseObserver.onNext(CacheResponse.newBuilder().setKey(request.getKey()).build());
+            responseObserver.onCompleted();
+        }
+
+        @Override
+        public void uncached(CacheRequest request, StreamObserver<CacheResponse> responseObserver) {
+            cached(request, responseObserver);
+        }
+    }
+
+    private static final class RecordingSink implements ResponseSink {
+        private Metadata notModified;
+        private boolean started;
+
+        @Override
+        public void onStart(Metadata headers) {
+            started = true;
+        }
+
+        @Override
+        public void onData(byte[] data) {
+        }
+
+        @Override
+        public void onComplete(Metadata trailers) {
+        }
+
+        @Override
+        public void onNotModified(Metadata headers) {
+            notModified = headers;
+        }
+
+        @Override
+        public void onError(Throwable error) {
+        }
+    }
+}
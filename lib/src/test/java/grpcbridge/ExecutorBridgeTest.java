@@ -0,0 +1,171 @@
+package grpcbridge;
+
+import static grpcbridge.http.HttpMethod.GET;
+import static grpcbridge.http.HttpMethod.POST;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import grpcbridge.http.HttpMethod;
+import grpcbridge.http.HttpRequest;
+import grpcbridge.test.proto.Test.GetRequest;
+import grpcbridge.test.proto.Test.GetResponse;
+import grpcbridge.test.proto.Test.PostRequest;
+import grpcbridge.test.proto.Test.PostResponse;
+import grpcbridge.test.proto.TestServiceGrpc;
+import io.grpc.Status.Code;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.StreamObserver;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class ExecutorBridgeTest implements ProtoParseTest {
+    private final ExecutorService io = executor("io");
+    private final ExecutorService cpu = executor("cpu");
+
+    @After
+    public void tearDown() {
+        io.shutdownNow();
+        cpu.shutdownNow();
+    }
+
+    @Test
+    public void direct() {
+        Bridge bridge = newBuilder().build();
+
+        assertThat(threadOf(bridge, GET, "/get/x")).isEqualTo(Thread.currentThread().getName());
+    }
+
+    @Test
+    public void executor() {
+        Bridge bridge = newBuilder()
+                .executor(io)
+                .build();
+
+        assertThat(threadOf(bridge, GET, "/get/x")).isEqualTo("io");
+        assertThat(threadOf(bridge, POST, "/post/x")).isEqualTo("io");
+    }
+
+    @Test
+    public void serviceAndMethodOverrides() {
+        Bridge bridge = newBuilder()
+                .executor("grpcbridge.test.proto.TestService", io)
+                .executor("grpcbridge.test.proto.TestService.Post", cpu)
+                .build();
+
+        assertThat(threadOf(bridge, GET, "/get/x")).isEqualTo("io");
+        assertThat(threadOf(bridge, POST, "/post/x")).isEqualTo("cpu");
+    }
+
+    @Test
+    public void rejected() {
+        Bridge bridge = newBuilder()
+                .executor(command -> {
+                    throw new RejectedExecutionException("full");
+                })
+                .build();
+
+        StatusRuntimeException error = catchThrowableOfType(
+                () -> bridge.handle(HttpRequest.builder(GET, "/get/x").build()),
+                StatusRuntimeException.class);
+
+        assertThat(error.getStatus().getCode()).isEqualTo(Code.RESOURCE_EXHAUSTED);
+    }
+
+    @Test
+    public void serviceFailure() {
+        Bridge bridge = Bridge
+                .builder()
+                .addFile(grpcbridge.test.proto.Test.getDescriptor())
+                .addService(new FailingService().bindService())
+                .executor(io)
+                .concurrencyLimit(ConcurrencyLimiter.builder().initialLimit(1).maxLimit(1))
+                .build();
+
+        for (int i = 0; i < 2; i++) {
+            ExecutionException error = catchThrowableOfType(
+                    () -> bridge.handleAsync(HttpRequest.builder(GET, "/get/x").build())
+                            .get(5, TimeUnit.SECONDS),
+                    ExecutionException.class);
+
+            assertThat(error.getCause()).isInstanceOf(StatusRuntimeException.class);
+            assertThat(((StatusRuntimeException) error.getCause()).getStatus().getCode())
+                    .isEqualTo(Code.UNKNOWN);
+        }
+    }
+
+    @Test
+    public void virtualThreads() {
+        if (Runtime.version().feature() >= 21) {
+            Bridge bridge = newBuilder().virtualThreads().build();
+
+            assertThat(threadOf(bridge, GET, "/get/x")).isNotEqualTo(Thread.currentThread().getName());
+        } else {
+            assertThatExceptionOfType(IllegalStateException.class)
+                    .isThrownBy(() -> newBuilder().virtualThreads());
+        }
+    }
+
+    private String threadOf(Bridge bridge, HttpMethod method, String path) {
+        String body = bridge.handle(HttpRequest.builder(method, path).build()).getBody();
+        if (method == GET) {
+            GetResponse response = parse(body, GetResponse.newBuilder());
+            return response.getStringField();
+        }
+        PostResponse response = parse(body, PostResponse.newBuilder());
+        return response.getStringField();
+    }
+
+    private static BridgeBuilder newBuilder() {
+        return Bridge
+                .builder()
+                .addFile(grpcbridge.test.proto.Test.getDescriptor())
+                .addService(new ThreadService().bindService());
+    }
+
+    private static ExecutorService executor(String name) {
+        return Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat(name)
+                .build());
+    }
+
+    /**
+     * Responds with the name of the thread running the method.
+     */
+    private static final class ThreadService extends TestServiceGrpc.TestServiceImplBase {
+        @Override
+        public void get(GetRequest request, StreamObserver<GetResponse> responseObserver) {
+            responseObserver.onNext(GetResponse.newBuilder()
+                    .setStringField(Thread.currentThread().getName())
+                    .build());
+            responseObserver.onCompleted();
+        }
+
+        @Override
+        public void post(PostRequest request, StreamObserver<PostResponse> responseObserver) {
+            responseObserver.onNext(PostResponse.newBuilder()
+                    .setStringField(Thread.currentThread().getName())
+                    .build());
+            responseObserver.onCompleted();
+        }
+    }
+
+    /**
+     * Fails every call.
+     */
+    private static final class FailingService extends TestServiceGrpc.TestServiceImplBase {
+        @Override
+        public void get(GetRequest request, StreamObserver<GetResponse> responseObserver) {
+            throw new IllegalStateException("broken");
+        }
+    }
+}
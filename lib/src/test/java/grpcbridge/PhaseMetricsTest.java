@@ -0,0 +1,74 @@
+package grpcbridge;
+
+import static grpcbridge.http.HttpMethod.GET;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import grpcbridge.common.TestService;
+import grpcbridge.http.HttpRequest;
+import grpcbridge.monitoring.LatencyHistogram;
+import grpcbridge.monitoring.OpenCensusMetrics;
+import grpcbridge.monitoring.Phase;
+import grpcbridge.route.Route;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class PhaseMetricsTest {
+    private static final String GET_METHOD = "grpcbridge.test.proto.TestService.Get";
+
+    @Test
+    public void phaseLatencies() {
+        Bridge bridge = newBuilder().phaseMetrics().build();
+
+        bridge.handle(HttpRequest.builder(GET, "/get/hello").build());
+        bridge.handle(HttpRequest.builder(GET, "/get/world?int_field=3").build());
+
+        Map<String, Map<Phase, LatencyHistogram.Snapshot>> latencies = bridge.getPhaseLatencies();
+        assertThat(latencies).containsOnlyKeys(GET_METHOD);
+        assertThat(latencies.get(GET_METHOD)).containsOnlyKeys(Phase.values());
+        latencies.get(GET_METHOD).forEach((phase, snapshot) -> {
+            assertThat(snapshot.getCount()).as(phase.name()).isEqualTo(2);
+            assertThat(snapshot.getMax()).as(phase.name()).isPositive();
+        });
+    }
+
+    @Test
+    public void disabled() {
+        Bridge bridge = newBuilder().build();
+
+        bridge.handle(HttpRequest.builder(GET, "/get/hello").build());
+
+        assertThat(bridge.getPhaseLatencies()).isEmpty();
+    }
+
+    @Test
+    public void metricsSink() {
+        List<String> methods = new ArrayList<>();
+        EnumSet<Phase> phases = EnumSet.noneOf(Phase.class);
+        Bridge bridge = newBuilder()
+                .metricsSink((Route route, Phase phase, long nanos) -> {
+                    methods.add(route.descriptor.getFullName());
+                    phases.add(phase);
+                })
+                .metricsSink(new OpenCensusMetrics())
+                .build();
+        OpenCensusMetrics.registerViews();
+
+        bridge.handle(HttpRequest.builder(GET, "/get/hello").build());
+
+        assertThat(phases).containsExactly(Phase.values());
+        assertThat(methods).hasSize(Phase.values().length).containsOnly(GET_METHOD);
+        assertThat(bridge.getPhaseLatencies()).isEmpty();
+    }
+
+    private static BridgeBuilder newBuilder() {
+        return Bridge
+                .builder()
+                .addFile(grpcbridge.test.proto.Test.getDescriptor())
+                .addService(new TestService().bindService());
+    }
+}
@@ -0,0 +1,539 @@
+package grpcbridge;
+
+import static grpcbridge.http.HttpMethod.GET;
+import static grpcbridge.http.HttpMethod.POST;
+import static io.grpc.Metadata.ASCII_STRING_MARSHALLER;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+
+import com.google.common.base.Charsets;
+import grpcbridge.common.TestService;
+import grpcbridge.http.HttpRequest;
+import grpcbridge.http.ResponseSink;
+import grpcbridge.rpc.CallControl;
+import grpcbridge.test.proto.Test.GetRequest;
+import grpcbridge.test.proto.Test.GetResponse;
+import grpcbridge.test.proto.Test.PostRequest;
+import grpcbridge.test.proto.Test.PostResponse;
+import grpcbridge.test.proto.TestServiceGrpc;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCall.Listener;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerInterceptors;
+import io.grpc.Status;
+import io.grpc.Status.Code;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class StreamingBridgeTest implements ProtoParseTest {
+    private static final Metadata.Key<String> ACCEPT =
+            Metadata.Key.of("accept", ASCII_STRING_MARSHALLER);
+    private static final Metadata.Key<String> CONTENT_TYPE =
+            Metadata.Key.of("content-type", ASCII_STRING_MARSHALLER);
+
+    private Bridge bridge = Bridge
+            .builder()
+            .addFile(grpcbridge.test.proto.Test.getDescriptor())
+            .addService(new TestService().bindService())
+            .build();
+
+    @Test
+    public void getStream_jsonArray() {
+        HttpRequest request = HttpRequest
+                .builder(GET, "/get-stream/hello?int_field=3")
+                .build();
+
+        RecordingSink sink = new RecordingSink();
+        bridge.handleStream(request, sink);
+
+        assertThat(sink.chunks).hasSize(4);
+        assertThat(sink.headers.get(CONTENT_TYPE)).isEqualTo("application/json; charset=utf-8");
+        assertThat(sink.body()).isEqualTo(bridge.handle(request).getBody());
+        assertThat(sink.completed).isTrue();
+    }
+
+    @Test
+    public void getStream_ndjson() {
+        HttpRequest request = HttpRequest
+                .builder(GET, "/get-stream/hello?int_field=2")
+                .headers(accept("application/x-ndjson"))
+                .build();
+
+        RecordingSink sink = new RecordingSink();
+        bridge.handleStream(request, sink);
+
+        assertThat(sink.chunks).hasSize(2);
+        assertThat(sink.headers.get(CONTENT_TYPE)).isEqualTo("application/x-ndjson; charset=utf-8");
+        String[] lines = sink.body().split("\n");
+        assertThat(lines).hasSize(2);
+        GetResponse response = parse(lines[1], GetResponse.newBuilder());
+        assertThat(response.getIntField()).isEqualTo(1);
+        assertThat(sink.completed).isTrue();
+    }
+
+    @Test
+    public void getStream_sse() {
+        HttpRequest request = HttpRequest
+                .builder(GET, "/get-stream/hello?int_field=2")
+                .headers(accept("text/event-stream"))
+                .build();
+
+        RecordingSink sink = new RecordingSink();
+        bridge.handleStream(request, sink);
+
+        assertThat(sink.chunks).hasSize(2);
+        String first = new String(sink.chunks.get(0), Charsets.UTF_8);
+        assertThat(first).startsWith("data: {").endsWith("}\n\n");
+        GetResponse response = parse(
+                first.substring("data: ".length()).trim(),
+                GetResponse.newBuilder());
+        assertThat(response.getStringField()).isEqualTo("hello");
+        assertThat(sink.completed).isTrue();
+    }
+
+    @Test
+    public void getStream_empty() {
+        HttpRequest request = HttpRequest
+                .builder(GET, "/get-stream/hello")
+                .build();
+
+        RecordingSink sink = new RecordingSink();
+        bridge.handleStream(request, sink);
+
+        assertThat(sink.body()).isEqualTo("[]");
+        assertThat(sink.completed).isTrue();
+    }
+
+    @Test
+    public void get_unary() {
+        HttpRequest request = HttpRequest
+                .builder(GET, "/get/hello")
+                .build();
+
+        RecordingSink sink = new RecordingSink();
+        bridge.handleStream(request, sink);
+
+        assertThat(sink.chunks).hasSize(1);
+        GetResponse response = parse(sink.body(), GetResponse.newBuilder());
+        assertThat(response.getStringField()).isEqualTo("hello");
+        assertThat(sink.completed).isTrue();
+    }
+
+    @Test
+    public void getStream_closedWithError() {
+        Bridge bridge = Bridge
+                .builder()
+                .addFile(grpcbridge.test.proto.Test.getDescriptor())
+                .addService(ServerInterceptors.intercept(
+                        new TestService().bindService(),
+                        new ServerInterceptor() {
+                            @Override
+                            public <ReqT, RespT> Listener<ReqT> interceptCall(
+                                    ServerCall<ReqT, RespT> call,
+                                    Metadata headers,
+                                    ServerCallHandler<ReqT, RespT> next) {
+                                call.close(Status.UNAUTHENTICATED, new Metadata());
+                                return new ServerCall.Listener<ReqT>() {};
+                            }
+                        }))
+                .build();
+        HttpRequest request = HttpRequest
+                .builder(GET, "/get-stream/hello?int_field=2")
+                .build();
+
+        RecordingSink sink = new RecordingSink();
+        bridge.handleStream(request, sink);
+
+        assertThat(sink.headers).isNull();
+        assertThat(sink.completed).isFalse();
+        assertThat(sink.error).isInstanceOf(StatusRuntimeException.class);
+        assertThat(((StatusRuntimeException) sink.error).getStatus().getCode())
+                .isEqualTo(Code.UNAUTHENTICATED);
+    }
+
+    @Test
+    public void getStream_waitsForSinkCapacity() {
+        FlowControlledService service = new FlowControlledService();
+        Bridge bridge = Bridge
+                .builder()
+                .addFile(grpcbridge.test.proto.Test.getDescriptor())
+                .addService(service.bindService())
+                .build();
+        HttpRequest request = HttpRequest
+                .builder(GET, "/get-stream/hello?int_field=5")
+                .headers(accept("application/x-ndjson"))
+                .build();
+
+        RecordingSink sink = new RecordingSink();
+        sink.capacity = 2;
+        CallControl control = bridge.handleStream(request, sink);
+
+        assertThat(sink.chunks).hasSize(2);
+        assertThat(sink.completed).isFalse();
+
+        sink.capacity = 10;
+        control.ready();
+
+        assertThat(sink.chunks).hasSize(5);
+        assertThat(sink.completed).isTrue();
+    }
+
+    @Test
+    public void getStream_cancelled() {
+        FlowControlledService service = new FlowControlledService();
+        Bridge bridge = Bridge
+                .builder()
+                .addFile(grpcbridge.test.proto.Test.getDescriptor())
+                .addService(service.bindService())
+                .build();
+        HttpRequest request = HttpRequest
+                .builder(GET, "/get-stream/hello?int_field=5")
+                .headers(accept("application/x-ndjson"))
+                .build();
+
+        RecordingSink sink = new RecordingSink();
+        sink.capacity = 2;
+        CallControl control = bridge.handleStream(request, sink);
+        control.cancel();
+
+        assertThat(service.cancelled).isTrue();
+        assertThat(((StatusRuntimeException) sink.error).getStatus().getCode())
+                .isEqualTo(Code.CANCELLED);
+
+        sink.capacity = 10;
+        control.ready();
+
+        assertThat(sink.chunks).hasSize(2);
+        assertThat(sink.completed).isFalse();
+    }
+
+    @Test
+    public void getStream_deadlineWhileSending() throws InterruptedException {
+        Bridge bridge = Bridge
+                .builder()
+                .addFile(grpcbridge.test.proto.Test.getDescriptor())
+                .addService(new EndlessService().bindService())
+                .build();
+        Metadata headers = accept("application/x-ndjson");
+        headers.put(Metadata.Key.of("grpc-timeout", ASCII_STRING_MARSHALLER), "20m");
+        HttpRequest request = HttpRequest
+                .builder(GET, "/get-stream/hello")
+                .headers(headers)
+                .build();
+
+        for (int i = 0; i < 10; i++) {
+            SerialSink sink = new SerialSink();
+            bridge.handleStream(request, sink);
+
+            assertThat(sink.ended.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(sink.violation).isNull();
+            assertThat(((StatusRuntimeException) sink.error).getStatus().getCode())
+                    .isEqualTo(Code.DEADLINE_EXCEEDED);
+        }
+    }
+
+    @Test
+    public void getStream_sinkFails() {
+        EndlessService service = new EndlessService();
+        Bridge bridge = Bridge
+                .builder()
+                .addFile(grpcbridge.test.proto.Test.getDescriptor())
+                .addService(service.bindService())
+                .build();
+        HttpRequest request = HttpRequest
+                .builder(GET, "/get-stream/hello")
+                .headers(accept("application/x-ndjson"))
+                .build();
+
+        FailingSink sink = new FailingSink();
+        bridge.handleStream(request, sink);
+
+        assertThat(service.cancelled).isTrue();
+        assertThat(sink.errors).hasSize(1);
+        assertThat(sink.errors.get(0)).hasMessageContaining("broken pipe");
+        assertThat(sink.chunks).isEqualTo(3);
+    }
+
+    @Test
+    public void postStream_jsonArray() {
+        HttpRequest request = HttpRequest
+                .builder(POST, "/post-stream/hello")
+                .body("[{\"intField\": 1}, {\"intField\": 2, \"stringField\": \"ignored\"}, {\"intField\": 3}]")
+                .build();
+
+        PostResponse response = parse(bridge.handle(request).getBody(), PostResponse.newBuilder());
+
+        assertThat(response.getIntField()).isEqualTo(6);
+        assertThat(response.getStringField()).isEqualTo("hello");
+    }
+
+    @Test
+    public void postStream_ndjson() {
+        HttpRequest request = HttpRequest
+                .builder(POST, "/post-stream/hello")
+                .body("{\"intField\": 1}\n{\"intField\": 2}\n")
+                .build();
+
+        PostResponse response = parse(bridge.handle(request).getBody(), PostResponse.newBuilder());
+
+        assertThat(response.getIntField()).isEqualTo(3);
+    }
+
+    @Test
+    public void postStream_singleMessage() {
+        HttpRequest request = HttpRequest
+                .builder(POST, "/post-stream/hello")
+                .body("{\"intField\": 5}")
+                .build();
+
+        PostResponse response = parse(bridge.handle(request).getBody(), PostResponse.newBuilder());
+
+        assertThat(response.getIntField()).isEqualTo(5);
+    }
+
+    @Test
+    public void postStream_emptyArray() {
+        HttpRequest request = HttpRequest
+                .builder(POST, "/post-stream/hello")
+                .body("[]")
+                .build();
+
+        PostResponse response = parse(bridge.handle(request).getBody(), PostResponse.newBuilder());
+
+        assertThat(response).isEqualTo(PostResponse.getDefaultInstance());
+    }
+
+    @Test
+    public void postStream_decodedOnDemand() {
+        RecordingPostService service = new RecordingPostService();
+        Bridge bridge = Bridge
+                .builder()
+                .addFile(grpcbridge.test.proto.Test.getDescriptor())
+                .addService(service.bindService())
+                .build();
+        HttpRequest request = HttpRequest
+                .builder(POST, "/post-stream/hello")
+                .body("[{\"intField\": 1}, {\"intField\": 2}, {\"intField\": \"x\"}, {\"intField\": 4}]")
+                .build();
+
+        StatusRuntimeException error = catchThrowableOfType(
+                () -> bridge.handle(request),
+                StatusRuntimeException.class);
+
+        assertThat(error.getStatus().getCode()).isEqualTo(Code.INVALID_ARGUMENT);
+        assertThat(service.received).containsExactly(1, 2);
+        assertThat(service.error).isNotNull();
+    }
+
+    private static Metadata accept(String type) {
+        Metadata headers = new Metadata();
+        headers.put(ACCEPT, type);
+        return headers;
+    }
+
+    /**
+     * Streams responses only while the call is ready.
+     */
+    private static final class FlowControlledService extends TestServiceGrpc.TestServiceImplBase {
+        private boolean cancelled;
+
+        @Override
+        public void getStream(GetRequest request, StreamObserver<GetResponse> responseObserver) {
+            ServerCallStreamObserver<GetResponse> call =
+                    (ServerCallStreamObserver<GetResponse>) responseObserver;
+            AtomicInteger sent = new AtomicInteger();
+            call.setOnCancelHandler(() -> cancelled = true);
+            call.setOnReadyHandler(() -> {
+                while (call.isReady() && sent.get() < request.getIntField()) {
+                    call.onNext(GetResponse.newBuilder()
+                            .setStringField(request.getStringField())
+                            .setIntField(sent.getAndIncrement())
+                            .build());
+                }
+                if (sent.get() == request.getIntField() && !call.isCancelled()) {
+                    sent.incrementAndGet();
+                    call.onCompleted();
+                }
+            });
+        }
+    }
+
+    /**
+     * Streams responses until the call is cancelled.
+     */
+    private static final class EndlessService extends TestServiceGrpc.TestServiceImplBase {
+        private volatile boolean cancelled;
+
+        @Override
+        public void getStream(GetRequest request, StreamObserver<GetResponse> responseObserver) {
+            ServerCallStreamObserver<GetResponse> call =
+                    (ServerCallStreamObserver<GetResponse>) responseObserver;
+            long giveUp = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            int sent = 0;
+            while (!call.isCancelled() && System.nanoTime() < giveUp) {
+                call.onNext(GetResponse.newBuilder().setIntField(sent++).build());
+            }
+            cancelled = call.isCancelled();
+        }
+    }
+
+    /**
+     * Records the request messages received before the stream failed.
+     */
+    private static final class RecordingPostService extends TestServiceGrpc.TestServiceImplBase {
+        private final List<Integer> received = new ArrayList<>();
+        private Throwable error;
+
+        @Override
+        public StreamObserver<PostRequest> postStream(StreamObserver<PostResponse> responseObserver) {
+            return new StreamObserver<PostRequest>() {
+                @Override
+                public void onNext(PostRequest request) {
+                    received.add(request.getIntField());
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    error = t;
+                }
+
+                @Override
+                public void onCompleted() {
+                    responseObserver.onNext(PostResponse.getDefaultInstance());
+                    responseObserver.onCompleted();
+                }
+            };
+        }
+    }
+
+    /**
+     * Records callbacks that overlap or follow the end of the response.
+     */
+    private static final class SerialSink implements ResponseSink {
+        private final AtomicBoolean inCallback = new AtomicBoolean();
+        private final CountDownLatch ended = new CountDownLatch(1);
+        private volatile String violation;
+        private volatile Throwable error;
+
+        @Override
+        public void onStart(Metadata headers) {
+            enter("onStart");
+            exit();
+        }
+
+        @Override
+        public void onData(byte[] data) {
+            enter("onData");
+            Thread.yield();
+            exit();
+        }
+
+        @Override
+        public void onComplete(Metadata trailers) {
+            enter("onComplete");
+            ended.countDown();
+            exit();
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            enter("onError");
+            this.error = error;
+            ended.countDown();
+            exit();
+        }
+
+        private void enter(String callback) {
+            if (!inCallback.compareAndSet(false, true)) {
+                violation = "concurrent " + callback;
+            } else if (ended.getCount() == 0) {
+                violation = callback + " after the end";
+            }
+        }
+
+        private void exit() {
+            inCallback.set(false);
+        }
+    }
+
+    /**
+     * Fails writing the third chunk.
+     */
+    private static final class FailingSink implements ResponseSink {
+        private final List<Throwable> errors = new ArrayList<>();
+        private int chunks;
+
+        @Override
+        public void onStart(Metadata headers) {
+        }
+
+        @Override
+        public void onData(byte[] data) {
+            if (++chunks == 3) {
+                throw new UncheckedIOException(new IOException("broken pipe"));
+            }
+        }
+
+        @Override
+        public void onComplete(Metadata trailers) {
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            errors.add(error);
+        }
+    }
+
+    private static final class RecordingSink implements ResponseSink {
+        private final List<byte[]> chunks = new ArrayList<>();
+        private int capacity = Integer.MAX_VALUE;
+        private Metadata headers;
+        private boolean completed;
+        private Throwable error;
+
+        @Override
+        public void onStart(Metadata headers) {
+            this.headers = headers;
+        }
+
+        @Override
+        public void onData(byte[] data) {
+            chunks.add(data);
+        }
+
+        @Override
+        public void onComplete(Metadata trailers) {
+            completed = true;
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            this.error = error;
+        }
+
+        @Override
+        public boolean isReady() {
+            return chunks.size() < capacity;
+        }
+
+        String body() {
+            StringBuilder result = new StringBuilder();
+            chunks.forEach(chunk -> result.append(new String(chunk, Charsets.UTF_8)));
+            return result.toString();
+        }
+    }
+}
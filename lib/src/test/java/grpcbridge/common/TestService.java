@@ -118,6 +118,29 @@ public final class TestService extends TestServiceGrpc.TestServiceImplBase {
         responseObserver.onCompleted();
     }
 
+    @Override
+    public StreamObserver<PostRequest> postStream(StreamObserver<PostResponse> responseObserver) {
+        PostResponse.Builder response = PostResponse.newBuilder();
+        return new StreamObserver<PostRequest>() {
+            @Override
+            public void onNext(PostRequest request) {
+                logger.info("PostStream({})", TextFormat.shortDebugString(request));
+                response.setStringField(request.getStringField())
+                        .setIntField(response.getIntField() + request.getIntField());
+            }
+
+            @Override
+            public void onError(Throwable t) {
+            }
+
+            @Override
+            public void onCompleted() {
+                responseObserver.onNext(response.build());
+                responseObserver.onCompleted();
+            }
+        };
+    }
+
     @Override
     public void postNoBody(
             PostRequest request,
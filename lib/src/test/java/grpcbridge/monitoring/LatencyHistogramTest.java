@@ -0,0 +1,96 @@
+package grpcbridge.monitoring;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+    @Test
+    public void empty() {
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+
+        assertThat(snapshot.getCount()).isZero();
+        assertThat(snapshot.getMean()).isZero();
+        assertThat(snapshot.getMax()).isZero();
+        assertThat(snapshot.getValueAtQuantile(0.99)).isZero();
+    }
+
+    @Test
+    public void smallValuesExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 16; i++) {
+            histogram.record(i);
+        }
+        histogram.record(-5);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertThat(snapshot.getCount()).isEqualTo(17);
+        assertThat(snapshot.getSum()).isEqualTo(120);
+        assertThat(snapshot.getValueAtQuantile(0)).isEqualTo(0);
+        assertThat(snapshot.getValueAtQuantile(0.5)).isEqualTo(7);
+        assertThat(snapshot.getValueAtQuantile(1)).isEqualTo(15);
+    }
+
+    @Test
+    public void quantiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 10000; i++) {
+            histogram.record(i * 1000);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertThat(snapshot.getCount()).isEqualTo(10000);
+        assertThat(snapshot.getMax()).isEqualTo(10_000_000);
+        assertThat(snapshot.getMean()).isCloseTo(5_000_500, within(1.0));
+        assertThat((double) snapshot.getValueAtQuantile(0.5)).isCloseTo(5_000_000, within(625_000.0));
+        assertThat((double) snapshot.getValueAtQuantile(0.99)).isCloseTo(9_900_000, within(1_237_500.0));
+        assertThat(snapshot.getValueAtQuantile(0.99)).isGreaterThanOrEqualTo(9_900_000);
+        assertThat(snapshot.getValueAtQuantile(1)).isEqualTo(10_000_000);
+    }
+
+    @Test
+    public void hugeValuesClamped() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE);
+
+        assertThat(histogram.snapshot().getMax()).isEqualTo((1L << 40) - 1);
+    }
+
+    @Test
+    public void concurrentRecording() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 10000; i++) {
+                    histogram.record(100);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertThat(snapshot.getCount()).isEqualTo(80000);
+        assertThat(snapshot.getSum()).isEqualTo(8_000_000);
+        assertThat(snapshot.getMax()).isEqualTo(100);
+    }
+}
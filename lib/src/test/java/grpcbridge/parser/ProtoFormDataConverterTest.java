@@ -0,0 +1,92 @@
+package grpcbridge.parser;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import com.google.protobuf.Int64Value;
+import com.google.protobuf.Timestamp;
+import com.google.protobuf.util.JsonFormat;
+import grpcbridge.Exceptions.ParsingException;
+import grpcbridge.test.proto.JsonWriterTest.Color;
+import grpcbridge.test.proto.JsonWriterTest.Everything;
+import grpcbridge.test.proto.JsonWriterTest.Scalars;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class ProtoFormDataConverterTest {
+    private static final Everything MESSAGE = Everything.newBuilder()
+            .setScalars(Scalars.newBuilder()
+                    .setInt32Field(-12)
+                    .setUint64Field(-1L)
+                    .setDoubleField(0.5)
+                    .setBoolField(true)
+                    .setStringField("a b&c=d\u00e9")
+                    .setColor(Color.GREEN))
+            .addColors(Color.RED)
+            .addColorsValue(9)
+            .addLongs(1)
+            .addLongs(-2)
+            .putStringMap("k.e y", 3)
+            .putBoolMap(true, "yes")
+            .setChoiceString("chosen")
+            .setWrappedLong(Int64Value.of(9))
+            .setTimestamp(Timestamp.newBuilder().setSeconds(1234567890))
+            .setChild(Everything.newBuilder().setChild(Everything.newBuilder().setDefaulted("deep")))
+            .build();
+
+    @Test
+    public void parse() {
+        String body = "scalars.int32Field=-12&scalars.uint64_field=18446744073709551615"
+                + "&scalars.doubleField=0.5&scalars.boolField=true"
+                + "&scalars.stringField=a+b%26c%3Dd%C3%A9&scalars.color=GREEN"
+                + "&colors=RED&colors=9&longs=1&longs=-2&stringMap.k.e+y=3&boolMap.true=yes"
+                + "&choiceString=chosen&wrappedLong=9&timestamp=2009-02-13T23%3A31%3A30Z"
+                + "&child.child.defaulted=deep&&";
+
+        assertThat(parse(body)).isEqualTo(MESSAGE);
+    }
+
+    @Test
+    public void roundTrip() {
+        JsonFormat.Printer printer = JsonFormat.printer().preservingProtoFieldNames().printingEnumsAsInts();
+        ProtoJsonWriter writer = ProtoJsonWriter.create().preservingProtoFieldNames().printingEnumsAsInts();
+
+        String body = ProtoFormDataConverter.INSTANCE.serialize(printer, writer, MESSAGE);
+
+        assertThat(body).startsWith("colors=1&colors=9&scalars.int32_field=-12&");
+        assertThat(body).contains("&string_map.k.e+y=3&");
+        assertThat(parse(body)).isEqualTo(MESSAGE);
+    }
+
+    @Test
+    public void withoutWriter() {
+        JsonFormat.Printer printer = JsonFormat.printer();
+
+        ProtoJsonWriter writer = ProtoJsonWriter.create();
+
+        assertThat(ProtoFormDataConverter.INSTANCE.serialize(printer, MESSAGE))
+                .isEqualTo(ProtoFormDataConverter.INSTANCE.serialize(printer, writer, MESSAGE));
+    }
+
+    @Test
+    public void singularFieldTakesLastValue() {
+        assertThat(parse("choiceString=a&choiceString=b").getChoiceString()).isEqualTo("b");
+    }
+
+    @Test
+    public void unknownField() {
+        assertThatExceptionOfType(ParsingException.class)
+                .isThrownBy(() -> parse("scalars.unknown=1"))
+                .withMessage("Failed to deserialize a message: {scalars.unknown=1}");
+        assertThatExceptionOfType(ParsingException.class)
+                .isThrownBy(() -> parse("longs.nested=1"));
+        assertThatExceptionOfType(ParsingException.class)
+                .isThrownBy(() -> parse("scalars=1"));
+    }
+
+    private static Everything parse(String body) {
+        return ProtoFormDataConverter.INSTANCE.parse(body, StandardCharsets.UTF_8, Everything.newBuilder());
+    }
+}
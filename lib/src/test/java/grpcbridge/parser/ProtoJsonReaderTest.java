@@ -0,0 +1,171 @@
+package grpcbridge.parser;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Duration;
+import com.google.protobuf.Int64Value;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.NullValue;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Timestamp;
+import com.google.protobuf.Value;
+import com.google.protobuf.util.JsonFormat;
+import grpcbridge.Exceptions.ParsingException;
+import grpcbridge.test.proto.JsonWriterTest.Color;
+import grpcbridge.test.proto.JsonWriterTest.Everything;
+import grpcbridge.test.proto.JsonWriterTest.Scalars;
+import grpcbridge.test.proto.JsonWriterTest.WithStruct;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class ProtoJsonReaderTest {
+    private static final Scalars SCALARS = Scalars.newBuilder()
+            .setInt32Field(-12)
+            .setSint32Field(Integer.MIN_VALUE)
+            .setSfixed32Field(7)
+            .setInt64Field(Long.MAX_VALUE)
+            .setSint64Field(-5)
+            .setSfixed64Field(Long.MIN_VALUE)
+            .setUint32Field(-1)
+            .setFixed32Field(42)
+            .setUint64Field(-1L)
+            .setFixed64Field(1L << 40)
+            .setFloatField(1.25e-7f)
+            .setDoubleField(Double.NEGATIVE_INFINITY)
+            .setBoolField(true)
+            .setStringField("q\"b\\s/\t\n\u0001<a> \u017c\u00f3\u0142w \ud83d\ude00")
+            .setBytesField(ByteString.copyFrom(new byte[] {0, -1, 2, -3, 4}))
+            .setColor(Color.GREEN)
+            .build();
+
+    @Test
+    public void roundTrip() throws IOException {
+        Everything message = Everything.newBuilder()
+                .setScalars(SCALARS)
+                .addRepeatedScalars(SCALARS)
+                .addRepeatedScalars(Scalars.getDefaultInstance())
+                .addColors(Color.RED)
+                .addColorsValue(9)
+                .addLongs(-2)
+                .putStringMap("a\"b", -3)
+                .putIntMap(-1, SCALARS)
+                .putBoolMap(true, "yes")
+                .setChoiceMessage(Scalars.newBuilder().setBoolField(true))
+                .setOptionalInt(0)
+                .setWrappedLong(Int64Value.of(9))
+                .setTimestamp(Timestamp.newBuilder().setSeconds(1234567890).setNanos(5000))
+                .setDuration(Duration.newBuilder().setSeconds(-3).setNanos(-100))
+                .setChild(Everything.newBuilder().setChild(Everything.newBuilder().setDefaulted("deep")))
+                .build();
+
+        assertSameAsJsonFormat(Everything.newBuilder(), JsonFormat.printer().print(message));
+        assertSameAsJsonFormat(
+                Everything.newBuilder(),
+                JsonFormat.printer().preservingProtoFieldNames().printingEnumsAsInts().print(message));
+        assertThat(merge(Everything.newBuilder(), JsonFormat.printer().print(message)))
+                .isEqualTo(message);
+    }
+
+    @Test
+    public void lenientValues() throws IOException {
+        assertSameAsJsonFormat(Scalars.newBuilder(), "{"
+                + "'int32Field': '1e1', 'int64_field': 2.0, uint32Field: '4294967295',"
+                + "'uint64Field': 1.8446744073709551615E19, 'floatField': 'NaN',"
+                + "'doubleField': '-1.5', 'boolField': 'true', 'bytesField': '_-8',"
+                + "'color': 2, 'nullValue': null, 'stringField': 12}");
+        assertSameAsJsonFormat(Everything.newBuilder(), "{"
+                + "'colors': ['RED', 1, 7], 'longs': null, 'choiceString': null,"
+                + "'intMap': {'-1': {}}, 'boolMap': {'false': 'no'}, 'wrappedLong': '5',"
+                + "'scalars': {'int32Field': 1}, 'scalars': {'int32Field': 2}}");
+        assertSameAsJsonFormat(WithStruct.newBuilder(), "{'structField': {'a': [1, null, {'b': 'c'}]}}");
+        assertSameAsJsonFormat(Everything.newBuilder(), "{'longs': [1], 'longs': [2]}");
+        assertSameAsJsonFormat(Value.newBuilder(), "null");
+        assertSameAsJsonFormat(Everything.newBuilder(), "{'longs': [1]} {'longs': [2]}");
+    }
+
+    @Test
+    public void errors() {
+        assertSameError(Everything.newBuilder(), "[]");
+        assertSameError(Everything.newBuilder(), "{'unknown': 1}");
+        assertSameError(Everything.newBuilder(), "  ");
+        assertSameError(Everything.newBuilder(), "{'longs': [1], 'longs': [2], 'long': [3]}");
+        assertSameError(Everything.newBuilder(), "{'longs': 1}");
+        assertSameError(Everything.newBuilder(), "{'longs': [null]}");
+        assertSameError(Everything.newBuilder(), "{'stringMap': {'a': null}}");
+        assertSameError(Everything.newBuilder(), "{'stringMap': []}");
+        assertSameError(Everything.newBuilder(), "{'choiceString': 'a', 'choiceMessage': {}}");
+        assertSameError(Everything.newBuilder(), "{'optionalInt': 1, 'optional_int': 1}");
+        assertSameError(Everything.newBuilder(), "{'scalars': 1}");
+        assertSameError(Everything.newBuilder(), "{'wrappedLong': 'x'}");
+        assertSameError(Everything.newBuilder(), "{'longs': [1] ");
+        assertSameError(Scalars.newBuilder(), "{'int32Field': 2147483648}");
+        assertSameError(Scalars.newBuilder(), "{'uint32Field': -1}");
+        assertSameError(Scalars.newBuilder(), "{'uint64Field': 'a'}");
+        assertSameError(Scalars.newBuilder(), "{'floatField': 1e39}");
+        assertSameError(Scalars.newBuilder(), "{'doubleField': 1e309}");
+        assertSameError(Scalars.newBuilder(), "{'boolField': 1}");
+        assertSameError(Scalars.newBuilder(), "{'color': 'BLUE'}");
+        assertSameError(Scalars.newBuilder(), "{'stringField': {}}");
+        assertSameError(Struct.newBuilder(), "[]");
+    }
+
+    @Test
+    public void recursionLimit() {
+        StringBuilder json = new StringBuilder();
+        for (int i = 0; i < 102; i++) {
+            json.append("{'child': ");
+        }
+        json.append("{}");
+        for (int i = 0; i < 102; i++) {
+            json.append('}');
+        }
+
+        assertSameError(Everything.newBuilder(), json.toString());
+    }
+
+    @Test
+    public void converterWrapsErrors() {
+        Throwable error = catchThrowable(() -> ProtoJsonConverter.INSTANCE.parse(
+                "{'unknown': 1}", StandardCharsets.UTF_8, Everything.newBuilder()));
+
+        assertThat(error)
+                .isInstanceOf(ParsingException.class)
+                .hasMessage("Failed to deserialize a message: {{'unknown': 1}}");
+        assertThat(error.getCause())
+                .hasMessage("Cannot find field: unknown in message grpcbridge.test.proto.Everything");
+        Everything parsed = ProtoJsonConverter.INSTANCE.parse(
+                "{'scalars': {'nullValue': 'NULL_VALUE'}}", StandardCharsets.UTF_8, Everything.newBuilder());
+        assertThat(parsed).isEqualTo(Everything.newBuilder()
+                        .setScalars(Scalars.newBuilder().setNullValue(NullValue.NULL_VALUE))
+                        .build());
+    }
+
+    private static void assertSameAsJsonFormat(Message.Builder builder, String json) throws IOException {
+        Message.Builder expected = builder.clone();
+        JsonFormat.parser().merge(json, expected);
+
+        assertThat(merge(builder, json)).isEqualTo(expected.build());
+    }
+
+    private static void assertSameError(Message.Builder builder, String json) {
+        Throwable expected = catchThrowable(() -> JsonFormat.parser().merge(json, builder.clone()));
+        Throwable actual = catchThrowable(() -> merge(builder.clone(), json));
+
+        assertThat(expected).isInstanceOf(InvalidProtocolBufferException.class);
+        assertThat(actual)
+                .isInstanceOf(InvalidProtocolBufferException.class)
+                .hasMessage(expected.getMessage());
+    }
+
+    private static Message merge(Message.Builder builder, String json) throws IOException {
+        ProtoJsonReader.merge(new StringReader(json), builder);
+        return builder.build();
+    }
+}
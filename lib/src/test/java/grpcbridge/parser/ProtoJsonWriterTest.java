@@ -0,0 +1,197 @@
+package grpcbridge.parser;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Duration;
+import com.google.protobuf.Int64Value;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.NullValue;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Timestamp;
+import com.google.protobuf.Value;
+import com.google.protobuf.util.JsonFormat;
+import grpcbridge.test.proto.JsonWriterTest.Color;
+import grpcbridge.test.proto.JsonWriterTest.Everything;
+import grpcbridge.test.proto.JsonWriterTest.Scalars;
+import grpcbridge.test.proto.JsonWriterTest.WithStruct;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ProtoJsonWriterTest {
+    private static final Scalars SCALARS = Scalars.newBuilder()
+            .setInt32Field(-12)
+            .setSint32Field(Integer.MIN_VALUE)
+            .setSfixed32Field(7)
+            .setInt64Field(Long.MAX_VALUE)
+            .setSint64Field(-5)
+            .setSfixed64Field(Long.MIN_VALUE)
+            .setUint32Field(-1)
+            .setFixed32Field(42)
+            .setUint64Field(-1L)
+            .setFixed64Field(1L << 40)
+            .setFloatField(1.25e-7f)
+            .setDoubleField(Double.NEGATIVE_INFINITY)
+            .setBoolField(true)
+            .setStringField("q\"b\\s/\t\n\u0001<a href='x'>&=</a> \u017c\u00f3\u0142w \u2028\u2029 \ud83d\ude00 \ud800")
+            .setBytesField(ByteString.copyFrom(new byte[] {0, -1, 2, -3, 4}))
+            .setColorValue(0)
+            .build();
+
+    @Test
+    public void scalars() {
+        assertIdentical(SCALARS);
+        assertIdentical(SCALARS.toBuilder().setColor(Color.GREEN).setFloatField(Float.NaN).build());
+        assertIdentical(SCALARS.toBuilder().setColorValue(17).setDoubleField(0.1).build());
+        assertIdentical(Scalars.getDefaultInstance());
+    }
+
+    @Test
+    public void nestedAndRepeated() {
+        assertIdentical(everything());
+        assertIdentical(Everything.getDefaultInstance());
+        assertIdentical(Everything.newBuilder()
+                .setChoiceMessage(Scalars.getDefaultInstance())
+                .setChild(Everything.getDefaultInstance())
+                .setOptionalInt(0)
+                .build());
+    }
+
+    @Test
+    public void mapsAndWellKnownTypes() {
+        assertIdentical(Everything.newBuilder()
+                .putStringMap("", 0)
+                .putStringMap("a\"b", -3)
+                .putIntMap(-1, SCALARS)
+                .putIntMap(5, Scalars.getDefaultInstance())
+                .putBoolMap(true, "yes")
+                .putBoolMap(false, "")
+                .setWrappedLong(Int64Value.of(9))
+                .setTimestamp(Timestamp.newBuilder().setSeconds(1234567890).setNanos(5000))
+                .setDuration(Duration.newBuilder().setSeconds(-3).setNanos(-100))
+                .build());
+    }
+
+    @Test
+    public void structNotSupported() {
+        ProtoJsonWriter writer = ProtoJsonWriter.create();
+
+        assertThat(writer.supports(WithStruct.getDescriptor())).isFalse();
+        assertThat(writer.supports(Struct.getDescriptor())).isFalse();
+        assertThat(writer.supports(Everything.getDescriptor())).isTrue();
+    }
+
+    @Test
+    public void compactWriterReused() {
+        ProtoJsonWriter writer = ProtoJsonWriter.create();
+
+        assertThat(writer.omittingInsignificantWhitespace())
+                .isSameAs(writer.omittingInsignificantWhitespace());
+    }
+
+    @Test
+    public void fallsBackForStruct() {
+        WithStruct message = WithStruct.newBuilder()
+                .setStructField(Struct.newBuilder()
+                        .putFields("key", Value.newBuilder().setNullValue(NullValue.NULL_VALUE).build()))
+                .build();
+        ProtoJsonWriter writer = ProtoJsonWriter.create();
+
+        assertThat(ProtoJsonConverter.INSTANCE.serialize(JsonFormat.printer(), writer, message))
+                .isEqualTo(print(JsonFormat.printer(), message));
+    }
+
+    @Test
+    public void writeStreamsInChunks() throws IOException {
+        Everything.Builder builder = Everything.newBuilder();
+        for (int i = 0; i < 200; i++) {
+            builder.addRepeatedScalars(SCALARS);
+        }
+        Everything message = builder.build();
+        ProtoJsonWriter writer = ProtoJsonWriter.create();
+        List<Integer> chunks = new ArrayList<>();
+        ByteArrayOutputStream out = new ByteArrayOutputStream() {
+            @Override
+            public synchronized void write(byte[] b, int off, int len) {
+                chunks.add(len);
+                super.write(b, off, len);
+            }
+        };
+
+        writer.write(message, out);
+
+        assertThat(out.toByteArray()).isEqualTo(writer.toByteArray(message));
+        assertThat(chunks.size()).isGreaterThan(1);
+        assertThat(chunks).allMatch(len -> len <= 8192);
+    }
+
+    private static Everything everything() {
+        return Everything.newBuilder()
+                .setScalars(SCALARS)
+                .addRepeatedScalars(SCALARS)
+                .addRepeatedScalars(Scalars.getDefaultInstance())
+                .addColors(Color.RED)
+                .addColorsValue(9)
+                .addLongs(1)
+                .addLongs(-2)
+                .setChoiceString("chosen")
+                .setOptionalInt(3)
+                .setChild(Everything.newBuilder()
+                        .setChild(Everything.newBuilder().setDefaulted("deep"))
+                        .addLongs(5))
+                .setDefaultedMessage(Scalars.newBuilder().setBoolField(true))
+                .build();
+    }
+
+    private static void assertIdentical(Message message) {
+        ImmutableSet<FieldDescriptor> defaults = ImmutableSet.of(
+                Everything.getDescriptor().findFieldByName("defaulted"),
+                Everything.getDescriptor().findFieldByName("defaulted_message"),
+                Scalars.getDescriptor().findFieldByName("string_field"),
+                Scalars.getDescriptor().findFieldByName("null_value"));
+
+        assertIdentical(JsonFormat.printer(), ProtoJsonWriter.create(), message);
+        assertIdentical(
+                JsonFormat.printer().preservingProtoFieldNames().printingEnumsAsInts(),
+                ProtoJsonWriter.create().preservingProtoFieldNames().printingEnumsAsInts(),
+                message);
+        assertIdentical(
+                JsonFormat.printer().includingDefaultValueFields(),
+                ProtoJsonWriter.create().includingDefaultValueFields(),
+                message);
+        assertIdentical(
+                JsonFormat.printer().includingDefaultValueFields(defaults),
+                ProtoJsonWriter.create().includingDefaultValueFields(defaults),
+                message);
+        assertIdentical(
+                JsonFormat.printer().includingDefaultValueFields().omittingInsignificantWhitespace(),
+                ProtoJsonWriter.create().includingDefaultValueFields().omittingInsignificantWhitespace(),
+                message);
+    }
+
+    private static void assertIdentical(
+            JsonFormat.Printer printer,
+            ProtoJsonWriter writer,
+            Message message) {
+        assertThat(writer.supports(message.getDescriptorForType())).isTrue();
+        assertThat(writer.toByteArray(message))
+                .isEqualTo(print(printer, message).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String print(JsonFormat.Printer printer, Message message) {
+        try {
+            return printer.print(message);
+        } catch (InvalidProtocolBufferException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
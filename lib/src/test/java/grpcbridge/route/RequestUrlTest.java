@@ -0,0 +1,136 @@
+package grpcbridge.route;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public class RequestUrlTest {
+    @Test
+    public void root() {
+        RequestUrl url = RequestUrl.parse("/");
+        assertThat(url.getPath()).isEqualTo("/");
+        assertThat(url.queryVariables()).isEmpty();
+    }
+
+    @Test
+    public void simple() {
+        RequestUrl url = RequestUrl.parse("/simple");
+        assertThat(url.getPath()).isEqualTo("/simple");
+        assertThat(url.queryVariables()).isEmpty();
+    }
+
+    @Test
+    public void segments() {
+        RequestUrl url = RequestUrl.parse("/one/two/?p1=v1");
+        assertThat(url.getSegmentCount()).isEqualTo(4);
+        assertThat(url.getSegment(0)).isEqualTo("");
+        assertThat(url.getSegment(1)).isEqualTo("one");
+        assertThat(url.getSegment(2)).isEqualTo("two");
+        assertThat(url.getSegment(3)).isEqualTo("");
+    }
+
+    @Test
+    public void emptyQuery() {
+        RequestUrl url = RequestUrl.parse("/simple?");
+        assertThat(url.getPath()).isEqualTo("/simple");
+        assertThat(url.queryVariables()).isEmpty();
+    }
+
+    @Test
+    public void param() {
+        RequestUrl url = RequestUrl.parse("/simple?p1");
+        assertThat(url.getPath()).isEqualTo("/simple");
+        assertThat(url.queryVariables()).containsExactly(new Variable("p1", ""));
+    }
+
+    @Test
+    public void param_multiple() {
+        RequestUrl url = RequestUrl.parse("/simple?p1&p1&p1");
+        assertThat(url.getPath()).isEqualTo("/simple");
+        assertThat(url.queryVariables()).containsExactly(
+                new Variable("p1", ""),
+                new Variable("p1", ""),
+                new Variable("p1", ""));
+    }
+
+    @Test
+    public void paramWithValue() {
+        RequestUrl url = RequestUrl.parse("/simple?p1={pp1}");
+        assertThat(url.getPath()).isEqualTo("/simple");
+        assertThat(url.queryVariables()).containsExactly(new Variable("p1", "{pp1}"));
+    }
+
+    @Test
+    public void paramWithValue_multiple() {
+        RequestUrl url = RequestUrl.parse("/simple?p1={pp1}&p1={pp1}");
+        assertThat(url.getPath()).isEqualTo("/simple");
+        assertThat(url.queryVariables()).containsExactly(
+                new Variable("p1", "{pp1}"),
+                new Variable("p1", "{pp1}"));
+    }
+
+    @Test
+    public void paramWithValue_URLEncoded() {
+        RequestUrl url = RequestUrl
+                .parse("/simple?p1={%20%22%25%2D%2E%3C%3E%5C%5E%5F%60%7B%7C%7D%7E}");
+        assertThat(url.getPath()).isEqualTo("/simple");
+        assertThat(url.queryVariables())
+                .containsExactly(new Variable("p1", "{ \"%-.<>\\^_`{|}~}"));
+    }
+
+    @Test
+    public void paramWithValue_reservedCharacters() {
+        RequestUrl url = RequestUrl.parse("/simple?p1={!*'();:@+$,/#[]}");
+        assertThat(url.getPath()).isEqualTo("/simple");
+        assertThat(url.queryVariables()).containsExactly(new Variable("p1", "{!*'();:@+$,/#[]}"));
+    }
+
+    @Test
+    public void paramWithValue_separatorInValue() {
+        RequestUrl url = RequestUrl.parse("/simple?p1=a=b?c&&p2=");
+        assertThat(url.queryVariables()).containsExactly(
+                new Variable("p1", "a=b?c"),
+                new Variable("p2", ""));
+    }
+
+    @Test
+    public void multipleParams() {
+        RequestUrl url = RequestUrl.parse("/simple?p1={pp1}&p2={pp2}&p3={pp3}");
+        assertThat(url.getPath()).isEqualTo("/simple");
+        assertThat(url.queryVariables()).containsExactly(
+                new Variable("p1", "{pp1}"),
+                new Variable("p2", "{pp2}"),
+                new Variable("p3", "{pp3}"));
+    }
+
+    @Test
+    public void decode() {
+        String value = "%20%22%25%2D%2E%3C%3E%5C%5E%5F%60%7B%7C%7D%7E";
+        assertThat(RequestUrl.decode(value, 0, value.length()))
+                .isEqualTo(" \"%-.<>\\^_`{|}~");
+    }
+
+    @Test
+    public void decode_utf8() {
+        String value = "caf%C3%A9+%E2%82%AC";
+        assertThat(RequestUrl.decode(value, 0, value.length())).isEqualTo("caf\u00e9+\u20ac");
+    }
+
+    @Test
+    public void decode_range() {
+        String value = "/a%2Fb/c";
+        assertThat(RequestUrl.decode(value, 1, 6)).isEqualTo("a/b");
+    }
+
+    @Test
+    public void decode_malformed() {
+        List<String> values = Arrays.asList("%", "%2", "%zz", "a%2");
+        for (String value : values) {
+            assertThatExceptionOfType(IllegalArgumentException.class)
+                    .isThrownBy(() -> RequestUrl.decode(value, 0, value.length()));
+        }
+    }
+}
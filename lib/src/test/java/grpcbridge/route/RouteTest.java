@@ -1,6 +1,7 @@
 package grpcbridge.route;
 
 import static grpcbridge.http.HttpMethod.GET;
+import static grpcbridge.http.HttpMethod.POST;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 
@@ -8,10 +9,17 @@ import grpcbridge.Bridge;
 import grpcbridge.Exceptions.RouteNotFoundException;
 import grpcbridge.http.HttpRequest;
 import grpcbridge.http.HttpResponse;
+import grpcbridge.parser.ProtoJsonConverter;
+import grpcbridge.util.FileDescriptors;
 import grpcbridge.test.proto.RouteTest.Empty;
+import grpcbridge.test.proto.RouteTest.Item;
 import grpcbridge.test.proto.RouteTestServiceGrpc.RouteTestServiceImplBase;
+import io.grpc.ServerMethodDefinition;
+import io.grpc.ServerServiceDefinition;
 import io.grpc.stub.StreamObserver;
 
+import com.google.common.base.Charsets;
+import com.google.protobuf.Message;
 import org.junit.Test;
 
 public class RouteTest {
@@ -61,6 +69,96 @@ public class RouteTest {
         assertThat(response).isNotNull();
     }
 
+    @Test
+    public void match_firstDeclaredRouteWins() {
+        HttpRequest request = HttpRequest
+                .builder(GET, "/items/special")
+                .build();
+
+        assertThat(itemFor(request)).isEqualTo(Item.newBuilder()
+                .setId("special")
+                .setSource("GetItem")
+                .build());
+    }
+
+    @Test
+    public void match_literalSegment() {
+        HttpRequest request = HttpRequest
+                .builder(GET, "/items/special/abc")
+                .build();
+
+        assertThat(itemFor(request)).isEqualTo(Item.newBuilder()
+                .setId("abc")
+                .setSource("GetSpecialItem")
+                .build());
+    }
+
+    @Test
+    public void match_partialSegment() {
+        HttpRequest request = HttpRequest
+                .builder(GET, "/files/abc.json")
+                .build();
+
+        assertThat(itemFor(request)).isEqualTo(Item.newBuilder()
+                .setId("abc")
+                .setSource("GetFile")
+                .build());
+    }
+
+    @Test
+    public void match_partialSegment_literalIsNotPattern() {
+        HttpRequest request = HttpRequest
+                .builder(GET, "/files/abc-json")
+                .build();
+
+        assertThatExceptionOfType(RouteNotFoundException.class)
+                .isThrownBy(() -> bridge.handle(request));
+    }
+
+    @Test
+    public void match_wrongMethod() {
+        HttpRequest request = HttpRequest
+                .builder(POST, "/items/abc")
+                .build();
+
+        assertThatExceptionOfType(RouteNotFoundException.class)
+                .isThrownBy(() -> bridge.handle(request));
+    }
+
+    @Test
+    public void match_trailingSlash() {
+        HttpRequest request = HttpRequest
+                .builder(GET, "/items/abc/")
+                .build();
+
+        assertThatExceptionOfType(RouteNotFoundException.class)
+                .isThrownBy(() -> bridge.handle(request));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void printer_isReused() {
+        FileDescriptors files = new FileDescriptors();
+        files.addFile(grpcbridge.test.proto.RouteTest.getDescriptor());
+        ServerServiceDefinition service = new RouteTestService().bindService();
+        Route route = files
+                .routeFor(service, (ServerMethodDefinition<Message, Message>) service
+                        .getMethods()
+                        .iterator()
+                        .next())
+                .get();
+
+        assertThat(route.getPrinter()).isSameAs(route.getPrinter());
+    }
+
+    private Item itemFor(HttpRequest request) {
+        HttpResponse response = bridge.handle(request);
+        return ProtoJsonConverter.INSTANCE.parse(
+                response.getBody(),
+                Charsets.UTF_8,
+                Item.newBuilder());
+    }
+
     private static final class RouteTestService extends RouteTestServiceImplBase {
         @Override
         public void get(Empty request, StreamObserver<Empty> responseObserver) {
@@ -68,6 +166,24 @@ public class RouteTest {
             responseObserver.onCompleted();
         }
 
+        @Override
+        public void getItem(Item request, StreamObserver<Item> responseObserver) {
+            responseObserver.onNext(request.toBuilder().setSource("GetItem").build());
+            responseObserver.onCompleted();
+        }
+
+        @Override
+        public void getSpecialItem(Item request, StreamObserver<Item> responseObserver) {
+            responseObserver.onNext(request.toBuilder().setSource("GetSpecialItem").build());
+            responseObserver.onCompleted();
+        }
+
+        @Override
+        public void getFile(Item request, StreamObserver<Item> responseObserver) {
+            responseObserver.onNext(request.toBuilder().setSource("GetFile").build());
+            responseObserver.onCompleted();
+        }
+
         @Override
         public void getNoAdditional(Empty request, StreamObserver<Empty> responseObserver) {
             responseObserver.onNext(Empty.getDefaultInstance());
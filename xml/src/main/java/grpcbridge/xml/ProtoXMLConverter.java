@@ -1,79 +1,73 @@
 package grpcbridge.xml;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.dataformat.xml.XmlMapper;
 import com.google.common.base.Strings;
 import com.google.common.net.MediaType;
-import com.google.gson.*;
-import com.google.gson.reflect.TypeToken;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Message;
 import com.google.protobuf.util.JsonFormat;
 import grpcbridge.Exceptions;
 import grpcbridge.parser.ProtoConverter;
+import grpcbridge.parser.ProtoJsonReader;
+import grpcbridge.parser.ProtoJsonWriter;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 import java.io.IOException;
-import java.lang.reflect.Type;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.nio.charset.Charset;
-import java.text.NumberFormat;
 import java.util.Arrays;
-import java.util.LinkedHashMap;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
 import static java.lang.String.format;
 
+/**
+ * Reads and writes protobuf messages as XML with StAX, driven by the message
+ * descriptors. The root element is named after the message type, each field
+ * is an element named as printed by the route printer. Repeated fields are
+ * written as one element per value, nested messages as nested elements.
+ * Maps are written as one element per entry, holding the {@code <key>} and
+ * {@code <value>} elements, so that any key, e.g. a number or a string with
+ * spaces, gives well-formed XML. Streams of messages are wrapped in the
+ * {@code <Array>} element.
+ *
+ * <p>
+ * The values are written as printed in JSON and read the same way as the
+ * JSON string values are. Well-known types are converted through their JSON
+ * form.
+ */
 public final class ProtoXMLConverter extends ProtoConverter {
 
-    private static final XmlMapper MAPPER = new XmlMapper();
     private static final MediaType contentType = MediaType.XML_UTF_8;
-    private static final Type MAP_TYPE = new TypeToken<Map<String, Object>>() {
-    }.getType();
-    private static final Type LIST_TYPE = new TypeToken<List<Object>>() {
-    }.getType();
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newFactory();
+    private static final JsonFormat.Printer DELEGATE_PRINTER = JsonFormat.printer();
+    private static final JsonFormat.Parser DELEGATE_PARSER = JsonFormat.parser();
+    private static final int RECURSION_LIMIT = 100;
+    private static final String MAP_KEY = "key";
+    private static final String MAP_VALUE = "value";
+
     public static ProtoXMLConverter INSTANCE = new ProtoXMLConverter();
     private static List<MediaType> SUPPORTED = Arrays.asList(
             contentType,
             MediaType.APPLICATION_XML_UTF_8
     );
-    private final Gson gson = new GsonBuilder()
-            .registerTypeAdapter(Map.class, new JsonDeserializer<Map<String, Object>>() {
-                @Override
-                public Map<String, Object> deserialize(JsonElement json,
-                                                       Type typeOfT,
-                                                       JsonDeserializationContext context
-                ) throws JsonParseException {
-                    Map<String, Object> m = new LinkedHashMap<>();
-                    JsonObject jo = json.getAsJsonObject();
-                    for (Map.Entry<String, JsonElement> mx : jo.entrySet()) {
-                        String key = mx.getKey();
-                        JsonElement v = mx.getValue();
-                        if (v.isJsonArray()) {
-                            m.put(key, gson.fromJson(v, LIST_TYPE));
-                        } else if (v.isJsonPrimitive()) {
-                            Object value = null;
-                            JsonPrimitive primitive = v.getAsJsonPrimitive();
-                            if (primitive.isNumber()) {
-                                try {
-                                    value = NumberFormat.getInstance().parse(v.getAsString());
-                                } catch (Exception ignored) {
-                                }
-                            }
-                            if (value == null) {
-                                value = gson.fromJson(v, Object.class);
-                            }
-                            m.put(key, value);
-                        } else if (v.isJsonObject()) {
-                            m.put(key, gson.fromJson(v, MAP_TYPE));
-                        }
-
-                    }
-                    return m;
-                }
-            })
-            .create();
 
     private ProtoXMLConverter() {
     }
@@ -104,11 +98,14 @@ public final class ProtoXMLConverter extends ProtoConverter {
             T.Builder builder) {
         if (!Strings.isNullOrEmpty(body)) {
             try {
-                XmlMapper mapper = new XmlMapper();
-                Map msg = mapper.readValue(body, Map.class);
-                Gson gson = new Gson();
-                JsonFormat.parser().merge(gson.toJson(msg), builder);
-            } catch (IOException e) {
+                XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(new StringReader(body));
+                try {
+                    reader.nextTag();
+                    mergeMessage(reader, builder, 0);
+                } finally {
+                    reader.close();
+                }
+            } catch (XMLStreamException | InvalidProtocolBufferException | RuntimeException e) {
                 throw new Exceptions.ParsingException(
                         format("Failed to deserialize a message: {%s}", body), e
                 );
@@ -122,17 +119,387 @@ public final class ProtoXMLConverter extends ProtoConverter {
         @Nullable Integer index,
         @Nonnull JsonFormat.Printer printer,
         @Nonnull Message message) {
+        return serialize(index, printer, null, message);
+    }
+
+    @Override
+    public String serialize(
+        @Nullable Integer index,
+        @Nonnull JsonFormat.Printer printer,
+        @Nullable ProtoJsonWriter jsonWriter,
+        @Nonnull Message message) {
+        StringWriter out = new StringWriter();
         try {
-            String json = printer.print(message);
-            Map<String, Object> raw = gson.fromJson(json, MAP_TYPE);
-            return MAPPER
-                .writer()
-                .withRootName(message.getDescriptorForType().getName())
-                .writeValueAsString(raw);
-        } catch (InvalidProtocolBufferException | JsonProcessingException e) {
+            write(index, printer, jsonWriter, message, out);
+        } catch (IOException e) {
             throw new Exceptions.ParsingException(
                 format("Failed to serialize a message: {%s}", message), e
             );
         }
+        return out.toString();
+    }
+
+    @Override
+    protected void write(
+            @Nullable Integer index,
+            @Nonnull JsonFormat.Printer printer,
+            @Nullable ProtoJsonWriter jsonWriter,
+            @Nonnull Message message,
+            Appendable out) throws IOException {
+        Writer writer = out instanceof Writer ? (Writer) out : new AppendableWriter(out);
+        try {
+            XMLStreamWriter xml = OUTPUT_FACTORY.createXMLStreamWriter(writer);
+            writeRoot(printer, jsonWriter, message, xml);
+            xml.flush();
+            xml.close();
+        } catch (XMLStreamException | InvalidProtocolBufferException e) {
+            throw new Exceptions.ParsingException(
+                    format("Failed to serialize a message: {%s}", message), e
+            );
+        }
+    }
+
+    @Override
+    protected void writeMultiple(
+            @Nonnull JsonFormat.Printer printer,
+            @Nullable ProtoJsonWriter jsonWriter,
+            List<Message> messages,
+            Appendable out) throws IOException {
+        Writer writer = out instanceof Writer ? (Writer) out : new AppendableWriter(out);
+        try {
+            XMLStreamWriter xml = OUTPUT_FACTORY.createXMLStreamWriter(writer);
+            xml.writeStartElement("Array");
+            for (Message message : messages) {
+                writeRoot(printer, jsonWriter, message, xml);
+            }
+            xml.writeEndElement();
+            xml.flush();
+            xml.close();
+        } catch (XMLStreamException | InvalidProtocolBufferException e) {
+            throw new Exceptions.ParsingException(
+                    format("Failed to serialize messages: {%s}", messages), e
+            );
+        }
+    }
+
+    private static void writeRoot(
+            JsonFormat.Printer printer,
+            @Nullable ProtoJsonWriter writer,
+            Message message,
+            XMLStreamWriter xml) throws XMLStreamException, InvalidProtocolBufferException {
+        xml.writeStartElement(message.getDescriptorForType().getName());
+        if (writer != null && writer.supports(message.getDescriptorForType())) {
+            writeMessage(writer, message, xml);
+        } else {
+            writeJsonContent(
+                    JsonParser.parseString(printer.print(message)),
+                    message.getDescriptorForType(),
+                    xml);
+        }
+        xml.writeEndElement();
+    }
+
+    private static void writeMessage(
+            ProtoJsonWriter writer,
+            Message message,
+            XMLStreamWriter xml) throws XMLStreamException {
+        try {
+            writer.forEachField(message, (name, field) -> {
+                try {
+                    writeField(writer, name, field, message.getField(field), xml);
+                } catch (XMLStreamException e) {
+                    throw new UncheckedXMLStreamException(e);
+                }
+            });
+        } catch (UncheckedXMLStreamException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void writeField(
+            ProtoJsonWriter writer,
+            String name,
+            FieldDescriptor field,
+            Object value,
+            XMLStreamWriter xml) throws XMLStreamException {
+        if (field.isMapField()) {
+            FieldDescriptor keyField = field.getMessageType().findFieldByName("key");
+            FieldDescriptor valueField = field.getMessageType().findFieldByName("value");
+            for (Object item : (List<?>) value) {
+                Message entry = (Message) item;
+                xml.writeStartElement(name);
+                writeValue(writer, MAP_KEY, keyField, entry.getField(keyField), xml);
+                writeValue(writer, MAP_VALUE, valueField, entry.getField(valueField), xml);
+                xml.writeEndElement();
+            }
+        } else if (field.isRepeated()) {
+            for (Object item : (List<?>) value) {
+                writeValue(writer, name, field, item, xml);
+            }
+        } else {
+            writeValue(writer, name, field, value, xml);
+        }
+    }
+
+    private static void writeValue(
+            ProtoJsonWriter writer,
+            String name,
+            FieldDescriptor field,
+            Object value,
+            XMLStreamWriter xml) throws XMLStreamException {
+        xml.writeStartElement(name);
+        if (field.getJavaType() != FieldDescriptor.JavaType.MESSAGE) {
+            xml.writeCharacters(writer.toText(field, value));
+        } else if (!ProtoJsonReader.isWellKnownType(field.getMessageType())) {
+            writeMessage(writer, (Message) value, xml);
+        } else {
+            try {
+                writeJsonContent(JsonParser.parseString(DELEGATE_PRINTER.print((Message) value)), null, xml);
+            } catch (InvalidProtocolBufferException e) {
+                throw new Exceptions.ParsingException(
+                        format("Failed to serialize a message: {%s}", value), e);
+            }
+        }
+        xml.writeEndElement();
+    }
+
+    /**
+     * Writes the content of an element from the printed JSON value, used for
+     * the well-known types and the messages {@link ProtoJsonWriter} does not
+     * support. With the message type known, map fields are written as entries
+     * the same way {@link #writeField} does.
+     */
+    private static void writeJsonContent(
+            JsonElement json,
+            @Nullable Descriptor type,
+            XMLStreamWriter xml) throws XMLStreamException {
+        if (json.isJsonObject()) {
+            Map<String, FieldDescriptor> fields = type == null
+                    ? Collections.emptyMap()
+                    : ProtoJsonReader.fields(type);
+            for (Map.Entry<String, JsonElement> entry : json.getAsJsonObject().entrySet()) {
+                FieldDescriptor field = fields.get(entry.getKey());
+                if (field != null && field.isMapField() && entry.getValue().isJsonObject()) {
+                    Descriptor valueType = messageType(field.getMessageType().findFieldByName("value"));
+                    for (Map.Entry<String, JsonElement> item : entry.getValue().getAsJsonObject().entrySet()) {
+                        xml.writeStartElement(entry.getKey());
+                        xml.writeStartElement(MAP_KEY);
+                        xml.writeCharacters(item.getKey());
+                        xml.writeEndElement();
+                        xml.writeStartElement(MAP_VALUE);
+                        writeJsonContent(item.getValue(), valueType, xml);
+                        xml.writeEndElement();
+                        xml.writeEndElement();
+                    }
+                } else if (entry.getValue().isJsonArray()) {
+                    for (JsonElement item : entry.getValue().getAsJsonArray()) {
+                        xml.writeStartElement(entry.getKey());
+                        writeJsonContent(item, messageType(field), xml);
+                        xml.writeEndElement();
+                    }
+                } else {
+                    xml.writeStartElement(entry.getKey());
+                    writeJsonContent(entry.getValue(), messageType(field), xml);
+                    xml.writeEndElement();
+                }
+            }
+        } else if (json.isJsonPrimitive()) {
+            xml.writeCharacters(json.getAsString());
+        }
+    }
+
+    /**
+     * @return type of the message field, null for the other fields and the
+     *      well-known types, which are written as plain JSON
+     */
+    private static @Nullable Descriptor messageType(@Nullable FieldDescriptor field) {
+        if (field == null
+                || field.getJavaType() != FieldDescriptor.JavaType.MESSAGE
+                || ProtoJsonReader.isWellKnownType(field.getMessageType())) {
+            return null;
+        }
+        return field.getMessageType();
+    }
+
+    /**
+     * Merges the children of the current element into the builder, the
+     * reader is left at the end of the element.
+     */
+    private static void mergeMessage(
+            XMLStreamReader reader,
+            Message.Builder builder,
+            int depth) throws XMLStreamException, InvalidProtocolBufferException {
+        if (depth >= RECURSION_LIMIT) {
+            throw new InvalidProtocolBufferException("Hit recursion limit.");
+        }
+        Map<String, FieldDescriptor> fields = ProtoJsonReader.fields(builder.getDescriptorForType());
+        while (nextChild(reader)) {
+            String name = reader.getLocalName();
+            FieldDescriptor field = fields.get(name);
+            if (field == null) {
+                throw new InvalidProtocolBufferException(
+                        "Cannot find field: " + name
+                                + " in message " + builder.getDescriptorForType().getFullName());
+            }
+
+            if (field.isMapField()) {
+                mergeMapField(reader, field, builder, depth);
+            } else {
+                Object value = readValue(reader, field, builder, depth);
+                if (value == null) {
+                    continue;
+                } else if (field.isRepeated()) {
+                    builder.addRepeatedField(field, value);
+                } else {
+                    builder.setField(field, value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Merges a single map entry, an element with the key and value children,
+     * the reader is left at the end of the element.
+     */
+    private static void mergeMapField(
+            XMLStreamReader reader,
+            FieldDescriptor field,
+            Message.Builder builder,
+            int depth) throws XMLStreamException, InvalidProtocolBufferException {
+        Message.Builder entry = builder.newBuilderForField(field);
+        FieldDescriptor keyField = entry.getDescriptorForType().findFieldByName("key");
+        FieldDescriptor valueField = entry.getDescriptorForType().findFieldByName("value");
+        while (nextChild(reader)) {
+            String name = reader.getLocalName();
+            if (name.equals(MAP_KEY)) {
+                entry.setField(keyField, ProtoJsonReader.parseString(keyField, reader.getElementText(), entry));
+            } else if (name.equals(MAP_VALUE)) {
+                Object value = readValue(reader, valueField, entry, depth);
+                if (value != null) {
+                    entry.setField(valueField, value);
+                }
+            } else {
+                throw new InvalidProtocolBufferException(
+                        "Unexpected element: " + name + " in map entry of " + field.getFullName());
+            }
+        }
+        builder.addRepeatedField(field, entry.build());
+    }
+
+    /**
+     * Reads the value of the current element, the reader is left at the end
+     * of the element.
+     */
+    private static @Nullable Object readValue(
+            XMLStreamReader reader,
+            FieldDescriptor field,
+            Message.Builder builder,
+            int depth) throws XMLStreamException, InvalidProtocolBufferException {
+        if (field.getJavaType() != FieldDescriptor.JavaType.MESSAGE) {
+            return ProtoJsonReader.parseString(field, reader.getElementText(), builder);
+        }
+
+        Message.Builder child = builder.newBuilderForField(field);
+        if (ProtoJsonReader.isWellKnownType(field.getMessageType())) {
+            DELEGATE_PARSER.merge(readJson(reader).toString(), child);
+        } else {
+            mergeMessage(reader, child, depth + 1);
+        }
+        return child.build();
+    }
+
+    /**
+     * Reads the current element as JSON: text only elements are strings,
+     * the children are object members, repeated children become arrays.
+     */
+    private static JsonElement readJson(XMLStreamReader reader) throws XMLStreamException {
+        JsonObject object = null;
+        StringBuilder text = new StringBuilder();
+        while (true) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                return object == null ? new JsonPrimitive(text.toString()) : object;
+            } else if (event == XMLStreamConstants.CHARACTERS
+                    || event == XMLStreamConstants.CDATA
+                    || event == XMLStreamConstants.SPACE) {
+                text.append(reader.getText());
+            } else if (event == XMLStreamConstants.START_ELEMENT) {
+                if (object == null) {
+                    object = new JsonObject();
+                }
+                String name = reader.getLocalName();
+                JsonElement value = readJson(reader);
+                JsonElement existing = object.get(name);
+                if (existing == null) {
+                    object.add(name, value);
+                } else if (existing.isJsonArray()) {
+                    existing.getAsJsonArray().add(value);
+                } else {
+                    JsonArray array = new JsonArray();
+                    array.add(existing);
+                    array.add(value);
+                    object.add(name, array);
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves the reader to the next child element of the current element.
+     *
+     * @return true if positioned at a child element, false if at the end of
+     *      the current element
+     */
+    private static boolean nextChild(XMLStreamReader reader) throws XMLStreamException {
+        while (true) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                return true;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                return false;
+            }
+        }
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    private static final class UncheckedXMLStreamException extends RuntimeException {
+        UncheckedXMLStreamException(XMLStreamException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized XMLStreamException getCause() {
+            return (XMLStreamException) super.getCause();
+        }
+    }
+
+    /**
+     * Adapts an {@link Appendable} to the writer StAX writes to.
+     */
+    private static final class AppendableWriter extends Writer {
+        private final Appendable out;
+
+        AppendableWriter(Appendable out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(char[] buffer, int offset, int length) throws IOException {
+            out.append(new String(buffer, offset, length));
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
     }
 }
@@ -0,0 +1,137 @@
+package grpcbridge.xml;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import com.google.protobuf.Int32Value;
+import com.google.protobuf.Message;
+import com.google.protobuf.Timestamp;
+import com.google.protobuf.util.JsonFormat;
+import grpcbridge.Exceptions.ParsingException;
+import grpcbridge.parser.ProtoJsonWriter;
+import grpcbridge.rpc.RpcMessage;
+import grpcbridge.test.proto.TestXml.AccountEvent;
+import grpcbridge.test.proto.TestXml.Ledger;
+import grpcbridge.test.proto.TestXml.Status;
+import grpcbridge.test.proto.TestXml.Transaction;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor.MethodType;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class ProtoXMLConverterTest {
+    private static final Ledger LEDGER = Ledger.newBuilder()
+            .addTransactions(Transaction.newBuilder()
+                    .setStatusCode(Status.FAIL)
+                    .setHasMoney(true)
+                    .setDescription("a & b <c")
+                    .setAmount(25.5))
+            .addTransactions(Transaction.newBuilder().setDescription("second"))
+            .putBalances("main", -3)
+            .putBalances("savings", 1L << 40)
+            .setClosedAt(Timestamp.newBuilder().setSeconds(1234567890))
+            .setRevision(Int32Value.of(7))
+            .setLastEvent(AccountEvent.newBuilder().setStatusCode(Status.FAIL))
+            .addTags("x")
+            .addTags("y")
+            .build();
+
+    private final JsonFormat.Printer printer = JsonFormat.printer().preservingProtoFieldNames();
+    private final ProtoJsonWriter writer = ProtoJsonWriter.create().preservingProtoFieldNames();
+
+    @Test
+    public void serialize() {
+        assertThat(ProtoXMLConverter.INSTANCE.serialize(printer, writer, LEDGER)).isEqualTo("<Ledger>"
+                + "<transactions><status_code>FAIL</status_code><has_money>true</has_money>"
+                + "<description>a &amp; b &lt;c</description><amount>25.5</amount></transactions>"
+                + "<transactions><description>second</description></transactions>"
+                + "<balances><key>main</key><value>-3</value></balances>"
+                + "<balances><key>savings</key><value>1099511627776</value></balances>"
+                + "<closed_at>2009-02-13T23:31:30Z</closed_at>"
+                + "<revision>7</revision>"
+                + "<last_event><status_code>FAIL</status_code></last_event>"
+                + "<tags>x</tags><tags>y</tags>"
+                + "</Ledger>");
+    }
+
+    @Test
+    public void roundTrip() {
+        String xml = ProtoXMLConverter.INSTANCE.serialize(printer, writer, LEDGER);
+
+        assertThat(parse(xml)).isEqualTo(LEDGER);
+        assertThat(parse(ProtoXMLConverter.INSTANCE.serialize(JsonFormat.printer(), LEDGER)))
+                .isEqualTo(LEDGER);
+    }
+
+    @Test
+    public void maps() {
+        Ledger ledger = Ledger.newBuilder()
+                .putBalances("", 1)
+                .putBalances("two words", 2)
+                .putBalances("<&>\"", 3)
+                .putBalances("1st", 4)
+                .putTransactionsById(-7, Transaction.newBuilder().setDescription("minus seven").build())
+                .putTransactionsById(42, Transaction.getDefaultInstance())
+                .build();
+
+        String xml = ProtoXMLConverter.INSTANCE.serialize(printer, writer, ledger);
+
+        assertThat(xml).contains("<balances><key>two words</key><value>2</value></balances>");
+        assertThat(xml).contains("<balances><key>&lt;&amp;>\"</key><value>3</value></balances>");
+        assertThat(xml).contains("<transactions_by_id><key>-7</key>"
+                + "<value><description>minus seven</description></value></transactions_by_id>");
+        assertThat(parse(xml)).isEqualTo(ledger);
+        assertThat(parse(ProtoXMLConverter.INSTANCE.serialize(printer, ledger))).isEqualTo(ledger);
+    }
+
+    @Test
+    public void parseLenientText() {
+        String xml = "<?xml version=\"1.0\"?>\n<Ledger>\n"
+                + "  <transactions><statusCode>1</statusCode><amount>1e1</amount></transactions>\n"
+                + "  <lastEvent/>\n"
+                + "  <tags><![CDATA[<raw>]]></tags>\n"
+                + "</Ledger>";
+
+        assertThat(parse(xml)).isEqualTo(Ledger.newBuilder()
+                .addTransactions(Transaction.newBuilder().setStatusCode(Status.FAIL).setAmount(10))
+                .setLastEvent(AccountEvent.getDefaultInstance())
+                .addTags("<raw>")
+                .build());
+    }
+
+    @Test
+    public void parseErrors() {
+        assertThatExceptionOfType(ParsingException.class)
+                .isThrownBy(() -> parse("<Ledger><unknown>1</unknown></Ledger>"));
+        assertThatExceptionOfType(ParsingException.class)
+                .isThrownBy(() -> parse("<Ledger><tags>x</tags>"));
+        assertThatExceptionOfType(ParsingException.class)
+                .isThrownBy(() -> parse("<Ledger><revision>x</revision></Ledger>"));
+    }
+
+    @Test
+    public void serializeStream() {
+        RpcMessage message = new RpcMessage(
+                Arrays.<Message>asList(
+                        AccountEvent.newBuilder().setStatusCode(Status.FAIL).build(),
+                        AccountEvent.newBuilder().setStatusCode(Status.FAIL).build()),
+                new Metadata(),
+                MethodType.SERVER_STREAMING);
+
+        String body = new String(
+                ProtoXMLConverter.INSTANCE.serialize(printer, writer, message).getBodyBytes(),
+                StandardCharsets.UTF_8);
+
+        assertThat(body).isEqualTo("<Array>"
+                + "<AccountEvent><status_code>FAIL</status_code></AccountEvent>"
+                + "<AccountEvent><status_code>FAIL</status_code></AccountEvent>"
+                + "</Array>");
+    }
+
+    private static Ledger parse(String xml) {
+        return ProtoXMLConverter.INSTANCE.parse(xml, StandardCharsets.UTF_8, Ledger.newBuilder());
+    }
+}